@@ -7,18 +7,38 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
+import com.facial.smileornosmile.result.FaceResult;
+import com.facial.smileornosmile.result.ResultFormatter;
 
-public class FaceDetectionAdapter extends RecyclerView.Adapter<FaceDetectionAdapter.ViewHolder> {
+/**
+ * Shows result rows. New lists are diffed against the shown one on a background thread and
+ * only the rows whose text changes are rebound.
+ */
+public class FaceDetectionAdapter extends ListAdapter<FaceResult, FaceDetectionAdapter.ViewHolder> {
 
-    private List<FaceDetectionModel> faceDetectionModelList;
+    private static final DiffUtil.ItemCallback<FaceResult> DIFF_CALLBACK = new DiffUtil.ItemCallback<FaceResult>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull FaceResult oldItem, @NonNull FaceResult newItem) {
+            return oldItem.isSameRow(newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull FaceResult oldItem, @NonNull FaceResult newItem) {
+            return oldItem.hasSameContents(newItem);
+        }
+    };
+
+    private final ResultFormatter formatter = new ResultFormatter();
     private Context context;
 
-    public FaceDetectionAdapter(List<FaceDetectionModel> faceDetectionModelList, Context context) {
-        this.faceDetectionModelList = faceDetectionModelList;
+    public FaceDetectionAdapter(Context context) {
+        super(DIFF_CALLBACK);
         this.context = context;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -31,15 +51,15 @@ public class FaceDetectionAdapter extends RecyclerView.Adapter<FaceDetectionAdap
 
     @Override
     public void onBindViewHolder(@NonNull FaceDetectionAdapter.ViewHolder holder, int position) {
-        FaceDetectionModel faceDetectionModel = faceDetectionModelList.get(position);
-        holder.text1.setText(String.valueOf(faceDetectionModel.getId()));
-        holder.text2.setText(faceDetectionModel.getText());
+        FaceResult result = getItem(position);
+        holder.text1.setText(formatter.formatFaceId(result));
+        holder.text2.setText(formatter.formatValue(result));
 
     }
 
     @Override
-    public int getItemCount() {
-        return faceDetectionModelList.size();
+    public long getItemId(int position) {
+        return getItem(position).getStableId();
     }
 
     public class ViewHolder extends RecyclerView.ViewHolder {
@@ -4,75 +4,251 @@ import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Typeface;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
-import android.provider.MediaStore;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
+import com.facial.smileornosmile.batch.BatchProgress;
+import com.facial.smileornosmile.batch.BatchScoringTask;
+import com.facial.smileornosmile.burst.BestShot;
+import com.facial.smileornosmile.burst.BestShotBuffer;
+import com.facial.smileornosmile.cache.ContentHash;
+import com.facial.smileornosmile.classify.ClassificationMode;
+import com.facial.smileornosmile.classify.GeometricModel;
+import com.facial.smileornosmile.cache.FaceResultStore;
+import com.facial.smileornosmile.cache.ResultKey;
+import com.facial.smileornosmile.cache.SizedLruCache;
+import com.facial.smileornosmile.detector.DetectionImage;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorProvider;
+import com.facial.smileornosmile.detector.FaceLandmarkType;
+import com.facial.smileornosmile.detector.FirebaseFaceDetectorBackend;
+import com.facial.smileornosmile.events.SmileEvent;
+import com.facial.smileornosmile.events.SmileEventEngine;
+import com.facial.smileornosmile.events.SmileRule;
+import com.facial.smileornosmile.frame.CameraViewFrame;
+import com.facial.smileornosmile.frame.FrameBufferPool;
+import com.facial.smileornosmile.frame.LiveFrame;
+import com.facial.smileornosmile.governor.DeviceConditionMonitor;
+import com.facial.smileornosmile.governor.QualityGovernor;
+import com.facial.smileornosmile.governor.QualityLadder;
+import com.facial.smileornosmile.governor.QualityLevel;
+import com.facial.smileornosmile.image.AnnotatedImage;
+import com.facial.smileornosmile.image.BestShotWriter;
+import com.facial.smileornosmile.image.DecodeSizing;
+import com.facial.smileornosmile.image.DecodedImage;
+import com.facial.smileornosmile.image.ImageScale;
+import com.facial.smileornosmile.image.SampledBitmapDecoder;
+import com.facial.smileornosmile.metrics.ArtRuntimeCounters;
+import com.facial.smileornosmile.metrics.SystraceTracer;
+import com.facial.smileornosmile.metrics.Tracer;
+import com.facial.smileornosmile.pipeline.FrameMetrics;
+import com.facial.smileornosmile.pipeline.LiveFramePipeline;
+import com.facial.smileornosmile.pipeline.MetricsCsvWriter;
+import com.facial.smileornosmile.pipeline.PipelineStage;
+import com.facial.smileornosmile.pipeline.PipelineThreading;
+import com.facial.smileornosmile.pipeline.StageTimings;
+import com.facial.smileornosmile.render.ContourGeometry;
+import com.facial.smileornosmile.render.OverlayRenderer;
+import com.facial.smileornosmile.replay.FrameRecorder;
+import com.facial.smileornosmile.replay.RecordingFaceDetectorBackend;
+import com.facial.smileornosmile.result.FaceResult;
+import com.facial.smileornosmile.scheduler.ArbitrationPolicy;
+import com.facial.smileornosmile.scheduler.DetectionPriority;
+import com.facial.smileornosmile.scheduler.DetectionQueue;
+import com.facial.smileornosmile.session.FaceSummary;
+import com.facial.smileornosmile.session.SessionLog;
+import com.facial.smileornosmile.session.SessionLogWriter;
+import com.facial.smileornosmile.startup.DetectorWarmUp;
+import com.facial.smileornosmile.startup.StartupSequence;
+import com.facial.smileornosmile.timeline.TimelineProgress;
+import com.facial.smileornosmile.timeline.VideoTimelineTask;
+import com.facial.smileornosmile.tracking.FaceObservations;
 import com.google.android.material.bottomsheet.BottomSheetBehavior;
-import com.google.firebase.ml.vision.FirebaseVision;
-import com.google.firebase.ml.vision.common.FirebaseVisionImage;
-import com.google.firebase.ml.vision.common.FirebaseVisionImageMetadata;
-import com.google.firebase.ml.vision.common.FirebaseVisionPoint;
-import com.google.firebase.ml.vision.face.FirebaseVisionFace;
-import com.google.firebase.ml.vision.face.FirebaseVisionFaceContour;
-import com.google.firebase.ml.vision.face.FirebaseVisionFaceDetector;
-import com.google.firebase.ml.vision.face.FirebaseVisionFaceDetectorOptions;
-import com.google.firebase.ml.vision.face.FirebaseVisionFaceLandmark;
+import com.google.firebase.analytics.FirebaseAnalytics;
+import com.otaliastudios.cameraview.CameraListener;
+import com.otaliastudios.cameraview.CameraOptions;
 import com.otaliastudios.cameraview.CameraView;
+import com.otaliastudios.cameraview.FileCallback;
+import com.otaliastudios.cameraview.PictureResult;
 import com.otaliastudios.cameraview.controls.Facing;
 import com.otaliastudios.cameraview.frame.Frame;
 import com.otaliastudios.cameraview.frame.FrameProcessor;
 import com.theartofdev.edmodo.cropper.CropImage;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static android.view.View.GONE;
 import static android.view.View.INVISIBLE;
 import static android.view.View.VISIBLE;
 
 public class MainActivity extends AppCompatActivity implements FrameProcessor {
-    private Facing cameraFacing = Facing.FRONT;
+    private static final int REQUEST_BATCH_FOLDER = 1001;
+    private static final int REQUEST_VIDEO = 1002;
+    private static final int DETECTION_INTERVAL = 2;
+    //Detect in a crop around the tracked faces instead of the whole frame
+    private static final boolean ROI_DETECTION = true;
+    //GEOMETRIC skips the detector's smile and eyes classifier and estimates both from the contours,
+    //with a model calibrated against it on recordings
+    private static final ClassificationMode CLASSIFICATION_MODE = ClassificationMode.MODEL;
+    private static final GeometricModel GEOMETRIC_MODEL = GeometricModel.DEFAULT;
+    private static final int MAX_IMAGE_FACES = 32;
+    //Live frames detected while a picked picture waits or runs, 0 pauses the preview overlay until it is done
+    private static final int LIVE_STRIDE_DURING_IMAGE = 0;
+    //Batches and video timelines get a detection in after waiting this long behind live frames
+    private static final long BACKGROUND_AGING_MILLIS = 2000;
+    //Live detection latency the quality governor tries to stay within
+    private static final long TARGET_LATENCY_MILLIS = 150;
+    private static final long SMILE_HOLD_MILLIS = 500;
+    //Also take a full resolution picture when everyone smiles with open eyes, otherwise the events are only logged
+    private static final boolean CAPTURE_ON_SMILE = false;
+    //Long press the camera toggle to show or hide the metrics, tap them to export
+    private static final boolean SHOW_METRICS_HUD = false;
+    private static final long HUD_INTERVAL_MILLIS = 500;
+    //Write the camera frames and detector results of every session to files/recordings for offline replay
+    private static final boolean RECORD_FRAMES = false;
+    //Append the tracked faces of every camera session to files/sessions, flushed every few seconds
+    private static final boolean LOG_SESSIONS = true;
+    private static final long SESSION_FLUSH_MILLIS = 5000;
+    private static final float SESSION_SMILE_THRESHOLD = 0.5f;
+    private static final float SESSION_EYES_OPEN_THRESHOLD = 0.5f;
+    //Annotated images of recently analysed pictures may take this share of the heap
+    private static final int ANNOTATED_CACHE_HEAP_DIVISOR = 8;
+    //Face results of analysed pictures kept in the cache folder, a few hundred bytes each
+    private static final long RESULT_STORE_BYTES = 1 << 20;
+    //Recent detected frames to pick the best smile from when the overlay is tapped, 11 at 720p
+    private static final int BEST_SHOT_FRAMES = 15;
+    private static final long BEST_SHOT_BYTES = 16 << 20;
+    //Long press the camera preview to write the smile timeline of a video, detecting on every third frame
+    private static final int VIDEO_STRIDE = 3;
+    private static final int[] LANDMARK_DOTS = {
+            FaceLandmarkType.LEFT_EYE,
+            FaceLandmarkType.RIGHT_EYE,
+            FaceLandmarkType.NOSE_BASE,
+            FaceLandmarkType.LEFT_EAR,
+            FaceLandmarkType.RIGHT_EAR
+    };
+    //Whether an activity was created in this process already, so this is no cold start
+    private static boolean createdBefore;
+
+    private volatile Facing cameraFacing = Facing.FRONT;
     private ImageView imageView;
     private ImageView staticImage;
+    private TextView metricsHud;
     private CameraView faceDetectionCameraView;
     private RecyclerView bottomSheetRecyclerView;
     private BottomSheetBehavior bottomSheetBehavior;
-    private ArrayList<FaceDetectionModel> faceDetectionModels;
+    private FaceDetectionAdapter faceDetectionAdapter;
+    private LiveFramePipeline liveFramePipeline;
+    private FaceDetectorProvider faceDetectorProvider;
+    private FaceDetectorBackend faceDetectorBackend;
+    private FaceDetectorBackend imageDetectorBackend;
+    private DetectionQueue detectionQueue;
+    private RecordingFaceDetectorBackend recordingBackend;
+    private volatile FrameRecorder frameRecorder;
+    //Only touched on the processing thread
+    private SessionLogWriter sessionLogWriter;
+    private File sessionLogFile;
+    private QualityGovernor qualityGovernor;
+    private DeviceConditionMonitor deviceConditionMonitor;
+    private OverlayRenderer overlayRenderer;
+    //At most one overlay waits for the main thread, so with one on screen and one being drawn the ring of three never
+    //erases or recycles a bitmap still in use
+    private final AtomicBoolean overlayPending = new AtomicBoolean();
+    private final Tracer tracer = new SystraceTracer();
+    private PipelineThreading pipelineThreading;
+    private SampledBitmapDecoder bitmapDecoder;
+    private BatchScoringTask batchScoringTask;
+    private VideoTimelineTask videoTimelineTask;
+    private final StageTimings stageTimings = new StageTimings();
+    private final FrameMetrics frameMetrics = new FrameMetrics(stageTimings, new ArtRuntimeCounters(), System.nanoTime());
+    //Frozen preview frames: one waiting, one in detection and one being copied
+    private final FrameBufferPool cameraBufferPool = new FrameBufferPool(3, true);
+    private final StringBuilder hudText = new StringBuilder();
+    private final Runnable hudUpdater = new Runnable() {
+        @Override
+        public void run() {
+            frameMetrics.formatHud(System.nanoTime(), hudText);
+            metricsHud.setText(hudText);
+            metricsHud.postDelayed(this, HUD_INTERVAL_MILLIS);
+        }
+    };
+    private final Runnable sessionLogFlusher = new Runnable() {
+        @Override
+        public void run() {
+            pipelineThreading.getProcessingExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    flushSessionLog();
+                }
+            });
+            imageView.postDelayed(this, SESSION_FLUSH_MILLIS);
+        }
+    };
+    private final FaceObservations imageObservations = new FaceObservations(MAX_IMAGE_FACES, 0, 0);
+    //Picking the same picture again shows it straight from memory, or at least skips detection
+    private final SizedLruCache<ResultKey, AnnotatedImage> annotatedImageCache = new SizedLruCache<>(
+            Runtime.getRuntime().maxMemory() / ANNOTATED_CACHE_HEAP_DIVISOR, AnnotatedImage.SIZER);
+    private FaceResultStore faceResultStore;
+    private StartupSequence startupSequence;
+    private final byte[] hashBuffer = new byte[1 << 16];
+    private final BestShotBuffer bestShotBuffer = new BestShotBuffer(BEST_SHOT_FRAMES, BEST_SHOT_BYTES, LiveFramePipeline.MAX_FACES);
+    //Only touched on the processing thread
+    private final BestShot bestShot = new BestShot(LiveFramePipeline.MAX_FACES);
+    private final SmileEventEngine smileEventEngine = new SmileEventEngine(
+            SmileRule.everyoneSmilingWithEyesOpen(SMILE_HOLD_MILLIS, TimeUnit.MILLISECONDS), LiveFramePipeline.MAX_FACES,
+            new SmileEventEngine.Listener() {
+                @Override
+                public void onEvent(SmileEvent event, int faceId, long timestampNanos) {
+                    onSmileEvent(event, faceId);
+                }
+            });
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        startupSequence = new StartupSequence(processStartNanos(), tracer);
         setContentView(R.layout.activity_main);
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
 
-        faceDetectionModels = new ArrayList<>();
         bottomSheetBehavior = BottomSheetBehavior.from(findViewById(R.id.bottom_sheet));
 
         imageView = findViewById(R.id.face_detection_camera_image_view);
         staticImage = findViewById(R.id.static_image_detection_view);
+        metricsHud = findViewById(R.id.metrics_hud);
+        metricsHud.setVisibility(SHOW_METRICS_HUD ? VISIBLE : GONE);
 
 
         faceDetectionCameraView = findViewById(R.id.face_camera_view);
@@ -82,16 +258,117 @@ public class MainActivity extends AppCompatActivity implements FrameProcessor {
         FrameLayout bottomSheetButton = findViewById(R.id.bottom_sheet_button);
         bottomSheetRecyclerView = findViewById(R.id.bottom_sheet_recycler_view);
 
-        //Setup cameraView from library
-        faceDetectionCameraView.setFacing(cameraFacing);
-        faceDetectionCameraView.setLifecycleOwner(MainActivity.this);
-        faceDetectionCameraView.addFrameProcessor(MainActivity.this);
+        //Detectors are reused between frames and closed when the activity is destroyed
+        faceDetectorProvider = new FaceDetectorProvider();
+        faceDetectorProvider.bind(MainActivity.this);
+        //Passes straight through unless a recording is running
+        recordingBackend = new RecordingFaceDetectorBackend(new FirebaseFaceDetectorBackend(faceDetectorProvider));
+        //Picked pictures, live frames and background work take turns on the detector in that order.
+        //Not closed with the activity, the provider already closes the detectors
+        detectionQueue = new DetectionQueue(recordingBackend, ArbitrationPolicy.defaults()
+                .withLiveStride(LIVE_STRIDE_DURING_IMAGE)
+                .withAging(BACKGROUND_AGING_MILLIS, TimeUnit.MILLISECONDS));
+        faceDetectorBackend = detectionQueue.backend(DetectionPriority.LIVE);
+        imageDetectorBackend = detectionQueue.backend(DetectionPriority.INTERACTIVE);
+        frameMetrics.setDetectionQueue(detectionQueue);
+
+        //Steps detection quality down when it gets too slow or the device too hot, and back up again
+        qualityGovernor = new QualityGovernor(QualityLadder.defaultLadder(), TARGET_LATENCY_MILLIS, TimeUnit.MILLISECONDS,
+                new QualityGovernor.Listener() {
+                    @Override
+                    public void onLevelChanged(QualityLevel from, QualityLevel to, String reason) {
+                        Log.i("QualityGovernor", "onLevelChanged: " + from + " -> " + to + ", " + reason);
+                        liveFramePipeline.onLevelChanged(to);
+                    }
+                });
+        deviceConditionMonitor = new DeviceConditionMonitor(MainActivity.this, qualityGovernor);
+
+        overlayRenderer = new OverlayRenderer();
+        bitmapDecoder = new SampledBitmapDecoder(getContentResolver());
+        faceResultStore = new FaceResultStore(new File(getCacheDir(), "faces"), RESULT_STORE_BYTES);
+
+        //Results are drawn on a background thread, only the finished bitmap is handed to the views
+        pipelineThreading = PipelineThreading.background(ContextCompat.getMainExecutor(MainActivity.this));
+
+        liveFramePipeline = new LiveFramePipeline(faceDetectorBackend, qualityGovernor, smileEventEngine, frameMetrics, tracer,
+                pipelineThreading.getProcessingExecutor(), new LiveFramePipeline.Output() {
+            @Override
+            public void onOverlay(ContourGeometry geometry, int width, int height, boolean mirrored, long startNanos) {
+                renderOverlay(geometry, width, height, mirrored, startNanos);
+            }
+
+            @Override
+            public void onDetectionFinished(boolean fresh) {
+                if(startupSequence.reach(StartupSequence.Milestone.FIRST_DETECTION, System.nanoTime())) {
+                    Log.i("Startup", "Time to first detection " + startupSequence.getTimeToFirstDetectionNanos() / 1000000
+                            + " ms, " + startupSequence);
+                }
+                if(liveFramePipeline.getScheduler().getProcessedCount() % 100 == 0) {
+                    Log.d("myTag", "process: " + liveFramePipeline + " " + overlayRenderer);
+                }
+            }
+
+            @Override
+            public void onDetectionFailed(Exception e) {
+                pipelineThreading.getPublishExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        imageView.setImageBitmap(null);
+                    }
+                });
+            }
+        }).withDetectionInterval(DETECTION_INTERVAL).withRoiDetection(ROI_DETECTION).withBestShots(bestShotBuffer)
+                .withClassification(CLASSIFICATION_MODE, GEOMETRIC_MODEL).withDetectionQueue(detectionQueue);
+        frameMetrics.addBufferPool(cameraBufferPool);
+        frameMetrics.addBufferPool(liveFramePipeline.getCropBufferPool());
 
         toggle.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 cameraFacing = (cameraFacing == Facing.FRONT) ? Facing.BACK : Facing.FRONT;
                 faceDetectionCameraView.setFacing(cameraFacing);
+                liveFramePipeline.reset();
+            }
+        });
+
+        toggle.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                metricsHud.removeCallbacks(hudUpdater);
+                if(metricsHud.getVisibility() == VISIBLE) {
+                    metricsHud.setVisibility(GONE);
+                } else {
+                    metricsHud.setVisibility(VISIBLE);
+                    hudUpdater.run();
+                }
+                return true;
+            }
+        });
+
+        metricsHud.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                exportMetrics();
+            }
+        });
+
+        imageView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                saveBestShot();
+            }
+        });
+
+        imageView.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                if(videoTimelineTask != null && videoTimelineTask.isRunning()) {
+                    Toast.makeText(MainActivity.this, "Timeline already running", Toast.LENGTH_SHORT).show();
+                } else {
+                    startActivityForResult(new Intent(Intent.ACTION_OPEN_DOCUMENT).addCategory(Intent.CATEGORY_OPENABLE)
+                            .setType("video/*"), REQUEST_VIDEO);
+                }
+                return true;
             }
         });
 
@@ -102,9 +379,260 @@ public class MainActivity extends AppCompatActivity implements FrameProcessor {
             }
         });
 
+        //Long press scores every image of a folder instead of a single cropped one
+        bottomSheetButton.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                if(batchScoringTask != null && batchScoringTask.isRunning()) {
+                    Toast.makeText(MainActivity.this, "Batch already running", Toast.LENGTH_SHORT).show();
+                } else {
+                    startActivityForResult(new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE), REQUEST_BATCH_FOLDER);
+                }
+                return true;
+            }
+        });
+
         bottomSheetRecyclerView.setLayoutManager(new LinearLayoutManager(MainActivity.this));
-        bottomSheetRecyclerView.setAdapter(new FaceDetectionAdapter(faceDetectionModels, MainActivity.this));
+        faceDetectionAdapter = new FaceDetectionAdapter(MainActivity.this);
+        bottomSheetRecyclerView.setAdapter(faceDetectionAdapter);
 
+        //Nothing below needs to happen before the activity shows, each step waits for the one it depends on
+        final Executor mainExecutor = ContextCompat.getMainExecutor(MainActivity.this);
+        startupSequence.runAt(StartupSequence.Milestone.CREATED, "camera", mainExecutor, new Runnable() {
+            @Override
+            public void run() {
+                bindCamera();
+            }
+        });
+        //Loading the model takes longer than opening the camera, but must not hold it up
+        startupSequence.runAt(StartupSequence.Milestone.CAMERA_OPENED, "detector", pipelineThreading.getProcessingExecutor(), new Runnable() {
+            @Override
+            public void run() {
+                DetectorWarmUp.run(faceDetectorBackend, liveFramePipeline.getLiveProfile(qualityGovernor.getLevel()),
+                        pipelineThreading.getProcessingExecutor(), new Runnable() {
+                            @Override
+                            public void run() {
+                                startupSequence.reach(StartupSequence.Milestone.DETECTOR_READY, System.nanoTime());
+                            }
+                        });
+            }
+        });
+        //Analytics collection is off in the manifest and turned off again in onStop until the app is in use
+        startupSequence.runAt(StartupSequence.Milestone.FIRST_OVERLAY, "analytics", pipelineThreading.getProcessingExecutor(), new Runnable() {
+            @Override
+            public void run() {
+                FirebaseAnalytics.getInstance(MainActivity.this).setAnalyticsCollectionEnabled(true);
+            }
+        });
+        startupSequence.reach(StartupSequence.Milestone.CREATED, System.nanoTime());
+    }
+
+    private void bindCamera() {
+        faceDetectionCameraView.setFacing(cameraFacing);
+        faceDetectionCameraView.setLifecycleOwner(MainActivity.this);
+        faceDetectionCameraView.addFrameProcessor(MainActivity.this);
+        faceDetectionCameraView.addCameraListener(new CameraListener() {
+            @Override
+            public void onCameraOpened(@NonNull CameraOptions options) {
+                startupSequence.reach(StartupSequence.Milestone.CAMERA_OPENED, System.nanoTime());
+            }
+
+            @Override
+            public void onPictureTaken(@NonNull PictureResult result) {
+                saveCapture(result);
+            }
+        });
+    }
+
+    /**
+     * When the process started, in {@link System#nanoTime()} terms, for the first activity of a
+     * cold start. Later activities of the same process, and any before Android 7, start now.
+     */
+    private static long processStartNanos() {
+        long now = System.nanoTime();
+        if(createdBefore || Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return now;
+        }
+        createdBefore = true;
+        return now - TimeUnit.MILLISECONDS.toNanos(SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime());
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        //Coming back from the background, not a cold start
+        if(startupSequence.hasReached(StartupSequence.Milestone.FIRST_OVERLAY)) {
+            FirebaseAnalytics.getInstance(MainActivity.this).setAnalyticsCollectionEnabled(true);
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        deviceConditionMonitor.start();
+        //Every time the camera comes back is a new session
+        frameMetrics.reset(System.nanoTime());
+        if(metricsHud.getVisibility() == VISIBLE) {
+            hudUpdater.run();
+        }
+        if(RECORD_FRAMES) {
+            startRecording();
+        }
+        if(LOG_SESSIONS) {
+            startSessionLog();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        deviceConditionMonitor.stop();
+        liveFramePipeline.clear();
+        metricsHud.removeCallbacks(hudUpdater);
+        stopRecording();
+        stopSessionLog();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        //The setting is saved and would override the manifest, so the next cold start begins without collection too
+        FirebaseAnalytics.getInstance(MainActivity.this).setAnalyticsCollectionEnabled(false);
+    }
+
+    private void startRecording() {
+        File folder = getExternalFilesDir("recordings");
+        if(folder == null) {
+            return;
+        }
+        try {
+            FrameRecorder recorder = new FrameRecorder(new File(folder, "frames_" + System.currentTimeMillis() + ".rec"));
+            recordingBackend.setRecorder(recorder);
+            frameRecorder = recorder;
+        } catch (IOException e) {
+            Log.e("myTag", "startRecording: ", e);
+        }
+    }
+
+    private void stopRecording() {
+        FrameRecorder recorder = frameRecorder;
+        if(recorder == null) {
+            return;
+        }
+        frameRecorder = null;
+        recordingBackend.setRecorder(null);
+        try {
+            //Results still in flight are not written anymore
+            recorder.close();
+            Log.i("myTag", "stopRecording: " + recorder.getFrameCount() + " frames, " + recorder.getResultCount() + " results");
+        } catch (IOException e) {
+            Log.e("myTag", "stopRecording: ", e);
+        }
+    }
+
+    private void startSessionLog() {
+        final File folder = getExternalFilesDir("sessions");
+        if(folder == null) {
+            return;
+        }
+        final File file = new File(folder, "session_" + System.currentTimeMillis() + ".log");
+        pipelineThreading.getProcessingExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sessionLogWriter = new SessionLogWriter(file);
+                    sessionLogFile = file;
+                    liveFramePipeline.withSessionLog(sessionLogWriter);
+                } catch (IOException e) {
+                    Log.e("myTag", "startSessionLog: ", e);
+                }
+            }
+        });
+        imageView.postDelayed(sessionLogFlusher, SESSION_FLUSH_MILLIS);
+    }
+
+    /**
+     * Writes the rows collected so far. Runs on the processing thread.
+     */
+    private void flushSessionLog() {
+        if(sessionLogWriter == null) {
+            return;
+        }
+        try {
+            sessionLogWriter.flush();
+        } catch (IOException e) {
+            //The log stopped at its last good block, the session goes on without it
+            Log.e("myTag", "flushSessionLog: ", e);
+            liveFramePipeline.withSessionLog(null);
+            SessionLogWriter writer = sessionLogWriter;
+            sessionLogWriter = null;
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                //The same failure again
+            }
+        }
+    }
+
+    /**
+     * Closes the session log after the detections already queued and logs what it holds.
+     */
+    private void stopSessionLog() {
+        imageView.removeCallbacks(sessionLogFlusher);
+        pipelineThreading.getProcessingExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                SessionLogWriter writer = sessionLogWriter;
+                if(writer == null) {
+                    return;
+                }
+                sessionLogWriter = null;
+                liveFramePipeline.withSessionLog(null);
+                try {
+                    writer.close();
+                    SessionLog log = SessionLog.open(sessionLogFile);
+                    try {
+                        Log.i("Session", log + ", smiling " + Math.round(log.getSmilingShare(SESSION_SMILE_THRESHOLD) * 100) + "%");
+                        for(FaceSummary face : log.getFaceSummaries(SESSION_SMILE_THRESHOLD, SESSION_EYES_OPEN_THRESHOLD)) {
+                            Log.i("Session", face.toString());
+                        }
+                    } finally {
+                        log.close();
+                    }
+                } catch (IOException e) {
+                    Log.e("myTag", "stopSessionLog: ", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        //Results stay on disk, the annotated images are quick to draw again from them
+        if(level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            annotatedImageCache.clear();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if(batchScoringTask != null) {
+            batchScoringTask.cancel();
+        }
+        if(videoTimelineTask != null) {
+            videoTimelineTask.cancel();
+        }
+        imageView.setImageBitmap(null);
+        //Detections still running may deliver later, their results are dropped from now on.
+        //The renderer belongs to the processing thread, free it there after the results already queued
+        pipelineThreading.shutdown(new Runnable() {
+            @Override
+            public void run() {
+                overlayRenderer.release();
+            }
+        });
     }
 
     @Override
@@ -115,68 +643,241 @@ public class MainActivity extends AppCompatActivity implements FrameProcessor {
 
             if(resultCode == RESULT_OK) {
                 assert result != null;
-                Uri imageUri = result.getUri();
+                analyzeImage(result.getUri());
+            }
+        } else if(requestCode == REQUEST_BATCH_FOLDER && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            startBatch(data.getData());
+        } else if(requestCode == REQUEST_VIDEO && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            startVideoTimeline(data.getData());
+        }
+    }
+
+    private void exportMetrics() {
+        final File folder = getExternalFilesDir("metrics");
+        if(folder == null) {
+            return;
+        }
+        final String session = Long.toString(System.currentTimeMillis());
+        final String device = Build.MANUFACTURER + " " + Build.MODEL + " API " + Build.VERSION.SDK_INT;
+        final String build = BuildConfig.VERSION_NAME + " " + BuildConfig.VERSION_CODE + " " + BuildConfig.BUILD_TYPE;
+        //Written from the processing thread, which also owns the other file work
+        pipelineThreading.getProcessingExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final File file = new File(folder, "metrics.csv");
+                String message;
                 try {
-                    analyzeImage(MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri));
+                    MetricsCsvWriter writer = new MetricsCsvWriter(file, device, build);
+                    try {
+                        writer.write(session, frameMetrics, System.nanoTime());
+                        writer.write(session, startupSequence);
+                    } finally {
+                        writer.close();
+                    }
+                    message = "Metrics exported to " + file;
                 } catch (IOException e) {
                     e.printStackTrace();
+                    message = "Could not export metrics";
                 }
+                final String result = message;
+                pipelineThreading.getPublishExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(MainActivity.this, result, Toast.LENGTH_LONG).show();
+                    }
+                });
             }
-        }
+        });
     }
 
-    private void analyzeImage(final Bitmap bitmap) {
-        if(bitmap == null) {
-            Toast.makeText(this, "Bitmap was null", Toast.LENGTH_SHORT).show();
-            return;
-        }
-        staticImage.setImageBitmap(null);
-        faceDetectionModels.clear();
+    private void startVideoTimeline(Uri video) {
+        videoTimelineTask = new VideoTimelineTask(MainActivity.this, detectionQueue.backend(DetectionPriority.BACKGROUND),
+                getExternalFilesDir("timelines"), VIDEO_STRIDE, new VideoTimelineTask.Listener() {
+                    @Override
+                    public void onProgress(TimelineProgress progress) {
+                        Objects.requireNonNull(getSupportActionBar()).setSubtitle("Timeline " + progress);
+                    }
+
+                    @Override
+                    public void onFinished(TimelineProgress progress, File timeline) {
+                        Objects.requireNonNull(getSupportActionBar()).setSubtitle(null);
+                        Toast.makeText(MainActivity.this, "Timeline done: " + progress + "\n" + timeline, Toast.LENGTH_LONG).show();
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Objects.requireNonNull(getSupportActionBar()).setSubtitle(null);
+                        Toast.makeText(MainActivity.this, "Timeline failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                    }
+                });
+        videoTimelineTask.start(video);
+    }
+
+    private void startBatch(Uri folder) {
+        batchScoringTask = new BatchScoringTask(MainActivity.this, detectionQueue.backend(DetectionPriority.BACKGROUND),
+                getExternalFilesDir("batch"), new BatchScoringTask.Listener() {
+                    @Override
+                    public void onProgress(BatchProgress progress) {
+                        Objects.requireNonNull(getSupportActionBar()).setSubtitle("Batch " + progress);
+                    }
 
-        Objects.requireNonNull(bottomSheetRecyclerView.getAdapter()).notifyDataSetChanged();
+                    @Override
+                    public void onFinished(BatchProgress progress, File results) {
+                        Objects.requireNonNull(getSupportActionBar()).setSubtitle(null);
+                        Toast.makeText(MainActivity.this, "Batch done: " + progress + "\n" + results, Toast.LENGTH_LONG).show();
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Objects.requireNonNull(getSupportActionBar()).setSubtitle(null);
+                        Toast.makeText(MainActivity.this, "Batch failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                    }
+                });
+        batchScoringTask.start(folder);
+    }
+
+    private void analyzeImage(final Uri imageUri) {
+        staticImage.setImageBitmap(null);
+        faceDetectionAdapter.submitList(Collections.<FaceResult>emptyList());
         bottomSheetBehavior.setState(BottomSheetBehavior.STATE_COLLAPSED);
 
         showProgress();
-        FirebaseVisionImage firebaseVisionImage = FirebaseVisionImage.fromBitmap(bitmap);
-        FirebaseVisionFaceDetectorOptions options = new FirebaseVisionFaceDetectorOptions
-                .Builder()
-                .setPerformanceMode(FirebaseVisionFaceDetectorOptions.ACCURATE)
-                .setLandmarkMode(FirebaseVisionFaceDetectorOptions.ALL_LANDMARKS)
-                .setClassificationMode(FirebaseVisionFaceDetectorOptions.ALL_CLASSIFICATIONS)
-                .build();
-
-        FirebaseVisionFaceDetector faceDetector = FirebaseVision.getInstance().getVisionFaceDetector(options);
+        //The annotated result is only ever shown at view size, so it is not drawn any larger
+        final int displayWidth = staticImage.getWidth() > 0 ? staticImage.getWidth() : getResources().getDisplayMetrics().widthPixels;
+        final int displayHeight = staticImage.getHeight() > 0 ? staticImage.getHeight() : getResources().getDisplayMetrics().heightPixels;
 
-        faceDetector.detectInImage(firebaseVisionImage).addOnSuccessListener(new OnSuccessListener<List<FirebaseVisionFace>>() {
+        pipelineThreading.getProcessingExecutor().execute(new Runnable() {
             @Override
-            public void onSuccess(List<FirebaseVisionFace> firebaseVisionFaces) {
-                Bitmap mutableImage = bitmap.copy(Bitmap.Config.ARGB_8888, true);
-                
-                detectFaces(firebaseVisionFaces, mutableImage);
-                staticImage.setImageBitmap(mutableImage);
+            public void run() {
+                try {
+                    loadAnalysis(imageUri, displayWidth, displayHeight);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    pipelineThreading.getPublishExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            Toast.makeText(MainActivity.this, "Could not load image", Toast.LENGTH_SHORT).show();
+                            hideProgress();
+                        }
+                    });
+                }
+            }
+        });
+    }
 
-                Log.d("myTag", "onSuccess: Success!");
-                hideProgress();
-                bottomSheetRecyclerView.getAdapter().notifyDataSetChanged();
-                bottomSheetBehavior.setState(BottomSheetBehavior.STATE_EXPANDED);
+    /**
+     * Looks the image up by its content in memory, then on disk, and only detects on a miss.
+     * Runs on the pipeline's processing thread.
+     */
+    private void loadAnalysis(Uri imageUri, int displayWidth, int displayHeight) throws IOException {
+        long start = System.nanoTime();
+        DetectorProfile profile = qualityGovernor.getLevel().getStaticProfile();
+        ResultKey key = new ResultKey(hashContent(imageUri), profile, bitmapDecoder.getMaxDetectionSize());
+        AnnotatedImage cached = annotatedImageCache.get(key);
+        if(cached != null) {
+            Log.d("myTag", "loadAnalysis: from memory in " + (System.nanoTime() - start) / 1000 + " us, " + annotatedImageCache);
+            publishImage(cached, System.nanoTime());
+            return;
+        }
+
+        DecodedImage image = bitmapDecoder.decode(imageUri);
+        if(faceResultStore.get(key, imageObservations)) {
+            Log.d("myTag", "loadAnalysis: from disk in " + (System.nanoTime() - start) / 1000 + " us, " + faceResultStore);
+            annotateImage(key, image, imageObservations, displayWidth, displayHeight, System.nanoTime());
+            return;
+        }
+        detectImage(key, image, displayWidth, displayHeight);
+    }
+
+    private long hashContent(Uri uri) throws IOException {
+        InputStream inputStream = getContentResolver().openInputStream(uri);
+        if(inputStream == null) {
+            throw new FileNotFoundException("Could not open " + uri);
+        }
+        try {
+            return ContentHash.of(inputStream, hashBuffer);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private void detectImage(final ResultKey key, final DecodedImage image, final int displayWidth, final int displayHeight) {
+        final Bitmap bitmap = image.getBitmap();
+        DetectionImage detectionImage = DetectionImage.platform(bitmap, bitmap.getWidth(), bitmap.getHeight());
+
+        final long detectionStart = System.nanoTime();
+        imageDetectorBackend.detect(detectionImage, key.getProfile(), imageObservations,
+                pipelineThreading.getProcessingExecutor(), new FaceDetectorBackend.Callback() {
+            @Override
+            public void onDetected(FaceObservations faces) {
+                long start = stageTimings.recordSince(PipelineStage.DETECTION, detectionStart);
+                try {
+                    faceResultStore.put(key, faces);
+                } catch (IOException e) {
+                    //Only means detecting again next time
+                    Log.e("myTag", "detectImage: ", e);
+                }
+                annotateImage(key, image, faces, displayWidth, displayHeight, start);
             }
-        }).addOnFailureListener(new OnFailureListener() {
+
             @Override
-            public void onFailure(@NonNull Exception e) {
-                Toast.makeText(MainActivity.this, "AnalyzeImage method error", Toast.LENGTH_SHORT).show();
-                hideProgress();
+            public void onFailed(Exception e) {
+                bitmap.recycle();
+                pipelineThreading.getPublishExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(MainActivity.this, "AnalyzeImage method error", Toast.LENGTH_SHORT).show();
+                        hideProgress();
+                    }
+                });
             }
         });
 
     }
 
-    private void detectFaces(List<FirebaseVisionFace> firebaseVisionFaces, Bitmap mutableImage) {
-        if(firebaseVisionFaces == null || mutableImage == null) {
-            Toast.makeText(this, "detectFaces: VisionFaces or mutableImage was null", Toast.LENGTH_SHORT).show();
-            return;
-        }
+    /**
+     * Draws the faces into a display sized copy of the image, caches and shows it. Recycles the decoded bitmap.
+     */
+    private void annotateImage(ResultKey key, DecodedImage image, FaceObservations faces,
+                               int displayWidth, int displayHeight, long start) {
+        Bitmap bitmap = image.getBitmap();
+        float displayScale = Math.min(1f, DecodeSizing.fitInside(bitmap.getWidth(), bitmap.getHeight(), displayWidth, displayHeight));
+        Bitmap annotatedBitmap = Bitmap.createBitmap(
+                Math.max(1, Math.round(bitmap.getWidth() * displayScale)),
+                Math.max(1, Math.round(bitmap.getHeight() * displayScale)),
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(annotatedBitmap);
+        canvas.scale(displayScale, displayScale);
+        canvas.drawBitmap(bitmap, 0f, 0f, new Paint(Paint.FILTER_BITMAP_FLAG));
+        bitmap.recycle();
+
+        AnnotatedImage annotated = new AnnotatedImage(annotatedBitmap, detectFaces(faces, canvas),
+                originalBoxes(faces, image.toOriginal()));
+        annotatedImageCache.put(key, annotated);
+        publishImage(annotated, stageTimings.recordSince(PipelineStage.RENDER, start));
+    }
 
-        Canvas canvas = new Canvas(mutableImage);
+    private void publishImage(final AnnotatedImage annotated, final long rendered) {
+        pipelineThreading.getPublishExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                staticImage.setImageBitmap(annotated.getBitmap());
+
+                Log.d("myTag", "onSuccess: Success! " + stageTimings);
+                hideProgress();
+                faceDetectionAdapter.submitList(annotated.getResults());
+                bottomSheetBehavior.setState(BottomSheetBehavior.STATE_EXPANDED);
+                stageTimings.recordSince(PipelineStage.PUBLISH, rendered);
+            }
+        });
+    }
+
+    /**
+     * Draws the faces onto {@code canvas}, which works in detection coordinates, and returns their result rows.
+     * Runs on the pipeline's processing thread, so it must not touch any views.
+     */
+    private List<FaceResult> detectFaces(FaceObservations faces, Canvas canvas) {
+        List<FaceResult> results = new ArrayList<>();
 
         Paint facePaint = new Paint();
         facePaint.setColor(Color.GREEN);
@@ -193,86 +894,53 @@ public class MainActivity extends AppCompatActivity implements FrameProcessor {
         landmarkPaint.setStyle(Paint.Style.FILL);
         landmarkPaint.setStrokeWidth(8f);
 
-        for(int i = 0; i < firebaseVisionFaces.size(); i++) {
-            canvas.drawRect(firebaseVisionFaces.get(i).getBoundingBox(), facePaint);
-            canvas.drawText("FACE " + i, (firebaseVisionFaces.get(i).getBoundingBox().centerX() - (firebaseVisionFaces.get(i).getBoundingBox().width())/2) + 8f,
-                    (firebaseVisionFaces.get(i).getBoundingBox().centerY() + (firebaseVisionFaces.get(i).getBoundingBox().height()/2) -8f),
-                    facePaint);
-
-            FirebaseVisionFace face = firebaseVisionFaces.get(i);
-
-            if(face.getLandmark(FirebaseVisionFaceLandmark.LEFT_EYE) != null) {
-                FirebaseVisionFaceLandmark leftEye = face.getLandmark(FirebaseVisionFaceLandmark.LEFT_EYE);
-                assert leftEye != null;
-                canvas.drawCircle(leftEye.getPosition().getX(),
-                        leftEye.getPosition().getY(),
-                        8f,
-                        landmarkPaint);
-            }
-
-            if(face.getLandmark(FirebaseVisionFaceLandmark.RIGHT_EYE) != null) {
-                FirebaseVisionFaceLandmark rightEye = face.getLandmark(FirebaseVisionFaceLandmark.RIGHT_EYE);
-                assert rightEye != null;
-                canvas.drawCircle(rightEye.getPosition().getX(),
-                        rightEye.getPosition().getY(),
-                        8f,
-                        landmarkPaint);
-            }
-
-            if(face.getLandmark(FirebaseVisionFaceLandmark.NOSE_BASE) != null) {
-                FirebaseVisionFaceLandmark nose = face.getLandmark(FirebaseVisionFaceLandmark.NOSE_BASE);
-                assert nose != null;
-                canvas.drawCircle(nose.getPosition().getX(),
-                        nose.getPosition().getY(),
-                        8f,
-                        landmarkPaint);
-            }
-
-            if(face.getLandmark(FirebaseVisionFaceLandmark.LEFT_EAR) != null) {
-                FirebaseVisionFaceLandmark leftEar = face.getLandmark(FirebaseVisionFaceLandmark.LEFT_EAR);
-                assert leftEar != null;
-                canvas.drawCircle(leftEar.getPosition().getX(),
-                        leftEar.getPosition().getY(),
-                        8f,
-                        landmarkPaint);
-            }
+        for(int i = 0; i < faces.size(); i++) {
+            canvas.drawRect(faces.getLeft(i), faces.getTop(i), faces.getRight(i), faces.getBottom(i), facePaint);
+            canvas.drawText("FACE " + i, faces.getLeft(i) + 8f, faces.getBottom(i) - 8f, facePaint);
 
-            if(face.getLandmark(FirebaseVisionFaceLandmark.RIGHT_EAR) != null) {
-                FirebaseVisionFaceLandmark rightEar = face.getLandmark(FirebaseVisionFaceLandmark.RIGHT_EAR);
-                assert rightEar != null;
-                canvas.drawCircle(rightEar.getPosition().getX(),
-                        rightEar.getPosition().getY(),
-                        8f,
-                        landmarkPaint);
+            for(int landmark : LANDMARK_DOTS) {
+                if(faces.hasLandmark(i, landmark)) {
+                    canvas.drawCircle(faces.getLandmarkX(i, landmark), faces.getLandmarkY(i, landmark), 8f, landmarkPaint);
+                }
             }
 
-            if(face.getLandmark(FirebaseVisionFaceLandmark.MOUTH_LEFT) != null
-                    && face.getLandmark(FirebaseVisionFaceLandmark.MOUTH_BOTTOM) != null
-                    && face.getLandmark(FirebaseVisionFaceLandmark.MOUTH_RIGHT) != null) {
-                FirebaseVisionFaceLandmark mouthLeft = face.getLandmark(FirebaseVisionFaceLandmark.MOUTH_LEFT);
-                FirebaseVisionFaceLandmark mouthBottom = face.getLandmark(FirebaseVisionFaceLandmark.MOUTH_BOTTOM);
-                FirebaseVisionFaceLandmark mouthRight = face.getLandmark(FirebaseVisionFaceLandmark.MOUTH_RIGHT);
-                canvas.drawLine(mouthLeft.getPosition().getX(),
-                        mouthLeft.getPosition().getY(),
-                        mouthBottom.getPosition().getX(),
-                        mouthBottom.getPosition().getY(),
+            if(faces.hasLandmark(i, FaceLandmarkType.MOUTH_LEFT)
+                    && faces.hasLandmark(i, FaceLandmarkType.MOUTH_BOTTOM)
+                    && faces.hasLandmark(i, FaceLandmarkType.MOUTH_RIGHT)) {
+                canvas.drawLine(faces.getLandmarkX(i, FaceLandmarkType.MOUTH_LEFT),
+                        faces.getLandmarkY(i, FaceLandmarkType.MOUTH_LEFT),
+                        faces.getLandmarkX(i, FaceLandmarkType.MOUTH_BOTTOM),
+                        faces.getLandmarkY(i, FaceLandmarkType.MOUTH_BOTTOM),
                         landmarkPaint);
-                canvas.drawLine(mouthBottom.getPosition().getX(),
-                        mouthBottom.getPosition().getY(),
-                        mouthRight.getPosition().getX(),
-                        mouthRight.getPosition().getY(),
+                canvas.drawLine(faces.getLandmarkX(i, FaceLandmarkType.MOUTH_BOTTOM),
+                        faces.getLandmarkY(i, FaceLandmarkType.MOUTH_BOTTOM),
+                        faces.getLandmarkX(i, FaceLandmarkType.MOUTH_RIGHT),
+                        faces.getLandmarkY(i, FaceLandmarkType.MOUTH_RIGHT),
                         landmarkPaint);
             }
 
-            faceDetectionModels.add(new FaceDetectionModel(i, "Smiling probability " + face.getSmilingProbability()));
-
-            faceDetectionModels.add(new FaceDetectionModel(i, "Left eye open probability " + face.getLeftEyeOpenProbability()));
-
-            faceDetectionModels.add(new FaceDetectionModel(i, "Right eye open probability " + face.getRightEyeOpenProbability()));
+            FaceResult.addFace(results, i, faces.getSmilingProbability(i),
+                    faces.getLeftEyeOpenProbability(i), faces.getRightEyeOpenProbability(i));
         }
 
+        return results;
+    }
 
-
+    /**
+     * The boxes of {@code faces}, detected in the decoded image, in the pixels of the original one.
+     */
+    private static float[] originalBoxes(FaceObservations faces, ImageScale toOriginal) {
+        float[] boxes = new float[faces.size() * 4];
+        float[] box = new float[4];
+        for(int i = 0; i < faces.size(); i++) {
+            box[0] = faces.getLeft(i);
+            box[1] = faces.getTop(i);
+            box[2] = faces.getRight(i);
+            box[3] = faces.getBottom(i);
+            toOriginal.mapBox(box);
+            System.arraycopy(box, 0, boxes, i * 4, 4);
+        }
+        return boxes;
     }
 
     private void showProgress() {
@@ -287,205 +955,119 @@ public class MainActivity extends AppCompatActivity implements FrameProcessor {
 
     @Override
     public void process(@NonNull Frame frame) {
-        final int width = frame.getSize().getWidth();
-        final int height = frame.getSize().getHeight();
-
-        FirebaseVisionImageMetadata metadata = new FirebaseVisionImageMetadata
-                .Builder()
-                .setWidth(width)
-                .setHeight(height)
-                .setFormat(FirebaseVisionImageMetadata
-                .IMAGE_FORMAT_NV21).setRotation(
-                        (cameraFacing == Facing.FRONT) ? FirebaseVisionImageMetadata.ROTATION_270 :
-                                FirebaseVisionImageMetadata.ROTATION_90
-                )
-                .build();
-
-        FirebaseVisionImage firebaseVisionImage = FirebaseVisionImage
-                .fromByteArray(frame.<byte[]>getData(), metadata);
-        FirebaseVisionFaceDetectorOptions options = new FirebaseVisionFaceDetectorOptions
-                .Builder()
-                .setContourMode(FirebaseVisionFaceDetectorOptions.ALL_CONTOURS)
-                .build();
-
-        FirebaseVisionFaceDetector faceDetector = FirebaseVision.getInstance()
-                .getVisionFaceDetector(options);
-        faceDetector.detectInImage(firebaseVisionImage).addOnSuccessListener(new OnSuccessListener<List<FirebaseVisionFace>>() {
-            @Override
-            public void onSuccess(List<FirebaseVisionFace> firebaseVisionFaces) {
-                imageView.setImageBitmap(null);
-
-                Bitmap bitmap = Bitmap.createBitmap(height, width, Bitmap.Config.ARGB_8888);
-
-                Canvas canvas = new Canvas(bitmap);
-
-                Paint dotPaint = new Paint();
-                dotPaint.setColor(Color.RED);
-                dotPaint.setStyle(Paint.Style.FILL);
-                dotPaint.setStrokeWidth(3f);
-
-                Paint linePaint = new Paint();
-                linePaint.setColor(Color.GREEN);
-                linePaint.setStyle(Paint.Style.STROKE);
-                linePaint.setStrokeWidth(3f);
-
-                for(FirebaseVisionFace face : firebaseVisionFaces) {
-                    List<FirebaseVisionPoint> faceContours = face.getContour(FirebaseVisionFaceContour.FACE).getPoints();
-
-                    for(int i = 0; i < faceContours.size(); i++) {
-                        FirebaseVisionPoint contour = faceContours.get(i);
-                        if(i != (faceContours.size() -1)) {
-                            contour = faceContours.get(i);
-                            canvas.drawLine(contour.getX(),
-                                    contour.getY(),
-                                    faceContours.get(i+1).getX(),
-                                    faceContours.get(i+1).getY(),
-                                    linePaint);
-
-                        } else {
-                            canvas.drawLine(contour.getX(),
-                                    contour.getY(),
-                                    faceContours.get(0).getX(),
-                                    faceContours.get(0).getY(),
-                                    linePaint);
-                        }
-                        canvas.drawCircle(contour.getX(), contour.getY(), 4f, dotPaint);
-                    }
-
-                    List<FirebaseVisionPoint> leftEyeContours = face.getContour(FirebaseVisionFaceContour.LEFT_EYE).getPoints();
-                    for(int i = 0; i < leftEyeContours.size(); i++) {
-                        FirebaseVisionPoint contour = leftEyeContours.get(i);
-                        if(i != (leftEyeContours.size()-1)) {
-                            canvas.drawLine(contour.getX(),
-                                    contour.getY(),
-                                    leftEyeContours.get(i+1).getX(),
-                                    leftEyeContours.get(i+1).getY(),
-                                    linePaint);
-                        } else {
-                            canvas.drawLine(contour.getX(),
-                                    contour.getY(),
-                                    leftEyeContours.get(0).getX(),
-                                    leftEyeContours.get(0).getY(),
-                                    linePaint);
-                        }
-                        canvas.drawCircle(contour.getX(), contour.getY(), 4f, dotPaint);
-                    }
-
-                    List<FirebaseVisionPoint> rightEyeContours = face.getContour(FirebaseVisionFaceContour.RIGHT_EYE).getPoints();
-                    for(int i = 0; i < rightEyeContours.size(); i++) {
-                        FirebaseVisionPoint contour = rightEyeContours.get(i);
-                        if(i != (rightEyeContours.size()-1)) {
-                            canvas.drawLine(contour.getX(),
-                                    contour.getY(),
-                                    rightEyeContours.get(i+1).getX(),
-                                    rightEyeContours.get(i+1).getY(),
-                                    linePaint);
-                        } else {
-                            canvas.drawLine(contour.getX(),
-                                    contour.getY(),
-                                    rightEyeContours.get(0).getX(),
-                                    rightEyeContours.get(0).getY(),
-                                    linePaint);
-                        }
-                        canvas.drawCircle(contour.getX(), contour.getY(), 4f, dotPaint);
-                    }
-
-                    List<FirebaseVisionPoint> leftEyebrowContours = face.getContour(FirebaseVisionFaceContour.LEFT_EYEBROW_BOTTOM).getPoints();
-                    for(int i = 0; i < leftEyebrowContours.size(); i++) {
-                        FirebaseVisionPoint contour = leftEyebrowContours.get(i);
-                        if(i != (leftEyebrowContours.size()-1)) {
-                            canvas.drawLine(contour.getX(),
-                                    contour.getY(),
-                                    leftEyebrowContours.get(i+1).getX(),
-                                    leftEyebrowContours.get(i+1).getY(),
-                                    linePaint);
-                        } else
-                        canvas.drawCircle(contour.getX(), contour.getY(), 4f, dotPaint);
-                    }
-
-                    List<FirebaseVisionPoint> rightEyebrowContours = face.getContour(FirebaseVisionFaceContour.RIGHT_EYEBROW_BOTTOM).getPoints();
-                    for(int i = 0; i < rightEyebrowContours.size(); i++) {
-                        FirebaseVisionPoint contour = rightEyebrowContours.get(i);
-                        if(i != (rightEyebrowContours.size()-1)) {
-                            canvas.drawLine(contour.getX(),
-                                    contour.getY(),
-                                    rightEyebrowContours.get(i+1).getX(),
-                                    rightEyebrowContours.get(i+1).getY(),
-                                    linePaint);
-                        } else
-                        canvas.drawCircle(contour.getX(), contour.getY(), 4f, dotPaint);
-                    }
-
-                    List<FirebaseVisionPoint> upperLipContours = face.getContour(FirebaseVisionFaceContour.UPPER_LIP_BOTTOM).getPoints();
-                    for(int i = 0; i < upperLipContours.size(); i++) {
-                        FirebaseVisionPoint contour = upperLipContours.get(i);
-                        if(i != (upperLipContours.size()-1)) {
-                            canvas.drawLine(contour.getX(),
-                                    contour.getY(),
-                                    upperLipContours.get(i+1).getX(),
-                                    upperLipContours.get(i+1).getY(),
-                                    linePaint);
-                        }
-                        canvas.drawCircle(contour.getX(), contour.getY(), 4f, dotPaint);
-                    }
-
-                    List<FirebaseVisionPoint> lowerLipContours = face.getContour(FirebaseVisionFaceContour.LOWER_LIP_TOP).getPoints();
-                    for(int i = 0; i < lowerLipContours.size(); i++) {
-                        FirebaseVisionPoint contour = lowerLipContours.get(i);
-                        if(i != (lowerLipContours.size()-1)) {
-                            canvas.drawLine(contour.getX(),
-                                    contour.getY(),
-                                    lowerLipContours.get(i+1).getX(),
-                                    lowerLipContours.get(i+1).getY(),
-                                    linePaint);
-                        }
-                        canvas.drawCircle(contour.getX(), contour.getY(), 4f, dotPaint);
-                    }
+        long timestampNanos = System.nanoTime();
+        startupSequence.reach(StartupSequence.Milestone.FIRST_FRAME, timestampNanos);
+        boolean mirrored = cameraFacing == Facing.FRONT;
+        LiveFrame liveFrame = new CameraViewFrame(frame, mirrored ? 270 : 90, mirrored, cameraBufferPool);
+        FrameRecorder recorder = frameRecorder;
+        if(recorder != null) {
+            recordFrame(recorder, liveFrame, timestampNanos);
+        }
+        //Frames arriving while the model still loads would only queue up behind it
+        if(startupSequence.hasReached(StartupSequence.Milestone.DETECTOR_READY)) {
+            liveFramePipeline.process(liveFrame, timestampNanos);
+        }
+    }
 
-                    List<FirebaseVisionPoint> nodeBridgeContours = face.getContour(FirebaseVisionFaceContour.NOSE_BRIDGE).getPoints();
-                    for(int i = 0; i < nodeBridgeContours.size(); i++) {
-                        FirebaseVisionPoint contour = nodeBridgeContours.get(i);
-                        if(i != (nodeBridgeContours.size()-1)) {
-                            canvas.drawLine(contour.getX(),
-                                    contour.getY(),
-                                    nodeBridgeContours.get(i+1).getX(),
-                                    nodeBridgeContours.get(i+1).getY(),
-                                    linePaint);
-                        }
-                        canvas.drawCircle(contour.getX(), contour.getY(), 4f, dotPaint);
-                    }
+    private void recordFrame(FrameRecorder recorder, LiveFrame frame, long timestampNanos) {
+        try {
+            recorder.writeFrame(timestampNanos, frame.getData(), frame.getWidth(), frame.getHeight(),
+                    frame.getRotation(), frame.isMirrored());
+        } catch (IOException e) {
+            Log.e("myTag", "recordFrame: ", e);
+            stopRecording();
+        }
+    }
 
-                    List<FirebaseVisionPoint> noseBottomContours = face.getContour(FirebaseVisionFaceContour.NOSE_BOTTOM).getPoints();
-                    for(int i = 0; i < noseBottomContours.size(); i++) {
-                        FirebaseVisionPoint contour = noseBottomContours.get(i);
-                        if(i != (noseBottomContours.size()-1)) {
-                            canvas.drawLine(contour.getX(),
-                                    contour.getY(),
-                                    noseBottomContours.get(i+1).getX(),
-                                    noseBottomContours.get(i+1).getY(),
-                                    linePaint);
-                        }
-                        canvas.drawCircle(contour.getX(), contour.getY(), 4f, dotPaint);
-                    }
+    /**
+     * Draws the tracked faces and publishes the overlay. Runs on the processing thread.
+     */
+    private void renderOverlay(ContourGeometry geometry, int width, int height, boolean mirrored, long start) {
+        if(!overlayPending.compareAndSet(false, true)) {
+            //The main thread is behind, the next frame draws the tracks again
+            return;
+        }
+        //The overlay is drawn mirrored for the front camera so it lines up with the preview
+        tracer.beginSection(Tracer.RENDER);
+        overlayRenderer.begin(height, width, mirrored);
+        overlayRenderer.drawContours(geometry);
+        final Bitmap overlay = overlayRenderer.end();
+        final long rendered = stageTimings.recordSince(PipelineStage.RENDER, start);
+        tracer.endSection();
+
+        pipelineThreading.getPublishExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                imageView.setImageBitmap(overlay);
+                overlayPending.set(false);
+                stageTimings.recordSince(PipelineStage.PUBLISH, rendered);
+                startupSequence.reach(StartupSequence.Milestone.FIRST_OVERLAY, System.nanoTime());
+            }
+        });
+    }
 
-                    if(cameraFacing == Facing.FRONT) {
-                        Matrix matrix = new Matrix();
-                        matrix.preScale(-1f, 1f);
-                        Bitmap flippedBitmap = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    private void onSmileEvent(SmileEvent event, int faceId) {
+        Log.d("myTag", "onSmileEvent: " + event + " face " + faceId);
+        if(event != SmileEvent.RULE_FIRED || !CAPTURE_ON_SMILE) {
+            return;
+        }
+        pipelineThreading.getPublishExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if(!faceDetectionCameraView.isTakingPicture()) {
+                    faceDetectionCameraView.takePicture();
+                }
+            }
+        });
+    }
 
-                        imageView.setImageBitmap(flippedBitmap);
-                    } else {
-                        imageView.setImageBitmap(bitmap);
+    /**
+     * Saves the best smiling of the recent frames to the captures folder, off the main thread.
+     */
+    private void saveBestShot() {
+        final File folder = getExternalFilesDir("captures");
+        if(folder == null) {
+            return;
+        }
+        pipelineThreading.getProcessingExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                String message;
+                if(!bestShotBuffer.copyBest(bestShot)) {
+                    message = "No smile yet";
+                } else {
+                    try {
+                        BestShotWriter.write(bestShot, new File(folder, "best_" + System.currentTimeMillis() + ".jpg").getPath());
+                        message = "Best smile saved";
+                        Log.d("myTag", "saveBestShot: " + bestShot + " of " + bestShotBuffer);
+                    } catch (IOException e) {
+                        Log.e("myTag", "saveBestShot: ", e);
+                        message = "Could not save the best smile";
                     }
-
                 }
-
+                final String shown = message;
+                pipelineThreading.getPublishExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(MainActivity.this, shown, Toast.LENGTH_SHORT).show();
+                    }
+                });
             }
-        }).addOnFailureListener(new OnFailureListener() {
+        });
+    }
+
+    private void saveCapture(PictureResult result) {
+        File folder = getExternalFilesDir("captures");
+        if(folder == null) {
+            return;
+        }
+        result.toFile(new File(folder, "smile_" + System.currentTimeMillis() + ".jpg"), new FileCallback() {
             @Override
-            public void onFailure(@NonNull Exception e) {
-                imageView.setImageBitmap(null);
+            public void onFileReady(@Nullable File file) {
+                if(file != null) {
+                    Toast.makeText(MainActivity.this, "Smile captured", Toast.LENGTH_SHORT).show();
+                }
             }
         });
     }
-}
\ No newline at end of file
+}
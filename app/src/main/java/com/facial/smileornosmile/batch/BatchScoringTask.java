@@ -0,0 +1,180 @@
+package com.facial.smileornosmile.batch;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.image.SampledBitmapDecoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a {@link BatchRunner} over all images of a document tree on a background thread.
+ * Results and the checkpoint go to {@code outputDirectory}, named after the folder, so picking
+ * the same folder again resumes the batch. Listener calls arrive on the main thread.
+ */
+public class BatchScoringTask {
+    private static final String TAG = "BatchScoringTask";
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
+    public interface Listener {
+        void onProgress(BatchProgress progress);
+
+        void onFinished(BatchProgress progress, File results);
+
+        void onError(Exception e);
+    }
+
+    private final ContentResolver contentResolver;
+    private final FaceDetectorBackend detectorBackend;
+    private final File outputDirectory;
+    private final int parallelism;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile BatchRunner runner;
+    private volatile boolean running;
+    private long lastProgressMs;
+
+    public BatchScoringTask(Context context, FaceDetectorBackend detectorBackend, File outputDirectory, Listener listener) {
+        this(context, detectorBackend, outputDirectory, Math.max(2, Runtime.getRuntime().availableProcessors() / 2), listener);
+    }
+
+    public BatchScoringTask(Context context, FaceDetectorBackend detectorBackend, File outputDirectory, int parallelism, Listener listener) {
+        this.contentResolver = context.getContentResolver();
+        this.detectorBackend = detectorBackend;
+        this.outputDirectory = outputDirectory;
+        this.parallelism = parallelism;
+        this.listener = listener;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void start(final Uri folder) {
+        if(running) {
+            throw new IllegalStateException("Batch already running");
+        }
+        running = true;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runBatch(folder);
+            }
+        }, "batch-scoring").start();
+    }
+
+    /**
+     * Stops after the images currently in progress. The checkpoint keeps what has been done.
+     */
+    public void cancel() {
+        BatchRunner current = runner;
+        if(current != null) {
+            current.cancel();
+        }
+    }
+
+    private void runBatch(Uri folder) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        String name = Integer.toHexString(folder.toString().hashCode());
+        final File results = new File(outputDirectory, "results-" + name + ".csv");
+        try {
+            if(!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+                throw new IOException("Could not create " + outputDirectory);
+            }
+            List<String> items = listImages(contentResolver, folder);
+            BatchCheckpoint checkpoint = new BatchCheckpoint(new File(outputDirectory, "checkpoint-" + name + ".txt"));
+            BatchResultWriter writer = new BatchResultWriter(results);
+            try {
+                runner = new BatchRunner(new DetectorBatchScorer(new SampledBitmapDecoder(contentResolver), detectorBackend, executor),
+                        parallelism, checkpoint, writer);
+                final BatchProgress progress = runner.run(items, new BatchRunner.ProgressListener() {
+                    @Override
+                    public void onProgress(BatchProgress progress) {
+                        publishProgress(progress);
+                    }
+                });
+                Log.i(TAG, "runBatch: " + folder + " done, " + progress);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        running = false;
+                        listener.onFinished(progress, results);
+                    }
+                });
+            } finally {
+                writer.close();
+                checkpoint.close();
+            }
+        } catch (final IOException | InterruptedException | RuntimeException e) {
+            Log.e(TAG, "runBatch: " + folder + " failed", e);
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    running = false;
+                    listener.onError(e);
+                }
+            });
+        } finally {
+            executor.shutdown();
+            runner = null;
+        }
+    }
+
+    private void publishProgress(final BatchProgress progress) {
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            if(now - lastProgressMs < PROGRESS_INTERVAL_MS) {
+                return;
+            }
+            lastProgressMs = now;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onProgress(progress);
+            }
+        });
+    }
+
+    /**
+     * Image documents directly inside a tree picked with {@code ACTION_OPEN_DOCUMENT_TREE}, in a stable order.
+     */
+    public static List<String> listImages(ContentResolver contentResolver, Uri tree) {
+        Uri children = DocumentsContract.buildChildDocumentsUriUsingTree(tree, DocumentsContract.getTreeDocumentId(tree));
+        List<String> items = new ArrayList<>();
+        Cursor cursor = contentResolver.query(children, new String[]{
+                DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+                DocumentsContract.Document.COLUMN_MIME_TYPE
+        }, null, null, null);
+        if(cursor == null) {
+            return items;
+        }
+        try {
+            while(cursor.moveToNext()) {
+                String mimeType = cursor.getString(1);
+                if(mimeType != null && mimeType.startsWith("image/")) {
+                    items.add(DocumentsContract.buildDocumentUriUsingTree(tree, cursor.getString(0)).toString());
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        Collections.sort(items);
+        return items;
+    }
+}
@@ -0,0 +1,77 @@
+package com.facial.smileornosmile.batch;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import com.facial.smileornosmile.detector.DetectionImage;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.image.DecodedImage;
+import com.facial.smileornosmile.image.SampledBitmapDecoder;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Decodes an image on {@code executor} and classifies its faces with the accurate static detector.
+ */
+public class DetectorBatchScorer implements BatchRunner.Scorer {
+    //Group photos rarely have more, the rest go unscored
+    private static final int MAX_FACES = 32;
+
+    private final SampledBitmapDecoder decoder;
+    private final FaceDetectorBackend backend;
+    private final Executor executor;
+
+    /**
+     * @param backend usually the background view of the app's
+     *                {@link com.facial.smileornosmile.scheduler.DetectionQueue}, so batches wait for everything else
+     */
+    public DetectorBatchScorer(SampledBitmapDecoder decoder, FaceDetectorBackend backend, Executor executor) {
+        this.decoder = decoder;
+        this.backend = backend;
+        this.executor = executor;
+    }
+
+    @Override
+    public void score(final String item, final BatchRunner.Callback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap;
+                try {
+                    DecodedImage image = decoder.decode(Uri.parse(item));
+                    bitmap = image.getBitmap();
+                } catch (IOException | RuntimeException e) {
+                    callback.onFailed(e);
+                    return;
+                }
+
+                backend.detect(DetectionImage.platform(bitmap, bitmap.getWidth(), bitmap.getHeight()),
+                        DetectorProfile.STATIC_ACCURATE, new FaceObservations(MAX_FACES, 0, 0), executor,
+                        new FaceDetectorBackend.Callback() {
+                            @Override
+                            public void onDetected(FaceObservations faces) {
+                                bitmap.recycle();
+                                List<FaceScore> scores = new ArrayList<>(faces.size());
+                                for(int face = 0; face < faces.size(); face++) {
+                                    scores.add(new FaceScore(faces.getSmilingProbability(face),
+                                            faces.getLeftEyeOpenProbability(face),
+                                            faces.getRightEyeOpenProbability(face)));
+                                }
+                                callback.onScored(scores);
+                            }
+
+                            @Override
+                            public void onFailed(Exception e) {
+                                bitmap.recycle();
+                                callback.onFailed(e);
+                            }
+                        });
+            }
+        });
+    }
+}
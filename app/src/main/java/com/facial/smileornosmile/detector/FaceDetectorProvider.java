@@ -0,0 +1,91 @@
+package com.facial.smileornosmile.detector;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.OnLifecycleEvent;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.ml.vision.FirebaseVision;
+import com.google.firebase.ml.vision.common.FirebaseVisionImage;
+import com.google.firebase.ml.vision.face.FirebaseVisionFace;
+import com.google.firebase.ml.vision.face.FirebaseVisionFaceDetector;
+import com.google.firebase.ml.vision.face.FirebaseVisionFaceDetectorOptions;
+
+import java.util.List;
+
+/**
+ * Hands out Firebase face detectors per {@link DetectorProfile} and closes them together with
+ * the lifecycle owner they are bound to.
+ */
+public class FaceDetectorProvider implements LifecycleObserver {
+    private static final String TAG = "FaceDetectorProvider";
+    private static final int WARM_UP_IMAGE_SIZE = 64;
+
+    private final DetectorCache<DetectorProfile, FirebaseVisionFaceDetector> cache;
+
+    public FaceDetectorProvider() {
+        cache = new DetectorCache<>(new DetectorCache.Factory<DetectorProfile, FirebaseVisionFaceDetector>() {
+            @Override
+            public FirebaseVisionFaceDetector create(DetectorProfile profile) {
+                return FirebaseVision.getInstance().getVisionFaceDetector(buildOptions(profile));
+            }
+        }, DetectorProfile.values().length);
+    }
+
+    static FirebaseVisionFaceDetectorOptions buildOptions(DetectorProfile profile) {
+        FirebaseVisionFaceDetectorOptions.Builder builder = new FirebaseVisionFaceDetectorOptions.Builder();
+        if(profile.getContourTable().size() > 0) {
+            builder.setContourMode(FirebaseVisionFaceDetectorOptions.ALL_CONTOURS);
+        }
+        if(profile.isAccurate()) {
+            builder.setPerformanceMode(FirebaseVisionFaceDetectorOptions.ACCURATE);
+        }
+        if(profile.hasLandmarks()) {
+            builder.setLandmarkMode(FirebaseVisionFaceDetectorOptions.ALL_LANDMARKS);
+        }
+        if(profile.hasClassification()) {
+            builder.setClassificationMode(FirebaseVisionFaceDetectorOptions.ALL_CLASSIFICATIONS);
+        }
+        return builder.build();
+    }
+
+    public void bind(@NonNull LifecycleOwner owner) {
+        owner.getLifecycle().addObserver(this);
+    }
+
+    public FirebaseVisionFaceDetector get(DetectorProfile profile) {
+        return cache.get(profile);
+    }
+
+    /**
+     * Runs one detection on a blank image so the model is loaded before the first real frame.
+     */
+    public void warmUp(final DetectorProfile profile) {
+        final long start = System.nanoTime();
+        Bitmap blank = Bitmap.createBitmap(WARM_UP_IMAGE_SIZE, WARM_UP_IMAGE_SIZE, Bitmap.Config.ARGB_8888);
+        get(profile).detectInImage(FirebaseVisionImage.fromBitmap(blank))
+                .addOnCompleteListener(new OnCompleteListener<List<FirebaseVisionFace>>() {
+                    @Override
+                    public void onComplete(@NonNull Task<List<FirebaseVisionFace>> task) {
+                        Log.d(TAG, "warmUp: " + profile + " ready in "
+                                + ((System.nanoTime() - start) / 1000000) + " ms");
+                    }
+                });
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    public void close() {
+        Log.d(TAG, "close: " + cache);
+        cache.close();
+    }
+
+    public DetectorCache<DetectorProfile, FirebaseVisionFaceDetector> getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,90 @@
+package com.facial.smileornosmile.detector;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+
+import com.facial.smileornosmile.tracking.FaceObservations;
+import com.facial.smileornosmile.tracking.FirebaseObservations;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.firebase.ml.vision.common.FirebaseVisionImage;
+import com.google.firebase.ml.vision.common.FirebaseVisionImageMetadata;
+import com.google.firebase.ml.vision.face.FirebaseVisionFace;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Firebase ML Vision behind {@link FaceDetectorBackend}, using the detectors of a
+ * {@link FaceDetectorProvider}. Platform images must be bitmaps.
+ */
+public class FirebaseFaceDetectorBackend implements FaceDetectorBackend {
+    private final FaceDetectorProvider provider;
+
+    public FirebaseFaceDetectorBackend(FaceDetectorProvider provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    public String getName() {
+        return "firebase";
+    }
+
+    @Override
+    public void warmUp(DetectorProfile profile) {
+        provider.warmUp(profile);
+    }
+
+    @Override
+    public void detect(DetectionImage image, final DetectorProfile profile, final FaceObservations results,
+                       Executor callbackExecutor, final Callback callback) {
+        provider.get(profile).detectInImage(toFirebaseImage(image))
+                .addOnSuccessListener(callbackExecutor, new OnSuccessListener<List<FirebaseVisionFace>>() {
+                    @Override
+                    public void onSuccess(List<FirebaseVisionFace> faces) {
+                        FirebaseObservations.fill(faces, profile.getContourTable(), results);
+                        callback.onDetected(results);
+                    }
+                })
+                .addOnFailureListener(callbackExecutor, new OnFailureListener() {
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        callback.onFailed(e);
+                    }
+                });
+    }
+
+    private static FirebaseVisionImage toFirebaseImage(DetectionImage image) {
+        if(!image.isNv21()) {
+            return FirebaseVisionImage.fromBitmap((Bitmap) image.getPlatformImage());
+        }
+        FirebaseVisionImageMetadata metadata = new FirebaseVisionImageMetadata
+                .Builder()
+                .setWidth(image.getWidth())
+                .setHeight(image.getHeight())
+                .setFormat(FirebaseVisionImageMetadata.IMAGE_FORMAT_NV21)
+                .setRotation(toFirebaseRotation(image.getRotation()))
+                .build();
+        //A direct buffer is handed to the native detector as is, a heap one gets copied over first
+        return FirebaseVisionImage.fromByteBuffer(image.getNv21().duplicate(), metadata);
+    }
+
+    private static int toFirebaseRotation(int degrees) {
+        switch(degrees) {
+            case 90:
+                return FirebaseVisionImageMetadata.ROTATION_90;
+            case 180:
+                return FirebaseVisionImageMetadata.ROTATION_180;
+            case 270:
+                return FirebaseVisionImageMetadata.ROTATION_270;
+            default:
+                return FirebaseVisionImageMetadata.ROTATION_0;
+        }
+    }
+
+    @Override
+    public void close() {
+        provider.close();
+    }
+}
@@ -0,0 +1,63 @@
+package com.facial.smileornosmile.frame;
+
+import com.otaliastudios.cameraview.frame.Frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A CameraView preview frame as a {@link LiveFrame}. CameraView recycles the frame's array once the
+ * frame processor returns, so freezing has to copy it; the copy goes into a direct buffer of
+ * {@code pool}, which the detector then reads in place, instead of a new array from
+ * {@link Frame#freeze()}.
+ */
+public class CameraViewFrame implements LiveFrame {
+    private final Frame frame;
+    private final ByteBuffer data;
+    private final int rotation;
+    private final boolean mirrored;
+    private final FrameBufferPool pool;
+
+    public CameraViewFrame(Frame frame, int rotation, boolean mirrored, FrameBufferPool pool) {
+        this.frame = frame;
+        byte[] array = frame.getData();
+        data = ByteBuffer.wrap(array);
+        this.rotation = rotation;
+        this.mirrored = mirrored;
+        this.pool = pool;
+    }
+
+    @Override
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    @Override
+    public int getWidth() {
+        return frame.getSize().getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return frame.getSize().getHeight();
+    }
+
+    @Override
+    public int getRotation() {
+        return rotation;
+    }
+
+    @Override
+    public boolean isMirrored() {
+        return mirrored;
+    }
+
+    @Override
+    public LiveFrame freeze() {
+        return new PooledFrame(pool, pool.copyOf(data), getWidth(), getHeight(), rotation, mirrored);
+    }
+
+    @Override
+    public void release() {
+        //The processor's frame belongs to CameraView, frozen ones are PooledFrames
+    }
+}
@@ -0,0 +1,74 @@
+package com.facial.smileornosmile.governor;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.PowerManager;
+
+import androidx.annotation.RequiresApi;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Reports the thermal status and battery saver mode to a {@link QualityGovernor} while started.
+ * Thermal status needs Android 10, older devices only report battery saver.
+ */
+public class DeviceConditionMonitor {
+    private final Context context;
+    private final QualityGovernor governor;
+    private final PowerManager powerManager;
+    private final BroadcastReceiver powerSaveReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            governor.setBatterySaver(powerManager.isPowerSaveMode(), System.nanoTime());
+        }
+    };
+    private Object thermalListener;
+
+    public DeviceConditionMonitor(Context context, QualityGovernor governor) {
+        this.context = context.getApplicationContext();
+        this.governor = governor;
+        powerManager = (PowerManager) this.context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    public void start() {
+        if(powerManager == null) {
+            return;
+        }
+        context.registerReceiver(powerSaveReceiver, new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        governor.setBatterySaver(powerManager.isPowerSaveMode(), System.nanoTime());
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startThermal();
+        }
+    }
+
+    public void stop() {
+        if(powerManager == null) {
+            return;
+        }
+        context.unregisterReceiver(powerSaveReceiver);
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && thermalListener != null) {
+            powerManager.removeThermalStatusListener((PowerManager.OnThermalStatusChangedListener) thermalListener);
+            thermalListener = null;
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.Q)
+    private void startThermal() {
+        PowerManager.OnThermalStatusChangedListener listener = new PowerManager.OnThermalStatusChangedListener() {
+            @Override
+            public void onThermalStatusChanged(int status) {
+                governor.setThermalState(toThermalState(status), System.nanoTime());
+            }
+        };
+        //Called right away with the current status
+        powerManager.addThermalStatusListener(ContextCompat.getMainExecutor(context), listener);
+        thermalListener = listener;
+    }
+
+    private static ThermalState toThermalState(int status) {
+        ThermalState[] states = ThermalState.values();
+        return states[Math.max(0, Math.min(status, states.length - 1))];
+    }
+}
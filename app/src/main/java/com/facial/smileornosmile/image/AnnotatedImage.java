@@ -0,0 +1,58 @@
+package com.facial.smileornosmile.image;
+
+import android.graphics.Bitmap;
+
+import com.facial.smileornosmile.cache.SizedLruCache;
+import com.facial.smileornosmile.result.FaceResult;
+
+import java.util.List;
+
+/**
+ * A picked image with its faces drawn in at display size, the result rows for them and their
+ * boxes in the coordinates of the original image. Shown and cached as is, so the bitmap must
+ * never be recycled.
+ */
+public class AnnotatedImage {
+    //Rough cost of a result row, negligible next to the bitmap anyway
+    private static final int ROW_BYTES = 64;
+
+    public static final SizedLruCache.Sizer<AnnotatedImage> SIZER = new SizedLruCache.Sizer<AnnotatedImage>() {
+        @Override
+        public long sizeOf(AnnotatedImage value) {
+            return value.bitmap.getAllocationByteCount() + value.results.size() * ROW_BYTES
+                    + value.originalBoxes.length * 4;
+        }
+    };
+
+    private final Bitmap bitmap;
+    private final List<FaceResult> results;
+    private final float[] originalBoxes;
+
+    /**
+     * @param originalBoxes {@code left, top, right, bottom} of every face in turn, in original image pixels
+     */
+    public AnnotatedImage(Bitmap bitmap, List<FaceResult> results, float[] originalBoxes) {
+        this.bitmap = bitmap;
+        this.results = results;
+        this.originalBoxes = originalBoxes;
+    }
+
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    public List<FaceResult> getResults() {
+        return results;
+    }
+
+    public int getFaceCount() {
+        return originalBoxes.length / 4;
+    }
+
+    /**
+     * Writes the box of {@code face} in original image pixels to {@code out} as {@code left, top, right, bottom}.
+     */
+    public void getOriginalBox(int face, float[] out) {
+        System.arraycopy(originalBoxes, face * 4, out, 0, 4);
+    }
+}
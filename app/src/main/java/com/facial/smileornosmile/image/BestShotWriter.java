@@ -0,0 +1,52 @@
+package com.facial.smileornosmile.image;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+import android.media.ExifInterface;
+
+import com.facial.smileornosmile.burst.BestShot;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Saves a {@link BestShot} as a JPEG at the full frame size. The frame is compressed as the
+ * camera delivered it and turned upright through its EXIF orientation, so it is compressed only
+ * once. Like pictures the camera takes, it is saved unmirrored.
+ */
+public final class BestShotWriter {
+    public static final int QUALITY = 95;
+
+    private BestShotWriter() {
+    }
+
+    public static void write(BestShot shot, String path) throws IOException {
+        YuvImage image = new YuvImage(shot.getData(), ImageFormat.NV21, shot.getWidth(), shot.getHeight(), null);
+        OutputStream out = new FileOutputStream(path);
+        try {
+            if(!image.compressToJpeg(new Rect(0, 0, shot.getWidth(), shot.getHeight()), QUALITY, out)) {
+                throw new IOException("Could not compress " + shot);
+            }
+        } finally {
+            out.close();
+        }
+        ExifInterface exif = new ExifInterface(path);
+        exif.setAttribute(ExifInterface.TAG_ORIENTATION, Integer.toString(orientation(shot.getRotation())));
+        exif.saveAttributes();
+    }
+
+    private static int orientation(int rotation) {
+        switch(rotation) {
+            case 90:
+                return ExifInterface.ORIENTATION_ROTATE_90;
+            case 180:
+                return ExifInterface.ORIENTATION_ROTATE_180;
+            case 270:
+                return ExifInterface.ORIENTATION_ROTATE_270;
+            default:
+                return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+}
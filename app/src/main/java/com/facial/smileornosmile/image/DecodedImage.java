@@ -0,0 +1,37 @@
+package com.facial.smileornosmile.image;
+
+import android.graphics.Bitmap;
+
+/**
+ * A bitmap decoded at detection resolution, together with the size of the image it came from.
+ */
+public class DecodedImage {
+    private final Bitmap bitmap;
+    private final int originalWidth;
+    private final int originalHeight;
+
+    public DecodedImage(Bitmap bitmap, int originalWidth, int originalHeight) {
+        this.bitmap = bitmap;
+        this.originalWidth = originalWidth;
+        this.originalHeight = originalHeight;
+    }
+
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    public int getOriginalWidth() {
+        return originalWidth;
+    }
+
+    public int getOriginalHeight() {
+        return originalHeight;
+    }
+
+    /**
+     * Maps detection coordinates, which are relative to {@link #getBitmap()}, to the original image.
+     */
+    public ImageScale toOriginal() {
+        return ImageScale.between(bitmap.getWidth(), bitmap.getHeight(), originalWidth, originalHeight);
+    }
+}
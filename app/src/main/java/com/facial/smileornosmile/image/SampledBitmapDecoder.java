@@ -0,0 +1,83 @@
+package com.facial.smileornosmile.image;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes images no larger than a maximum detection size. The header is read first, then the
+ * image is decoded with a power of two sample size, then scaled once to the exact size.
+ * The full resolution pixels are never in memory, so peak memory per image is
+ * {@code maxSize * maxSize * 4} bytes, plus at most 4 times that while decoding.
+ */
+public class SampledBitmapDecoder {
+    public static final int DEFAULT_MAX_DETECTION_SIZE = 1280;
+
+    private final ContentResolver contentResolver;
+    private final int maxDetectionSize;
+
+    public SampledBitmapDecoder(ContentResolver contentResolver) {
+        this(contentResolver, DEFAULT_MAX_DETECTION_SIZE);
+    }
+
+    public SampledBitmapDecoder(ContentResolver contentResolver, int maxDetectionSize) {
+        if(maxDetectionSize <= 0) {
+            throw new IllegalArgumentException("maxDetectionSize must be positive: " + maxDetectionSize);
+        }
+        this.contentResolver = contentResolver;
+        this.maxDetectionSize = maxDetectionSize;
+    }
+
+    public DecodedImage decode(Uri uri) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(uri, options);
+        int originalWidth = options.outWidth;
+        int originalHeight = options.outHeight;
+        if(originalWidth <= 0 || originalHeight <= 0) {
+            throw new IOException("Could not read image size of " + uri);
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = DecodeSizing.inSampleSize(originalWidth, originalHeight, maxDetectionSize);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap sampled = decodeStream(uri, options);
+        if(sampled == null) {
+            throw new IOException("Could not decode " + uri);
+        }
+
+        float scale = DecodeSizing.fitScale(sampled.getWidth(), sampled.getHeight(), maxDetectionSize);
+        Bitmap bitmap = sampled;
+        if(scale < 1f) {
+            bitmap = Bitmap.createScaledBitmap(sampled,
+                    Math.max(1, Math.round(sampled.getWidth() * scale)),
+                    Math.max(1, Math.round(sampled.getHeight() * scale)),
+                    true);
+            if(bitmap != sampled) {
+                sampled.recycle();
+            }
+        }
+        return new DecodedImage(bitmap, originalWidth, originalHeight);
+    }
+
+    public int getMaxDetectionSize() {
+        return maxDetectionSize;
+    }
+
+    private Bitmap decodeStream(Uri uri, BitmapFactory.Options options) throws IOException {
+        InputStream inputStream = contentResolver.openInputStream(uri);
+        if(inputStream == null) {
+            throw new FileNotFoundException("Could not open " + uri);
+        }
+        try {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        } finally {
+            inputStream.close();
+        }
+    }
+}
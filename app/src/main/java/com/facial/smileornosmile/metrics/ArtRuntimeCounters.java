@@ -0,0 +1,41 @@
+package com.facial.smileornosmile.metrics;
+
+import android.os.Build;
+import android.os.Debug;
+
+/**
+ * Reads the garbage collection counters of the Android runtime. They need Android 6, older
+ * devices report {@link #UNKNOWN}.
+ */
+public class ArtRuntimeCounters implements RuntimeCounters {
+
+    @Override
+    public long getGcCount() {
+        return readStat("art.gc.gc-count");
+    }
+
+    @Override
+    public long getGcTimeMillis() {
+        return readStat("art.gc.gc-time");
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return readStat("art.gc.bytes-allocated");
+    }
+
+    private static long readStat(String name) {
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return UNKNOWN;
+        }
+        String value = Debug.getRuntimeStat(name);
+        if(value == null) {
+            return UNKNOWN;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return UNKNOWN;
+        }
+    }
+}
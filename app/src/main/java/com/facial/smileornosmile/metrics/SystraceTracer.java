@@ -0,0 +1,35 @@
+package com.facial.smileornosmile.metrics;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Sends the pipeline sections to systrace and Perfetto captures of the app.
+ * Async sections need Android 10 and are left out on older devices.
+ */
+public class SystraceTracer implements Tracer {
+
+    @Override
+    public void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @Override
+    public void endSection() {
+        Trace.endSection();
+    }
+
+    @Override
+    public void beginAsyncSection(String name, int cookie) {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(name, cookie);
+        }
+    }
+
+    @Override
+    public void endAsyncSection(String name, int cookie) {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+}
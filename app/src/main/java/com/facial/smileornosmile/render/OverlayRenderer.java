@@ -0,0 +1,156 @@
+package com.facial.smileornosmile.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * Draws the live overlay into a small ring of reusable bitmaps instead of allocating a new
+ * bitmap, canvas and paints for every frame. The ring has to be larger than the number of
+ * bitmaps that can be on screen or in flight at once, so the one being drawn is never the one
+ * being displayed.
+ *
+ * Not thread safe, call {@link #begin(int, int, boolean)} and {@link #end()} from one thread.
+ */
+public class OverlayRenderer {
+    public static final int DEFAULT_RING_SIZE = 3;
+
+    private final Bitmap[] ring;
+    private final Canvas canvas = new Canvas();
+    private final Paint dotPaint = new Paint();
+    private final Paint linePaint = new Paint();
+    private int next;
+    private Bitmap current;
+
+    private long framesRendered;
+    private long bitmapAllocations;
+    private long lastFrameAllocations;
+
+    public OverlayRenderer() {
+        this(DEFAULT_RING_SIZE);
+    }
+
+    public OverlayRenderer(int ringSize) {
+        if(ringSize < 2) {
+            throw new IllegalArgumentException("ringSize must be at least 2: " + ringSize);
+        }
+        ring = new Bitmap[ringSize];
+
+        //drawPoints uses the stroke width as dot diameter
+        dotPaint.setColor(Color.RED);
+        dotPaint.setStyle(Paint.Style.FILL);
+        dotPaint.setStrokeWidth(8f);
+        dotPaint.setStrokeCap(Paint.Cap.ROUND);
+
+        linePaint.setColor(Color.GREEN);
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(3f);
+    }
+
+    /**
+     * Clears the next bitmap of the ring and returns a canvas drawing into it.
+     * With {@code mirrored} the canvas is flipped horizontally, so callers draw in camera
+     * coordinates and the result still matches the front camera preview.
+     */
+    public Canvas begin(int width, int height, boolean mirrored) {
+        if(current != null) {
+            throw new IllegalStateException("begin called twice without end");
+        }
+        lastFrameAllocations = 0;
+
+        Bitmap bitmap = ring[next];
+        if(bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            if(bitmap != null) {
+                bitmap.recycle();
+            }
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            ring[next] = bitmap;
+            bitmapAllocations++;
+            lastFrameAllocations++;
+        } else {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+        next = (next + 1) % ring.length;
+        current = bitmap;
+
+        canvas.setBitmap(bitmap);
+        canvas.save();
+        if(mirrored) {
+            canvas.scale(-1f, 1f, width / 2f, 0f);
+        }
+        return canvas;
+    }
+
+    /**
+     * Finishes the frame started with {@link #begin(int, int, boolean)}.
+     *
+     * @return the bitmap to display, valid until the ring wraps around
+     */
+    public Bitmap end() {
+        if(current == null) {
+            throw new IllegalStateException("end called without begin");
+        }
+        canvas.restore();
+        canvas.setBitmap(null);
+        Bitmap bitmap = current;
+        current = null;
+        framesRendered++;
+        return bitmap;
+    }
+
+    /**
+     * Draws all flattened contours with two bulk calls.
+     */
+    public void drawContours(ContourGeometry geometry) {
+        if(current == null) {
+            throw new IllegalStateException("drawContours called outside begin / end");
+        }
+        if(geometry.getLineFloatCount() > 0) {
+            canvas.drawLines(geometry.getLines(), 0, geometry.getLineFloatCount(), linePaint);
+        }
+        if(geometry.getPointFloatCount() > 0) {
+            canvas.drawPoints(geometry.getPoints(), 0, geometry.getPointFloatCount(), dotPaint);
+        }
+    }
+
+    /**
+     * Frees the ring. Bitmaps handed out earlier must no longer be displayed.
+     */
+    public void release() {
+        for(int i = 0; i < ring.length; i++) {
+            if(ring[i] != null) {
+                ring[i].recycle();
+                ring[i] = null;
+            }
+        }
+    }
+
+    public Paint getDotPaint() {
+        return dotPaint;
+    }
+
+    public Paint getLinePaint() {
+        return linePaint;
+    }
+
+    public long getFramesRendered() {
+        return framesRendered;
+    }
+
+    public long getBitmapAllocations() {
+        return bitmapAllocations;
+    }
+
+    public long getLastFrameAllocations() {
+        return lastFrameAllocations;
+    }
+
+    @Override
+    public String toString() {
+        return "OverlayRenderer{frames=" + framesRendered
+                + ", bitmapAllocations=" + bitmapAllocations
+                + ", lastFrameAllocations=" + lastFrameAllocations
+                + "}";
+    }
+}
@@ -0,0 +1,58 @@
+package com.facial.smileornosmile.source;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.facial.smileornosmile.frame.Nv21;
+import com.facial.smileornosmile.image.DecodeSizing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Decodes JPEG, PNG and WebP files into NV21 frames of about {@code maxSize} on the longer side,
+ * subsampled while decoding so a large photo never is in memory at full resolution. The pixel
+ * array is reused between files of the same size or smaller.
+ */
+public class BitmapFrameDecoder implements FrameDecoder {
+    private final int maxSize;
+    private int[] pixels = new int[0];
+
+    public BitmapFrameDecoder(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public boolean accepts(File file) {
+        String name = file.getName().toLowerCase(Locale.US);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png") || name.endsWith(".webp");
+    }
+
+    @Override
+    public void decode(File file, SourceFrame frame) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if(options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not an image: " + file);
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = DecodeSizing.inSampleSize(options.outWidth, options.outHeight, maxSize);
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        if(bitmap == null) {
+            throw new IOException("Could not decode " + file);
+        }
+        try {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            if(pixels.length < width * height) {
+                pixels = new int[width * height];
+            }
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            Nv21.fromArgb(pixels, width, height, frame.prepare(width, height, 0, false));
+        } finally {
+            bitmap.recycle();
+        }
+    }
+}
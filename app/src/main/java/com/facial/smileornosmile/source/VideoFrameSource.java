@@ -0,0 +1,203 @@
+package com.facial.smileornosmile.source;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.media.Image;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+
+import com.facial.smileornosmile.frame.LiveFrame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The frames of a video, decoded one at a time with {@link MediaCodec} as they are read. Only the
+ * codec's own buffers and one {@link SourceFrame} are held, whatever the length of the video.
+ * Skipped frames are still decoded, as later frames depend on them, but not converted.
+ */
+public class VideoFrameSource implements FrameSource {
+    private static final long TIMEOUT_US = 10000;
+    //MediaFormat.KEY_ROTATION, only named from API 23 on
+    private static final String KEY_ROTATION = "rotation-degrees";
+
+    private final MediaExtractor extractor = new MediaExtractor();
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    private final SourceFrame frame;
+    private final MediaCodec codec;
+    private final int rotation;
+    private boolean inputDone;
+    private boolean outputDone;
+    private long timestampNanos;
+
+    public VideoFrameSource(Context context, Uri uri, SourceFrame frame) throws IOException {
+        this.frame = frame;
+        MediaCodec decoder = null;
+        try {
+            extractor.setDataSource(context, uri, null);
+            int track = videoTrack(extractor);
+            if(track < 0) {
+                throw new IOException("No video track in " + uri);
+            }
+            extractor.selectTrack(track);
+            MediaFormat format = extractor.getTrackFormat(track);
+            rotation = format.containsKey(KEY_ROTATION) ? format.getInteger(KEY_ROTATION) : 0;
+            format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Flexible);
+            decoder = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            decoder.configure(format, null, null, 0);
+            decoder.start();
+        } catch (IOException | RuntimeException e) {
+            if(decoder != null) {
+                decoder.release();
+            }
+            extractor.release();
+            throw e;
+        }
+        codec = decoder;
+    }
+
+    @Override
+    public LiveFrame read() {
+        int index = nextOutput();
+        if(index < 0) {
+            return null;
+        }
+        try {
+            Image image = codec.getOutputImage(index);
+            try {
+                toNv21(image, frame);
+            } finally {
+                image.close();
+            }
+        } finally {
+            codec.releaseOutputBuffer(index, false);
+        }
+        return frame;
+    }
+
+    @Override
+    public boolean skip() {
+        int index = nextOutput();
+        if(index < 0) {
+            return false;
+        }
+        codec.releaseOutputBuffer(index, false);
+        return true;
+    }
+
+    @Override
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    @Override
+    public void close() {
+        codec.stop();
+        codec.release();
+        extractor.release();
+    }
+
+    /**
+     * Feeds samples to the codec until it hands out the next decoded frame.
+     *
+     * @return the output buffer index, or -1 at the end of the video
+     */
+    private int nextOutput() {
+        while(!outputDone) {
+            if(!inputDone) {
+                queueInput();
+            }
+            int index = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+            if(index < 0) {
+                //No frame yet, or a format or buffer change the image API does not care about
+                continue;
+            }
+            if((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                outputDone = true;
+                if(info.size == 0) {
+                    codec.releaseOutputBuffer(index, false);
+                    return -1;
+                }
+            }
+            timestampNanos = info.presentationTimeUs * 1000;
+            return index;
+        }
+        return -1;
+    }
+
+    private void queueInput() {
+        int index = codec.dequeueInputBuffer(TIMEOUT_US);
+        if(index < 0) {
+            return;
+        }
+        ByteBuffer input = codec.getInputBuffer(index);
+        int size = input == null ? -1 : extractor.readSampleData(input, 0);
+        if(size < 0) {
+            codec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            inputDone = true;
+        } else {
+            codec.queueInputBuffer(index, 0, size, extractor.getSampleTime(), 0);
+            extractor.advance();
+        }
+    }
+
+    /**
+     * Copies the visible part of a YUV_420_888 image into {@code frame} as NV21, whatever the
+     * strides the codec chose.
+     */
+    private void toNv21(Image image, SourceFrame frame) {
+        Rect crop = image.getCropRect();
+        int width = crop.width();
+        int height = crop.height();
+        ByteBuffer out = frame.prepare(width, height, rotation, false);
+
+        Image.Plane luma = image.getPlanes()[0];
+        ByteBuffer y = luma.getBuffer();
+        if(luma.getPixelStride() == 1) {
+            //Rows are contiguous, moved in bulk through one view of each buffer
+            ByteBuffer in = y.duplicate();
+            ByteBuffer rows = out.duplicate();
+            for(int row = 0; row < height; row++) {
+                int offset = (crop.top + row) * luma.getRowStride() + crop.left;
+                in.limit(offset + width).position(offset);
+                rows.put(in);
+            }
+        } else {
+            for(int row = 0; row < height; row++) {
+                int in = (crop.top + row) * luma.getRowStride() + crop.left * luma.getPixelStride();
+                for(int column = 0; column < width; column++) {
+                    out.put(row * width + column, y.get(in + column * luma.getPixelStride()));
+                }
+            }
+        }
+
+        Image.Plane uPlane = image.getPlanes()[1];
+        Image.Plane vPlane = image.getPlanes()[2];
+        ByteBuffer u = uPlane.getBuffer();
+        ByteBuffer v = vPlane.getBuffer();
+        int chroma = width * height;
+        int chromaWidth = (width + 1) / 2;
+        for(int row = 0; row < (height + 1) / 2; row++) {
+            int uRow = (crop.top / 2 + row) * uPlane.getRowStride() + crop.left / 2 * uPlane.getPixelStride();
+            int vRow = (crop.top / 2 + row) * vPlane.getRowStride() + crop.left / 2 * vPlane.getPixelStride();
+            for(int column = 0; column < chromaWidth; column++) {
+                int target = chroma + (row * chromaWidth + column) * 2;
+                out.put(target, v.get(vRow + column * vPlane.getPixelStride()));
+                out.put(target + 1, u.get(uRow + column * uPlane.getPixelStride()));
+            }
+        }
+    }
+
+    private static int videoTrack(MediaExtractor extractor) {
+        for(int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if(mime != null && mime.startsWith("video/")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,145 @@
+package com.facial.smileornosmile.timeline;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.frame.FrameBufferPool;
+import com.facial.smileornosmile.source.SourceFrame;
+import com.facial.smileornosmile.source.VideoFrameSource;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Runs a {@link TimelineAnalyzer} over a video on a background thread, decoding it frame by frame
+ * and writing the timeline to {@code outputDirectory} as it goes. Listener calls arrive on the
+ * main thread.
+ */
+public class VideoTimelineTask {
+    private static final String TAG = "VideoTimelineTask";
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
+    public interface Listener {
+        void onProgress(TimelineProgress progress);
+
+        void onFinished(TimelineProgress progress, File timeline);
+
+        void onError(Exception e);
+    }
+
+    private final Context context;
+    private final FaceDetectorBackend detectorBackend;
+    private final File outputDirectory;
+    private final int stride;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile TimelineAnalyzer analyzer;
+    private volatile boolean running;
+    private long lastProgressMs;
+
+    /**
+     * @param stride detect on every {@code stride}th frame of the video
+     */
+    public VideoTimelineTask(Context context, FaceDetectorBackend detectorBackend, File outputDirectory, int stride,
+                             Listener listener) {
+        this.context = context.getApplicationContext();
+        this.detectorBackend = detectorBackend;
+        this.outputDirectory = outputDirectory;
+        this.stride = stride;
+        this.listener = listener;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void start(final Uri video) {
+        if(running) {
+            throw new IllegalStateException("Timeline already running");
+        }
+        running = true;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                analyze(video);
+            }
+        }, "video-timeline").start();
+    }
+
+    /**
+     * Stops after the frame in detection. What has been written so far stays.
+     */
+    public void cancel() {
+        TimelineAnalyzer current = analyzer;
+        if(current != null) {
+            current.cancel();
+        }
+    }
+
+    private void analyze(Uri video) {
+        final File timeline = new File(outputDirectory, "timeline_" + System.currentTimeMillis() + ".csv");
+        try {
+            if(!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+                throw new IOException("Could not create " + outputDirectory);
+            }
+            //Nothing is frozen, the analyzer reads each frame in place before decoding the next
+            VideoFrameSource source = new VideoFrameSource(context, video, new SourceFrame(new FrameBufferPool(1, true)));
+            try {
+                TimelineWriter writer = new TimelineWriter(timeline);
+                try {
+                    analyzer = new TimelineAnalyzer(detectorBackend, DetectorProfile.LIVE_LIGHT, stride);
+                    final TimelineProgress progress = analyzer.run(source, writer, new TimelineAnalyzer.ProgressListener() {
+                        @Override
+                        public void onProgress(TimelineProgress progress) {
+                            publishProgress(progress);
+                        }
+                    });
+                    Log.i(TAG, "analyze: " + video + " done, " + progress);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            running = false;
+                            listener.onFinished(progress, timeline);
+                        }
+                    });
+                } finally {
+                    writer.close();
+                }
+            } finally {
+                source.close();
+            }
+        } catch (final IOException | InterruptedException | RuntimeException e) {
+            Log.e(TAG, "analyze: " + video + " failed", e);
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    running = false;
+                    listener.onError(e);
+                }
+            });
+        } finally {
+            analyzer = null;
+        }
+    }
+
+    private void publishProgress(final TimelineProgress progress) {
+        long now = SystemClock.elapsedRealtime();
+        if(now - lastProgressMs < PROGRESS_INTERVAL_MS) {
+            return;
+        }
+        lastProgressMs = now;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onProgress(progress);
+            }
+        });
+    }
+}
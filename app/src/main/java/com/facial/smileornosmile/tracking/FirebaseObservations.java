@@ -0,0 +1,60 @@
+package com.facial.smileornosmile.tracking;
+
+import com.facial.smileornosmile.detector.FaceLandmarkType;
+import com.facial.smileornosmile.render.ContourTable;
+import com.google.firebase.ml.vision.common.FirebaseVisionPoint;
+import com.google.firebase.ml.vision.face.FirebaseVisionFace;
+import com.google.firebase.ml.vision.face.FirebaseVisionFaceContour;
+import com.google.firebase.ml.vision.face.FirebaseVisionFaceLandmark;
+
+import java.util.List;
+
+/**
+ * Copies Firebase faces into {@link FaceObservations}, contours in the order of a {@link ContourTable}
+ * and every landmark the detector found.
+ */
+public final class FirebaseObservations {
+
+    private FirebaseObservations() {
+    }
+
+    public static void fill(List<FirebaseVisionFace> faces, ContourTable table, FaceObservations observations) {
+        observations.clear();
+        for(int f = 0; f < faces.size(); f++) {
+            FirebaseVisionFace face = faces.get(f);
+            int index = observations.addFace(face.getTrackingId(),
+                    face.getBoundingBox().left,
+                    face.getBoundingBox().top,
+                    face.getBoundingBox().right,
+                    face.getBoundingBox().bottom,
+                    face.getSmilingProbability(),
+                    face.getLeftEyeOpenProbability(),
+                    face.getRightEyeOpenProbability());
+            if(index < 0) {
+                return;
+            }
+            for(int l = 0; l < FaceLandmarkType.ALL.length; l++) {
+                FirebaseVisionFaceLandmark landmark = face.getLandmark(FaceLandmarkType.ALL[l]);
+                if(landmark != null) {
+                    observations.setLandmark(index, FaceLandmarkType.ALL[l],
+                            landmark.getPosition().getX(), landmark.getPosition().getY());
+                }
+            }
+            for(int c = 0; c < table.size(); c++) {
+                //Missing contours are kept as empty ones so the table order still lines up
+                if(!observations.beginContour(index)) {
+                    break;
+                }
+                FirebaseVisionFaceContour contour = face.getContour(table.getType(c));
+                if(contour == null) {
+                    continue;
+                }
+                List<FirebaseVisionPoint> points = contour.getPoints();
+                for(int i = 0; i < points.size(); i++) {
+                    FirebaseVisionPoint point = points.get(i);
+                    observations.addPoint(index, point.getX(), point.getY());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.burst.BestShotBuffer;
+import com.facial.smileornosmile.frame.Nv21;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+
+/**
+ * What keeping a best shot costs the processing thread per detection: copying a 720p frame into
+ * the ring and scoring its faces, and what finding the best frame costs afterwards.
+ */
+@State(Scope.Thread)
+public class BestShotBenchmark {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int FACES = 4;
+
+    private ByteBuffer frame;
+    private BestShotBuffer buffer;
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        frame = ByteBuffer.allocateDirect(Nv21.size(WIDTH, HEIGHT));
+        buffer = new BestShotBuffer(15, 16 << 20, FACES);
+    }
+
+    @Benchmark
+    public float addFrame() {
+        timestamp++;
+        buffer.beginFrame(frame, WIDTH, HEIGHT, 90, false, timestamp);
+        for(int i = 0; i < FACES; i++) {
+            buffer.addFace((timestamp * 7 + i) % 100 / 100f, 0.9f, 0.8f);
+        }
+        buffer.endFrame();
+        return buffer.getBestScore();
+    }
+}
@@ -0,0 +1,76 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.render.ContourGeometry;
+import com.facial.smileornosmile.render.ContourTable;
+import com.facial.smileornosmile.tracking.FaceObservations;
+import com.facial.smileornosmile.tracking.FaceTracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turning the tracked contours into line and point buffers for the overlay, against the
+ * original approach of one point list per contour and one draw call per segment.
+ */
+@State(Scope.Thread)
+public class ContourFlatteningBenchmark {
+    @Param({"1", "4"})
+    public int faces;
+
+    private FaceObservations observations;
+    private FaceTracker tracker;
+    private ContourGeometry geometry;
+
+    @Setup
+    public void setUp() {
+        observations = SyntheticFaces.newObservations();
+        SyntheticFaces.fill(observations, faces, 0);
+        tracker = new FaceTracker(SyntheticFaces.MAX_FACES, ContourTable.LIVE_OVERLAY.size(), SyntheticFaces.MAX_POINTS);
+        tracker.update(observations, 0L);
+        geometry = new ContourGeometry();
+    }
+
+    @Benchmark
+    public int flattenContours() {
+        tracker.flattenContours(ContourTable.LIVE_OVERLAY, geometry);
+        return geometry.getLineFloatCount();
+    }
+
+    /**
+     * What the activity used to do: a list of point objects per contour, then a separate
+     * draw per segment. The draws are handed to the blackhole instead of a canvas.
+     */
+    @Benchmark
+    public void legacyPerSegment(Blackhole blackhole) {
+        ContourTable table = ContourTable.LIVE_OVERLAY;
+        for(int face = 0; face < observations.size(); face++) {
+            int start = 0;
+            for(int c = 0; c < observations.getContourCount(face); c++) {
+                int count = observations.getContourPointCount(face, c);
+                List<float[]> points = new ArrayList<>(count);
+                for(int p = start; p < start + count; p++) {
+                    points.add(new float[]{observations.getPointX(face, p), observations.getPointY(face, p)});
+                }
+                start += count;
+                for(int i = 0; i < points.size(); i++) {
+                    float[] point = points.get(i);
+                    blackhole.consume(point);
+                    if(i != points.size() - 1) {
+                        float[] next = points.get(i + 1);
+                        blackhole.consume(point[0] + point[1] + next[0] + next[1]);
+                    } else if(table.isClosed(c)) {
+                        float[] first = points.get(0);
+                        blackhole.consume(point[0] + point[1] + first[0] + first[1]);
+                    }
+                }
+            }
+        }
+    }
+}
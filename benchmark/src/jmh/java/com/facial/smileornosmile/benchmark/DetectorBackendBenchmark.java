@@ -0,0 +1,102 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.detector.DetectionImage;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.detector.ReplayFaceDetectorBackend;
+import com.facial.smileornosmile.frame.Nv21;
+import com.facial.smileornosmile.scheduler.ArbitrationPolicy;
+import com.facial.smileornosmile.scheduler.DetectionPriority;
+import com.facial.smileornosmile.scheduler.DetectionQueue;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * One detection round trip through a {@link FaceDetectorBackend}, from handing over the frame
+ * to the results arriving on the callback. Backends that run on the JVM are added to the
+ * {@code backend} parameter so they can be compared on the same frames; {@code queued} is the
+ * replay backend behind a {@link DetectionQueue}, for what arbitration adds to a live detection.
+ */
+@State(Scope.Thread)
+public class DetectorBackendBenchmark {
+    private static final int FRAMES = 64;
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Param({"replay", "queued"})
+    public String backend;
+
+    @Param({"1", "4"})
+    public int faces;
+
+    private FaceDetectorBackend detector;
+    private DetectionQueue queue;
+    private DetectionImage image;
+    private FaceObservations results;
+    private final Semaphore done = new Semaphore(0);
+    private final FaceDetectorBackend.Callback callback = new FaceDetectorBackend.Callback() {
+        @Override
+        public void onDetected(FaceObservations detected) {
+            done.release();
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            throw new IllegalStateException(e);
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        List<FaceObservations> frames = new ArrayList<>();
+        for(int i = 0; i < FRAMES; i++) {
+            FaceObservations frame = SyntheticFaces.newObservations();
+            SyntheticFaces.fill(frame, faces, i);
+            frames.add(frame);
+        }
+        switch(backend) {
+            case "replay":
+                detector = new ReplayFaceDetectorBackend(frames, 0L);
+                break;
+            case "queued":
+                queue = new DetectionQueue(new ReplayFaceDetectorBackend(frames, 0L), ArbitrationPolicy.defaults());
+                detector = queue.backend(DetectionPriority.LIVE);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown backend " + backend);
+        }
+        image = DetectionImage.nv21(new byte[Nv21.size(1280, 720)], 1280, 720, 90);
+        results = SyntheticFaces.newObservations();
+        detector.warmUp(DetectorProfile.LIVE_CONTOURS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        detector.close();
+        if(queue != null) {
+            queue.close();
+        }
+    }
+
+    @Benchmark
+    public int detect() throws InterruptedException {
+        detector.detect(image, DetectorProfile.LIVE_CONTOURS, results, DIRECT, callback);
+        done.acquire();
+        return results.size();
+    }
+}
@@ -0,0 +1,53 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.render.ContourTable;
+import com.facial.smileornosmile.tracking.FaceObservations;
+import com.facial.smileornosmile.tracking.FaceTracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Matching and smoothing one detection result, and moving the tracks along between detections.
+ */
+@State(Scope.Thread)
+public class FaceTrackerBenchmark {
+    private static final int FRAMES = 64;
+    private static final long FRAME_NANOS = 33333333L;
+
+    @Param({"1", "4"})
+    public int faces;
+
+    private FaceObservations[] frames;
+    private FaceTracker tracker;
+    private int frame;
+    private long timestampNanos;
+
+    @Setup
+    public void setUp() {
+        frames = new FaceObservations[FRAMES];
+        for(int i = 0; i < FRAMES; i++) {
+            frames[i] = SyntheticFaces.newObservations();
+            SyntheticFaces.fill(frames[i], faces, i);
+        }
+        tracker = new FaceTracker(SyntheticFaces.MAX_FACES, ContourTable.LIVE_OVERLAY.size(), SyntheticFaces.MAX_POINTS);
+    }
+
+    @Benchmark
+    public int update() {
+        frame = (frame + 1) % FRAMES;
+        timestampNanos += FRAME_NANOS;
+        tracker.update(frames[frame], timestampNanos);
+        return tracker.getTrackCount();
+    }
+
+    @Benchmark
+    public int predict() {
+        timestampNanos += FRAME_NANOS;
+        tracker.predict(timestampNanos);
+        return tracker.getTrackCount();
+    }
+}
@@ -0,0 +1,49 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.classify.GeometricClassifier;
+import com.facial.smileornosmile.classify.GeometricModel;
+import com.facial.smileornosmile.render.ContourTable;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * What geometric classification adds per live frame in place of the detector's classifier. The
+ * classifier itself only runs on a device, its cost is the difference in the detection stage
+ * between the classified and the contours only profile.
+ */
+@State(Scope.Thread)
+public class GeometricClassifierBenchmark {
+    @Param({"1", "4"})
+    public int faces;
+
+    private FaceObservations observations;
+    private GeometricClassifier classifier;
+    private final float[] features = new float[GeometricClassifier.FEATURES];
+
+    @Setup
+    public void setUp() {
+        observations = SyntheticFaces.newObservations();
+        SyntheticFaces.fill(observations, faces, 0);
+        classifier = new GeometricClassifier(ContourTable.LIVE_OVERLAY, GeometricModel.DEFAULT);
+    }
+
+    @Benchmark
+    public int classify() {
+        for(int face = 0; face < observations.size(); face++) {
+            observations.setClassification(face, FaceObservations.UNCOMPUTED, FaceObservations.UNCOMPUTED,
+                    FaceObservations.UNCOMPUTED);
+        }
+        return classifier.classify(observations);
+    }
+
+    @Benchmark
+    public float measure() {
+        classifier.measure(observations, observations.size() - 1, features);
+        return features[GeometricClassifier.CURVATURE];
+    }
+}
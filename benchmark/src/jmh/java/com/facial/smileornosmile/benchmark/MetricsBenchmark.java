@@ -0,0 +1,59 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.metrics.RuntimeCounters;
+import com.facial.smileornosmile.pipeline.FrameMetrics;
+import com.facial.smileornosmile.pipeline.PipelineStage;
+import com.facial.smileornosmile.pipeline.StageTimings;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * What the metrics cost one live frame: a camera frame, a detection and its four stage timings.
+ * The gc profiler should report no allocations for {@link #recordFrame()}.
+ */
+@State(Scope.Thread)
+public class MetricsBenchmark {
+    private static final long FRAME_NANOS = 33333333L;
+    private static final int STEPS = 97;
+
+    private FrameMetrics metrics;
+    private long[] durations;
+    private StringBuilder hud;
+    private int step;
+    private long timestampNanos;
+
+    @Setup
+    public void setUp() {
+        metrics = new FrameMetrics(new StageTimings(), RuntimeCounters.NONE, 0);
+        durations = new long[STEPS];
+        for(int i = 0; i < STEPS; i++) {
+            //Between 0.1 and 60 ms, spread over many buckets
+            durations[i] = 100000L + (long) (59900000.0 * i * i / (STEPS * STEPS));
+        }
+        hud = new StringBuilder();
+    }
+
+    @Benchmark
+    public long recordFrame() {
+        timestampNanos += FRAME_NANOS;
+        step = (step + 1) % STEPS;
+        StageTimings timings = metrics.getTimings();
+        metrics.onCameraFrame(timestampNanos);
+        metrics.onDetection(timestampNanos);
+        timings.record(PipelineStage.DETECTION, durations[step]);
+        timings.record(PipelineStage.GEOMETRY, durations[(step + 11) % STEPS] / 20);
+        timings.record(PipelineStage.RENDER, durations[(step + 23) % STEPS] / 10);
+        timings.record(PipelineStage.PUBLISH, durations[(step + 41) % STEPS] / 40);
+        return timings.getCount(PipelineStage.DETECTION);
+    }
+
+    @Benchmark
+    public int formatHud() {
+        recordFrame();
+        metrics.formatHud(timestampNanos, hud);
+        return hud.length();
+    }
+}
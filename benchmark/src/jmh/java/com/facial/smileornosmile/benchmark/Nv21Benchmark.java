@@ -0,0 +1,112 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.frame.FrameBuffer;
+import com.facial.smileornosmile.frame.FrameBufferPool;
+import com.facial.smileornosmile.frame.Nv21;
+import com.facial.smileornosmile.frame.RoiController;
+import com.facial.smileornosmile.frame.RoiPlan;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Preparing a camera frame for detection: the copy the detector needs of a full frame,
+ * against cutting out the region around a tracked face at full and reduced resolution, and
+ * freezing a frame into a new array, as CameraView does, against a pooled direct buffer.
+ */
+@State(Scope.Thread)
+public class Nv21Benchmark {
+    @Param({"1280x720", "1920x1080"})
+    public String frameSize;
+
+    private int width;
+    private int height;
+    private byte[] frame;
+    private byte[] copy;
+    private byte[] crop;
+    private ByteBuffer frameBuffer;
+    private ByteBuffer directCrop;
+    private final FrameBufferPool pool = new FrameBufferPool(2, true);
+    private RoiPlan plan;
+    private RoiPlan halvedPlan;
+
+    @Setup
+    public void setUp() {
+        String[] size = frameSize.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        frame = new byte[Nv21.size(width, height)];
+        for(int i = 0; i < frame.length; i++) {
+            frame[i] = (byte) (i * 31);
+        }
+        copy = new byte[frame.length];
+        crop = new byte[frame.length];
+        frameBuffer = ByteBuffer.wrap(frame);
+        directCrop = ByteBuffer.allocateDirect(frame.length);
+
+        plan = planFaceRegion(RoiController.DEFAULT_MIN_DETECTION_SIZE);
+        halvedPlan = planFaceRegion(RoiController.DEFAULT_MIN_DETECTION_SIZE / 4);
+    }
+
+    /**
+     * Plans the crop around a face of about a third of the frame height in the middle of the frame.
+     */
+    private RoiPlan planFaceRegion(int minDetectionSize) {
+        RoiController controller = new RoiController(RoiController.DEFAULT_PADDING,
+                RoiController.DEFAULT_FULL_FRAME_INTERVAL, minDetectionSize);
+        float faceSize = width / 3f;
+        controller.setRegion(height / 2f - faceSize / 2f, width / 2f - faceSize / 2f,
+                height / 2f + faceSize / 2f, width / 2f + faceSize / 2f);
+        RoiPlan roiPlan = new RoiPlan();
+        // The first frame is always detected in full, the crop starts with the one after
+        controller.plan(width, height, 90, roiPlan);
+        controller.plan(width, height, 90, roiPlan);
+        return roiPlan;
+    }
+
+    @Benchmark
+    public byte[] copyFullFrame() {
+        System.arraycopy(frame, 0, copy, 0, frame.length);
+        return copy;
+    }
+
+    @Benchmark
+    public byte[] cropRegion() {
+        Nv21.crop(frame, width, height, plan.getCropLeft(), plan.getCropTop(),
+                plan.getCropWidth(), plan.getCropHeight(), crop);
+        return crop;
+    }
+
+    @Benchmark
+    public byte[] cropAndDownsampleRegion() {
+        Nv21.cropAndDownsample(frame, width, height, halvedPlan.getCropLeft(), halvedPlan.getCropTop(),
+                halvedPlan.getCropWidth(), halvedPlan.getCropHeight(), halvedPlan.getDownsample(), crop);
+        return crop;
+    }
+
+    @Benchmark
+    public ByteBuffer cropAndDownsampleRegionDirect() {
+        Nv21.cropAndDownsample(frameBuffer, width, height, halvedPlan.getCropLeft(), halvedPlan.getCropTop(),
+                halvedPlan.getCropWidth(), halvedPlan.getCropHeight(), halvedPlan.getDownsample(), directCrop);
+        return directCrop;
+    }
+
+    @Benchmark
+    public byte[] freezeNewArray() {
+        return Arrays.copyOf(frame, frame.length);
+    }
+
+    @Benchmark
+    public int freezePooledDirect() {
+        FrameBuffer buffer = pool.copyOf(frameBuffer);
+        int first = buffer.getBuffer().get(0);
+        buffer.release();
+        return first;
+    }
+}
@@ -0,0 +1,115 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.events.SmileEvent;
+import com.facial.smileornosmile.events.SmileEventEngine;
+import com.facial.smileornosmile.events.SmileRule;
+import com.facial.smileornosmile.frame.Nv21;
+import com.facial.smileornosmile.governor.QualityGovernor;
+import com.facial.smileornosmile.governor.QualityLadder;
+import com.facial.smileornosmile.metrics.RuntimeCounters;
+import com.facial.smileornosmile.metrics.Tracer;
+import com.facial.smileornosmile.pipeline.FrameMetrics;
+import com.facial.smileornosmile.pipeline.LiveFramePipeline;
+import com.facial.smileornosmile.pipeline.StageTimings;
+import com.facial.smileornosmile.render.ContourGeometry;
+import com.facial.smileornosmile.replay.FrameRecorder;
+import com.facial.smileornosmile.replay.FrameRecording;
+import com.facial.smileornosmile.replay.RecordedFaceDetectorBackend;
+import com.facial.smileornosmile.replay.ReplayDriver;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A recorded 720p stream of synthetic faces replayed at maximum speed through the whole live
+ * pipeline, on the calling thread with detection answered right away. One operation is the whole
+ * recording, so scheduling, cropping, tracking, smile events and contour flattening are all in it.
+ */
+@State(Scope.Thread)
+public class ReplayBenchmark {
+    private static final int FRAMES = 24;
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final long FRAME_NANOS = 33333333L;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Param({"1", "4"})
+    public int faces;
+
+    private File file;
+    private FrameRecording recording;
+    private RecordedFaceDetectorBackend backend;
+    private LiveFramePipeline pipeline;
+    private int linePoints;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("replay", ".rec");
+        FrameRecorder recorder = new FrameRecorder(file);
+        byte[] data = new byte[Nv21.size(WIDTH, HEIGHT)];
+        FaceObservations observations = SyntheticFaces.newObservations();
+        for(int i = 0; i < FRAMES; i++) {
+            long timestamp = i * FRAME_NANOS;
+            recorder.writeFrame(timestamp, data, WIDTH, HEIGHT, 90, false);
+            SyntheticFaces.fill(observations, faces, i);
+            recorder.writeResults(timestamp, 0L, observations);
+        }
+        recorder.close();
+
+        recording = FrameRecording.open(file);
+        backend = new RecordedFaceDetectorBackend(recording, 0L);
+        QualityGovernor governor = new QualityGovernor(QualityLadder.defaultLadder(), 1, TimeUnit.SECONDS, null);
+        SmileEventEngine smileEvents = new SmileEventEngine(SmileRule.everyoneSmilingWithEyesOpen(200, TimeUnit.MILLISECONDS),
+                LiveFramePipeline.MAX_FACES, new SmileEventEngine.Listener() {
+            @Override
+            public void onEvent(SmileEvent event, int faceId, long timestampNanos) {
+            }
+        });
+        FrameMetrics metrics = new FrameMetrics(new StageTimings(), RuntimeCounters.NONE, 0);
+        pipeline = new LiveFramePipeline(backend, governor, smileEvents, metrics, Tracer.NONE, DIRECT,
+                new LiveFramePipeline.Output() {
+                    @Override
+                    public void onOverlay(ContourGeometry geometry, int width, int height, boolean mirrored, long startNanos) {
+                        linePoints += geometry.getLineFloatCount();
+                    }
+
+                    @Override
+                    public void onDetectionFinished(boolean fresh) {
+                    }
+
+                    @Override
+                    public void onDetectionFailed(Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        backend.close();
+        recording.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public int replay() throws InterruptedException {
+        new ReplayDriver(recording, pipeline, backend).run(ReplayDriver.Speed.MAXIMUM);
+        return linePoints;
+    }
+}
@@ -0,0 +1,54 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collecting the per face results of one detection: copying boxes, probabilities and contour
+ * points into the reused observation arrays, against the string rows the result list was built from.
+ */
+@State(Scope.Thread)
+public class ResultBuildingBenchmark {
+    @Param({"1", "4"})
+    public int faces;
+
+    private FaceObservations detected;
+    private FaceObservations observations;
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        detected = SyntheticFaces.newObservations();
+        SyntheticFaces.fill(detected, faces, 0);
+        observations = SyntheticFaces.newObservations();
+    }
+
+    @Benchmark
+    public FaceObservations fillObservations() {
+        SyntheticFaces.copy(detected, observations);
+        return observations;
+    }
+
+    /**
+     * The three string rows per face the activity used to build for the bottom sheet.
+     */
+    @Benchmark
+    public List<String> legacyStringRows() {
+        List<String> rows = new ArrayList<>();
+        for(int face = 0; face < faces; face++) {
+            rows.add("Smiling probability " + (detected.getSmilingProbability(face) + frame % 2));
+            rows.add("Left eye open probability " + detected.getLeftEyeOpenProbability(face));
+            rows.add("Right eye open probability " + detected.getRightEyeOpenProbability(face));
+        }
+        frame++;
+        return rows;
+    }
+}
@@ -0,0 +1,73 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.cache.ContentHash;
+import com.facial.smileornosmile.cache.FaceResultStore;
+import com.facial.smileornosmile.cache.ResultKey;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceLandmarkType;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * What a repeated analysis costs before anything is drawn: hashing a 4 MB photo to find its key,
+ * and reading its stored faces back.
+ */
+@State(Scope.Thread)
+public class ResultCacheBenchmark {
+    private static final int PHOTO_BYTES = 4 << 20;
+    private static final int FACES = 6;
+
+    private byte[] photo;
+    private byte[] hashBuffer;
+    private File directory;
+    private FaceResultStore store;
+    private ResultKey key;
+    private FaceObservations faces;
+
+    @Setup
+    public void setUp() throws IOException {
+        photo = new byte[PHOTO_BYTES];
+        for(int i = 0; i < photo.length; i++) {
+            photo[i] = (byte) (i * 31 + (i >>> 11));
+        }
+        hashBuffer = new byte[1 << 16];
+
+        directory = File.createTempFile("results", "");
+        directory.delete();
+        store = new FaceResultStore(directory, 1 << 20);
+        key = new ResultKey(ContentHash.of(new ByteArrayInputStream(photo), hashBuffer), DetectorProfile.STATIC_ACCURATE, 1280);
+        faces = new FaceObservations(FACES, 0, 0);
+        for(int i = 0; i < FACES; i++) {
+            int face = faces.addFace(FaceObservations.NO_TRACKING_ID, i * 200f, 100f, i * 200f + 180f, 320f, 0.5f, 0.9f, 0.9f);
+            for(int type = 0; type < FaceLandmarkType.SLOTS; type++) {
+                faces.setLandmark(face, type, i * 200f + type * 10f, 150f + type * 5f);
+            }
+        }
+        store.put(key, faces);
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.clear();
+        directory.delete();
+    }
+
+    @Benchmark
+    public long hashPhoto() throws IOException {
+        return ContentHash.of(new ByteArrayInputStream(photo), hashBuffer);
+    }
+
+    @Benchmark
+    public boolean readStoredFaces() {
+        return store.get(key, faces);
+    }
+}
@@ -0,0 +1,96 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.result.FaceResult;
+import com.facial.smileornosmile.result.ResultFormatter;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Updating the result list once per frame: building the typed rows, comparing them with the
+ * shown rows the way the adapter's item callback does, and producing the text of every row.
+ */
+@State(Scope.Thread)
+public class ResultListBenchmark {
+    private static final int FRAMES = 64;
+
+    @Param({"1", "4"})
+    public int faces;
+
+    private FaceObservations[] frames;
+    private List<FaceResult> shown;
+    private ResultFormatter formatter;
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        frames = new FaceObservations[FRAMES];
+        for(int i = 0; i < FRAMES; i++) {
+            frames[i] = SyntheticFaces.newObservations();
+            SyntheticFaces.fill(frames[i], faces, i);
+        }
+        shown = buildRows(frames[0]);
+        formatter = new ResultFormatter();
+    }
+
+    private static List<FaceResult> buildRows(FaceObservations observations) {
+        List<FaceResult> rows = new ArrayList<>(observations.size() * 3);
+        for(int face = 0; face < observations.size(); face++) {
+            FaceResult.addFace(rows, face, observations.getSmilingProbability(face),
+                    observations.getLeftEyeOpenProbability(face), observations.getRightEyeOpenProbability(face));
+        }
+        return rows;
+    }
+
+    @Benchmark
+    public List<FaceResult> buildRows() {
+        frame = (frame + 1) % FRAMES;
+        return buildRows(frames[frame]);
+    }
+
+    /**
+     * Rows in the same order on both sides, as between two frames with the same faces, which
+     * is the case where the diff only has to compare positions.
+     */
+    @Benchmark
+    public int changedRows() {
+        frame = (frame + 1) % FRAMES;
+        List<FaceResult> rows = buildRows(frames[frame]);
+        int changed = 0;
+        for(int i = 0; i < rows.size(); i++) {
+            if(!rows.get(i).isSameRow(shown.get(i)) || !rows.get(i).hasSameContents(shown.get(i))) {
+                changed++;
+            }
+        }
+        shown = rows;
+        return changed;
+    }
+
+    @Benchmark
+    public void bindCachedText(Blackhole blackhole) {
+        for(int i = 0; i < shown.size(); i++) {
+            blackhole.consume(formatter.formatFaceId(shown.get(i)));
+            blackhole.consume(formatter.formatValue(shown.get(i)));
+        }
+    }
+
+    /**
+     * Text built per bind by concatenation, as the rows used to be.
+     */
+    @Benchmark
+    public void bindConcatenatedText(Blackhole blackhole) {
+        for(int i = 0; i < shown.size(); i++) {
+            FaceResult row = shown.get(i);
+            blackhole.consume(String.valueOf(row.getFaceId()));
+            blackhole.consume(row.getMetric().getLabel() + " " + row.getValue());
+        }
+    }
+}
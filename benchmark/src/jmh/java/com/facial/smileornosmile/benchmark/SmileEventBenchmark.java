@@ -0,0 +1,60 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.events.SmileEvent;
+import com.facial.smileornosmile.events.SmileEventEngine;
+import com.facial.smileornosmile.events.SmileRule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame through the smile event engine, with probabilities that keep crossing the
+ * thresholds so events fire. The gc profiler should report no allocations.
+ */
+@State(Scope.Thread)
+public class SmileEventBenchmark {
+    private static final int STEPS = 97;
+    private static final long FRAME_NANOS = 33333333L;
+
+    @Param({"1", "4"})
+    public int faces;
+
+    private SmileEventEngine engine;
+    private float[] probabilities;
+    private int step;
+    private long timestampNanos;
+    private int events;
+
+    @Setup
+    public void setUp() {
+        engine = new SmileEventEngine(SmileRule.everyoneSmilingWithEyesOpen(200, TimeUnit.MILLISECONDS),
+                SyntheticFaces.MAX_FACES, new SmileEventEngine.Listener() {
+            @Override
+            public void onEvent(SmileEvent event, int faceId, long timestampNanos) {
+                events++;
+            }
+        });
+        probabilities = new float[STEPS];
+        for(int i = 0; i < STEPS; i++) {
+            probabilities[i] = (float) (0.5 + 0.5 * Math.sin(2 * Math.PI * i / STEPS));
+        }
+    }
+
+    @Benchmark
+    public int frame() {
+        timestampNanos += FRAME_NANOS;
+        step = (step + 1) % STEPS;
+        engine.beginFrame(timestampNanos);
+        for(int face = 0; face < faces; face++) {
+            float probability = probabilities[(step + face * 5) % STEPS];
+            engine.addFace(face, probability, 0.9f, 0.9f);
+        }
+        engine.endFrame();
+        return events;
+    }
+}
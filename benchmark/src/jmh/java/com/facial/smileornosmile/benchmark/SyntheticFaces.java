@@ -0,0 +1,80 @@
+package com.facial.smileornosmile.benchmark;
+
+import com.facial.smileornosmile.render.ContourTable;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+/**
+ * Deterministic face data shaped like what the live contour detector returns, so the
+ * benchmarks measure the same amount of work per frame as the app does on a device.
+ */
+final class SyntheticFaces {
+    static final int MAX_FACES = 4;
+    static final int MAX_POINTS = 160;
+
+    /**
+     * Points per contour of {@link ContourTable#LIVE_OVERLAY}, as reported by the detector.
+     */
+    private static final int[] POINTS_PER_CONTOUR = {36, 16, 16, 5, 5, 9, 9, 2, 3};
+    /**
+     * Where each contour sits relative to the face center, so eyes and lips can be measured.
+     */
+    private static final float[] CONTOUR_OFFSETS = {0f, 0f, 40f, -30f, -40f, -30f, 40f, -55f, -40f, -55f,
+            0f, 45f, 0f, 55f, 0f, -10f, 0f, 15f};
+
+    private SyntheticFaces() {
+    }
+
+    static FaceObservations newObservations() {
+        return new FaceObservations(MAX_FACES, ContourTable.LIVE_OVERLAY.size(), MAX_POINTS);
+    }
+
+    /**
+     * Replaces the contents of {@code observations} with {@code faceCount} faces of 200 px,
+     * drifting a few pixels per {@code frame} across a 720 x 1280 upright frame.
+     */
+    static void fill(FaceObservations observations, int faceCount, int frame) {
+        observations.clear();
+        for(int f = 0; f < faceCount; f++) {
+            float centerX = 150f + f * 160f + (frame % 50) * 2f;
+            float centerY = 400f + f * 120f + (frame % 30);
+            float smiling = (frame + f * 7) % 100 / 100f;
+            int face = observations.addFace(FaceObservations.NO_TRACKING_ID,
+                    centerX - 100f, centerY - 100f, centerX + 100f, centerY + 100f,
+                    smiling, 0.9f, 0.8f);
+            for(int c = 0; c < POINTS_PER_CONTOUR.length; c++) {
+                if(!observations.beginContour(face)) {
+                    break;
+                }
+                int count = POINTS_PER_CONTOUR[c];
+                float radius = c == 0 ? 95f : 20f;
+                for(int p = 0; p < count; p++) {
+                    double angle = 2 * Math.PI * p / count;
+                    observations.addPoint(face, centerX + CONTOUR_OFFSETS[c * 2] + radius * (float) Math.cos(angle),
+                            centerY + CONTOUR_OFFSETS[c * 2 + 1] + radius * (float) Math.sin(angle));
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies {@code source} face by face and point by point, the way detector results are collected.
+     */
+    static void copy(FaceObservations source, FaceObservations target) {
+        target.clear();
+        for(int f = 0; f < source.size(); f++) {
+            int face = target.addFace(source.getTrackingId(f), source.getLeft(f), source.getTop(f),
+                    source.getRight(f), source.getBottom(f), source.getSmilingProbability(f),
+                    source.getLeftEyeOpenProbability(f), source.getRightEyeOpenProbability(f));
+            int point = 0;
+            for(int c = 0; c < source.getContourCount(f); c++) {
+                if(!target.beginContour(face)) {
+                    break;
+                }
+                int end = point + source.getContourPointCount(f, c);
+                for(; point < end; point++) {
+                    target.addPoint(face, source.getPointX(f, point), source.getPointY(f, point));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.facial.smileornosmile.batch;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Append-only list of completed items, one per line, so a crashed batch can pick up where it
+ * stopped. An item is only added after its results have been flushed, so after a crash an item
+ * is processed again at most once.
+ */
+public class BatchCheckpoint implements Closeable {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Set<String> completed = new HashSet<>();
+    private final Writer writer;
+
+    public BatchCheckpoint(File file) throws IOException {
+        if(file.exists()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+            try {
+                String line;
+                while((line = reader.readLine()) != null) {
+                    if(!line.isEmpty()) {
+                        completed.add(line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8);
+    }
+
+    public synchronized boolean isCompleted(String item) {
+        return completed.contains(item);
+    }
+
+    public synchronized void markCompleted(String item) throws IOException {
+        if(item.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Item must not contain line breaks: " + item);
+        }
+        if(completed.add(item)) {
+            writer.write(item);
+            writer.write('\n');
+            writer.flush();
+        }
+    }
+
+    public synchronized int size() {
+        return completed.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
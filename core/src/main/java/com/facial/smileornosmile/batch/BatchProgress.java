@@ -0,0 +1,63 @@
+package com.facial.smileornosmile.batch;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of a running batch.
+ */
+public class BatchProgress {
+    private final int total;
+    private final int skipped;
+    private final int completed;
+    private final int failed;
+    private final long elapsedNanos;
+
+    public BatchProgress(int total, int skipped, int completed, int failed, long elapsedNanos) {
+        this.total = total;
+        this.skipped = skipped;
+        this.completed = completed;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /** Items already completed by an earlier run, according to the checkpoint */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getRemaining() {
+        return total - skipped - completed - failed;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** Throughput of this run, items skipped from the checkpoint are not counted */
+    public float getImagesPerSecond() {
+        if(elapsedNanos <= 0) {
+            return 0f;
+        }
+        return (completed + failed) / (elapsedNanos / (float) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Override
+    public String toString() {
+        return (skipped + completed + failed) + "/" + total
+                + " (" + failed + " failed, "
+                + String.format(Locale.US, "%.1f", getImagesPerSecond()) + " img/s)";
+    }
+}
@@ -0,0 +1,75 @@
+package com.facial.smileornosmile.batch;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams per-face results as CSV lines of
+ * {@code item,face,smiling,leftEyeOpen,rightEyeOpen}, probabilities with three decimals.
+ * Images without faces get a single line with face -1 so they still show up in the results.
+ */
+public class BatchResultWriter implements Closeable {
+    public static final String HEADER = "item,face,smiling,leftEyeOpen,rightEyeOpen";
+
+    private final BufferedWriter writer;
+
+    public BatchResultWriter(File file) throws IOException {
+        boolean writeHeader = !file.exists() || file.length() == 0;
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), Charset.forName("UTF-8")));
+        if(writeHeader) {
+            writer.write(HEADER);
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Writes and flushes the results of one item.
+     */
+    public synchronized void write(String item, List<FaceScore> faces) throws IOException {
+        String escaped = escape(item);
+        if(faces.isEmpty()) {
+            writer.write(escaped);
+            writer.write(",-1,,,\n");
+        }
+        for(int i = 0; i < faces.size(); i++) {
+            FaceScore face = faces.get(i);
+            writer.write(escaped);
+            writer.write(',');
+            writer.write(Integer.toString(i));
+            writer.write(',');
+            writer.write(format(face.getSmilingProbability()));
+            writer.write(',');
+            writer.write(format(face.getLeftEyeOpenProbability()));
+            writer.write(',');
+            writer.write(format(face.getRightEyeOpenProbability()));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private static String format(float probability) {
+        if(probability < 0f) {
+            return "";
+        }
+        return String.format(Locale.US, "%.3f", probability);
+    }
+
+    private static String escape(String item) {
+        if(item.indexOf(',') < 0 && item.indexOf('"') < 0 && item.indexOf('\n') < 0) {
+            return item;
+        }
+        return '"' + item.replace("\"", "\"\"") + '"';
+    }
+}
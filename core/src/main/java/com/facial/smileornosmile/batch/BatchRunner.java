@@ -0,0 +1,176 @@
+package com.facial.smileornosmile.batch;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Scores a list of images with at most {@code parallelism} of them in progress at once.
+ * Submitting blocks while all slots are taken, so a slow detector holds back decoding
+ * instead of letting work pile up. Results are written as they arrive, and every finished
+ * item is checkpointed so a later run over the same list skips it.
+ */
+public class BatchRunner {
+
+    /**
+     * Scores one item asynchronously. Exactly one of the callback methods must be called,
+     * from any thread.
+     */
+    public interface Scorer {
+        void score(String item, Callback callback);
+    }
+
+    public interface Callback {
+        void onScored(List<FaceScore> faces);
+
+        void onFailed(Exception e);
+    }
+
+    public interface ProgressListener {
+        void onProgress(BatchProgress progress);
+    }
+
+    private final Scorer scorer;
+    private final int parallelism;
+    private final BatchCheckpoint checkpoint;
+    private final BatchResultWriter resultWriter;
+
+    private final Semaphore slots;
+    private volatile boolean cancelled;
+
+    private int total;
+    private int skipped;
+    private int completed;
+    private int failed;
+    private long startNanos;
+    private IOException writeError;
+
+    public BatchRunner(Scorer scorer, int parallelism, BatchCheckpoint checkpoint, BatchResultWriter resultWriter) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.scorer = scorer;
+        this.parallelism = parallelism;
+        this.checkpoint = checkpoint;
+        this.resultWriter = resultWriter;
+        this.slots = new Semaphore(parallelism);
+    }
+
+    /**
+     * Scores all items not yet in the checkpoint and blocks until they are done or the run was cancelled.
+     *
+     * @param listener called after each item, from the thread that finished it, may be null
+     */
+    public BatchProgress run(List<String> items, ProgressListener listener) throws InterruptedException, IOException {
+        synchronized (this) {
+            total = items.size();
+            skipped = 0;
+            completed = 0;
+            failed = 0;
+            writeError = null;
+            startNanos = System.nanoTime();
+        }
+
+        for(int i = 0; i < items.size() && !cancelled; i++) {
+            final String item = items.get(i);
+            if(checkpoint.isCompleted(item)) {
+                synchronized (this) {
+                    skipped++;
+                }
+                continue;
+            }
+            slots.acquire();
+            if(cancelled) {
+                slots.release();
+                break;
+            }
+            scorer.score(item, new ItemCallback(item, listener));
+        }
+
+        // Wait for everything in flight
+        slots.acquire(parallelism);
+        slots.release(parallelism);
+
+        synchronized (this) {
+            if(writeError != null) {
+                throw writeError;
+            }
+        }
+        return getProgress();
+    }
+
+    /**
+     * Stops submitting new items. Items already in progress still finish and are recorded.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public synchronized BatchProgress getProgress() {
+        return new BatchProgress(total, skipped, completed, failed, System.nanoTime() - startNanos);
+    }
+
+    private class ItemCallback implements Callback {
+        private final String item;
+        private final ProgressListener listener;
+        private boolean done;
+
+        ItemCallback(String item, ProgressListener listener) {
+            this.item = item;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onScored(List<FaceScore> faces) {
+            if(!finish()) {
+                return;
+            }
+            try {
+                resultWriter.write(item, faces);
+                checkpoint.markCompleted(item);
+                synchronized (BatchRunner.this) {
+                    completed++;
+                }
+            } catch (IOException e) {
+                synchronized (BatchRunner.this) {
+                    if(writeError == null) {
+                        writeError = e;
+                    }
+                }
+                cancel();
+            }
+            report();
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            if(!finish()) {
+                return;
+            }
+            // Not checkpointed, so the item is tried again on the next run
+            synchronized (BatchRunner.this) {
+                failed++;
+            }
+            report();
+        }
+
+        private synchronized boolean finish() {
+            if(done) {
+                return false;
+            }
+            done = true;
+            return true;
+        }
+
+        private void report() {
+            slots.release();
+            if(listener != null) {
+                listener.onProgress(getProgress());
+            }
+        }
+    }
+}
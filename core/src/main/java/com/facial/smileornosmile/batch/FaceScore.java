@@ -0,0 +1,31 @@
+package com.facial.smileornosmile.batch;
+
+/**
+ * Classification result for one face of a scored image. Probabilities are in [0, 1],
+ * or {@link #UNCOMPUTED} when the detector could not tell.
+ */
+public class FaceScore {
+    public static final float UNCOMPUTED = -1f;
+
+    private final float smilingProbability;
+    private final float leftEyeOpenProbability;
+    private final float rightEyeOpenProbability;
+
+    public FaceScore(float smilingProbability, float leftEyeOpenProbability, float rightEyeOpenProbability) {
+        this.smilingProbability = smilingProbability;
+        this.leftEyeOpenProbability = leftEyeOpenProbability;
+        this.rightEyeOpenProbability = rightEyeOpenProbability;
+    }
+
+    public float getSmilingProbability() {
+        return smilingProbability;
+    }
+
+    public float getLeftEyeOpenProbability() {
+        return leftEyeOpenProbability;
+    }
+
+    public float getRightEyeOpenProbability() {
+        return rightEyeOpenProbability;
+    }
+}
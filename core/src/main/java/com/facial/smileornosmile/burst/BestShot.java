@@ -0,0 +1,96 @@
+package com.facial.smileornosmile.burst;
+
+/**
+ * A copy of the best frame of a {@link BestShotBuffer}, with the scores of its faces. Reusable:
+ * the data array only grows, so copying into the same shot again allocates nothing.
+ */
+public class BestShot {
+    private final float[] smiling;
+    private final float[] eyesOpen;
+    byte[] data = new byte[0];
+    int length;
+    int width;
+    int height;
+    int rotation;
+    boolean mirrored;
+    long timestampNanos;
+    float score;
+    int faceCount;
+
+    public BestShot(int maxFaces) {
+        smiling = new float[maxFaces];
+        eyesOpen = new float[maxFaces];
+    }
+
+    /**
+     * The NV21 data of the frame, in the first {@link #getLength()} bytes.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return clockwise rotation in degrees that makes the frame upright
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    public boolean isMirrored() {
+        return mirrored;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * The score of the frame, that of its least smiling face, in [0, 1].
+     */
+    public float getScore() {
+        return score;
+    }
+
+    public int getFaceCount() {
+        return faceCount;
+    }
+
+    public float getSmilingProbability(int face) {
+        return smiling[face];
+    }
+
+    /**
+     * The lower of the two eyes open probabilities, 0 if either was not computed.
+     */
+    public float getEyesOpenProbability(int face) {
+        return eyesOpen[face];
+    }
+
+    void setFace(int face, float smilingProbability, float eyesOpenProbability) {
+        smiling[face] = smilingProbability;
+        eyesOpen[face] = eyesOpenProbability;
+    }
+
+    void ensureCapacity(int size) {
+        if(data.length < size) {
+            data = new byte[size];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BestShot{" + width + "x" + height + ", " + faceCount + " faces, score " + score + "}";
+    }
+}
@@ -0,0 +1,251 @@
+package com.facial.smileornosmile.burst;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A ring of the most recent detected frames with the scores of their faces, to save the moment
+ * everyone smiled. Fed once per detection:
+ * <pre>
+ *     buffer.beginFrame(nv21, width, height, rotation, mirrored, timestampNanos);
+ *     for(each face) buffer.addFace(smiling, leftEyeOpen, rightEyeOpen);
+ *     buffer.endFrame();
+ * </pre>
+ * A face scores its smiling probability times the lower of its eyes open probabilities, a frame
+ * that of its least happy face, so one closed eye is enough to lose. Frames without faces are
+ * kept but never best.
+ *
+ * The NV21 data is copied into direct slot buffers allocated for the frame size of the first
+ * frame, as many as fit into the memory limit, and again only if the frame size changes. The
+ * best frame is found through a queue of the slots that can still become best, newest last and
+ * in falling score order, so adding a frame is amortized O(1) and finding the best O(1).
+ * Thread safe, copying out the best frame may happen on any thread.
+ */
+public class BestShotBuffer {
+    public static final float NO_SCORE = -1f;
+
+    private final int maxFrames;
+    private final long maxBytes;
+    private final int maxFaces;
+
+    private ByteBuffer[] slots = new ByteBuffer[0];
+    private int[] widths = new int[0];
+    private int[] heights = new int[0];
+    private int[] rotations = new int[0];
+    private boolean[] mirrored = new boolean[0];
+    private long[] timestamps = new long[0];
+    private float[] scores = new float[0];
+    private int[] faceCounts = new int[0];
+    private float[] smiling = new float[0];
+    private float[] eyesOpen = new float[0];
+    private int frameBytes;
+
+    //The slots still able to become best, a ring of its own: oldest first, scores falling
+    private int[] candidates = new int[0];
+    private int candidateHead;
+    private int candidateCount;
+
+    private int next;
+    private int count;
+    private int current = -1;
+    private long frames;
+
+    /**
+     * @param maxFrames how many frames to keep at most
+     * @param maxBytes  how much memory the frame data may take, which may allow fewer frames
+     * @param maxFaces  how many faces of a frame are scored, the rest are ignored
+     */
+    public BestShotBuffer(int maxFrames, long maxBytes, int maxFaces) {
+        if(maxFrames < 1 || maxBytes < 0 || maxFaces < 1) {
+            throw new IllegalArgumentException("maxFrames " + maxFrames + ", maxBytes " + maxBytes + ", maxFaces " + maxFaces);
+        }
+        this.maxFrames = maxFrames;
+        this.maxBytes = maxBytes;
+        this.maxFaces = maxFaces;
+    }
+
+    /**
+     * Copies a frame into the slot of the oldest one. Does nothing but count the frame if not
+     * even one frame of its size fits into the memory limit.
+     *
+     * @param nv21 the NV21 data from position 0 to the limit, left as it is
+     */
+    public synchronized void beginFrame(ByteBuffer nv21, int width, int height, int rotation, boolean mirrored,
+                                        long timestampNanos) {
+        if(current >= 0) {
+            throw new IllegalStateException("beginFrame without endFrame");
+        }
+        frames++;
+        if(nv21.limit() != frameBytes) {
+            allocate(nv21.limit());
+        }
+        if(slots.length == 0) {
+            return;
+        }
+        int slot = next;
+        next = (next + 1) % slots.length;
+        if(count == slots.length) {
+            //The oldest frame is about to be overwritten, only the front candidate can be that old
+            if(candidateCount > 0 && candidates[candidateHead] == slot) {
+                candidateHead = (candidateHead + 1) % candidates.length;
+                candidateCount--;
+            }
+        } else {
+            count++;
+        }
+
+        ByteBuffer source = nv21.duplicate();
+        source.position(0);
+        ByteBuffer target = slots[slot];
+        target.clear();
+        target.put(source);
+        target.flip();
+
+        widths[slot] = width;
+        heights[slot] = height;
+        rotations[slot] = rotation;
+        this.mirrored[slot] = mirrored;
+        timestamps[slot] = timestampNanos;
+        faceCounts[slot] = 0;
+        scores[slot] = NO_SCORE;
+        current = slot;
+    }
+
+    /**
+     * Scores one face of the current frame. Probabilities below 0, like uncomputed ones, count
+     * as not smiling or not open.
+     */
+    public synchronized void addFace(float smilingProbability, float leftEyeOpenProbability, float rightEyeOpenProbability) {
+        if(current < 0 || faceCounts[current] == maxFaces) {
+            return;
+        }
+        float smile = Math.max(smilingProbability, 0f);
+        float eyes = leftEyeOpenProbability < 0f || rightEyeOpenProbability < 0f
+                ? 0f : Math.min(leftEyeOpenProbability, rightEyeOpenProbability);
+        int face = current * maxFaces + faceCounts[current]++;
+        smiling[face] = smile;
+        eyesOpen[face] = eyes;
+        float score = smile * eyes;
+        scores[current] = scores[current] == NO_SCORE ? score : Math.min(scores[current], score);
+    }
+
+    public synchronized void endFrame() {
+        if(current < 0) {
+            return;
+        }
+        //Older candidates scoring no better than the new frame can never be best again
+        float score = scores[current];
+        while(candidateCount > 0 && scores[candidates[(candidateHead + candidateCount - 1) % candidates.length]] <= score) {
+            candidateCount--;
+        }
+        candidates[(candidateHead + candidateCount) % candidates.length] = current;
+        candidateCount++;
+        current = -1;
+    }
+
+    /**
+     * The score of the best frame, or {@link #NO_SCORE} if no kept frame has faces.
+     */
+    public synchronized float getBestScore() {
+        int best = best();
+        return best < 0 ? NO_SCORE : scores[best];
+    }
+
+    /**
+     * Copies the best frame with its face scores into {@code out}. This is the only copy made
+     * of it, so converting it to an image costs nothing until asked for.
+     *
+     * @return whether there was a frame with faces to copy
+     */
+    public synchronized boolean copyBest(BestShot out) {
+        int best = best();
+        if(best < 0) {
+            return false;
+        }
+        ByteBuffer data = slots[best].duplicate();
+        out.ensureCapacity(data.limit());
+        out.length = data.limit();
+        data.get(out.data, 0, out.length);
+        out.width = widths[best];
+        out.height = heights[best];
+        out.rotation = rotations[best];
+        out.mirrored = mirrored[best];
+        out.timestampNanos = timestamps[best];
+        out.score = scores[best];
+        out.faceCount = faceCounts[best];
+        for(int i = 0; i < out.faceCount; i++) {
+            out.setFace(i, smiling[best * maxFaces + i], eyesOpen[best * maxFaces + i]);
+        }
+        return true;
+    }
+
+    /**
+     * Forgets the kept frames, keeping their buffers.
+     */
+    public synchronized void clear() {
+        next = 0;
+        count = 0;
+        current = -1;
+        candidateHead = 0;
+        candidateCount = 0;
+    }
+
+    /**
+     * How many frames fit at the current frame size, 0 before the first frame.
+     */
+    public synchronized int getCapacity() {
+        return slots.length;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * All frames ever begun, including those that did not fit.
+     */
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    public synchronized long getMemoryBytes() {
+        return (long) slots.length * frameBytes;
+    }
+
+    public int getMaxFaces() {
+        return maxFaces;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BestShotBuffer{" + count + "/" + slots.length + " frames, " + getMemoryBytes() / 1024
+                + " KB, best " + getBestScore() + "}";
+    }
+
+    private int best() {
+        if(candidateCount == 0) {
+            return -1;
+        }
+        int best = candidates[candidateHead];
+        return scores[best] == NO_SCORE ? -1 : best;
+    }
+
+    private void allocate(int size) {
+        frameBytes = size;
+        int capacity = size == 0 ? 0 : (int) Math.min(maxFrames, maxBytes / size);
+        slots = new ByteBuffer[capacity];
+        for(int i = 0; i < capacity; i++) {
+            slots[i] = ByteBuffer.allocateDirect(size);
+        }
+        widths = new int[capacity];
+        heights = new int[capacity];
+        rotations = new int[capacity];
+        mirrored = new boolean[capacity];
+        timestamps = new long[capacity];
+        scores = new float[capacity];
+        faceCounts = new int[capacity];
+        smiling = new float[capacity * maxFaces];
+        eyesOpen = new float[capacity * maxFaces];
+        candidates = new int[capacity];
+        clear();
+    }
+}
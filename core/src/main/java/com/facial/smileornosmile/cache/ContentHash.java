@@ -0,0 +1,55 @@
+package com.facial.smileornosmile.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A fast 64 bit FNV-1a hash of a byte stream and its length, good enough to tell images apart
+ * without keeping or comparing their bytes. Not meant to resist deliberate collisions.
+ */
+public final class ContentHash {
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private long hash = OFFSET_BASIS;
+    private long length;
+
+    public ContentHash update(byte[] data, int offset, int count) {
+        long h = hash;
+        for(int i = offset, end = offset + count; i < end; i++) {
+            h ^= data[i] & 0xff;
+            h *= PRIME;
+        }
+        hash = h;
+        length += count;
+        return this;
+    }
+
+    /**
+     * The hash of everything so far, with the length mixed in so a prefix hashes differently.
+     */
+    public long getValue() {
+        long h = hash ^ length;
+        //Final avalanche so that nearby values spread over all bits
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Hashes {@code in} to its end through {@code buffer}. The stream is not closed.
+     */
+    public static long of(InputStream in, byte[] buffer) throws IOException {
+        ContentHash hash = new ContentHash();
+        int read;
+        while((read = in.read(buffer)) > 0) {
+            hash.update(buffer, 0, read);
+        }
+        return hash.getValue();
+    }
+}
@@ -0,0 +1,210 @@
+package com.facial.smileornosmile.cache;
+
+import com.facial.smileornosmile.tracking.FaceObservations;
+import com.facial.smileornosmile.tracking.FaceObservationsCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Face results of analysed images on disk, one small file per {@link ResultKey} holding an 8 byte
+ * header of magic and version and the faces as {@link FaceObservationsCodec} writes them.
+ * The least recently used files are deleted once all of them take more than {@code maxBytes};
+ * recency survives restarts through the files' modification times. Unreadable files count as
+ * misses and are deleted. Thread safe.
+ */
+public class FaceResultStore {
+    static final String SUFFIX = ".faces";
+    static final int MAGIC = 0x534f4e46;
+    static final int VERSION = 1;
+
+    private final File directory;
+    private final long maxBytes;
+    //File name to length, least recently used first, read from the directory on first use
+    private LinkedHashMap<String, Long> entries;
+    private long sizeBytes;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public FaceResultStore(File directory, long maxBytes) {
+        if(maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Replaces the contents of {@code out} with the stored faces for {@code key}, as far as its
+     * capacity allows. Returns false, leaving {@code out} empty, if none are stored.
+     */
+    public synchronized boolean get(ResultKey key, FaceObservations out) {
+        out.clear();
+        String name = key.toFileName();
+        if(index().get(name) == null) {
+            missCount++;
+            return false;
+        }
+        File file = new File(directory, name);
+        try {
+            ByteBuffer in = ByteBuffer.wrap(readFully(file));
+            if(in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a result file: " + file);
+            }
+            FaceObservationsCodec.read(in, out);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            out.clear();
+            delete(name);
+            missCount++;
+            return false;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        hitCount++;
+        return true;
+    }
+
+    /**
+     * Stores {@code faces} for {@code key}, replacing what was stored before.
+     */
+    public synchronized void put(ResultKey key, FaceObservations faces) throws IOException {
+        index();
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        String name = key.toFileName();
+        //Written aside and renamed, so a crash never leaves a half written entry
+        File temporary = new File(directory, name + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            FaceObservationsCodec.write(faces, out);
+        } finally {
+            out.close();
+        }
+        File file = new File(directory, name);
+        if(!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Could not write " + file);
+        }
+        Long previous = entries.remove(name);
+        if(previous != null) {
+            sizeBytes -= previous;
+        }
+        entries.put(name, file.length());
+        sizeBytes += file.length();
+        trim();
+    }
+
+    /**
+     * Deletes every stored result.
+     */
+    public synchronized void clear() {
+        for(String name : index().keySet()) {
+            new File(directory, name).delete();
+        }
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    public synchronized int getCount() {
+        return index().size();
+    }
+
+    public synchronized long getSizeBytes() {
+        index();
+        return sizeBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FaceResultStore{count=" + (entries == null ? "?" : Integer.toString(entries.size()))
+                + ", bytes=" + sizeBytes + "/" + maxBytes
+                + ", hits=" + hitCount
+                + ", misses=" + missCount
+                + ", evictions=" + evictionCount
+                + "}";
+    }
+
+    private LinkedHashMap<String, Long> index() {
+        if(entries != null) {
+            return entries;
+        }
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        File[] files = directory.listFiles();
+        if(files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File a, File b) {
+                    long difference = a.lastModified() - b.lastModified();
+                    return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+                }
+            });
+            for(File file : files) {
+                if(file.getName().endsWith(SUFFIX)) {
+                    entries.put(file.getName(), file.length());
+                    sizeBytes += file.length();
+                } else if(file.getName().endsWith(SUFFIX + ".tmp")) {
+                    file.delete();
+                }
+            }
+        }
+        trim();
+        return entries;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while(sizeBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            new File(directory, entry.getKey()).delete();
+            sizeBytes -= entry.getValue();
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    private void delete(String name) {
+        Long length = entries.remove(name);
+        if(length != null) {
+            sizeBytes -= length;
+        }
+        new File(directory, name).delete();
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] data = new byte[(int) in.length()];
+            in.readFully(data);
+            return data;
+        } finally {
+            in.close();
+        }
+    }
+}
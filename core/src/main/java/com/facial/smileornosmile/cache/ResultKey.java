@@ -0,0 +1,62 @@
+package com.facial.smileornosmile.cache;
+
+import com.facial.smileornosmile.detector.DetectorProfile;
+
+/**
+ * Identifies the analysis of an image: its content, the detector profile and the size it was
+ * decoded at for detection, as results are in the coordinates of the decoded image.
+ */
+public final class ResultKey {
+    private final long contentHash;
+    private final DetectorProfile profile;
+    private final int detectionSize;
+
+    public ResultKey(long contentHash, DetectorProfile profile, int detectionSize) {
+        this.contentHash = contentHash;
+        this.profile = profile;
+        this.detectionSize = detectionSize;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public DetectorProfile getProfile() {
+        return profile;
+    }
+
+    public int getDetectionSize() {
+        return detectionSize;
+    }
+
+    /**
+     * A file name unique to the key.
+     */
+    public String toFileName() {
+        return Long.toHexString(contentHash) + '-' + profile.name().toLowerCase() + '-' + detectionSize + FaceResultStore.SUFFIX;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof ResultKey)) {
+            return false;
+        }
+        ResultKey other = (ResultKey) o;
+        return contentHash == other.contentHash && profile == other.profile && detectionSize == other.detectionSize;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (contentHash ^ (contentHash >>> 32));
+        result = 31 * result + profile.hashCode();
+        return 31 * result + detectionSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultKey{" + Long.toHexString(contentHash) + ", " + profile + ", " + detectionSize + "}";
+    }
+}
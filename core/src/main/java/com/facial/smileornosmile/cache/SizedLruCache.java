@@ -0,0 +1,134 @@
+package com.facial.smileornosmile.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps values up to a total size, dropping the least recently used ones beyond it. Values are
+ * only forgotten, never closed or recycled, as they may still be in use elsewhere. Thread safe.
+ */
+public class SizedLruCache<K, V> {
+
+    public interface Sizer<V> {
+        /**
+         * The size of {@code value} in whatever unit the maximum is given in, usually bytes.
+         */
+        long sizeOf(V value);
+    }
+
+    private final Sizer<V> sizer;
+    private final LinkedHashMap<K, V> values = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxSize;
+    private long size;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public SizedLruCache(long maxSize, Sizer<V> sizer) {
+        if(maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.sizer = sizer;
+    }
+
+    /**
+     * Returns the value for {@code key} and makes it the most recently used, or null.
+     */
+    public synchronized V get(K key) {
+        V value = values.get(key);
+        if(value != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return value;
+    }
+
+    /**
+     * Caches {@code value}, replacing the one for {@code key}. A value larger than the whole cache
+     * is not kept.
+     */
+    public synchronized void put(K key, V value) {
+        V previous = values.remove(key);
+        if(previous != null) {
+            size -= sizer.sizeOf(previous);
+        }
+        long valueSize = sizer.sizeOf(value);
+        if(valueSize > maxSize) {
+            return;
+        }
+        values.put(key, value);
+        size += valueSize;
+        trim();
+    }
+
+    public synchronized V remove(K key) {
+        V value = values.remove(key);
+        if(value != null) {
+            size -= sizer.sizeOf(value);
+        }
+        return value;
+    }
+
+    /**
+     * Changes the maximum, for example to shrink the cache when memory runs low.
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        if(maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        trim();
+    }
+
+    public synchronized void clear() {
+        values.clear();
+        size = 0;
+    }
+
+    public synchronized int getCount() {
+        return values.size();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SizedLruCache{count=" + values.size()
+                + ", size=" + size + "/" + maxSize
+                + ", hits=" + hitCount
+                + ", misses=" + missCount
+                + ", evictions=" + evictionCount
+                + "}";
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<K, V>> iterator = values.entrySet().iterator();
+        while(size > maxSize && iterator.hasNext()) {
+            size -= sizer.sizeOf(iterator.next().getValue());
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.facial.smileornosmile.classify;
+
+/**
+ * How close a {@link GeometricModel} comes to the detector's classifier on calibration samples:
+ * the mean absolute difference of the probabilities, and how often both fall on the same side of
+ * 0.5. Eyes count left and right eyes as samples of their own.
+ */
+public final class CalibrationReport {
+    private final int faces;
+    private final float smileError;
+    private final float smileAgreement;
+    private final float eyeError;
+    private final float eyeAgreement;
+
+    CalibrationReport(int faces, float smileError, float smileAgreement, float eyeError, float eyeAgreement) {
+        this.faces = faces;
+        this.smileError = smileError;
+        this.smileAgreement = smileAgreement;
+        this.eyeError = eyeError;
+        this.eyeAgreement = eyeAgreement;
+    }
+
+    public int getFaceCount() {
+        return faces;
+    }
+
+    public float getSmileMeanAbsoluteError() {
+        return smileError;
+    }
+
+    /**
+     * The share of faces both call smiling or both call not smiling, 0 to 1.
+     */
+    public float getSmileAgreement() {
+        return smileAgreement;
+    }
+
+    public float getEyeMeanAbsoluteError() {
+        return eyeError;
+    }
+
+    public float getEyeAgreement() {
+        return eyeAgreement;
+    }
+
+    @Override
+    public String toString() {
+        return "CalibrationReport{" + faces + " faces"
+                + ", smile error " + smileError + ", agreement " + Math.round(smileAgreement * 100f) + "%"
+                + ", eyes error " + eyeError + ", agreement " + Math.round(eyeAgreement * 100f) + "%}";
+    }
+}
@@ -0,0 +1,26 @@
+package com.facial.smileornosmile.classify;
+
+import com.facial.smileornosmile.detector.DetectorProfile;
+
+/**
+ * Where the smiling and eyes open probabilities of live faces come from.
+ */
+public enum ClassificationMode {
+    /** The detector's own classifier, in the profile the quality level asks for */
+    MODEL,
+    /**
+     * A {@link GeometricClassifier} on the contours of a contours only detection, which skips the
+     * classifier. Levels without contours keep the detector's classification.
+     */
+    GEOMETRIC;
+
+    /**
+     * The profile to detect live frames with instead of {@code levelProfile}.
+     */
+    public DetectorProfile getLiveProfile(DetectorProfile levelProfile) {
+        if(this == GEOMETRIC && levelProfile == DetectorProfile.LIVE_CLASSIFIED) {
+            return DetectorProfile.LIVE_CONTOURS;
+        }
+        return levelProfile;
+    }
+}
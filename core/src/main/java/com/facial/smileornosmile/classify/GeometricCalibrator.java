@@ -0,0 +1,242 @@
+package com.facial.smileornosmile.classify;
+
+import com.facial.smileornosmile.render.ContourTable;
+import com.facial.smileornosmile.replay.FrameRecording;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import java.util.Arrays;
+
+/**
+ * Fits a {@link GeometricModel} to the detector's classifier: collects the features of faces
+ * detected with contours and classification, like in a recording made with
+ * {@link com.facial.smileornosmile.detector.DetectorProfile#LIVE_CLASSIFIED}, together with the
+ * probabilities the classifier gave them, then fits both regressions to those probabilities by
+ * Newton's method on the cross entropy. Meant for the JVM, not the live path.
+ */
+public class GeometricCalibrator {
+    //Keeps the fit finite when the classifier is all but certain on separable samples
+    private static final double RIDGE = 1e-3;
+    private static final int MAX_ITERATIONS = 50;
+    private static final double TOLERANCE = 1e-6;
+
+    private final GeometricClassifier classifier;
+    private final float[] scratch = new float[GeometricClassifier.FEATURES];
+    private float[] features = new float[64 * GeometricClassifier.FEATURES];
+    private float[] smiling = new float[64];
+    private float[] leftEyeOpen = new float[64];
+    private float[] rightEyeOpen = new float[64];
+    private int count;
+
+    /**
+     * @param table the contours the calibration faces were detected with
+     */
+    public GeometricCalibrator(ContourTable table) {
+        classifier = new GeometricClassifier(table, GeometricModel.DEFAULT);
+    }
+
+    /**
+     * Adds the faces that have the contours needed and all three probabilities.
+     *
+     * @return how many faces were added
+     */
+    public int add(FaceObservations faces) {
+        int added = 0;
+        for(int face = 0; face < faces.size(); face++) {
+            float smile = faces.getSmilingProbability(face);
+            float left = faces.getLeftEyeOpenProbability(face);
+            float right = faces.getRightEyeOpenProbability(face);
+            if(smile < 0f || left < 0f || right < 0f || !classifier.measure(faces, face, scratch)) {
+                continue;
+            }
+            if(count == smiling.length) {
+                features = Arrays.copyOf(features, features.length * 2);
+                smiling = Arrays.copyOf(smiling, count * 2);
+                leftEyeOpen = Arrays.copyOf(leftEyeOpen, count * 2);
+                rightEyeOpen = Arrays.copyOf(rightEyeOpen, count * 2);
+            }
+            System.arraycopy(scratch, 0, features, count * GeometricClassifier.FEATURES, GeometricClassifier.FEATURES);
+            smiling[count] = smile;
+            leftEyeOpen[count] = left;
+            rightEyeOpen[count] = right;
+            count++;
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Adds the faces of every recorded result.
+     *
+     * @param scratch holds one result at a time, with room for the recorded contours
+     * @return how many faces were added
+     */
+    public int addRecording(FrameRecording recording, FaceObservations scratch) {
+        int added = 0;
+        for(int frame = 0; frame < recording.getFrameCount(); frame++) {
+            if(recording.readResults(recording.getTimestampNanos(frame), scratch)) {
+                added += add(scratch);
+            }
+        }
+        return added;
+    }
+
+    public int getFaceCount() {
+        return count;
+    }
+
+    /**
+     * Fits a model to the faces added so far.
+     *
+     * @throws IllegalStateException without faces
+     */
+    public GeometricModel fit() {
+        if(count == 0) {
+            throw new IllegalStateException("No faces to calibrate with");
+        }
+        double[] smileDesign = new double[count * GeometricModel.SMILE_WEIGHTS];
+        double[] smileTargets = new double[count];
+        double[] eyeDesign = new double[count * 2 * GeometricModel.EYE_WEIGHTS];
+        double[] eyeTargets = new double[count * 2];
+        for(int i = 0; i < count; i++) {
+            int row = i * GeometricModel.SMILE_WEIGHTS;
+            smileDesign[row] = 1.0;
+            smileDesign[row + 1] = feature(i, GeometricClassifier.CURVATURE);
+            smileDesign[row + 2] = feature(i, GeometricClassifier.MOUTH_WIDTH);
+            smileDesign[row + 3] = feature(i, GeometricClassifier.APERTURE);
+            smileTargets[i] = smiling[i];
+
+            row = i * 2 * GeometricModel.EYE_WEIGHTS;
+            eyeDesign[row] = 1.0;
+            eyeDesign[row + 1] = feature(i, GeometricClassifier.LEFT_EYE_ASPECT);
+            eyeDesign[row + 2] = 1.0;
+            eyeDesign[row + 3] = feature(i, GeometricClassifier.RIGHT_EYE_ASPECT);
+            eyeTargets[i * 2] = leftEyeOpen[i];
+            eyeTargets[i * 2 + 1] = rightEyeOpen[i];
+        }
+        return new GeometricModel(fitLogistic(smileDesign, smileTargets, GeometricModel.SMILE_WEIGHTS),
+                fitLogistic(eyeDesign, eyeTargets, GeometricModel.EYE_WEIGHTS));
+    }
+
+    /**
+     * Compares {@code model} with the classifier on the faces added so far, which only says how
+     * well it generalizes if they were not used to fit it.
+     */
+    public CalibrationReport evaluate(GeometricModel model) {
+        double smileError = 0;
+        double eyeError = 0;
+        int smileAgreed = 0;
+        int eyesAgreed = 0;
+        for(int i = 0; i < count; i++) {
+            float smile = model.getSmilingProbability(feature(i, GeometricClassifier.CURVATURE),
+                    feature(i, GeometricClassifier.MOUTH_WIDTH), feature(i, GeometricClassifier.APERTURE));
+            float left = model.getEyeOpenProbability(feature(i, GeometricClassifier.LEFT_EYE_ASPECT));
+            float right = model.getEyeOpenProbability(feature(i, GeometricClassifier.RIGHT_EYE_ASPECT));
+            smileError += Math.abs(smile - smiling[i]);
+            eyeError += Math.abs(left - leftEyeOpen[i]) + Math.abs(right - rightEyeOpen[i]);
+            smileAgreed += agree(smile, smiling[i]);
+            eyesAgreed += agree(left, leftEyeOpen[i]) + agree(right, rightEyeOpen[i]);
+        }
+        int faces = Math.max(count, 1);
+        return new CalibrationReport(count, (float) (smileError / faces), (float) smileAgreed / faces,
+                (float) (eyeError / (faces * 2)), (float) eyesAgreed / (faces * 2));
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    private float feature(int face, int feature) {
+        return features[face * GeometricClassifier.FEATURES + feature];
+    }
+
+    private static int agree(float estimate, float target) {
+        return (estimate >= 0.5f) == (target >= 0.5f) ? 1 : 0;
+    }
+
+    /**
+     * Logistic regression with soft targets: the weights minimizing the cross entropy between
+     * {@code targets} and the sigmoid of the rows of {@code design}, plus a small ridge.
+     */
+    static float[] fitLogistic(double[] design, double[] targets, int dims) {
+        int rows = targets.length;
+        double[] weights = new double[dims];
+        double[] gradient = new double[dims];
+        double[] hessian = new double[dims * dims];
+        for(int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            for(int i = 0; i < dims; i++) {
+                gradient[i] = RIDGE * weights[i];
+                Arrays.fill(hessian, i * dims, (i + 1) * dims, 0.0);
+                hessian[i * dims + i] = RIDGE;
+            }
+            for(int r = 0; r < rows; r++) {
+                double logit = 0;
+                for(int i = 0; i < dims; i++) {
+                    logit += weights[i] * design[r * dims + i];
+                }
+                double p = 1.0 / (1.0 + Math.exp(-logit));
+                double residual = p - targets[r];
+                double curvature = p * (1.0 - p);
+                for(int i = 0; i < dims; i++) {
+                    double x = design[r * dims + i];
+                    gradient[i] += residual * x;
+                    for(int j = 0; j < dims; j++) {
+                        hessian[i * dims + j] += curvature * x * design[r * dims + j];
+                    }
+                }
+            }
+            solve(hessian, gradient, dims);
+            double step = 0;
+            for(int i = 0; i < dims; i++) {
+                weights[i] -= gradient[i];
+                step = Math.max(step, Math.abs(gradient[i]));
+            }
+            if(step < TOLERANCE) {
+                break;
+            }
+        }
+        float[] fitted = new float[dims];
+        for(int i = 0; i < dims; i++) {
+            fitted[i] = (float) weights[i];
+        }
+        return fitted;
+    }
+
+    /**
+     * Solves {@code matrix x = vector} into {@code vector} by Gaussian elimination with partial
+     * pivoting, destroying {@code matrix}.
+     */
+    private static void solve(double[] matrix, double[] vector, int n) {
+        for(int column = 0; column < n; column++) {
+            int pivot = column;
+            for(int row = column + 1; row < n; row++) {
+                if(Math.abs(matrix[row * n + column]) > Math.abs(matrix[pivot * n + column])) {
+                    pivot = row;
+                }
+            }
+            if(pivot != column) {
+                for(int j = 0; j < n; j++) {
+                    double swap = matrix[column * n + j];
+                    matrix[column * n + j] = matrix[pivot * n + j];
+                    matrix[pivot * n + j] = swap;
+                }
+                double swap = vector[column];
+                vector[column] = vector[pivot];
+                vector[pivot] = swap;
+            }
+            for(int row = column + 1; row < n; row++) {
+                double factor = matrix[row * n + column] / matrix[column * n + column];
+                for(int j = column; j < n; j++) {
+                    matrix[row * n + j] -= factor * matrix[column * n + j];
+                }
+                vector[row] -= factor * vector[column];
+            }
+        }
+        for(int row = n - 1; row >= 0; row--) {
+            double sum = vector[row];
+            for(int j = row + 1; j < n; j++) {
+                sum -= matrix[row * n + j] * vector[j];
+            }
+            vector[row] = sum / matrix[row * n + row];
+        }
+    }
+}
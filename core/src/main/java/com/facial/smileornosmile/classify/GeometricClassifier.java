@@ -0,0 +1,206 @@
+package com.facial.smileornosmile.classify;
+
+import com.facial.smileornosmile.detector.FaceContourType;
+import com.facial.smileornosmile.render.ContourTable;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+/**
+ * Estimates the smiling and eyes open probabilities of a face from its contours, so live
+ * detection can skip the detector's classifier. Measures, in eye distances so the face size does
+ * not matter and along the eye line so head roll does not either:
+ * <ul>
+ *     <li>curvature: how far the middle of the mouth is below its corners</li>
+ *     <li>mouth width: from corner to corner</li>
+ *     <li>aperture: from the bottom of the upper lip to the top of the lower lip</li>
+ *     <li>eye aspect: the narrowest over the widest diameter of each eye contour</li>
+ * </ul>
+ * and turns them into probabilities with a {@link GeometricModel}. Needs the eye contours, the
+ * bottom of the upper lip and the top of the lower lip, as in {@link ContourTable#LIVE_OVERLAY}.
+ *
+ * Allocates nothing after construction. Not thread safe, one per thread.
+ */
+public class GeometricClassifier {
+    public static final int CURVATURE = 0;
+    public static final int MOUTH_WIDTH = 1;
+    public static final int APERTURE = 2;
+    public static final int LEFT_EYE_ASPECT = 3;
+    public static final int RIGHT_EYE_ASPECT = 4;
+    public static final int FEATURES = 5;
+
+    //Fewer points do not outline an eye or a lip
+    private static final int MIN_EYE_POINTS = 8;
+    private static final int MIN_LIP_POINTS = 3;
+    private static final float MIN_EYE_DISTANCE = 1e-3f;
+
+    private final ContourTable table;
+    private final GeometricModel model;
+    private final int leftEye;
+    private final int rightEye;
+    private final int upperLip;
+    private final int lowerLip;
+    private final float[] features = new float[FEATURES];
+
+    /**
+     * @param table the contours faces are detected with, in this order
+     */
+    public GeometricClassifier(ContourTable table, GeometricModel model) {
+        this.table = table;
+        this.model = model;
+        leftEye = indexOf(table, FaceContourType.LEFT_EYE);
+        rightEye = indexOf(table, FaceContourType.RIGHT_EYE);
+        upperLip = indexOf(table, FaceContourType.UPPER_LIP_BOTTOM);
+        lowerLip = indexOf(table, FaceContourType.LOWER_LIP_TOP);
+    }
+
+    /**
+     * Whether the table has every contour needed.
+     */
+    public boolean canClassify() {
+        return leftEye >= 0 && rightEye >= 0 && upperLip >= 0 && lowerLip >= 0;
+    }
+
+    public ContourTable getContourTable() {
+        return table;
+    }
+
+    public GeometricModel getModel() {
+        return model;
+    }
+
+    /**
+     * Fills in the probabilities of the faces the detector did not classify and that have the
+     * contours needed. Faces already classified are left as they are.
+     *
+     * @return how many faces were classified
+     */
+    public int classify(FaceObservations faces) {
+        int classified = 0;
+        for(int face = 0; face < faces.size(); face++) {
+            if(faces.getSmilingProbability(face) != FaceObservations.UNCOMPUTED || !measure(faces, face, features)) {
+                continue;
+            }
+            faces.setClassification(face,
+                    model.getSmilingProbability(features[CURVATURE], features[MOUTH_WIDTH], features[APERTURE]),
+                    model.getEyeOpenProbability(features[LEFT_EYE_ASPECT]),
+                    model.getEyeOpenProbability(features[RIGHT_EYE_ASPECT]));
+            classified++;
+        }
+        return classified;
+    }
+
+    /**
+     * Measures the {@link #FEATURES} of {@code face} into {@code out}, indexed by {@link #CURVATURE} and the like.
+     *
+     * @return false, leaving {@code out} undefined, if the face lacks a contour needed or its eyes coincide
+     */
+    public boolean measure(FaceObservations faces, int face, float[] out) {
+        if(!canClassify()) {
+            return false;
+        }
+        int leftEyeStart = -1;
+        int rightEyeStart = -1;
+        int upperLipStart = -1;
+        int lowerLipStart = -1;
+        int start = 0;
+        for(int c = 0; c < faces.getContourCount(face); c++) {
+            if(c == leftEye) {
+                leftEyeStart = start;
+            } else if(c == rightEye) {
+                rightEyeStart = start;
+            } else if(c == upperLip) {
+                upperLipStart = start;
+            } else if(c == lowerLip) {
+                lowerLipStart = start;
+            }
+            start += faces.getContourPointCount(face, c);
+        }
+        if(leftEyeStart < 0 || rightEyeStart < 0 || upperLipStart < 0 || lowerLipStart < 0) {
+            return false;
+        }
+        int leftEyePoints = faces.getContourPointCount(face, leftEye);
+        int rightEyePoints = faces.getContourPointCount(face, rightEye);
+        int upperLipPoints = faces.getContourPointCount(face, upperLip);
+        int lowerLipPoints = faces.getContourPointCount(face, lowerLip);
+        if(leftEyePoints < MIN_EYE_POINTS || rightEyePoints < MIN_EYE_POINTS
+                || upperLipPoints < MIN_LIP_POINTS || lowerLipPoints < MIN_LIP_POINTS) {
+            return false;
+        }
+
+        float leftX = meanX(faces, face, leftEyeStart, leftEyePoints);
+        float leftY = meanY(faces, face, leftEyeStart, leftEyePoints);
+        float rightX = meanX(faces, face, rightEyeStart, rightEyePoints);
+        float rightY = meanY(faces, face, rightEyeStart, rightEyePoints);
+        float eyeDistance = (float) Math.hypot(rightX - leftX, rightY - leftY);
+        if(eyeDistance < MIN_EYE_DISTANCE) {
+            return false;
+        }
+
+        int firstCorner = upperLipStart;
+        int lastCorner = upperLipStart + upperLipPoints - 1;
+        int upperMiddle = upperLipStart + upperLipPoints / 2;
+        int lowerMiddle = lowerLipStart + lowerLipPoints / 2;
+        float cornersX = (faces.getPointX(face, firstCorner) + faces.getPointX(face, lastCorner)) / 2f;
+        float cornersY = (faces.getPointY(face, firstCorner) + faces.getPointY(face, lastCorner)) / 2f;
+        float middleX = (faces.getPointX(face, upperMiddle) + faces.getPointX(face, lowerMiddle)) / 2f;
+        float middleY = (faces.getPointY(face, upperMiddle) + faces.getPointY(face, lowerMiddle)) / 2f;
+
+        //Down the face: across the eye line, towards the mouth whichever way the image is turned or mirrored
+        float downX = -(rightY - leftY) / eyeDistance;
+        float downY = (rightX - leftX) / eyeDistance;
+        if((middleX - (leftX + rightX) / 2f) * downX + (middleY - (leftY + rightY) / 2f) * downY < 0f) {
+            downX = -downX;
+            downY = -downY;
+        }
+
+        out[CURVATURE] = ((middleX - cornersX) * downX + (middleY - cornersY) * downY) / eyeDistance;
+        out[MOUTH_WIDTH] = (float) Math.hypot(faces.getPointX(face, lastCorner) - faces.getPointX(face, firstCorner),
+                faces.getPointY(face, lastCorner) - faces.getPointY(face, firstCorner)) / eyeDistance;
+        out[APERTURE] = ((faces.getPointX(face, lowerMiddle) - faces.getPointX(face, upperMiddle)) * downX
+                + (faces.getPointY(face, lowerMiddle) - faces.getPointY(face, upperMiddle)) * downY) / eyeDistance;
+        out[LEFT_EYE_ASPECT] = eyeAspect(faces, face, leftEyeStart, leftEyePoints);
+        out[RIGHT_EYE_ASPECT] = eyeAspect(faces, face, rightEyeStart, rightEyePoints);
+        return true;
+    }
+
+    /**
+     * The narrowest over the widest of the diameters between opposite points, whichever point the
+     * contour starts at.
+     */
+    private static float eyeAspect(FaceObservations faces, int face, int start, int points) {
+        int half = points / 2;
+        float narrowest = Float.MAX_VALUE;
+        float widest = 0f;
+        for(int i = 0; i < half; i++) {
+            float diameter = (float) Math.hypot(faces.getPointX(face, start + i + half) - faces.getPointX(face, start + i),
+                    faces.getPointY(face, start + i + half) - faces.getPointY(face, start + i));
+            narrowest = Math.min(narrowest, diameter);
+            widest = Math.max(widest, diameter);
+        }
+        return widest == 0f ? 0f : narrowest / widest;
+    }
+
+    private static float meanX(FaceObservations faces, int face, int start, int points) {
+        float sum = 0f;
+        for(int i = start; i < start + points; i++) {
+            sum += faces.getPointX(face, i);
+        }
+        return sum / points;
+    }
+
+    private static float meanY(FaceObservations faces, int face, int start, int points) {
+        float sum = 0f;
+        for(int i = start; i < start + points; i++) {
+            sum += faces.getPointY(face, i);
+        }
+        return sum / points;
+    }
+
+    private static int indexOf(ContourTable table, int type) {
+        for(int i = 0; i < table.size(); i++) {
+            if(table.getType(i) == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
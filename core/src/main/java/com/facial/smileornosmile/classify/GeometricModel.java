@@ -0,0 +1,67 @@
+package com.facial.smileornosmile.classify;
+
+import java.util.Arrays;
+
+/**
+ * Logistic regressions from the features of a {@link GeometricClassifier} to probabilities:
+ * <pre>
+ *     smiling  = sigmoid(s0 + s1 * curvature + s2 * mouthWidth + s3 * aperture)
+ *     eyeOpen  = sigmoid(e0 + e1 * eyeAspect)
+ * </pre>
+ * with one eye regression for both eyes. Immutable.
+ */
+public final class GeometricModel {
+    public static final int SMILE_WEIGHTS = 4;
+    public static final int EYE_WEIGHTS = 2;
+
+    /**
+     * Hand set from typical face proportions: a neutral mouth about 0.8 eye distances wide with
+     * level corners scores below 0.1, a smile a fifth wider with raised corners above 0.8; an
+     * eye is half open at an aspect of 0.2. Replace with a {@link GeometricCalibrator} fit
+     * against the detector's classifier before relying on it.
+     */
+    public static final GeometricModel DEFAULT = new GeometricModel(
+            new float[]{-9f, 40f, 8f, 2f},
+            new float[]{-10f, 50f});
+
+    private final float[] smileWeights;
+    private final float[] eyeWeights;
+
+    /**
+     * @param smileWeights bias, curvature, mouth width and aperture weights
+     * @param eyeWeights   bias and eye aspect weights
+     */
+    public GeometricModel(float[] smileWeights, float[] eyeWeights) {
+        if(smileWeights.length != SMILE_WEIGHTS || eyeWeights.length != EYE_WEIGHTS) {
+            throw new IllegalArgumentException("Need " + SMILE_WEIGHTS + " smile and " + EYE_WEIGHTS + " eye weights");
+        }
+        this.smileWeights = smileWeights.clone();
+        this.eyeWeights = eyeWeights.clone();
+    }
+
+    public float getSmilingProbability(float curvature, float mouthWidth, float aperture) {
+        return sigmoid(smileWeights[0] + smileWeights[1] * curvature + smileWeights[2] * mouthWidth
+                + smileWeights[3] * aperture);
+    }
+
+    public float getEyeOpenProbability(float eyeAspect) {
+        return sigmoid(eyeWeights[0] + eyeWeights[1] * eyeAspect);
+    }
+
+    public float getSmileWeight(int index) {
+        return smileWeights[index];
+    }
+
+    public float getEyeWeight(int index) {
+        return eyeWeights[index];
+    }
+
+    @Override
+    public String toString() {
+        return "GeometricModel{smile " + Arrays.toString(smileWeights) + ", eye " + Arrays.toString(eyeWeights) + "}";
+    }
+
+    static float sigmoid(float logit) {
+        return (float) (1.0 / (1.0 + Math.exp(-logit)));
+    }
+}
@@ -0,0 +1,119 @@
+package com.facial.smileornosmile.detector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An image handed to a {@link FaceDetectorBackend}: either an NV21 camera frame or an image
+ * type of the platform, like an Android bitmap, that only platform backends understand.
+ * Images cut from a live frame also know which frame and where in it, see {@link #fromFrame}.
+ */
+public final class DetectionImage {
+    public static final long NO_FRAME = -1;
+
+    private final ByteBuffer nv21;
+    private final Object platformImage;
+    private final int width;
+    private final int height;
+    private final int rotation;
+    private final long frameTimestampNanos;
+    private final float frameScale;
+    private final float frameOffsetX;
+    private final float frameOffsetY;
+
+    private DetectionImage(ByteBuffer nv21, Object platformImage, int width, int height, int rotation,
+                           long frameTimestampNanos, float frameScale, float frameOffsetX, float frameOffsetY) {
+        this.nv21 = nv21;
+        this.platformImage = platformImage;
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+        this.frameTimestampNanos = frameTimestampNanos;
+        this.frameScale = frameScale;
+        this.frameOffsetX = frameOffsetX;
+        this.frameOffsetY = frameOffsetY;
+    }
+
+    /**
+     * @param rotation clockwise rotation in degrees that makes the frame upright
+     */
+    public static DetectionImage nv21(byte[] data, int width, int height, int rotation) {
+        return nv21(ByteBuffer.wrap(data), width, height, rotation);
+    }
+
+    /**
+     * An NV21 frame from position 0 of {@code data}, preferably a direct buffer that native
+     * detectors can read without copying it first. The buffer must stay unchanged until the
+     * detection finished.
+     *
+     * @param rotation clockwise rotation in degrees that makes the frame upright
+     */
+    public static DetectionImage nv21(ByteBuffer data, int width, int height, int rotation) {
+        if(rotation % 90 != 0) {
+            throw new IllegalArgumentException("rotation must be a multiple of 90: " + rotation);
+        }
+        return new DetectionImage(data, null, width, height, ((rotation % 360) + 360) % 360, NO_FRAME, 1f, 0f, 0f);
+    }
+
+    /**
+     * An upright image of the platform.
+     */
+    public static DetectionImage platform(Object image, int width, int height) {
+        return new DetectionImage(null, image, width, height, 0, NO_FRAME, 1f, 0f, 0f);
+    }
+
+    /**
+     * The same image, cut from the live frame of {@code timestampNanos}. Upright coordinates of
+     * this image map to the frame with {@code x * scale + offsetX, y * scale + offsetY}.
+     */
+    public DetectionImage fromFrame(long timestampNanos, float scale, float offsetX, float offsetY) {
+        return new DetectionImage(nv21, platformImage, width, height, rotation, timestampNanos, scale, offsetX, offsetY);
+    }
+
+    public boolean isNv21() {
+        return nv21 != null;
+    }
+
+    /**
+     * The NV21 data, shared with whoever created the image. Read it through a
+     * {@link ByteBuffer#duplicate()} or with absolute gets.
+     */
+    public ByteBuffer getNv21() {
+        return nv21;
+    }
+
+    public Object getPlatformImage() {
+        return platformImage;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public boolean hasFrame() {
+        return frameTimestampNanos != NO_FRAME;
+    }
+
+    public long getFrameTimestampNanos() {
+        return frameTimestampNanos;
+    }
+
+    public float getFrameScale() {
+        return frameScale;
+    }
+
+    public float getFrameOffsetX() {
+        return frameOffsetX;
+    }
+
+    public float getFrameOffsetY() {
+        return frameOffsetY;
+    }
+}
@@ -0,0 +1,160 @@
+package com.facial.smileornosmile.detector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps detectors alive between calls, keyed by the options they were built with.
+ * The least recently used detector is closed once more than {@code maxSize} are cached.
+ */
+public class DetectorCache<K, D extends Closeable> implements Closeable {
+
+    public interface Factory<K, D> {
+        D create(K key);
+    }
+
+    private final Factory<K, D> factory;
+    private final int maxSize;
+    private final LinkedHashMap<K, D> detectors = new LinkedHashMap<>(8, 0.75f, true);
+    private boolean closed;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long totalCreationNanos;
+    private long lastCreationNanos;
+
+    public DetectorCache(Factory<K, D> factory, int maxSize) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1: " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cached detector for {@code key}, creating it on the first call.
+     */
+    public D get(K key) {
+        List<D> evicted = null;
+        D detector;
+
+        synchronized (this) {
+            if(closed) {
+                throw new IllegalStateException("DetectorCache is closed");
+            }
+            detector = detectors.get(key);
+            if(detector != null) {
+                hitCount++;
+                return detector;
+            }
+
+            missCount++;
+            long start = System.nanoTime();
+            detector = factory.create(key);
+            lastCreationNanos = System.nanoTime() - start;
+            totalCreationNanos += lastCreationNanos;
+            detectors.put(key, detector);
+
+            Iterator<Map.Entry<K, D>> iterator = detectors.entrySet().iterator();
+            while(detectors.size() > maxSize && iterator.hasNext()) {
+                if(evicted == null) {
+                    evicted = new ArrayList<>();
+                }
+                evicted.add(iterator.next().getValue());
+                iterator.remove();
+                evictionCount++;
+            }
+        }
+
+        if(evicted != null) {
+            for(D old : evicted) {
+                closeQuietly(old);
+            }
+        }
+        return detector;
+    }
+
+    public synchronized boolean contains(K key) {
+        return detectors.containsKey(key);
+    }
+
+    /**
+     * Closes and forgets the detector for {@code key}, if cached.
+     */
+    public void evict(K key) {
+        D detector;
+        synchronized (this) {
+            detector = detectors.remove(key);
+            if(detector != null) {
+                evictionCount++;
+            }
+        }
+        if(detector != null) {
+            closeQuietly(detector);
+        }
+    }
+
+    /**
+     * Closes every cached detector. The cache can not be used afterwards.
+     */
+    @Override
+    public void close() {
+        List<D> all;
+        synchronized (this) {
+            closed = true;
+            all = new ArrayList<>(detectors.values());
+            detectors.clear();
+        }
+        for(D detector : all) {
+            closeQuietly(detector);
+        }
+    }
+
+    public synchronized int size() {
+        return detectors.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getTotalCreationNanos() {
+        return totalCreationNanos;
+    }
+
+    public synchronized long getLastCreationNanos() {
+        return lastCreationNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DetectorCache{size=" + detectors.size()
+                + ", hits=" + hitCount
+                + ", misses=" + missCount
+                + ", evictions=" + evictionCount
+                + ", creationMs=" + (totalCreationNanos / 1000000)
+                + "}";
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.facial.smileornosmile.detector;
+
+import com.facial.smileornosmile.render.ContourTable;
+
+/**
+ * The kinds of detection the app asks for. Backends map each profile to their own options
+ * and may keep one detector per profile.
+ */
+public enum DetectorProfile {
+    /** Camera preview, contours only */
+    LIVE_CONTOURS(ContourTable.LIVE_OVERLAY, false, false, false),
+    /** Camera preview, contours plus smile / eyes open classification in fast mode */
+    LIVE_CLASSIFIED(ContourTable.LIVE_OVERLAY, false, false, true),
+    /** Camera preview without contours, only boxes and classification, the cheapest live option */
+    LIVE_LIGHT(ContourTable.NONE, false, false, true),
+    /** Picked images, accurate mode with landmarks and smile / eyes open classification */
+    STATIC_ACCURATE(ContourTable.NONE, true, true, true),
+    /** Picked images, same as {@link #STATIC_ACCURATE} in fast mode */
+    STATIC_FAST(ContourTable.NONE, false, true, true);
+
+    private final ContourTable contourTable;
+    private final boolean accurate;
+    private final boolean landmarks;
+    private final boolean classification;
+
+    DetectorProfile(ContourTable contourTable, boolean accurate, boolean landmarks, boolean classification) {
+        this.contourTable = contourTable;
+        this.accurate = accurate;
+        this.landmarks = landmarks;
+        this.classification = classification;
+    }
+
+    /**
+     * The contours results are reported with, in this order.
+     */
+    public ContourTable getContourTable() {
+        return contourTable;
+    }
+
+    /**
+     * Whether accuracy matters more than speed.
+     */
+    public boolean isAccurate() {
+        return accurate;
+    }
+
+    public boolean hasLandmarks() {
+        return landmarks;
+    }
+
+    public boolean hasClassification() {
+        return classification;
+    }
+}
@@ -0,0 +1,24 @@
+package com.facial.smileornosmile.detector;
+
+/**
+ * Contour ids, numbered like {@code FirebaseVisionFaceContour} so they can be passed through
+ * unchanged, but usable from plain Java code.
+ */
+public final class FaceContourType {
+    public static final int FACE = 2;
+    public static final int LEFT_EYEBROW_TOP = 3;
+    public static final int LEFT_EYEBROW_BOTTOM = 4;
+    public static final int RIGHT_EYEBROW_TOP = 5;
+    public static final int RIGHT_EYEBROW_BOTTOM = 6;
+    public static final int LEFT_EYE = 7;
+    public static final int RIGHT_EYE = 8;
+    public static final int UPPER_LIP_TOP = 9;
+    public static final int UPPER_LIP_BOTTOM = 10;
+    public static final int LOWER_LIP_TOP = 11;
+    public static final int LOWER_LIP_BOTTOM = 12;
+    public static final int NOSE_BRIDGE = 13;
+    public static final int NOSE_BOTTOM = 14;
+
+    private FaceContourType() {
+    }
+}
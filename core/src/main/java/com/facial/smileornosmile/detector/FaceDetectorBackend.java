@@ -0,0 +1,46 @@
+package com.facial.smileornosmile.detector;
+
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import java.io.Closeable;
+import java.util.concurrent.Executor;
+
+/**
+ * Something that finds faces in images. Results come back asynchronously as
+ * {@link FaceObservations} in upright image coordinates, with the contours of the profile's
+ * {@link DetectorProfile#getContourTable() table}; probabilities a backend does not compute are
+ * {@link FaceObservations#UNCOMPUTED}.
+ */
+public interface FaceDetectorBackend extends Closeable {
+
+    interface Callback {
+        void onDetected(FaceObservations results);
+
+        void onFailed(Exception e);
+    }
+
+    /**
+     * Short name for logs and benchmark reports.
+     */
+    String getName();
+
+    /**
+     * Prepares the detector of {@code profile} so the first real detection is not slowed down
+     * by loading it. Optional, detection works without it.
+     */
+    void warmUp(DetectorProfile profile);
+
+    /**
+     * Detects the faces in {@code image}. The results are written to {@code results}, which
+     * the caller must leave alone until one of the callback methods runs on {@code callbackExecutor}.
+     * The image data must stay valid until then as well.
+     */
+    void detect(DetectionImage image, DetectorProfile profile, FaceObservations results,
+                Executor callbackExecutor, Callback callback);
+
+    /**
+     * Frees the detectors, no detections can be started afterwards.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,30 @@
+package com.facial.smileornosmile.detector;
+
+/**
+ * Landmark ids, numbered like {@code FirebaseVisionFaceLandmark} so they can be passed through
+ * unchanged, but usable from plain Java code.
+ */
+public final class FaceLandmarkType {
+    public static final int MOUTH_BOTTOM = 0;
+    public static final int LEFT_CHEEK = 1;
+    public static final int LEFT_EAR = 3;
+    public static final int LEFT_EYE = 4;
+    public static final int MOUTH_LEFT = 5;
+    public static final int NOSE_BASE = 6;
+    public static final int RIGHT_CHEEK = 7;
+    public static final int RIGHT_EAR = 9;
+    public static final int RIGHT_EYE = 10;
+    public static final int MOUTH_RIGHT = 11;
+
+    /** One more than the largest id, the size of a table indexed by landmark id */
+    public static final int SLOTS = 12;
+
+    /** Every id in use, for copying all landmarks of a face */
+    public static final int[] ALL = {
+            MOUTH_BOTTOM, LEFT_CHEEK, LEFT_EAR, LEFT_EYE, MOUTH_LEFT,
+            NOSE_BASE, RIGHT_CHEEK, RIGHT_EAR, RIGHT_EYE, MOUTH_RIGHT
+    };
+
+    private FaceLandmarkType() {
+    }
+}
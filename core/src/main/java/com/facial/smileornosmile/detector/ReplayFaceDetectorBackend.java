@@ -0,0 +1,114 @@
+package com.facial.smileornosmile.detector;
+
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deterministic backend that ignores the image and answers each detection with the next of
+ * a fixed list of results, looping at the end, after a fixed latency. Runs anywhere, so the
+ * pipeline can be tested and benchmarked without a device or Play services.
+ */
+public class ReplayFaceDetectorBackend implements FaceDetectorBackend {
+    private final List<FaceObservations> frames;
+    private final long latencyNanos;
+    private final ExecutorService worker;
+    private int next;
+    private long detections;
+    private boolean closed;
+
+    /**
+     * @param frames       the results to replay, copied on each detection
+     * @param latencyNanos how long each detection takes, 0 to answer right away
+     */
+    public ReplayFaceDetectorBackend(List<FaceObservations> frames, long latencyNanos) {
+        if(frames.isEmpty()) {
+            throw new IllegalArgumentException("frames must not be empty");
+        }
+        this.frames = new ArrayList<>(frames);
+        this.latencyNanos = latencyNanos;
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "replay-detector");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public String getName() {
+        return "replay";
+    }
+
+    @Override
+    public void warmUp(DetectorProfile profile) {
+    }
+
+    @Override
+    public void detect(DetectionImage image, DetectorProfile profile, final FaceObservations results,
+                       final Executor callbackExecutor, final Callback callback) {
+        final FaceObservations frame;
+        synchronized(this) {
+            if(closed) {
+                throw new IllegalStateException("Backend is closed");
+            }
+            frame = frames.get(next);
+            next = (next + 1) % frames.size();
+            detections++;
+        }
+        try {
+            worker.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if(latencyNanos > 0) {
+                        try {
+                            TimeUnit.NANOSECONDS.sleep(latencyNanos);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            fail(callbackExecutor, callback, e);
+                            return;
+                        }
+                    }
+                    // Results are only touched on the callback executor, like the platform backends do
+                    callbackExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            results.copyFrom(frame);
+                            callback.onDetected(results);
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fail(callbackExecutor, callback, e);
+        }
+    }
+
+    private static void fail(Executor callbackExecutor, final Callback callback, final Exception e) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onFailed(e);
+            }
+        });
+    }
+
+    public synchronized long getDetectionCount() {
+        return detections;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        worker.shutdownNow();
+    }
+}
@@ -0,0 +1,15 @@
+package com.facial.smileornosmile.events;
+
+/**
+ * What {@link SmileEventEngine} reports. Per face events carry the face id, rule events -1.
+ */
+public enum SmileEvent {
+    SMILE_STARTED,
+    SMILE_ENDED,
+    EYES_OPENED,
+    EYES_CLOSED,
+    /** Every face has been smiling with open eyes for the rule's hold time */
+    RULE_FIRED,
+    /** The rule stopped holding after it fired, it can fire again */
+    RULE_RESET
+}
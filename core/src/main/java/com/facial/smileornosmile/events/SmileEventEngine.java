@@ -0,0 +1,254 @@
+package com.facial.smileornosmile.events;
+
+/**
+ * Turns per frame smile and eyes open probabilities into {@link SmileEvent}s, following a
+ * {@link SmileRule}. Fed once per detection:
+ * <pre>
+ *     engine.beginFrame(timestampNanos);
+ *     for(each face) engine.addFace(id, smiling, leftEyeOpen, rightEyeOpen);
+ *     engine.endFrame();
+ * </pre>
+ * Face state lives in fixed slots matched by id, faces missing from a frame are forgotten.
+ * Nothing is allocated per frame. Not thread safe, meant to be confined to one thread.
+ */
+public class SmileEventEngine {
+
+    public interface Listener {
+        /**
+         * @param faceId the face a per face event is about, {@link #NO_FACE} for rule events
+         */
+        void onEvent(SmileEvent event, int faceId, long timestampNanos);
+    }
+
+    public static final int NO_FACE = -1;
+    private static final long NOT_PENDING = Long.MIN_VALUE;
+
+    private final Listener listener;
+    private final int maxFaces;
+    private SmileRule rule;
+
+    private final int[] ids;
+    private final boolean[] used;
+    private final boolean[] seen;
+    private final boolean[] smiling;
+    private final boolean[] eyesOpen;
+    private final boolean[] rawSmiling;
+    private final boolean[] rawEyesOpen;
+    private final long[] smileChangeSince;
+    private final long[] eyesChangeSince;
+
+    private long frameTimestampNanos;
+    private int frameFaces;
+    private int untrackedFaces;
+    private boolean inFrame;
+
+    private boolean holding;
+    private long holdingSinceNanos;
+    private boolean fired;
+    private boolean firedBefore;
+    private long lastFiredNanos;
+    private long firedCount;
+
+    public SmileEventEngine(SmileRule rule, int maxFaces, Listener listener) {
+        this.rule = rule;
+        this.maxFaces = maxFaces;
+        this.listener = listener;
+        ids = new int[maxFaces];
+        used = new boolean[maxFaces];
+        seen = new boolean[maxFaces];
+        smiling = new boolean[maxFaces];
+        eyesOpen = new boolean[maxFaces];
+        rawSmiling = new boolean[maxFaces];
+        rawEyesOpen = new boolean[maxFaces];
+        smileChangeSince = new long[maxFaces];
+        eyesChangeSince = new long[maxFaces];
+    }
+
+    public void beginFrame(long timestampNanos) {
+        frameTimestampNanos = timestampNanos;
+        frameFaces = 0;
+        untrackedFaces = 0;
+        inFrame = true;
+        for(int i = 0; i < maxFaces; i++) {
+            seen[i] = false;
+        }
+    }
+
+    /**
+     * Adds one face of the current frame. Probabilities below 0, like uncomputed ones, count
+     * as not smiling or not open.
+     */
+    public void addFace(int id, float smilingProbability, float leftEyeOpenProbability, float rightEyeOpenProbability) {
+        if(!inFrame) {
+            throw new IllegalStateException("addFace outside of beginFrame / endFrame");
+        }
+        frameFaces++;
+        int slot = findSlot(id);
+        if(slot < 0) {
+            // More faces than slots, the rule can not know they are all smiling
+            untrackedFaces++;
+            return;
+        }
+        seen[slot] = true;
+
+        rawSmiling[slot] = hysteresis(rawSmiling[slot], smilingProbability, rule.getSmileEnter(), rule.getSmileExit());
+        float eyes = leftEyeOpenProbability < 0f || rightEyeOpenProbability < 0f
+                ? -1f : Math.min(leftEyeOpenProbability, rightEyeOpenProbability);
+        rawEyesOpen[slot] = hysteresis(rawEyesOpen[slot], eyes, rule.getEyesEnter(), rule.getEyesExit());
+
+        if(rawSmiling[slot] != smiling[slot]) {
+            if(smileChangeSince[slot] == NOT_PENDING) {
+                smileChangeSince[slot] = frameTimestampNanos;
+            }
+            if(frameTimestampNanos - smileChangeSince[slot] >= rule.getDebounceNanos()) {
+                smiling[slot] = rawSmiling[slot];
+                smileChangeSince[slot] = NOT_PENDING;
+                emit(smiling[slot] ? SmileEvent.SMILE_STARTED : SmileEvent.SMILE_ENDED, id);
+            }
+        } else {
+            smileChangeSince[slot] = NOT_PENDING;
+        }
+
+        if(rawEyesOpen[slot] != eyesOpen[slot]) {
+            if(eyesChangeSince[slot] == NOT_PENDING) {
+                eyesChangeSince[slot] = frameTimestampNanos;
+            }
+            if(frameTimestampNanos - eyesChangeSince[slot] >= rule.getDebounceNanos()) {
+                eyesOpen[slot] = rawEyesOpen[slot];
+                eyesChangeSince[slot] = NOT_PENDING;
+                emit(eyesOpen[slot] ? SmileEvent.EYES_OPENED : SmileEvent.EYES_CLOSED, id);
+            }
+        } else {
+            eyesChangeSince[slot] = NOT_PENDING;
+        }
+    }
+
+    /**
+     * Forgets the faces missing from this frame and evaluates the rule.
+     */
+    public void endFrame() {
+        if(!inFrame) {
+            throw new IllegalStateException("endFrame without beginFrame");
+        }
+        inFrame = false;
+
+        boolean satisfied = frameFaces >= rule.getMinFaces() && untrackedFaces == 0;
+        for(int i = 0; i < maxFaces; i++) {
+            if(!used[i]) {
+                continue;
+            }
+            if(!seen[i]) {
+                used[i] = false;
+            } else if(!smiling[i] || !eyesOpen[i]) {
+                satisfied = false;
+            }
+        }
+
+        if(!satisfied) {
+            holding = false;
+            if(fired) {
+                fired = false;
+                emit(SmileEvent.RULE_RESET, NO_FACE);
+            }
+            return;
+        }
+        if(!holding) {
+            holding = true;
+            holdingSinceNanos = frameTimestampNanos;
+        }
+        if(!fired && frameTimestampNanos - holdingSinceNanos >= rule.getHoldNanos()
+                && (!firedBefore || frameTimestampNanos - lastFiredNanos >= rule.getCooldownNanos())) {
+            fired = true;
+            firedBefore = true;
+            lastFiredNanos = frameTimestampNanos;
+            firedCount++;
+            emit(SmileEvent.RULE_FIRED, NO_FACE);
+        }
+    }
+
+    /**
+     * Forgets all faces and the rule state, for example when the camera changes.
+     */
+    public void reset() {
+        for(int i = 0; i < maxFaces; i++) {
+            used[i] = false;
+        }
+        inFrame = false;
+        holding = false;
+        fired = false;
+    }
+
+    /**
+     * Replaces the rule. Face states are kept, the thresholds apply from the next frame on.
+     */
+    public void setRule(SmileRule rule) {
+        this.rule = rule;
+    }
+
+    public SmileRule getRule() {
+        return rule;
+    }
+
+    public boolean isSmiling(int id) {
+        int slot = indexOf(id);
+        return slot >= 0 && smiling[slot];
+    }
+
+    public boolean areEyesOpen(int id) {
+        int slot = indexOf(id);
+        return slot >= 0 && eyesOpen[slot];
+    }
+
+    public long getFiredCount() {
+        return firedCount;
+    }
+
+    private static boolean hysteresis(boolean current, float probability, float enter, float exit) {
+        if(probability < 0f) {
+            return false;
+        }
+        if(probability >= enter) {
+            return true;
+        }
+        if(probability < exit) {
+            return false;
+        }
+        return current;
+    }
+
+    private int indexOf(int id) {
+        for(int i = 0; i < maxFaces; i++) {
+            if(used[i] && ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int findSlot(int id) {
+        int slot = indexOf(id);
+        if(slot >= 0) {
+            return slot;
+        }
+        for(int i = 0; i < maxFaces; i++) {
+            if(!used[i]) {
+                used[i] = true;
+                ids[i] = id;
+                smiling[i] = false;
+                eyesOpen[i] = false;
+                rawSmiling[i] = false;
+                rawEyesOpen[i] = false;
+                smileChangeSince[i] = NOT_PENDING;
+                eyesChangeSince[i] = NOT_PENDING;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void emit(SmileEvent event, int faceId) {
+        if(listener != null) {
+            listener.onEvent(event, faceId, frameTimestampNanos);
+        }
+    }
+}
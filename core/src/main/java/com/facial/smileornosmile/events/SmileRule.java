@@ -0,0 +1,121 @@
+package com.facial.smileornosmile.events;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When {@link SmileEventEngine} considers a face smiling or its eyes open, and when it fires.
+ * A face starts smiling once its probability reaches the enter threshold and stops once it
+ * falls below the lower exit threshold, so values hovering around one threshold do not flicker.
+ * A change only counts after it held for the debounce time. The rule fires when at least
+ * {@code minFaces} faces are present and all of them have been smiling with open eyes for the
+ * hold time. Immutable, the {@code with} methods return changed copies.
+ */
+public final class SmileRule {
+    public static final float DEFAULT_SMILE_ENTER = 0.7f;
+    public static final float DEFAULT_SMILE_EXIT = 0.5f;
+    public static final float DEFAULT_EYES_ENTER = 0.6f;
+    public static final float DEFAULT_EYES_EXIT = 0.4f;
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 100;
+    public static final long DEFAULT_COOLDOWN_MILLIS = 2000;
+
+    private final float smileEnter;
+    private final float smileExit;
+    private final float eyesEnter;
+    private final float eyesExit;
+    private final long debounceNanos;
+    private final long holdNanos;
+    private final long cooldownNanos;
+    private final int minFaces;
+
+    private SmileRule(float smileEnter, float smileExit, float eyesEnter, float eyesExit,
+                      long debounceNanos, long holdNanos, long cooldownNanos, int minFaces) {
+        if(smileExit > smileEnter || eyesExit > eyesEnter) {
+            throw new IllegalArgumentException("Exit thresholds must not be above enter thresholds");
+        }
+        if(minFaces < 1) {
+            throw new IllegalArgumentException("minFaces must be at least 1: " + minFaces);
+        }
+        this.smileEnter = smileEnter;
+        this.smileExit = smileExit;
+        this.eyesEnter = eyesEnter;
+        this.eyesExit = eyesExit;
+        this.debounceNanos = debounceNanos;
+        this.holdNanos = holdNanos;
+        this.cooldownNanos = cooldownNanos;
+        this.minFaces = minFaces;
+    }
+
+    /**
+     * All faces smiling with eyes open for {@code hold}, with the default thresholds.
+     */
+    public static SmileRule everyoneSmilingWithEyesOpen(long hold, TimeUnit unit) {
+        return new SmileRule(DEFAULT_SMILE_ENTER, DEFAULT_SMILE_EXIT, DEFAULT_EYES_ENTER, DEFAULT_EYES_EXIT,
+                TimeUnit.MILLISECONDS.toNanos(DEFAULT_DEBOUNCE_MILLIS), unit.toNanos(hold),
+                TimeUnit.MILLISECONDS.toNanos(DEFAULT_COOLDOWN_MILLIS), 1);
+    }
+
+    public SmileRule withSmileThresholds(float enter, float exit) {
+        return new SmileRule(enter, exit, eyesEnter, eyesExit, debounceNanos, holdNanos, cooldownNanos, minFaces);
+    }
+
+    public SmileRule withEyesOpenThresholds(float enter, float exit) {
+        return new SmileRule(smileEnter, smileExit, enter, exit, debounceNanos, holdNanos, cooldownNanos, minFaces);
+    }
+
+    public SmileRule withDebounce(long debounce, TimeUnit unit) {
+        return new SmileRule(smileEnter, smileExit, eyesEnter, eyesExit, unit.toNanos(debounce), holdNanos, cooldownNanos, minFaces);
+    }
+
+    /**
+     * How long after firing the rule stays quiet, even if it stopped and started holding again.
+     */
+    public SmileRule withCooldown(long cooldown, TimeUnit unit) {
+        return new SmileRule(smileEnter, smileExit, eyesEnter, eyesExit, debounceNanos, holdNanos, unit.toNanos(cooldown), minFaces);
+    }
+
+    public SmileRule withMinFaces(int minFaces) {
+        return new SmileRule(smileEnter, smileExit, eyesEnter, eyesExit, debounceNanos, holdNanos, cooldownNanos, minFaces);
+    }
+
+    public float getSmileEnter() {
+        return smileEnter;
+    }
+
+    public float getSmileExit() {
+        return smileExit;
+    }
+
+    public float getEyesEnter() {
+        return eyesEnter;
+    }
+
+    public float getEyesExit() {
+        return eyesExit;
+    }
+
+    public long getDebounceNanos() {
+        return debounceNanos;
+    }
+
+    public long getHoldNanos() {
+        return holdNanos;
+    }
+
+    public long getCooldownNanos() {
+        return cooldownNanos;
+    }
+
+    public int getMinFaces() {
+        return minFaces;
+    }
+
+    @Override
+    public String toString() {
+        return "SmileRule{smile " + smileEnter + "/" + smileExit
+                + ", eyes " + eyesEnter + "/" + eyesExit
+                + ", debounce " + TimeUnit.NANOSECONDS.toMillis(debounceNanos) + " ms"
+                + ", hold " + TimeUnit.NANOSECONDS.toMillis(holdNanos) + " ms"
+                + ", cooldown " + TimeUnit.NANOSECONDS.toMillis(cooldownNanos) + " ms"
+                + ", minFaces " + minFaces + "}";
+    }
+}
@@ -0,0 +1,69 @@
+package com.facial.smileornosmile.frame;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A buffer of a {@link FrameBufferPool} with a reference count. Whoever acquires it holds the
+ * first reference, everyone who keeps the data longer {@link #retain()}s another one, and the
+ * buffer goes back to the pool when the last reference is released. The data must not be
+ * written once it is shared.
+ */
+public final class FrameBuffer {
+    private final FrameBufferPool pool;
+    private final ByteBuffer buffer;
+    private final boolean pooled;
+    private final AtomicInteger references = new AtomicInteger();
+
+    FrameBuffer(FrameBufferPool pool, ByteBuffer buffer, boolean pooled) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.pooled = pooled;
+    }
+
+    /**
+     * The data, from position 0 up to the size it was acquired with. Read it with absolute gets or
+     * through a {@link ByteBuffer#duplicate()}, as other holders rely on position and limit.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Whether the buffer goes back to its pool, false for the extra buffers handed out while the
+     * pool was exhausted.
+     */
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    public int getReferenceCount() {
+        return references.get();
+    }
+
+    public FrameBuffer retain() {
+        if(references.getAndIncrement() <= 0) {
+            throw new IllegalStateException("Buffer was already released");
+        }
+        return this;
+    }
+
+    public void release() {
+        int left = references.decrementAndGet();
+        if(left == 0) {
+            pool.recycle(this);
+        } else if(left < 0) {
+            throw new IllegalStateException("Buffer was released too often");
+        }
+    }
+
+    void acquired(int size) {
+        buffer.clear();
+        buffer.limit(size);
+        references.set(1);
+    }
+}
@@ -0,0 +1,107 @@
+package com.facial.smileornosmile.frame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A bounded set of reusable {@link FrameBuffer}s, direct by default so native detectors can read
+ * them in place. At most {@code maxBuffers} are pooled; when all of them are in use the pool does
+ * not block or fail but hands out an extra buffer that is dropped on release, and counts the
+ * exhaustion. Thread safe.
+ */
+public class FrameBufferPool {
+    private final ArrayDeque<FrameBuffer> free = new ArrayDeque<>();
+    private final int maxBuffers;
+    private final boolean direct;
+    private int pooledCount;
+    private long allocations;
+    private long exhaustions;
+    private long copies;
+    private long copiesAvoided;
+
+    public FrameBufferPool(int maxBuffers, boolean direct) {
+        if(maxBuffers < 1) {
+            throw new IllegalArgumentException("maxBuffers must be positive: " + maxBuffers);
+        }
+        this.maxBuffers = maxBuffers;
+        this.direct = direct;
+    }
+
+    /**
+     * Returns a buffer of {@code size} bytes holding one reference.
+     */
+    public synchronized FrameBuffer acquire(int size) {
+        FrameBuffer buffer = null;
+        int count = free.size();
+        for(int i = 0; i < count && buffer == null; i++) {
+            FrameBuffer candidate = free.pollFirst();
+            if(candidate.getCapacity() >= size) {
+                buffer = candidate;
+            } else {
+                //Too small for this frame size, drop it so the pool adapts to the current size
+                pooledCount--;
+            }
+        }
+        if(buffer == null) {
+            boolean pooled = pooledCount < maxBuffers;
+            if(pooled) {
+                pooledCount++;
+            } else {
+                exhaustions++;
+            }
+            allocations++;
+            buffer = new FrameBuffer(this, direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size), pooled);
+        }
+        buffer.acquired(size);
+        return buffer;
+    }
+
+    /**
+     * Copies the remaining bytes of {@code src} into a new buffer, leaving {@code src} untouched.
+     */
+    public FrameBuffer copyOf(ByteBuffer src) {
+        FrameBuffer buffer = acquire(src.remaining());
+        ByteBuffer dst = buffer.getBuffer().duplicate();
+        dst.put(src.duplicate());
+        synchronized(this) {
+            copies++;
+        }
+        return buffer;
+    }
+
+    /**
+     * Counts a frame that was kept by reference instead of being copied.
+     */
+    public synchronized void onCopyAvoided() {
+        copiesAvoided++;
+    }
+
+    synchronized void recycle(FrameBuffer buffer) {
+        if(buffer.isPooled()) {
+            free.addLast(buffer);
+        }
+    }
+
+    public synchronized long getAllocations() {
+        return allocations;
+    }
+
+    /**
+     * How often a buffer was asked for while all pooled ones were in use.
+     */
+    public synchronized long getExhaustions() {
+        return exhaustions;
+    }
+
+    public synchronized long getCopies() {
+        return copies;
+    }
+
+    public synchronized long getCopiesAvoided() {
+        return copiesAvoided;
+    }
+
+    public synchronized int getInUseCount() {
+        return pooledCount - free.size();
+    }
+}
@@ -0,0 +1,39 @@
+package com.facial.smileornosmile.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An NV21 frame of a live stream, like a camera preview frame or one read back from a recording.
+ * The data of a frame may be reused by its source once the frame has been processed, so anything
+ * that keeps it longer works on a {@link #freeze()} copy and releases that when done. Frames
+ * that already own their data, like {@link PooledFrame}, freeze without copying.
+ */
+public interface LiveFrame {
+
+    /**
+     * The NV21 data from position 0 to the limit. It is shared, so read it with absolute gets or
+     * through a {@link ByteBuffer#duplicate()} and never write it.
+     */
+    ByteBuffer getData();
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * @return clockwise rotation in degrees that makes the frame upright
+     */
+    int getRotation();
+
+    /**
+     * @return whether the frame is shown mirrored, as front camera previews are
+     */
+    boolean isMirrored();
+
+    /**
+     * Returns a frame with the same contents that stays valid until it is released.
+     */
+    LiveFrame freeze();
+
+    void release();
+}
@@ -0,0 +1,214 @@
+package com.facial.smileornosmile.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cropping, downsampling and conversion of NV21 frames: a full resolution Y plane followed by
+ * interleaved V and U samples at half resolution in both directions. All routines write into a caller
+ * provided buffer and never allocate. The {@link ByteBuffer} variants use absolute offsets from 0
+ * and leave position and limit of both buffers alone, so shared frame buffers stay usable.
+ */
+public final class Nv21 {
+
+    private Nv21() {
+    }
+
+    /**
+     * Bytes an NV21 image of that size takes.
+     */
+    public static int size(int width, int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    /**
+     * Copies the {@code width} x {@code height} region at {@code left, top} of {@code src} into {@code dst}.
+     * Offsets and size must be even so the chroma samples line up.
+     */
+    public static void crop(byte[] src, int srcWidth, int srcHeight,
+                            int left, int top, int width, int height, byte[] dst) {
+        checkRegion(srcWidth, srcHeight, left, top, width, height, 1);
+        if(dst.length < size(width, height)) {
+            throw new IllegalArgumentException("dst too small: " + dst.length + " < " + size(width, height));
+        }
+
+        for(int row = 0; row < height; row++) {
+            System.arraycopy(src, (top + row) * srcWidth + left, dst, row * width, width);
+        }
+
+        int srcChroma = srcWidth * srcHeight;
+        int dstChroma = width * height;
+        int chromaRows = height / 2;
+        for(int row = 0; row < chromaRows; row++) {
+            System.arraycopy(src, srcChroma + (top / 2 + row) * srcWidth + left,
+                    dst, dstChroma + row * width, width);
+        }
+    }
+
+    /**
+     * Crops like {@link #crop} and keeps every {@code factor}-th pixel in both directions.
+     * {@code factor} must be a power of two, and the region size a multiple of {@code 2 * factor}.
+     * The result is {@code width / factor} x {@code height / factor}.
+     */
+    public static void cropAndDownsample(byte[] src, int srcWidth, int srcHeight,
+                                         int left, int top, int width, int height,
+                                         int factor, byte[] dst) {
+        if(factor == 1) {
+            crop(src, srcWidth, srcHeight, left, top, width, height, dst);
+            return;
+        }
+        if(factor < 1 || (factor & (factor - 1)) != 0) {
+            throw new IllegalArgumentException("factor must be a power of two: " + factor);
+        }
+        checkRegion(srcWidth, srcHeight, left, top, width, height, factor);
+        int outWidth = width / factor;
+        int outHeight = height / factor;
+        if(dst.length < size(outWidth, outHeight)) {
+            throw new IllegalArgumentException("dst too small: " + dst.length + " < " + size(outWidth, outHeight));
+        }
+
+        int out = 0;
+        for(int row = 0; row < outHeight; row++) {
+            int in = (top + row * factor) * srcWidth + left;
+            for(int column = 0; column < outWidth; column++) {
+                dst[out++] = src[in];
+                in += factor;
+            }
+        }
+
+        int srcChroma = srcWidth * srcHeight;
+        int chromaStep = factor * 2;
+        for(int row = 0; row < outHeight / 2; row++) {
+            int in = srcChroma + (top / 2 + row * factor) * srcWidth + left;
+            for(int column = 0; column < outWidth / 2; column++) {
+                dst[out++] = src[in];
+                dst[out++] = src[in + 1];
+                in += chromaStep;
+            }
+        }
+    }
+
+    /**
+     * {@link #crop(byte[], int, int, int, int, int, int, byte[])} between buffers, direct or not.
+     */
+    public static void crop(ByteBuffer src, int srcWidth, int srcHeight,
+                            int left, int top, int width, int height, ByteBuffer dst) {
+        checkRegion(srcWidth, srcHeight, left, top, width, height, 1);
+        checkDestination(dst, width, height);
+        if(isPlainArray(src) && isPlainArray(dst)) {
+            crop(src.array(), srcWidth, srcHeight, left, top, width, height, dst.array());
+            return;
+        }
+
+        //One view of each buffer, moved row by row for bulk copies
+        ByteBuffer in = src.duplicate();
+        ByteBuffer out = dst.duplicate();
+        out.clear();
+        for(int row = 0; row < height; row++) {
+            int offset = (top + row) * srcWidth + left;
+            in.limit(offset + width).position(offset);
+            out.put(in);
+        }
+
+        int srcChroma = srcWidth * srcHeight;
+        int chromaRows = height / 2;
+        for(int row = 0; row < chromaRows; row++) {
+            int offset = srcChroma + (top / 2 + row) * srcWidth + left;
+            in.limit(offset + width).position(offset);
+            out.put(in);
+        }
+    }
+
+    /**
+     * {@link #cropAndDownsample(byte[], int, int, int, int, int, int, int, byte[])} between buffers,
+     * direct or not.
+     */
+    public static void cropAndDownsample(ByteBuffer src, int srcWidth, int srcHeight,
+                                         int left, int top, int width, int height,
+                                         int factor, ByteBuffer dst) {
+        if(factor == 1) {
+            crop(src, srcWidth, srcHeight, left, top, width, height, dst);
+            return;
+        }
+        if(factor < 1 || (factor & (factor - 1)) != 0) {
+            throw new IllegalArgumentException("factor must be a power of two: " + factor);
+        }
+        checkRegion(srcWidth, srcHeight, left, top, width, height, factor);
+        int outWidth = width / factor;
+        int outHeight = height / factor;
+        checkDestination(dst, outWidth, outHeight);
+        if(isPlainArray(src) && isPlainArray(dst)) {
+            cropAndDownsample(src.array(), srcWidth, srcHeight, left, top, width, height, factor, dst.array());
+            return;
+        }
+
+        int out = 0;
+        for(int row = 0; row < outHeight; row++) {
+            int in = (top + row * factor) * srcWidth + left;
+            for(int column = 0; column < outWidth; column++) {
+                dst.put(out++, src.get(in));
+                in += factor;
+            }
+        }
+
+        int srcChroma = srcWidth * srcHeight;
+        int chromaStep = factor * 2;
+        for(int row = 0; row < outHeight / 2; row++) {
+            int in = srcChroma + (top / 2 + row * factor) * srcWidth + left;
+            for(int column = 0; column < outWidth / 2; column++) {
+                dst.put(out++, src.get(in));
+                dst.put(out++, src.get(in + 1));
+                in += chromaStep;
+            }
+        }
+    }
+
+    /**
+     * Converts {@code width} x {@code height} ARGB pixels, row after row, to NV21 with BT.601 studio
+     * swing, as cameras deliver it. Each chroma sample is taken from the top left pixel of its 2 x 2
+     * block; odd sizes get a last half empty block.
+     */
+    public static void fromArgb(int[] argb, int width, int height, ByteBuffer dst) {
+        if(argb.length < width * height) {
+            throw new IllegalArgumentException("argb too small: " + argb.length + " < " + width * height);
+        }
+        checkDestination(dst, width, height);
+        int chroma = width * height;
+        int chromaStride = 2 * ((width + 1) / 2);
+        for(int row = 0; row < height; row++) {
+            for(int column = 0; column < width; column++) {
+                int pixel = argb[row * width + column];
+                int r = (pixel >> 16) & 0xff;
+                int g = (pixel >> 8) & 0xff;
+                int b = pixel & 0xff;
+                dst.put(row * width + column, (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16));
+                if((row & 1) == 0 && (column & 1) == 0) {
+                    int out = chroma + (row / 2) * chromaStride + column;
+                    dst.put(out, (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128));
+                    dst.put(out + 1, (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128));
+                }
+            }
+        }
+    }
+
+    private static boolean isPlainArray(ByteBuffer buffer) {
+        return buffer.hasArray() && buffer.arrayOffset() == 0;
+    }
+
+    private static void checkDestination(ByteBuffer dst, int width, int height) {
+        if(dst.capacity() < size(width, height)) {
+            throw new IllegalArgumentException("dst too small: " + dst.capacity() + " < " + size(width, height));
+        }
+    }
+
+    private static void checkRegion(int srcWidth, int srcHeight, int left, int top, int width, int height, int factor) {
+        if(left < 0 || top < 0 || width <= 0 || height <= 0
+                || left + width > srcWidth || top + height > srcHeight) {
+            throw new IllegalArgumentException("Region " + left + "," + top + " " + width + "x" + height
+                    + " outside of " + srcWidth + "x" + srcHeight);
+        }
+        if((left | top) % 2 != 0 || width % (2 * factor) != 0 || height % (2 * factor) != 0) {
+            throw new IllegalArgumentException("Region " + left + "," + top + " " + width + "x" + height
+                    + " not aligned for factor " + factor);
+        }
+    }
+}
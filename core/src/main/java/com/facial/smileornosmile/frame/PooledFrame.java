@@ -0,0 +1,65 @@
+package com.facial.smileornosmile.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link LiveFrame} whose data lives in a {@link FrameBuffer}. Nobody else writes the buffer, so
+ * {@link #freeze()} only takes another reference instead of copying.
+ */
+public class PooledFrame implements LiveFrame {
+    private final FrameBufferPool pool;
+    private final FrameBuffer buffer;
+    private final int width;
+    private final int height;
+    private final int rotation;
+    private final boolean mirrored;
+
+    /**
+     * Takes over the reference the caller holds on {@code buffer}.
+     */
+    public PooledFrame(FrameBufferPool pool, FrameBuffer buffer, int width, int height, int rotation, boolean mirrored) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+        this.mirrored = mirrored;
+    }
+
+    @Override
+    public ByteBuffer getData() {
+        return buffer.getBuffer();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getRotation() {
+        return rotation;
+    }
+
+    @Override
+    public boolean isMirrored() {
+        return mirrored;
+    }
+
+    @Override
+    public LiveFrame freeze() {
+        buffer.retain();
+        pool.onCopyAvoided();
+        return this;
+    }
+
+    @Override
+    public void release() {
+        buffer.release();
+    }
+}
@@ -0,0 +1,217 @@
+package com.facial.smileornosmile.frame;
+
+/**
+ * Plans region-of-interest detection. Once faces are known, frames are cropped to a padded box
+ * around them and optionally downsampled before detection. Every {@code fullFrameInterval}
+ * frames, and whenever tracking is lost, the whole frame is detected again so new faces are found.
+ *
+ * Face boxes are given upright, the way the detector reports them, while crops are planned in
+ * the sensor orientation of the NV21 data. Thread safe.
+ */
+public class RoiController {
+    public static final float DEFAULT_PADDING = 0.5f;
+    public static final int DEFAULT_FULL_FRAME_INTERVAL = 10;
+    public static final int DEFAULT_MIN_DETECTION_SIZE = 320;
+
+    private final float padding;
+    private final int fullFrameInterval;
+    private final int minDetectionSize;
+
+    private boolean hasRegion;
+    private float regionLeft;
+    private float regionTop;
+    private float regionRight;
+    private float regionBottom;
+    private int framesSinceFull;
+    private final float[] box = new float[4];
+
+    public RoiController() {
+        this(DEFAULT_PADDING, DEFAULT_FULL_FRAME_INTERVAL, DEFAULT_MIN_DETECTION_SIZE);
+    }
+
+    /**
+     * @param padding           how much to grow the face box on each side, relative to its size
+     * @param fullFrameInterval every how many frames the whole frame is detected
+     * @param minDetectionSize  downsampling never makes the longer side of a crop smaller than this
+     */
+    public RoiController(float padding, int fullFrameInterval, int minDetectionSize) {
+        if(fullFrameInterval < 1) {
+            throw new IllegalArgumentException("fullFrameInterval must be at least 1: " + fullFrameInterval);
+        }
+        this.padding = padding;
+        this.fullFrameInterval = fullFrameInterval;
+        this.minDetectionSize = minDetectionSize;
+        framesSinceFull = fullFrameInterval;
+    }
+
+    /**
+     * Sets the upright box around all currently tracked faces.
+     */
+    public synchronized void setRegion(float left, float top, float right, float bottom) {
+        hasRegion = right > left && bottom > top;
+        regionLeft = left;
+        regionTop = top;
+        regionRight = right;
+        regionBottom = bottom;
+    }
+
+    /**
+     * No faces are tracked anymore, the next frame is detected in full.
+     */
+    public synchronized void onTrackingLost() {
+        hasRegion = false;
+        framesSinceFull = fullFrameInterval;
+    }
+
+    /**
+     * Plans the detection of the next frame.
+     *
+     * @param rotation clockwise rotation in degrees that makes the sensor image upright
+     */
+    public void plan(int frameWidth, int frameHeight, int rotation, RoiPlan plan) {
+        plan(frameWidth, frameHeight, rotation, 1, plan);
+    }
+
+    /**
+     * Plans the detection of the next frame, downsampled by at least {@code minDownsample},
+     * a power of 2. Above 1, full frames are planned as a downsampled crop of the whole frame.
+     *
+     * @param rotation clockwise rotation in degrees that makes the sensor image upright
+     */
+    public synchronized void plan(int frameWidth, int frameHeight, int rotation, int minDownsample, RoiPlan plan) {
+        if(minDownsample < 1 || Integer.bitCount(minDownsample) != 1) {
+            throw new IllegalArgumentException("minDownsample must be a power of 2: " + minDownsample);
+        }
+        framesSinceFull++;
+        if(!hasRegion || framesSinceFull >= fullFrameInterval) {
+            framesSinceFull = 0;
+            planFullFrame(frameWidth, frameHeight, rotation, minDownsample, plan);
+            return;
+        }
+
+        float padX = (regionRight - regionLeft) * padding;
+        float padY = (regionBottom - regionTop) * padding;
+        set(box, regionLeft - padX, regionTop - padY, regionRight + padX, regionBottom + padY);
+        uprightToSensor(box, frameWidth, frameHeight, rotation);
+
+        int left = clamp((int) Math.floor(box[0]), 0, frameWidth);
+        int top = clamp((int) Math.floor(box[1]), 0, frameHeight);
+        int right = clamp((int) Math.ceil(box[2]), 0, frameWidth);
+        int bottom = clamp((int) Math.ceil(box[3]), 0, frameHeight);
+
+        int downsample = minDownsample;
+        while(Math.max(right - left, bottom - top) / (downsample * 2) >= minDetectionSize) {
+            downsample *= 2;
+        }
+
+        // Even offsets and sizes in multiples of 2 * downsample keep the NV21 chroma aligned
+        int alignment = 2 * downsample;
+        left &= ~1;
+        top &= ~1;
+        int width = alignUp(right - left, alignment);
+        int height = alignUp(bottom - top, alignment);
+        if(left + width > frameWidth) {
+            left = Math.max(0, (frameWidth - width) & ~1);
+            width = Math.min(width, (frameWidth - left) / alignment * alignment);
+        }
+        if(top + height > frameHeight) {
+            top = Math.max(0, (frameHeight - height) & ~1);
+            height = Math.min(height, (frameHeight - top) / alignment * alignment);
+        }
+        if(width <= 0 || height <= 0 || (width == frameWidth && height == frameHeight)) {
+            planFullFrame(frameWidth, frameHeight, rotation, minDownsample, plan);
+            return;
+        }
+
+        // The upright top left corner of the crop is where its results start in the full frame
+        set(box, left, top, left + width, top + height);
+        sensorToUpright(box, frameWidth, frameHeight, rotation);
+        plan.setCrop(left, top, width, height, downsample, box[0], box[1]);
+    }
+
+    private void planFullFrame(int frameWidth, int frameHeight, int rotation, int downsample, RoiPlan plan) {
+        if(downsample == 1) {
+            plan.setFullFrame(frameWidth, frameHeight);
+            return;
+        }
+        // A few pixels at the right and bottom edge may be cut off to keep the chroma aligned
+        int alignment = 2 * downsample;
+        int width = frameWidth / alignment * alignment;
+        int height = frameHeight / alignment * alignment;
+        set(box, 0, 0, width, height);
+        sensorToUpright(box, frameWidth, frameHeight, rotation);
+        plan.setCrop(0, 0, width, height, downsample, box[0], box[1]);
+    }
+
+    /**
+     * Converts an upright {@code left, top, right, bottom} box to sensor coordinates, in place.
+     */
+    static void uprightToSensor(float[] box, int sensorWidth, int sensorHeight, int rotation) {
+        float l = box[0];
+        float t = box[1];
+        float r = box[2];
+        float b = box[3];
+        switch(normalize(rotation)) {
+            case 90:
+                set(box, t, sensorHeight - r, b, sensorHeight - l);
+                break;
+            case 180:
+                set(box, sensorWidth - r, sensorHeight - b, sensorWidth - l, sensorHeight - t);
+                break;
+            case 270:
+                set(box, sensorWidth - b, l, sensorWidth - t, r);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Converts a sensor {@code left, top, right, bottom} box to upright coordinates, in place.
+     */
+    static void sensorToUpright(float[] box, int sensorWidth, int sensorHeight, int rotation) {
+        float l = box[0];
+        float t = box[1];
+        float r = box[2];
+        float b = box[3];
+        switch(normalize(rotation)) {
+            case 90:
+                set(box, sensorHeight - b, l, sensorHeight - t, r);
+                break;
+            case 180:
+                set(box, sensorWidth - r, sensorHeight - b, sensorWidth - l, sensorHeight - t);
+                break;
+            case 270:
+                set(box, t, sensorWidth - r, b, sensorWidth - l);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static int normalize(int rotation) {
+        int normalized = rotation % 360;
+        if(normalized < 0) {
+            normalized += 360;
+        }
+        if(normalized % 90 != 0) {
+            throw new IllegalArgumentException("rotation must be a multiple of 90: " + rotation);
+        }
+        return normalized;
+    }
+
+    private static void set(float[] box, float l, float t, float r, float b) {
+        box[0] = l;
+        box[1] = t;
+        box[2] = r;
+        box[3] = b;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static int alignUp(int value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+}
@@ -0,0 +1,101 @@
+package com.facial.smileornosmile.frame;
+
+/**
+ * What part of a frame one detection looks at, and how to map its results back.
+ * The crop is in sensor orientation, results come back upright in the rotated crop, and
+ * {@code full = crop * scale + offset} maps them onto the upright full frame.
+ */
+public class RoiPlan {
+    private boolean cropped;
+    private int cropLeft;
+    private int cropTop;
+    private int cropWidth;
+    private int cropHeight;
+    private int downsample = 1;
+    private float offsetX;
+    private float offsetY;
+
+    void setFullFrame(int frameWidth, int frameHeight) {
+        cropped = false;
+        cropLeft = 0;
+        cropTop = 0;
+        cropWidth = frameWidth;
+        cropHeight = frameHeight;
+        downsample = 1;
+        offsetX = 0f;
+        offsetY = 0f;
+    }
+
+    void setCrop(int left, int top, int width, int height, int downsample, float offsetX, float offsetY) {
+        cropped = true;
+        cropLeft = left;
+        cropTop = top;
+        cropWidth = width;
+        cropHeight = height;
+        this.downsample = downsample;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+    }
+
+    public boolean isCropped() {
+        return cropped;
+    }
+
+    public int getCropLeft() {
+        return cropLeft;
+    }
+
+    public int getCropTop() {
+        return cropTop;
+    }
+
+    public int getCropWidth() {
+        return cropWidth;
+    }
+
+    public int getCropHeight() {
+        return cropHeight;
+    }
+
+    public int getDownsample() {
+        return downsample;
+    }
+
+    /** Width of the image handed to the detector, in sensor orientation */
+    public int getOutputWidth() {
+        return cropWidth / downsample;
+    }
+
+    /** Height of the image handed to the detector, in sensor orientation */
+    public int getOutputHeight() {
+        return cropHeight / downsample;
+    }
+
+    public float getScale() {
+        return downsample;
+    }
+
+    public float getOffsetX() {
+        return offsetX;
+    }
+
+    public float getOffsetY() {
+        return offsetY;
+    }
+
+    public float mapX(float x) {
+        return x * downsample + offsetX;
+    }
+
+    public float mapY(float y) {
+        return y * downsample + offsetY;
+    }
+
+    @Override
+    public String toString() {
+        if(!cropped) {
+            return "RoiPlan{full " + cropWidth + "x" + cropHeight + "}";
+        }
+        return "RoiPlan{" + cropLeft + "," + cropTop + " " + cropWidth + "x" + cropHeight + " /" + downsample + "}";
+    }
+}
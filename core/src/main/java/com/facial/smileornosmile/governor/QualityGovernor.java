@@ -0,0 +1,255 @@
+package com.facial.smileornosmile.governor;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the level of a {@link QualityLadder} that keeps live detection within a latency target.
+ * <p>
+ * Detection latencies and dropped frames are collected per evaluation interval. If the 90th
+ * percentile latency of an interval is over the target, or too many frames were dropped, the
+ * governor steps one level down, at most once per step down cooldown. Once the latency has
+ * stayed well below the target for the step up hold time it steps one level up again.
+ * Heat and battery saver put a floor under how good the level may be, applied right away.
+ * <p>
+ * Every change is reported to the listener with its reason. Thread safe, the listener is
+ * called outside the lock.
+ */
+public class QualityGovernor {
+
+    public interface Listener {
+        void onLevelChanged(QualityLevel from, QualityLevel to, String reason);
+    }
+
+    public static final long DEFAULT_EVALUATION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    public static final long DEFAULT_STEP_DOWN_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(2);
+    public static final long DEFAULT_STEP_UP_HOLD_NANOS = TimeUnit.SECONDS.toNanos(5);
+    /** With one detection in flight most camera frames are dropped normally, only near all is a problem */
+    public static final float DEFAULT_MAX_DROP_RATIO = 0.9f;
+    /** Latency under this share of the target counts as room to step up */
+    public static final float STEP_UP_MARGIN = 0.6f;
+
+    private static final int WINDOW = 64;
+    private static final int MIN_SAMPLES = 5;
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final QualityLadder ladder;
+    private final long targetLatencyNanos;
+    private final Listener listener;
+    private final long[] latencies = new long[WINDOW];
+    private final long[] sorted = new long[WINDOW];
+
+    private long evaluationIntervalNanos = DEFAULT_EVALUATION_INTERVAL_NANOS;
+    private long stepDownCooldownNanos = DEFAULT_STEP_DOWN_COOLDOWN_NANOS;
+    private long stepUpHoldNanos = DEFAULT_STEP_UP_HOLD_NANOS;
+    private float maxDropRatio = DEFAULT_MAX_DROP_RATIO;
+
+    private int levelIndex;
+    private int sampleCount;
+    private int detections;
+    private int drops;
+    private long windowStartNanos = NEVER;
+    private long lastChangeNanos = NEVER;
+    private long comfortableSinceNanos = NEVER;
+    private long lastP90Nanos;
+    private ThermalState thermalState = ThermalState.NONE;
+    private boolean batterySaver;
+    private int changeCount;
+
+    public QualityGovernor(QualityLadder ladder, long targetLatency, TimeUnit unit, Listener listener) {
+        this.ladder = ladder;
+        this.targetLatencyNanos = unit.toNanos(targetLatency);
+        this.listener = listener;
+    }
+
+    public synchronized QualityGovernor withTiming(long evaluationInterval, long stepDownCooldown,
+                                                   long stepUpHold, TimeUnit unit) {
+        evaluationIntervalNanos = unit.toNanos(evaluationInterval);
+        stepDownCooldownNanos = unit.toNanos(stepDownCooldown);
+        stepUpHoldNanos = unit.toNanos(stepUpHold);
+        return this;
+    }
+
+    public synchronized QualityGovernor withMaxDropRatio(float maxDropRatio) {
+        this.maxDropRatio = maxDropRatio;
+        return this;
+    }
+
+    /**
+     * A live detection finished after {@code latencyNanos}, measured from frame capture.
+     */
+    public void onDetection(long latencyNanos, long nowNanos) {
+        QualityLevel from;
+        QualityLevel to;
+        String reason;
+        synchronized(this) {
+            if(windowStartNanos == NEVER) {
+                windowStartNanos = nowNanos;
+            }
+            latencies[sampleCount % WINDOW] = latencyNanos;
+            sampleCount++;
+            detections++;
+            if(nowNanos - windowStartNanos < evaluationIntervalNanos) {
+                return;
+            }
+            from = getLevel();
+            reason = evaluate(nowNanos);
+            to = getLevel();
+        }
+        notifyChange(from, to, reason);
+    }
+
+    /**
+     * A live frame was skipped without being detected.
+     */
+    public synchronized void onFrameDropped() {
+        drops++;
+    }
+
+    public void setThermalState(ThermalState state, long nowNanos) {
+        QualityLevel from;
+        QualityLevel to;
+        synchronized(this) {
+            thermalState = state;
+            from = getLevel();
+            applyFloor(nowNanos);
+            to = getLevel();
+        }
+        notifyChange(from, to, "thermal " + state);
+    }
+
+    public void setBatterySaver(boolean enabled, long nowNanos) {
+        QualityLevel from;
+        QualityLevel to;
+        synchronized(this) {
+            batterySaver = enabled;
+            from = getLevel();
+            applyFloor(nowNanos);
+            to = getLevel();
+        }
+        notifyChange(from, to, enabled ? "battery saver on" : "battery saver off");
+    }
+
+    public synchronized QualityLevel getLevel() {
+        return ladder.get(levelIndex);
+    }
+
+    public synchronized int getLevelIndex() {
+        return levelIndex;
+    }
+
+    public synchronized int getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * The 90th percentile latency of the last evaluated interval.
+     */
+    public synchronized long getLastP90Nanos() {
+        return lastP90Nanos;
+    }
+
+    /**
+     * The best level the device conditions allow.
+     */
+    private int floorIndex() {
+        int floor = 0;
+        switch(thermalState) {
+            case NONE:
+            case LIGHT:
+                break;
+            case MODERATE:
+                floor = 1;
+                break;
+            case SEVERE:
+                floor = ladder.size() / 2;
+                break;
+            default:
+                floor = ladder.getCheapestIndex();
+                break;
+        }
+        if(batterySaver) {
+            floor = Math.max(floor, 1);
+        }
+        return Math.min(floor, ladder.getCheapestIndex());
+    }
+
+    private void applyFloor(long nowNanos) {
+        int floor = floorIndex();
+        if(levelIndex < floor) {
+            changeTo(floor, nowNanos);
+        }
+    }
+
+    private String evaluate(long nowNanos) {
+        int count = Math.min(sampleCount, WINDOW);
+        float dropRatio = drops + detections == 0 ? 0f : drops / (float) (drops + detections);
+        String reason = null;
+        if(count >= MIN_SAMPLES) {
+            System.arraycopy(latencies, 0, sorted, 0, count);
+            Arrays.sort(sorted, 0, count);
+            long p90 = sorted[Math.min(count - 1, (int) Math.ceil(count * 0.9) - 1)];
+            lastP90Nanos = p90;
+
+            boolean overloaded = p90 > targetLatencyNanos || dropRatio > maxDropRatio;
+            if(overloaded) {
+                comfortableSinceNanos = NEVER;
+                if(levelIndex < ladder.getCheapestIndex()
+                        && (lastChangeNanos == NEVER || nowNanos - lastChangeNanos >= stepDownCooldownNanos)) {
+                    reason = p90 > targetLatencyNanos
+                            ? "p90 latency " + millis(p90) + " ms over target " + millis(targetLatencyNanos) + " ms"
+                            : "dropped " + Math.round(dropRatio * 100) + "% of frames";
+                    changeTo(levelIndex + 1, nowNanos);
+                }
+            } else if(p90 < targetLatencyNanos * STEP_UP_MARGIN) {
+                if(comfortableSinceNanos == NEVER) {
+                    comfortableSinceNanos = nowNanos;
+                }
+                if(levelIndex > floorIndex() && nowNanos - comfortableSinceNanos >= stepUpHoldNanos) {
+                    reason = "p90 latency " + millis(p90) + " ms well under target " + millis(targetLatencyNanos) + " ms";
+                    changeTo(levelIndex - 1, nowNanos);
+                }
+            } else {
+                comfortableSinceNanos = NEVER;
+            }
+        }
+        resetWindow(nowNanos);
+        return reason;
+    }
+
+    private void changeTo(int index, long nowNanos) {
+        levelIndex = index;
+        lastChangeNanos = nowNanos;
+        comfortableSinceNanos = NEVER;
+        changeCount++;
+        // Measurements of the old level say nothing about the new one
+        sampleCount = 0;
+        resetWindow(nowNanos);
+    }
+
+    private void resetWindow(long nowNanos) {
+        windowStartNanos = nowNanos;
+        detections = 0;
+        drops = 0;
+    }
+
+    private void notifyChange(QualityLevel from, QualityLevel to, String reason) {
+        if(from != to && listener != null) {
+            listener.onLevelChanged(from, to, reason);
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QualityGovernor{" + getLevel()
+                + ", p90Ms=" + millis(lastP90Nanos)
+                + ", targetMs=" + millis(targetLatencyNanos)
+                + ", thermal=" + thermalState
+                + ", batterySaver=" + batterySaver
+                + ", changes=" + changeCount + "}";
+    }
+}
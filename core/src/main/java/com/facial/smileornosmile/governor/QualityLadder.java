@@ -0,0 +1,47 @@
+package com.facial.smileornosmile.governor;
+
+import com.facial.smileornosmile.detector.DetectorProfile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Quality levels from the best, index 0, to the cheapest.
+ */
+public final class QualityLadder {
+    private final List<QualityLevel> levels;
+
+    public QualityLadder(List<QualityLevel> levels) {
+        if(levels.isEmpty()) {
+            throw new IllegalArgumentException("A ladder needs at least one level");
+        }
+        this.levels = Collections.unmodifiableList(new ArrayList<>(levels));
+    }
+
+    /**
+     * Classification with contours at full size first, then smaller input, a frame rate limit,
+     * no contours, and finally fast mode for picked images too.
+     */
+    public static QualityLadder defaultLadder() {
+        List<QualityLevel> levels = new ArrayList<>();
+        levels.add(new QualityLevel("full", DetectorProfile.LIVE_CLASSIFIED, DetectorProfile.STATIC_ACCURATE, 1, QualityLevel.UNLIMITED_FPS));
+        levels.add(new QualityLevel("half-size", DetectorProfile.LIVE_CLASSIFIED, DetectorProfile.STATIC_ACCURATE, 2, QualityLevel.UNLIMITED_FPS));
+        levels.add(new QualityLevel("half-size-15fps", DetectorProfile.LIVE_CLASSIFIED, DetectorProfile.STATIC_ACCURATE, 2, 15f));
+        levels.add(new QualityLevel("no-contours", DetectorProfile.LIVE_LIGHT, DetectorProfile.STATIC_ACCURATE, 2, 10f));
+        levels.add(new QualityLevel("minimal", DetectorProfile.LIVE_LIGHT, DetectorProfile.STATIC_FAST, 4, 5f));
+        return new QualityLadder(levels);
+    }
+
+    public int size() {
+        return levels.size();
+    }
+
+    public QualityLevel get(int index) {
+        return levels.get(index);
+    }
+
+    public int getCheapestIndex() {
+        return levels.size() - 1;
+    }
+}
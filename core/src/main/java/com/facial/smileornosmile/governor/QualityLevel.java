@@ -0,0 +1,67 @@
+package com.facial.smileornosmile.governor;
+
+import com.facial.smileornosmile.detector.DetectorProfile;
+
+/**
+ * One rung of a {@link QualityLadder}: how live frames and picked images are detected.
+ */
+public final class QualityLevel {
+    /** No frame rate limit, one detection in flight at a time */
+    public static final float UNLIMITED_FPS = 0f;
+
+    private final String name;
+    private final DetectorProfile liveProfile;
+    private final DetectorProfile staticProfile;
+    private final int downsample;
+    private final float targetFps;
+
+    /**
+     * @param downsample live frames are detected at 1 / downsample of their size, a power of 2
+     * @param targetFps  live detections per second at most, or {@link #UNLIMITED_FPS}
+     */
+    public QualityLevel(String name, DetectorProfile liveProfile, DetectorProfile staticProfile,
+                        int downsample, float targetFps) {
+        if(downsample < 1 || Integer.bitCount(downsample) != 1) {
+            throw new IllegalArgumentException("downsample must be a power of 2: " + downsample);
+        }
+        if(targetFps < 0f) {
+            throw new IllegalArgumentException("targetFps must not be negative: " + targetFps);
+        }
+        this.name = name;
+        this.liveProfile = liveProfile;
+        this.staticProfile = staticProfile;
+        this.downsample = downsample;
+        this.targetFps = targetFps;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DetectorProfile getLiveProfile() {
+        return liveProfile;
+    }
+
+    public DetectorProfile getStaticProfile() {
+        return staticProfile;
+    }
+
+    public int getDownsample() {
+        return downsample;
+    }
+
+    public float getTargetFps() {
+        return targetFps;
+    }
+
+    public boolean hasFpsLimit() {
+        return targetFps > 0f;
+    }
+
+    @Override
+    public String toString() {
+        return name + "{" + liveProfile + "/" + staticProfile
+                + ", 1/" + downsample
+                + ", " + (hasFpsLimit() ? targetFps + " fps" : "unlimited fps") + "}";
+    }
+}
@@ -0,0 +1,14 @@
+package com.facial.smileornosmile.governor;
+
+/**
+ * How hot the device runs, in the steps Android reports its thermal status in.
+ */
+public enum ThermalState {
+    NONE,
+    LIGHT,
+    MODERATE,
+    SEVERE,
+    CRITICAL,
+    EMERGENCY,
+    SHUTDOWN
+}
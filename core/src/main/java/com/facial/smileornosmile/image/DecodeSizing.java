@@ -0,0 +1,53 @@
+package com.facial.smileornosmile.image;
+
+/**
+ * Size math for decoding large images at a bounded resolution.
+ */
+public final class DecodeSizing {
+
+    private DecodeSizing() {
+    }
+
+    /**
+     * The largest power of two sample size that keeps the longer side at or above
+     * {@code maxSize}, so a cheap subsampled decode followed by at most one exact scale step
+     * reaches the target without ever holding the full resolution image.
+     */
+    public static int inSampleSize(int width, int height, int maxSize) {
+        if(maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        int longest = Math.max(width, height);
+        int sampleSize = 1;
+        while(longest / (sampleSize * 2) >= maxSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Factor to apply to an image so its longer side is at most {@code maxSize}, never above 1.
+     */
+    public static float fitScale(int width, int height, int maxSize) {
+        int longest = Math.max(width, height);
+        if(longest <= maxSize) {
+            return 1f;
+        }
+        return maxSize / (float) longest;
+    }
+
+    /**
+     * Factor that fits a {@code width} x {@code height} image inside a box, keeping the aspect
+     * ratio. Unlike {@link #fitScale(int, int, int)} this may scale up.
+     */
+    public static float fitInside(int width, int height, int boxWidth, int boxHeight) {
+        return Math.min(boxWidth / (float) width, boxHeight / (float) height);
+    }
+
+    /**
+     * Bytes an ARGB_8888 bitmap of that size takes.
+     */
+    public static long argbBytes(int width, int height) {
+        return (long) width * height * 4;
+    }
+}
@@ -0,0 +1,56 @@
+package com.facial.smileornosmile.image;
+
+/**
+ * Maps coordinates from one resolution of an image to another, for example from the
+ * downscaled detection input back to the original photo.
+ */
+public final class ImageScale {
+    public static final ImageScale IDENTITY = new ImageScale(1f, 1f);
+
+    private final float scaleX;
+    private final float scaleY;
+
+    public ImageScale(float scaleX, float scaleY) {
+        this.scaleX = scaleX;
+        this.scaleY = scaleY;
+    }
+
+    public static ImageScale between(int fromWidth, int fromHeight, int toWidth, int toHeight) {
+        return new ImageScale(toWidth / (float) fromWidth, toHeight / (float) fromHeight);
+    }
+
+    public float getScaleX() {
+        return scaleX;
+    }
+
+    public float getScaleY() {
+        return scaleY;
+    }
+
+    public float mapX(float x) {
+        return x * scaleX;
+    }
+
+    public float mapY(float y) {
+        return y * scaleY;
+    }
+
+    /**
+     * Maps {@code left, top, right, bottom} in place.
+     */
+    public void mapBox(float[] box) {
+        box[0] *= scaleX;
+        box[1] *= scaleY;
+        box[2] *= scaleX;
+        box[3] *= scaleY;
+    }
+
+    public ImageScale inverse() {
+        return new ImageScale(1f / scaleX, 1f / scaleY);
+    }
+
+    @Override
+    public String toString() {
+        return "ImageScale{" + scaleX + ", " + scaleY + "}";
+    }
+}
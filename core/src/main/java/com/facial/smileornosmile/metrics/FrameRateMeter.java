@@ -0,0 +1,51 @@
+package com.facial.smileornosmile.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frames per second over the last second, from the timestamps of up to {@code capacity} frames.
+ * Thread safe, recording does not allocate.
+ */
+public class FrameRateMeter {
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long[] timestamps;
+    private int next;
+    private int size;
+
+    public FrameRateMeter(int capacity) {
+        if(capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2: " + capacity);
+        }
+        timestamps = new long[capacity];
+    }
+
+    public synchronized void onFrame(long timestampNanos) {
+        timestamps[next] = timestampNanos;
+        next = (next + 1) % timestamps.length;
+        size = Math.min(size + 1, timestamps.length);
+    }
+
+    public synchronized float getFps(long nowNanos) {
+        int inWindow = 0;
+        long oldest = nowNanos;
+        for(int i = 0; i < size; i++) {
+            long timestamp = timestamps[(next - 1 - i + timestamps.length) % timestamps.length];
+            if(nowNanos - timestamp >= WINDOW_NANOS) {
+                break;
+            }
+            inWindow++;
+            oldest = timestamp;
+        }
+        if(inWindow < timestamps.length) {
+            return inWindow;
+        }
+        //Faster than the ring holds, estimate from the span it covers
+        return (float) ((inWindow - 1) * (double) WINDOW_NANOS / Math.max(1L, nowNanos - oldest));
+    }
+
+    public synchronized void reset() {
+        next = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.facial.smileornosmile.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of durations in nanoseconds, laid out like an HdrHistogram: every power
+ * of 2 is split into 32 equal buckets, so any recorded value is kept to within about 3%.
+ * Recording is lock free, does not allocate and can happen from any thread.
+ * Values above {@link #MAX_TRACKABLE_NANOS} are counted in the top bucket, the maximum stays exact.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    /** About 18 minutes, far beyond any frame */
+    public static final long MAX_TRACKABLE_NANOS = (1L << MAX_EXPONENT) - 1;
+    private static final int BUCKETS = indexOf(MAX_TRACKABLE_NANOS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long durationNanos) {
+        long value = Math.max(0L, durationNanos);
+        counts.incrementAndGet(indexOf(Math.min(value, MAX_TRACKABLE_NANOS)));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long current;
+        do {
+            current = max.get();
+        } while(value > current && !max.compareAndSet(current, value));
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public long getMeanNanos() {
+        long recorded = count.get();
+        return recorded == 0 ? 0 : total.get() / recorded;
+    }
+
+    /**
+     * The smallest recorded value that {@code percentile} percent of all values are at or below,
+     * rounded up to the end of its bucket but never above the maximum. 0 when nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if(percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("percentile must be within [0, 100]: " + percentile);
+        }
+        long recorded = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            recorded += counts.get(i);
+        }
+        if(recorded == 0) {
+            return 0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * recorded));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if(seen >= rank) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    static int indexOf(long value) {
+        if(value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * (shift + 1) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long highestValueOf(int index) {
+        if(index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" +
+                "count=" + getCount() +
+                ", p50=" + getValueAtPercentile(50.0) / 1000 +
+                "us, p90=" + getValueAtPercentile(90.0) / 1000 +
+                "us, p99=" + getValueAtPercentile(99.0) / 1000 +
+                "us, max=" + getMaxNanos() / 1000 +
+                "us}";
+    }
+}
@@ -0,0 +1,32 @@
+package com.facial.smileornosmile.metrics;
+
+/**
+ * Process wide garbage collection and allocation counters, cumulative since the process started.
+ * Counters the runtime does not offer are reported as {@link #UNKNOWN}.
+ */
+public interface RuntimeCounters {
+    long UNKNOWN = -1;
+
+    RuntimeCounters NONE = new RuntimeCounters() {
+        @Override
+        public long getGcCount() {
+            return UNKNOWN;
+        }
+
+        @Override
+        public long getGcTimeMillis() {
+            return UNKNOWN;
+        }
+
+        @Override
+        public long getAllocatedBytes() {
+            return UNKNOWN;
+        }
+    };
+
+    long getGcCount();
+
+    long getGcTimeMillis();
+
+    long getAllocatedBytes();
+}
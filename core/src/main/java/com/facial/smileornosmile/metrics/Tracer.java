@@ -0,0 +1,43 @@
+package com.facial.smileornosmile.metrics;
+
+/**
+ * Named sections of the live pipeline for a system tracer like systrace or Perfetto.
+ * Synchronous sections end on the thread they began on, async ones can end anywhere.
+ */
+public interface Tracer {
+    String CROP = "SmileOrNoSmile.crop";
+    String DETECTION = "SmileOrNoSmile.detection";
+    String CLASSIFY = "SmileOrNoSmile.classify";
+    String GEOMETRY = "SmileOrNoSmile.geometry";
+    String RENDER = "SmileOrNoSmile.render";
+    String BEST_SHOT = "SmileOrNoSmile.bestShot";
+
+    Tracer NONE = new Tracer() {
+        @Override
+        public void beginSection(String name) {
+        }
+
+        @Override
+        public void endSection() {
+        }
+
+        @Override
+        public void beginAsyncSection(String name, int cookie) {
+        }
+
+        @Override
+        public void endAsyncSection(String name, int cookie) {
+        }
+    };
+
+    void beginSection(String name);
+
+    void endSection();
+
+    /**
+     * @param cookie tells overlapping sections of the same name apart
+     */
+    void beginAsyncSection(String name, int cookie);
+
+    void endAsyncSection(String name, int cookie);
+}
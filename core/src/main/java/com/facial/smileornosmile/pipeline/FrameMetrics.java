@@ -0,0 +1,286 @@
+package com.facial.smileornosmile.pipeline;
+
+import com.facial.smileornosmile.frame.FrameBufferPool;
+import com.facial.smileornosmile.metrics.FrameRateMeter;
+import com.facial.smileornosmile.metrics.LatencyHistogram;
+import com.facial.smileornosmile.metrics.RuntimeCounters;
+import com.facial.smileornosmile.scheduler.DetectionPriority;
+import com.facial.smileornosmile.scheduler.DetectionQueue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Everything measured about a session of live frames and picked images: the per-stage latencies
+ * of {@link StageTimings}, camera and detection frame rates, dropped frames, the garbage
+ * collections and allocations and the frame buffer copies since {@link #reset(long)}, and the
+ * waiting of every class in the {@link DetectionQueue}, if there is one. The {@code on...} methods are cheap,
+ * do not allocate and can be called from any thread.
+ */
+public class FrameMetrics {
+    /** Enough for a 240 fps camera */
+    private static final int FPS_CAPACITY = 256;
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0};
+    private static final int BUFFER_COPIES = 0;
+    private static final int BUFFER_COPIES_AVOIDED = 1;
+    private static final int BUFFER_EXHAUSTIONS = 2;
+    private static final int BUFFER_ALLOCATIONS = 3;
+    private static final int BUFFER_COUNTS = 4;
+
+    private final StageTimings timings;
+    private final RuntimeCounters counters;
+    private final FrameRateMeter cameraFps = new FrameRateMeter(FPS_CAPACITY);
+    private final FrameRateMeter detectionFps = new FrameRateMeter(FPS_CAPACITY);
+    private final AtomicLong cameraFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private volatile long startNanos;
+    private volatile long startGcCount;
+    private volatile long startGcTimeMillis;
+    private volatile long startAllocatedBytes;
+    private volatile FrameBufferPool[] bufferPools = new FrameBufferPool[0];
+    private final long[] startBufferCounts = new long[BUFFER_COUNTS];
+    private volatile DetectionQueue detectionQueue;
+
+    public FrameMetrics(StageTimings timings, RuntimeCounters counters, long nowNanos) {
+        this.timings = timings;
+        this.counters = counters;
+        reset(nowNanos);
+    }
+
+    /**
+     * Adds the counters of {@code pool} to the buffer values, best before the session starts.
+     */
+    public synchronized void addBufferPool(FrameBufferPool pool) {
+        FrameBufferPool[] pools = Arrays.copyOf(bufferPools, bufferPools.length + 1);
+        pools[pools.length - 1] = pool;
+        bufferPools = pools;
+    }
+
+    /**
+     * Reports the queue depth and per class waiting of {@code queue}, whose statistics are reset with the session.
+     */
+    public void setDetectionQueue(DetectionQueue queue) {
+        detectionQueue = queue;
+    }
+
+    public StageTimings getTimings() {
+        return timings;
+    }
+
+    public void onCameraFrame(long timestampNanos) {
+        cameraFrames.incrementAndGet();
+        cameraFps.onFrame(timestampNanos);
+    }
+
+    public void onDetection(long timestampNanos) {
+        detectionFps.onFrame(timestampNanos);
+    }
+
+    public void onFrameDropped() {
+        droppedFrames.incrementAndGet();
+    }
+
+    public float getCameraFps(long nowNanos) {
+        return cameraFps.getFps(nowNanos);
+    }
+
+    public float getDetectionFps(long nowNanos) {
+        return detectionFps.getFps(nowNanos);
+    }
+
+    public long getCameraFrames() {
+        return cameraFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    public long getElapsedNanos(long nowNanos) {
+        return nowNanos - startNanos;
+    }
+
+    public long getGcCount() {
+        return since(counters.getGcCount(), startGcCount);
+    }
+
+    public long getGcTimeMillis() {
+        return since(counters.getGcTimeMillis(), startGcTimeMillis);
+    }
+
+    public long getAllocatedBytes() {
+        return since(counters.getAllocatedBytes(), startAllocatedBytes);
+    }
+
+    /**
+     * Frames copied into pooled buffers.
+     */
+    public long getBufferCopies() {
+        return getBufferCount(BUFFER_COPIES);
+    }
+
+    /**
+     * Frames kept by reference where they would have been copied.
+     */
+    public long getBufferCopiesAvoided() {
+        return getBufferCount(BUFFER_COPIES_AVOIDED);
+    }
+
+    /**
+     * Buffers asked for while their pool had none left.
+     */
+    public long getBufferExhaustions() {
+        return getBufferCount(BUFFER_EXHAUSTIONS);
+    }
+
+    public long getBufferAllocations() {
+        return getBufferCount(BUFFER_ALLOCATIONS);
+    }
+
+    private synchronized long getBufferCount(int count) {
+        return sumBufferCount(count) - startBufferCounts[count];
+    }
+
+    private long sumBufferCount(int count) {
+        long sum = 0;
+        for(FrameBufferPool pool : bufferPools) {
+            switch(count) {
+                case BUFFER_COPIES:
+                    sum += pool.getCopies();
+                    break;
+                case BUFFER_COPIES_AVOIDED:
+                    sum += pool.getCopiesAvoided();
+                    break;
+                case BUFFER_EXHAUSTIONS:
+                    sum += pool.getExhaustions();
+                    break;
+                default:
+                    sum += pool.getAllocations();
+                    break;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Starts a new session, forgetting everything measured so far.
+     */
+    public void reset(long nowNanos) {
+        timings.reset();
+        cameraFps.reset();
+        detectionFps.reset();
+        cameraFrames.set(0);
+        droppedFrames.set(0);
+        startNanos = nowNanos;
+        startGcCount = counters.getGcCount();
+        startGcTimeMillis = counters.getGcTimeMillis();
+        startAllocatedBytes = counters.getAllocatedBytes();
+        DetectionQueue queue = detectionQueue;
+        if(queue != null) {
+            queue.resetStats();
+        }
+        synchronized(this) {
+            for(int i = 0; i < BUFFER_COUNTS; i++) {
+                startBufferCounts[i] = sumBufferCount(i);
+            }
+        }
+    }
+
+    /**
+     * Calls {@code visitor} once for every value of the session, named like {@code detection.p90_us}.
+     */
+    public void visit(long nowNanos, Visitor visitor) {
+        visitor.visit("session_ms", getElapsedNanos(nowNanos) / 1000000);
+        visitor.visit("camera_frames", getCameraFrames());
+        visitor.visit("dropped_frames", getDroppedFrames());
+        visitor.visit("camera_fps", Math.round(getCameraFps(nowNanos)));
+        visitor.visit("detection_fps", Math.round(getDetectionFps(nowNanos)));
+        visitor.visit("gc_count", getGcCount());
+        visitor.visit("gc_ms", getGcTimeMillis());
+        visitor.visit("allocated_kb", getAllocatedBytes() == RuntimeCounters.UNKNOWN ? RuntimeCounters.UNKNOWN : getAllocatedBytes() / 1024);
+        visitor.visit("buffer_copies", getBufferCopies());
+        visitor.visit("buffer_copies_avoided", getBufferCopiesAvoided());
+        visitor.visit("buffer_exhaustions", getBufferExhaustions());
+        visitor.visit("buffer_allocations", getBufferAllocations());
+        for(PipelineStage stage : PipelineStage.values()) {
+            String name = stage.name().toLowerCase();
+            LatencyHistogram histogram = timings.getHistogram(stage);
+            visitor.visit(name + ".count", histogram.getCount());
+            visitor.visit(name + ".mean_us", histogram.getMeanNanos() / 1000);
+            for(double percentile : PERCENTILES) {
+                visitor.visit(name + ".p" + (int) percentile + "_us", histogram.getValueAtPercentile(percentile) / 1000);
+            }
+            visitor.visit(name + ".max_us", histogram.getMaxNanos() / 1000);
+        }
+        DetectionQueue queue = detectionQueue;
+        if(queue != null) {
+            visitor.visit("queue.depth", queue.getQueueDepth());
+            visitor.visit("queue.max_depth", queue.getMaxQueueDepth());
+            for(DetectionPriority priority : DetectionPriority.values()) {
+                String name = "queue." + priority.name().toLowerCase();
+                visitor.visit(name + ".started", queue.getStartedCount(priority));
+                visitor.visit(name + ".rejected", queue.getRejectedCount(priority));
+                LatencyHistogram waits = queue.getWaitTimes(priority);
+                for(double percentile : PERCENTILES) {
+                    visitor.visit(name + ".wait_p" + (int) percentile + "_us", waits.getValueAtPercentile(percentile) / 1000);
+                }
+                visitor.visit(name + ".wait_max_us", waits.getMaxNanos() / 1000);
+                LatencyHistogram latencies = queue.getLatencies(priority);
+                visitor.visit(name + ".latency_p50_us", latencies.getValueAtPercentile(50.0) / 1000);
+                visitor.visit(name + ".latency_p90_us", latencies.getValueAtPercentile(90.0) / 1000);
+            }
+        }
+    }
+
+    /**
+     * Writes a few short lines for an on-screen overlay into {@code out}, replacing its contents.
+     */
+    public void formatHud(long nowNanos, StringBuilder out) {
+        out.setLength(0);
+        out.append(Math.round(getCameraFps(nowNanos))).append(" fps camera, ")
+                .append(Math.round(getDetectionFps(nowNanos))).append(" fps detection, ")
+                .append(getDroppedFrames()).append(" dropped");
+        for(PipelineStage stage : PipelineStage.values()) {
+            LatencyHistogram histogram = timings.getHistogram(stage);
+            out.append('\n').append(stage.name().toLowerCase())
+                    .append(" p50 ").append(toMillis(histogram.getValueAtPercentile(50.0)))
+                    .append(" p90 ").append(toMillis(histogram.getValueAtPercentile(90.0)))
+                    .append(" max ").append(toMillis(histogram.getMaxNanos()))
+                    .append(" ms");
+        }
+        out.append("\ngc ").append(getGcCount()).append(" (").append(getGcTimeMillis()).append(" ms), ");
+        long allocated = getAllocatedBytes();
+        if(allocated == RuntimeCounters.UNKNOWN) {
+            out.append("allocated unknown");
+        } else {
+            out.append(allocated / 1024).append(" KB allocated");
+        }
+        out.append("\nbuffers ").append(getBufferCopies()).append(" copied, ")
+                .append(getBufferCopiesAvoided()).append(" shared, ")
+                .append(getBufferExhaustions()).append(" exhausted");
+        DetectionQueue queue = detectionQueue;
+        if(queue != null) {
+            LatencyHistogram interactive = queue.getWaitTimes(DetectionPriority.INTERACTIVE);
+            out.append("\nqueue ").append(queue.getQueueDepth()).append(" (max ").append(queue.getMaxQueueDepth())
+                    .append("), ").append(queue.getRejectedCount(DetectionPriority.LIVE)).append(" live rejected")
+                    .append(", interactive wait p90 ").append(toMillis(interactive.getValueAtPercentile(90.0)))
+                    .append(" ms");
+        }
+    }
+
+    public interface Visitor {
+        void visit(String name, long value);
+    }
+
+    private static long since(long value, long start) {
+        if(value == RuntimeCounters.UNKNOWN || start == RuntimeCounters.UNKNOWN) {
+            return RuntimeCounters.UNKNOWN;
+        }
+        return value - start;
+    }
+
+    private static float toMillis(long nanos) {
+        //One decimal without going through String.format
+        return Math.round(nanos / 100000f) / 10f;
+    }
+}
@@ -0,0 +1,461 @@
+package com.facial.smileornosmile.pipeline;
+
+import com.facial.smileornosmile.burst.BestShotBuffer;
+import com.facial.smileornosmile.classify.ClassificationMode;
+import com.facial.smileornosmile.classify.GeometricClassifier;
+import com.facial.smileornosmile.classify.GeometricModel;
+import com.facial.smileornosmile.detector.DetectionImage;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.events.SmileEventEngine;
+import com.facial.smileornosmile.frame.FrameBuffer;
+import com.facial.smileornosmile.frame.FrameBufferPool;
+import com.facial.smileornosmile.frame.LiveFrame;
+import com.facial.smileornosmile.frame.Nv21;
+import com.facial.smileornosmile.frame.RoiController;
+import com.facial.smileornosmile.frame.RoiPlan;
+import com.facial.smileornosmile.governor.QualityGovernor;
+import com.facial.smileornosmile.governor.QualityLevel;
+import com.facial.smileornosmile.metrics.Tracer;
+import com.facial.smileornosmile.render.ContourGeometry;
+import com.facial.smileornosmile.scheduler.DetectionQueue;
+import com.facial.smileornosmile.render.ContourTable;
+import com.facial.smileornosmile.scheduler.DetectionRejectedException;
+import com.facial.smileornosmile.scheduler.FrameScheduler;
+import com.facial.smileornosmile.scheduler.SchedulingPolicy;
+import com.facial.smileornosmile.session.SessionLogWriter;
+import com.facial.smileornosmile.tracking.DetectionCadence;
+import com.facial.smileornosmile.tracking.FaceObservations;
+import com.facial.smileornosmile.tracking.FaceTracker;
+import com.facial.smileornosmile.tracking.TrackedFace;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The live path from a frame to the contour geometry of the tracked faces: scheduling, cropping
+ * around the tracked faces, detection, tracking, smile events and contour flattening. Drawing is
+ * left to the {@link Output}, so the same path runs on a device and on the JVM against recorded
+ * frames.
+ *
+ * Frames are offered from a single thread, like the camera's. Everything after that, including
+ * all {@link Output} calls, happens on the processing executor, which owns the tracker, the
+ * observations and the smile events.
+ *
+ * Frame data is owned by references: a frame waiting for or in detection is frozen, and a crop
+ * holds a pooled direct buffer, both released only once the detection completed or failed. With
+ * {@link #withBestShots(BestShotBuffer) best shots} on, a cropped frame is held until then too,
+ * so its tracked faces can be scored and the frame copied into the buffer on the processing
+ * thread, not in the frame callback.
+ *
+ * With {@link ClassificationMode#GEOMETRIC geometric classification} faces are detected without
+ * the detector's classifier where the quality level has contours, and classified from their
+ * contours on the processing thread before tracking.
+ *
+ * Given a {@link DetectionQueue} view as its backend, live detections rejected in favour of more
+ * urgent work count as dropped frames, not failures. Told about the queue with
+ * {@link #withDetectionQueue(DetectionQueue)}, frames it would pause or thin away are not even
+ * frozen or cropped; the tracker predicts for them instead.
+ */
+public class LiveFramePipeline {
+
+    public interface Output {
+        /**
+         * The tracked faces are ready to draw. {@code geometry} is only valid during the call.
+         *
+         * @param startNanos when the geometry was done, for timing the stages after it
+         */
+        void onOverlay(ContourGeometry geometry, int width, int height, boolean mirrored, long startNanos);
+
+        /**
+         * A detection finished, with {@code fresh} telling whether its result was recent enough to use.
+         */
+        void onDetectionFinished(boolean fresh);
+
+        void onDetectionFailed(Exception e);
+    }
+
+    public static final int MAX_FACES = 4;
+    //The live overlay contours have about 100 points per face
+    public static final int MAX_CONTOUR_POINTS = 160;
+    public static final int DEFAULT_DETECTION_INTERVAL = 2;
+
+    private final FaceDetectorBackend backend;
+    private final QualityGovernor governor;
+    private final SmileEventEngine smileEvents;
+    private final FrameMetrics metrics;
+    private final Tracer tracer;
+    private final Executor processingExecutor;
+    private final Output output;
+    private final FrameScheduler<LiveFrame> scheduler;
+
+    private final ContourGeometry contourGeometry = new ContourGeometry();
+    private final FaceObservations observations = new FaceObservations(MAX_FACES, ContourTable.LIVE_OVERLAY.size(), MAX_CONTOUR_POINTS);
+    private final FaceTracker tracker = new FaceTracker(MAX_FACES, ContourTable.LIVE_OVERLAY.size(), MAX_CONTOUR_POINTS);
+    private final AtomicBoolean predictionQueued = new AtomicBoolean();
+    private final RoiController roiController = new RoiController();
+    //One crop per detection in flight plus one being filled, direct so the detector reads it in place
+    private final FrameBufferPool cropBufferPool = new FrameBufferPool(2, true);
+    private final float[] trackedBounds = new float[4];
+    private volatile DetectionCadence detectionCadence = new DetectionCadence(DEFAULT_DETECTION_INTERVAL);
+    private volatile boolean roiDetection = true;
+    private volatile BestShotBuffer bestShots;
+    private volatile SessionLogWriter sessionLog;
+    private volatile DetectionQueue detectionQueue;
+    private volatile ClassificationMode classificationMode = ClassificationMode.MODEL;
+    private volatile GeometricClassifier geometricClassifier = new GeometricClassifier(ContourTable.LIVE_OVERLAY, GeometricModel.DEFAULT);
+    private volatile int trackedFaceCount;
+
+    /**
+     * @param smileEvents fed the tracked faces after every fresh detection, for up to {@link #MAX_FACES} faces
+     */
+    public LiveFramePipeline(FaceDetectorBackend backend, QualityGovernor governor, SmileEventEngine smileEvents,
+                             FrameMetrics metrics, Tracer tracer, Executor processingExecutor, Output output) {
+        this.backend = backend;
+        this.governor = governor;
+        this.smileEvents = smileEvents;
+        this.metrics = metrics;
+        this.tracer = tracer;
+        this.processingExecutor = processingExecutor;
+        this.output = output;
+        //Only one live detection at a time, frames arriving meanwhile are dropped except the newest
+        scheduler = new FrameScheduler<>(schedulingPolicy(governor.getLevel()), new FrameScheduler.Callback<LiveFrame>() {
+            @Override
+            public void onDispatch(LiveFrame frame, long timestampNanos) {
+                detectFrame(frame, timestampNanos);
+            }
+
+            @Override
+            public void onDrop(LiveFrame frame) {
+                frame.release();
+                LiveFramePipeline.this.governor.onFrameDropped();
+                LiveFramePipeline.this.metrics.onFrameDropped();
+            }
+        });
+    }
+
+    /**
+     * Detect on every {@code interval}th frame while faces are tracked and let the tracker predict in between.
+     */
+    public LiveFramePipeline withDetectionInterval(int interval) {
+        detectionCadence = new DetectionCadence(interval);
+        return this;
+    }
+
+    /**
+     * Whether to detect in a crop around the tracked faces instead of the whole frame. On by default.
+     */
+    public LiveFramePipeline withRoiDetection(boolean enabled) {
+        roiDetection = enabled;
+        return this;
+    }
+
+    /**
+     * Keeps every freshly detected frame with the scores of its tracked faces in {@code buffer},
+     * or nothing if null.
+     */
+    public LiveFramePipeline withBestShots(BestShotBuffer buffer) {
+        bestShots = buffer;
+        return this;
+    }
+
+    /**
+     * Appends the tracked faces seen in every fresh detection to {@code log}, or nothing if null.
+     */
+    public LiveFramePipeline withSessionLog(SessionLogWriter log) {
+        sessionLog = log;
+        return this;
+    }
+
+    /**
+     * Asks {@code queue}, the one the backend is a live view of, before preparing a frame for
+     * detection, or nothing if null.
+     */
+    public LiveFramePipeline withDetectionQueue(DetectionQueue queue) {
+        detectionQueue = queue;
+        return this;
+    }
+
+    /**
+     * Where the smiling and eyes open probabilities come from, {@link ClassificationMode#MODEL} by default.
+     *
+     * @param model turns contours into probabilities in {@link ClassificationMode#GEOMETRIC} mode
+     */
+    public LiveFramePipeline withClassification(ClassificationMode mode, GeometricModel model) {
+        geometricClassifier = new GeometricClassifier(ContourTable.LIVE_OVERLAY, model);
+        classificationMode = mode;
+        return this;
+    }
+
+    /**
+     * The profile the next detection at {@code level} uses.
+     */
+    public DetectorProfile getLiveProfile(QualityLevel level) {
+        return classificationMode.getLiveProfile(level.getLiveProfile());
+    }
+
+    /**
+     * Handles a newly captured frame. The frame itself is not kept, frames that are detected on are frozen.
+     */
+    public void process(LiveFrame frame, long timestampNanos) {
+        metrics.onCameraFrame(timestampNanos);
+        if(!detectionCadence.shouldDetect(trackedFaceCount > 0)) {
+            //In between full detections the tracker moves the last known faces along
+            renderPrediction(frame.getWidth(), frame.getHeight(), frame.isMirrored(), timestampNanos);
+            return;
+        }
+        DetectionQueue queue = detectionQueue;
+        if(queue != null && queue.isLivePaused()) {
+            //Other work has the detector, no use copying or cropping a frame it would turn away
+            metrics.onFrameDropped();
+            renderPrediction(frame.getWidth(), frame.getHeight(), frame.isMirrored(), timestampNanos);
+            return;
+        }
+        //The detector works asynchronously, so it needs its own copy of the recycled camera buffer
+        scheduler.offer(frame.freeze(), timestampNanos);
+    }
+
+    /**
+     * Applies the frame rate of a new quality level. Downsampling and detector profile follow with the next detection.
+     */
+    public void onLevelChanged(QualityLevel level) {
+        scheduler.setPolicy(schedulingPolicy(level));
+    }
+
+    /**
+     * Forgets the tracked faces, for example after switching cameras.
+     */
+    public void reset() {
+        processingExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                tracker.clear();
+                smileEvents.reset();
+                trackedFaceCount = 0;
+                roiController.onTrackingLost();
+            }
+        });
+    }
+
+    /**
+     * Drops the frame waiting for detection, if any.
+     */
+    public void clear() {
+        scheduler.clear();
+    }
+
+    public FrameScheduler<LiveFrame> getScheduler() {
+        return scheduler;
+    }
+
+    public int getTrackedFaceCount() {
+        return trackedFaceCount;
+    }
+
+    public long getCropAllocations() {
+        return cropBufferPool.getAllocations();
+    }
+
+    public FrameBufferPool getCropBufferPool() {
+        return cropBufferPool;
+    }
+
+    static SchedulingPolicy schedulingPolicy(QualityLevel level) {
+        return level.hasFpsLimit() ? SchedulingPolicy.targetFps(level.getTargetFps()) : SchedulingPolicy.latestFrameWins();
+    }
+
+    private void renderPrediction(final int width, final int height, final boolean mirrored, final long timestampNanos) {
+        //Skip if the processing thread has not caught up with the previous prediction yet
+        if(!predictionQueued.compareAndSet(false, true)) {
+            return;
+        }
+        processingExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                predictionQueued.set(false);
+                long start = System.nanoTime();
+                tracker.predict(timestampNanos);
+                renderOverlay(width, height, mirrored, start);
+            }
+        });
+    }
+
+    private void renderOverlay(int width, int height, boolean mirrored, long start) {
+        tracer.beginSection(Tracer.GEOMETRY);
+        tracker.flattenContours(ContourTable.LIVE_OVERLAY, contourGeometry);
+        start = metrics.getTimings().recordSince(PipelineStage.GEOMETRY, start);
+        tracer.endSection();
+        output.onOverlay(contourGeometry, width, height, mirrored, start);
+    }
+
+    private void detectFrame(final LiveFrame frame, final long timestampNanos) {
+        final int width = frame.getWidth();
+        final int height = frame.getHeight();
+        final boolean mirrored = frame.isMirrored();
+
+        QualityLevel level = governor.getLevel();
+        final RoiPlan roiPlan = new RoiPlan();
+        if(!roiDetection) {
+            //Always plans the whole frame, still downsampled as the quality level asks
+            roiController.onTrackingLost();
+        }
+        roiController.plan(width, height, frame.getRotation(), level.getDownsample(), roiPlan);
+        final boolean cropped = roiPlan.isCropped();
+        final BestShotBuffer shots = bestShots;
+        ClassificationMode mode = classificationMode;
+        DetectorProfile profile = mode.getLiveProfile(level.getLiveProfile());
+        final GeometricClassifier classifier = mode == ClassificationMode.GEOMETRIC && !profile.hasClassification()
+                ? geometricClassifier : null;
+        final FrameBuffer crop;
+        ByteBuffer data;
+        if(cropped) {
+            //The crop is a copy, so the frame can go back right away unless it may become a best shot
+            tracer.beginSection(Tracer.CROP);
+            crop = cropBufferPool.acquire(Nv21.size(roiPlan.getOutputWidth(), roiPlan.getOutputHeight()));
+            data = crop.getBuffer();
+            Nv21.cropAndDownsample(frame.getData(), width, height, roiPlan.getCropLeft(), roiPlan.getCropTop(),
+                    roiPlan.getCropWidth(), roiPlan.getCropHeight(), roiPlan.getDownsample(), data);
+            if(shots == null) {
+                frame.release();
+            }
+            tracer.endSection();
+        } else {
+            crop = null;
+            data = frame.getData();
+        }
+
+        DetectionImage detectionImage = cropped
+                ? DetectionImage.nv21(data, roiPlan.getOutputWidth(), roiPlan.getOutputHeight(), frame.getRotation())
+                        .fromFrame(timestampNanos, roiPlan.getScale(), roiPlan.getOffsetX(), roiPlan.getOffsetY())
+                : DetectionImage.nv21(data, width, height, frame.getRotation()).fromFrame(timestampNanos, 1f, 0f, 0f);
+
+        final long detectionStart = System.nanoTime();
+        final int traceCookie = (int) timestampNanos;
+        tracer.beginAsyncSection(Tracer.DETECTION, traceCookie);
+        backend.detect(detectionImage, profile, observations, processingExecutor, new FaceDetectorBackend.Callback() {
+            @Override
+            public void onDetected(FaceObservations faces) {
+                long start = metrics.getTimings().recordSince(PipelineStage.DETECTION, detectionStart);
+                tracer.endAsyncSection(Tracer.DETECTION, traceCookie);
+                releaseCrop(crop);
+                long now = System.nanoTime();
+                governor.onDetection(now - timestampNanos, now);
+                metrics.onDetection(now);
+                boolean fresh = scheduler.complete(timestampNanos, now);
+                output.onDetectionFinished(fresh);
+                if(!fresh) {
+                    //Result is too old to match what the camera shows, wait for the next one
+                    releaseFrame(frame, cropped, shots);
+                    return;
+                }
+                if(cropped) {
+                    observations.transform(roiPlan.getScale(), roiPlan.getOffsetX(), roiPlan.getOffsetY());
+                }
+                if(classifier != null) {
+                    tracer.beginSection(Tracer.CLASSIFY);
+                    classifier.classify(observations);
+                    tracer.endSection();
+                }
+                tracker.update(observations, timestampNanos);
+                trackedFaceCount = tracker.getTrackCount();
+                updateSmileEvents(timestampNanos);
+                SessionLogWriter log = sessionLog;
+                if(log != null) {
+                    appendSessionLog(log, timestampNanos);
+                }
+                if(shots != null) {
+                    addBestShot(shots, frame, timestampNanos);
+                }
+                releaseFrame(frame, cropped, shots);
+                if(tracker.getBounds(trackedBounds)) {
+                    roiController.setRegion(trackedBounds[0], trackedBounds[1], trackedBounds[2], trackedBounds[3]);
+                } else {
+                    roiController.onTrackingLost();
+                }
+                renderOverlay(width, height, mirrored, start);
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                tracer.endAsyncSection(Tracer.DETECTION, traceCookie);
+                releaseCrop(crop);
+                releaseFrame(frame, cropped, shots);
+                if(e instanceof DetectionRejectedException) {
+                    //Other work has the detector, the tracked faces move on by prediction meanwhile
+                    scheduler.cancel(timestampNanos, System.nanoTime());
+                    metrics.onFrameDropped();
+                    long start = System.nanoTime();
+                    tracker.predict(timestampNanos);
+                    renderOverlay(width, height, mirrored, start);
+                    return;
+                }
+                scheduler.complete(timestampNanos, System.nanoTime());
+                output.onDetectionFailed(e);
+            }
+        });
+    }
+
+    /**
+     * Feeds the smoothed probabilities of the tracked faces to the smile events. Runs on the processing thread.
+     */
+    private void updateSmileEvents(long timestampNanos) {
+        smileEvents.beginFrame(timestampNanos);
+        for(int i = 0; i < tracker.getTrackCount(); i++) {
+            TrackedFace track = tracker.getTrack(i);
+            smileEvents.addFace(track.getId(), track.getSmilingProbability(),
+                    track.getLeftEyeOpenProbability(), track.getRightEyeOpenProbability());
+        }
+        smileEvents.endFrame();
+    }
+
+    /**
+     * Appends the tracked faces matched in this detection, not those only carried along. Runs on
+     * the processing thread, the log only writes when a block is full.
+     */
+    private void appendSessionLog(SessionLogWriter log, long timestampNanos) {
+        for(int i = 0; i < tracker.getTrackCount(); i++) {
+            TrackedFace track = tracker.getTrack(i);
+            if(track.getMissedFrames() == 0) {
+                log.append(timestampNanos, track.getId(), track.getSmilingProbability(), track.getLeftEyeOpenProbability(),
+                        track.getRightEyeOpenProbability(), track.getLeft(), track.getTop(), track.getRight(), track.getBottom());
+            }
+        }
+    }
+
+    /**
+     * Copies the frame into the best shots with the smoothed probabilities of the tracked faces.
+     * Runs on the processing thread.
+     */
+    private void addBestShot(BestShotBuffer shots, LiveFrame frame, long timestampNanos) {
+        tracer.beginSection(Tracer.BEST_SHOT);
+        shots.beginFrame(frame.getData(), frame.getWidth(), frame.getHeight(), frame.getRotation(), frame.isMirrored(),
+                timestampNanos);
+        for(int i = 0; i < tracker.getTrackCount(); i++) {
+            TrackedFace track = tracker.getTrack(i);
+            shots.addFace(track.getSmilingProbability(), track.getLeftEyeOpenProbability(), track.getRightEyeOpenProbability());
+        }
+        shots.endFrame();
+        tracer.endSection();
+    }
+
+    private static void releaseCrop(FrameBuffer crop) {
+        if(crop != null) {
+            crop.release();
+        }
+    }
+
+    /**
+     * Releases the frame unless it already went back after cropping.
+     */
+    private static void releaseFrame(LiveFrame frame, boolean cropped, BestShotBuffer shots) {
+        if(!cropped || shots != null) {
+            frame.release();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return scheduler + " " + metrics.getTimings() + " " + governor;
+    }
+}
@@ -0,0 +1,101 @@
+package com.facial.smileornosmile.pipeline;
+
+import com.facial.smileornosmile.startup.StartupSequence;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+
+/**
+ * Appends {@link FrameMetrics} as CSV lines of {@code device,build,session,metric,value}, one line
+ * per value, so exports from different devices and builds can be concatenated and compared.
+ */
+public class MetricsCsvWriter implements Closeable {
+    public static final String HEADER = "device,build,session,metric,value";
+
+    private final BufferedWriter writer;
+    private final String prefix;
+
+    public MetricsCsvWriter(File file, String device, String build) throws IOException {
+        boolean writeHeader = !file.exists() || file.length() == 0;
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), Charset.forName("UTF-8")));
+        prefix = escape(device) + ',' + escape(build) + ',';
+        if(writeHeader) {
+            writer.write(HEADER);
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Writes and flushes every value of {@code metrics} as they are at {@code nowNanos}.
+     */
+    public synchronized void write(final String session, FrameMetrics metrics, long nowNanos) throws IOException {
+        final IOException[] failure = new IOException[1];
+        final String escapedSession = escape(session);
+        metrics.visit(nowNanos, new FrameMetrics.Visitor() {
+            @Override
+            public void visit(String name, long value) {
+                if(failure[0] != null) {
+                    return;
+                }
+                try {
+                    writeLine(escapedSession, name, value);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if(failure[0] != null) {
+            throw failure[0];
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes and flushes when each milestone of {@code startup} was reached and how long each task
+     * took, in milliseconds, named like {@code startup.first_detection_ms}. Milestones not reached
+     * yet are left out.
+     */
+    public synchronized void write(String session, StartupSequence startup) throws IOException {
+        String escapedSession = escape(session);
+        for(StartupSequence.Milestone milestone : StartupSequence.Milestone.values()) {
+            long nanos = startup.getNanos(milestone);
+            if(nanos != StartupSequence.NOT_REACHED) {
+                writeLine(escapedSession, "startup." + milestone.name().toLowerCase() + "_ms", nanos / 1000000);
+            }
+        }
+        for(int i = 0; i < startup.getTaskCount(); i++) {
+            long nanos = startup.getTaskNanos(i);
+            if(nanos != StartupSequence.NOT_REACHED) {
+                writeLine(escapedSession, "startup.task." + startup.getTaskName(i) + "_ms", nanos / 1000000);
+            }
+        }
+        writer.flush();
+    }
+
+    private void writeLine(String escapedSession, String name, long value) throws IOException {
+        writer.write(prefix);
+        writer.write(escapedSession);
+        writer.write(',');
+        writer.write(name);
+        writer.write(',');
+        writer.write(Long.toString(value));
+        writer.write('\n');
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private static String escape(String item) {
+        if(item.indexOf(',') < 0 && item.indexOf('"') < 0 && item.indexOf('\n') < 0) {
+            return item;
+        }
+        return '"' + item.replace("\"", "\"\"") + '"';
+    }
+}
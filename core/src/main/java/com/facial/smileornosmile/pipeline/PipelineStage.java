@@ -0,0 +1,15 @@
+package com.facial.smileornosmile.pipeline;
+
+/**
+ * The steps a detection result goes through before it is on screen.
+ */
+public enum PipelineStage {
+    /** From handing the image to the detector until its result is delivered */
+    DETECTION,
+    /** Turning detector output into drawable geometry or result rows */
+    GEOMETRY,
+    /** Drawing into the overlay or annotated bitmap */
+    RENDER,
+    /** Handing the result to the views on the main thread */
+    PUBLISH
+}
@@ -0,0 +1,105 @@
+package com.facial.smileornosmile.pipeline;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where detection results are processed and where they are published.
+ * Processing covers geometry and rendering, publishing is the final hand-off to the views.
+ *
+ * After {@link #shutdown(Runnable)} processing work is dropped instead of rejected: detections
+ * still running when the activity goes away deliver their results on the detector's threads,
+ * where a {@link java.util.concurrent.RejectedExecutionException} would crash the app.
+ */
+public class PipelineThreading {
+    private final Executor targetExecutor;
+    private final Executor processingExecutor;
+    private final Executor publishExecutor;
+    private final ExecutorService ownedExecutor;
+    private final Object lock = new Object();
+    private boolean shutdown;
+
+    private PipelineThreading(Executor targetExecutor, Executor publishExecutor, ExecutorService ownedExecutor) {
+        this.targetExecutor = targetExecutor;
+        this.publishExecutor = publishExecutor;
+        this.ownedExecutor = ownedExecutor;
+        processingExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                synchronized(lock) {
+                    if(!shutdown) {
+                        PipelineThreading.this.targetExecutor.execute(command);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Processing on one dedicated background thread, publishing on {@code mainExecutor}.
+     * A single thread keeps results in order and lets the renderer stay single threaded.
+     */
+    public static PipelineThreading background(Executor mainExecutor) {
+        ExecutorService executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "detection-pipeline");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.DiscardPolicy());
+        return new PipelineThreading(executor, mainExecutor, executor);
+    }
+
+    /**
+     * Everything on {@code mainExecutor}, like before the pipeline existed.
+     */
+    public static PipelineThreading mainThread(Executor mainExecutor) {
+        return new PipelineThreading(mainExecutor, mainExecutor, null);
+    }
+
+    public Executor getProcessingExecutor() {
+        return processingExecutor;
+    }
+
+    public Executor getPublishExecutor() {
+        return publishExecutor;
+    }
+
+    public boolean isBackground() {
+        return ownedExecutor != null;
+    }
+
+    /**
+     * Stops taking processing work and stops the background thread, if this instance created one.
+     */
+    public void shutdown() {
+        shutdown(null);
+    }
+
+    /**
+     * Stops taking processing work, from then on it is silently dropped, and runs {@code last}
+     * after the work already queued, then stops the background thread if this instance created one.
+     *
+     * @param last cleanup of what belongs to the processing thread, or null
+     */
+    public void shutdown(Runnable last) {
+        synchronized(lock) {
+            if(shutdown) {
+                return;
+            }
+            shutdown = true;
+            if(last != null) {
+                targetExecutor.execute(last);
+            }
+            if(ownedExecutor != null) {
+                ownedExecutor.shutdown();
+            }
+        }
+    }
+}
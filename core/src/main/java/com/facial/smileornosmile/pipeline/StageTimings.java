@@ -0,0 +1,109 @@
+package com.facial.smileornosmile.pipeline;
+
+import com.facial.smileornosmile.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-stage latency counters and histograms. Recording is lock free, does not allocate and can
+ * happen from any thread.
+ */
+public class StageTimings {
+    private static final int COUNT = 0;
+    private static final int TOTAL = 1;
+    private static final int MAX = 2;
+    private static final int LAST = 3;
+    private static final int FIELDS = 4;
+
+    private final AtomicLongArray values = new AtomicLongArray(PipelineStage.values().length * FIELDS);
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PipelineStage.values().length];
+
+    public StageTimings() {
+        for(int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void record(PipelineStage stage, long durationNanos) {
+        int base = stage.ordinal() * FIELDS;
+        values.incrementAndGet(base + COUNT);
+        values.addAndGet(base + TOTAL, durationNanos);
+        values.set(base + LAST, durationNanos);
+        long max;
+        do {
+            max = values.get(base + MAX);
+        } while(durationNanos > max && !values.compareAndSet(base + MAX, max, durationNanos));
+        histograms[stage.ordinal()].record(durationNanos);
+    }
+
+    /**
+     * Records the time since {@code startNanos} and returns the current time, so consecutive
+     * stages can be chained.
+     */
+    public long recordSince(PipelineStage stage, long startNanos) {
+        long now = System.nanoTime();
+        record(stage, now - startNanos);
+        return now;
+    }
+
+    public long getCount(PipelineStage stage) {
+        return values.get(stage.ordinal() * FIELDS + COUNT);
+    }
+
+    public long getTotalNanos(PipelineStage stage) {
+        return values.get(stage.ordinal() * FIELDS + TOTAL);
+    }
+
+    public long getMaxNanos(PipelineStage stage) {
+        return values.get(stage.ordinal() * FIELDS + MAX);
+    }
+
+    public long getLastNanos(PipelineStage stage) {
+        return values.get(stage.ordinal() * FIELDS + LAST);
+    }
+
+    public long getMeanNanos(PipelineStage stage) {
+        long count = getCount(stage);
+        return count == 0 ? 0 : getTotalNanos(stage) / count;
+    }
+
+    /**
+     * @see LatencyHistogram#getValueAtPercentile(double)
+     */
+    public long getPercentileNanos(PipelineStage stage, double percentile) {
+        return histograms[stage.ordinal()].getValueAtPercentile(percentile);
+    }
+
+    public LatencyHistogram getHistogram(PipelineStage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public void reset() {
+        for(int i = 0; i < values.length(); i++) {
+            values.set(i, 0);
+        }
+        for(LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("StageTimings{");
+        PipelineStage[] stages = PipelineStage.values();
+        for(int i = 0; i < stages.length; i++) {
+            if(i > 0) {
+                builder.append(", ");
+            }
+            builder.append(stages[i].name().toLowerCase())
+                    .append("=")
+                    .append(getMeanNanos(stages[i]) / 1000)
+                    .append("/")
+                    .append(getPercentileNanos(stages[i], 90.0) / 1000)
+                    .append("/")
+                    .append(getMaxNanos(stages[i]) / 1000)
+                    .append("us");
+        }
+        return builder.append("}").toString();
+    }
+}
@@ -0,0 +1,120 @@
+package com.facial.smileornosmile.render;
+
+/**
+ * Flattens face contours into two primitive buffers that can be drawn with one
+ * {@code Canvas.drawLines} and one {@code Canvas.drawPoints} call:
+ * line segments as {@code x0, y0, x1, y1} and points as {@code x, y}.
+ *
+ * The buffers only grow, so after the first few frames nothing is allocated.
+ * Not thread safe.
+ */
+public class ContourGeometry {
+    private static final int INITIAL_POINT_CAPACITY = 256;
+
+    private float[] lines = new float[INITIAL_POINT_CAPACITY * 4];
+    private float[] points = new float[INITIAL_POINT_CAPACITY * 2];
+    private int lineFloats;
+    private int pointFloats;
+
+    private boolean inContour;
+    private boolean closed;
+    private int contourStart;
+
+    /**
+     * Forget all contours, keeping the buffers.
+     */
+    public void reset() {
+        lineFloats = 0;
+        pointFloats = 0;
+        inContour = false;
+    }
+
+    public void beginContour(boolean closed) {
+        if(inContour) {
+            throw new IllegalStateException("beginContour called twice without endContour");
+        }
+        inContour = true;
+        this.closed = closed;
+        contourStart = pointFloats;
+    }
+
+    public void addPoint(float x, float y) {
+        if(!inContour) {
+            throw new IllegalStateException("addPoint called outside a contour");
+        }
+        if(pointFloats > contourStart) {
+            appendLine(points[pointFloats - 2], points[pointFloats - 1], x, y);
+        }
+        if(pointFloats + 2 > points.length) {
+            points = grow(points, pointFloats + 2);
+        }
+        points[pointFloats++] = x;
+        points[pointFloats++] = y;
+    }
+
+    public void endContour() {
+        if(!inContour) {
+            throw new IllegalStateException("endContour called without beginContour");
+        }
+        inContour = false;
+        // A closed contour needs at least three points to have a closing segment of its own
+        if(closed && pointFloats - contourStart >= 6) {
+            appendLine(points[pointFloats - 2], points[pointFloats - 1],
+                    points[contourStart], points[contourStart + 1]);
+        }
+    }
+
+    /**
+     * Adds a whole contour from interleaved {@code x, y} coordinates.
+     */
+    public void addContour(float[] xy, int offset, int pointCount, boolean closed) {
+        beginContour(closed);
+        int end = offset + pointCount * 2;
+        for(int i = offset; i < end; i += 2) {
+            addPoint(xy[i], xy[i + 1]);
+        }
+        endContour();
+    }
+
+    public float[] getLines() {
+        return lines;
+    }
+
+    /** Number of valid floats in {@link #getLines()}, four per segment */
+    public int getLineFloatCount() {
+        return lineFloats;
+    }
+
+    public float[] getPoints() {
+        return points;
+    }
+
+    /** Number of valid floats in {@link #getPoints()}, two per point */
+    public int getPointFloatCount() {
+        return pointFloats;
+    }
+
+    public int getSegmentCount() {
+        return lineFloats / 4;
+    }
+
+    public int getPointCount() {
+        return pointFloats / 2;
+    }
+
+    private void appendLine(float x0, float y0, float x1, float y1) {
+        if(lineFloats + 4 > lines.length) {
+            lines = grow(lines, lineFloats + 4);
+        }
+        lines[lineFloats++] = x0;
+        lines[lineFloats++] = y0;
+        lines[lineFloats++] = x1;
+        lines[lineFloats++] = y1;
+    }
+
+    private static float[] grow(float[] buffer, int required) {
+        float[] grown = new float[Math.max(required, buffer.length * 2)];
+        System.arraycopy(buffer, 0, grown, 0, buffer.length);
+        return grown;
+    }
+}
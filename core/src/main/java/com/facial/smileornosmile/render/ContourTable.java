@@ -0,0 +1,60 @@
+package com.facial.smileornosmile.render;
+
+import com.facial.smileornosmile.detector.FaceContourType;
+
+/**
+ * Which contours are drawn and whether the last point connects back to the first.
+ */
+public final class ContourTable {
+
+    /** What the live overlay has always shown */
+    public static final ContourTable LIVE_OVERLAY = new ContourTable(
+            new int[]{
+                    FaceContourType.FACE,
+                    FaceContourType.LEFT_EYE,
+                    FaceContourType.RIGHT_EYE,
+                    FaceContourType.LEFT_EYEBROW_BOTTOM,
+                    FaceContourType.RIGHT_EYEBROW_BOTTOM,
+                    FaceContourType.UPPER_LIP_BOTTOM,
+                    FaceContourType.LOWER_LIP_TOP,
+                    FaceContourType.NOSE_BRIDGE,
+                    FaceContourType.NOSE_BOTTOM
+            },
+            new boolean[]{
+                    true,
+                    true,
+                    true,
+                    false,
+                    false,
+                    false,
+                    false,
+                    false,
+                    false
+            });
+
+    /** For detections without contours */
+    public static final ContourTable NONE = new ContourTable(new int[0], new boolean[0]);
+
+    private final int[] types;
+    private final boolean[] closed;
+
+    public ContourTable(int[] types, boolean[] closed) {
+        if(types.length != closed.length) {
+            throw new IllegalArgumentException("types and closed must have the same length");
+        }
+        this.types = types.clone();
+        this.closed = closed.clone();
+    }
+
+    public int size() {
+        return types.length;
+    }
+
+    public int getType(int index) {
+        return types[index];
+    }
+
+    public boolean isClosed(int index) {
+        return closed[index];
+    }
+}
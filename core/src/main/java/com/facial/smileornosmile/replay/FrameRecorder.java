@@ -0,0 +1,104 @@
+package com.facial.smileornosmile.replay;
+
+import com.facial.smileornosmile.tracking.FaceObservations;
+import com.facial.smileornosmile.tracking.FaceObservationsCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes a live frame stream and the detector results for it to a file that {@link FrameRecording}
+ * maps back into memory. Big endian, after an 8 byte header of magic and version every record is:
+ * <pre>
+ * frame:   byte 1, long timestamp, int width, int height, short rotation, byte mirrored, int length, NV21 data
+ * results: byte 2, long frame timestamp, long latency, faces as {@link FaceObservationsCodec} writes them
+ * </pre>
+ * Results are in frame coordinates. A recording cut short, for example by a crash, stays
+ * readable up to its last complete record. Thread safe.
+ */
+public class FrameRecorder implements Closeable {
+    static final int MAGIC = 0x534f4e52;
+    static final int VERSION = 1;
+    static final byte FRAME = 1;
+    static final byte RESULTS = 2;
+
+    private final DataOutputStream out;
+    private final byte[] copyBuffer = new byte[1 << 14];
+    private long frames;
+    private long results;
+
+    public FrameRecorder(File file) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * @param rotation clockwise rotation in degrees that makes the frame upright
+     */
+    public void writeFrame(long timestampNanos, byte[] nv21, int width, int height,
+                           int rotation, boolean mirrored) throws IOException {
+        writeFrame(timestampNanos, ByteBuffer.wrap(nv21), width, height, rotation, mirrored);
+    }
+
+    /**
+     * Writes the data from position 0 to the limit of {@code nv21}, leaving the buffer untouched.
+     *
+     * @param rotation clockwise rotation in degrees that makes the frame upright
+     */
+    public synchronized void writeFrame(long timestampNanos, ByteBuffer nv21, int width, int height,
+                                        int rotation, boolean mirrored) throws IOException {
+        int length = nv21.limit();
+        out.writeByte(FRAME);
+        out.writeLong(timestampNanos);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeShort(rotation);
+        out.writeByte(mirrored ? 1 : 0);
+        out.writeInt(length);
+        if(nv21.hasArray()) {
+            out.write(nv21.array(), nv21.arrayOffset(), length);
+        } else {
+            //Direct buffers go through a reused chunk
+            ByteBuffer in = nv21.duplicate();
+            in.clear().limit(length);
+            while(in.hasRemaining()) {
+                int chunk = Math.min(in.remaining(), copyBuffer.length);
+                in.get(copyBuffer, 0, chunk);
+                out.write(copyBuffer, 0, chunk);
+            }
+        }
+        frames++;
+    }
+
+    /**
+     * @param frameTimestampNanos the timestamp the frame was written with
+     * @param latencyNanos        how long the detector took
+     * @param faces               in frame coordinates
+     */
+    public synchronized void writeResults(long frameTimestampNanos, long latencyNanos, FaceObservations faces) throws IOException {
+        out.writeByte(RESULTS);
+        out.writeLong(frameTimestampNanos);
+        out.writeLong(latencyNanos);
+        FaceObservationsCodec.write(faces, out);
+        results++;
+    }
+
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    public synchronized long getResultCount() {
+        return results;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
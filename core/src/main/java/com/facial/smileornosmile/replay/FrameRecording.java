@@ -0,0 +1,219 @@
+package com.facial.smileornosmile.replay;
+
+import com.facial.smileornosmile.tracking.FaceObservations;
+import com.facial.smileornosmile.tracking.FaceObservationsCodec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A file written by {@link FrameRecorder}, mapped into memory and indexed once when opened.
+ * Frames are read by index, results by the timestamp of their frame. Reading is thread safe.
+ * Recordings are limited to 2 GB, the most a single mapping can hold.
+ */
+public class FrameRecording implements Closeable {
+    private final RandomAccessFile file;
+    private final ByteBuffer buffer;
+    private int frameCount;
+    private long[] timestamps = new long[64];
+    private int[] offsets = new int[64];
+    private int[] widths = new int[64];
+    private int[] heights = new int[64];
+    private int[] rotations = new int[64];
+    private boolean[] mirrored = new boolean[64];
+    private int[] lengths = new int[64];
+    private final Map<Long, Integer> resultOffsets = new HashMap<>();
+
+    private FrameRecording(RandomAccessFile file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    public static FrameRecording open(File path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            if(file.length() > Integer.MAX_VALUE) {
+                throw new IOException("Recording is larger than 2 GB: " + path);
+            }
+            ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if(buffer.remaining() < 8 || buffer.getInt() != FrameRecorder.MAGIC) {
+                throw new IOException("Not a frame recording: " + path);
+            }
+            int version = buffer.getInt();
+            if(version != FrameRecorder.VERSION) {
+                throw new IOException("Unsupported recording version " + version + ": " + path);
+            }
+            FrameRecording recording = new FrameRecording(file, buffer);
+            recording.index();
+            return recording;
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private void index() throws IOException {
+        ByteBuffer in = buffer.duplicate();
+        try {
+            while(in.hasRemaining()) {
+                int start = in.position();
+                byte type = in.get();
+                if(type == FrameRecorder.FRAME) {
+                    long timestamp = in.getLong();
+                    int width = in.getInt();
+                    int height = in.getInt();
+                    int rotation = in.getShort();
+                    boolean isMirrored = in.get() != 0;
+                    int length = in.getInt();
+                    if(length < 0 || length > in.remaining()) {
+                        break;
+                    }
+                    addFrame(timestamp, in.position(), width, height, rotation, isMirrored, length);
+                    in.position(in.position() + length);
+                } else if(type == FrameRecorder.RESULTS) {
+                    long timestamp = in.getLong();
+                    //The latency, read on demand
+                    in.getLong();
+                    FaceObservationsCodec.skip(in);
+                    resultOffsets.put(timestamp, start);
+                } else {
+                    throw new IOException("Unknown record type " + type + " at " + start);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            //The recording was cut short, everything complete before is still good
+        } catch (IllegalArgumentException e) {
+            //Same, with a length pointing past the end
+        }
+    }
+
+    private void addFrame(long timestamp, int offset, int width, int height, int rotation, boolean isMirrored, int length) {
+        if(frameCount == timestamps.length) {
+            int capacity = frameCount * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            rotations = Arrays.copyOf(rotations, capacity);
+            mirrored = Arrays.copyOf(mirrored, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        timestamps[frameCount] = timestamp;
+        offsets[frameCount] = offset;
+        widths[frameCount] = width;
+        heights[frameCount] = height;
+        rotations[frameCount] = rotation;
+        mirrored[frameCount] = isMirrored;
+        lengths[frameCount] = length;
+        frameCount++;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public int getResultCount() {
+        return resultOffsets.size();
+    }
+
+    public long getTimestampNanos(int frame) {
+        checkFrame(frame);
+        return timestamps[frame];
+    }
+
+    public int getWidth(int frame) {
+        checkFrame(frame);
+        return widths[frame];
+    }
+
+    public int getHeight(int frame) {
+        checkFrame(frame);
+        return heights[frame];
+    }
+
+    public int getRotation(int frame) {
+        checkFrame(frame);
+        return rotations[frame];
+    }
+
+    public boolean isMirrored(int frame) {
+        checkFrame(frame);
+        return mirrored[frame];
+    }
+
+    public int getDataLength(int frame) {
+        checkFrame(frame);
+        return lengths[frame];
+    }
+
+    /**
+     * Copies the NV21 data of {@code frame} into the start of {@code out}.
+     */
+    public void readFrame(int frame, byte[] out) {
+        checkFrame(frame);
+        ByteBuffer in = buffer.duplicate();
+        in.position(offsets[frame]);
+        in.get(out, 0, lengths[frame]);
+    }
+
+    /**
+     * The NV21 data of {@code frame} as a read-only view of the mapping, without copying it.
+     * The view stays valid until the recording is closed.
+     */
+    public ByteBuffer getFrameData(int frame) {
+        checkFrame(frame);
+        ByteBuffer in = buffer.duplicate();
+        in.limit(offsets[frame] + lengths[frame]).position(offsets[frame]);
+        return in.slice().asReadOnlyBuffer();
+    }
+
+    public boolean hasResults(long frameTimestampNanos) {
+        return resultOffsets.containsKey(frameTimestampNanos);
+    }
+
+    /**
+     * How long the detection of the frame took when it was recorded, or -1 without results.
+     */
+    public long getLatencyNanos(long frameTimestampNanos) {
+        Integer offset = resultOffsets.get(frameTimestampNanos);
+        if(offset == null) {
+            return -1;
+        }
+        return buffer.getLong(offset + 1 + 8);
+    }
+
+    /**
+     * Replaces the contents of {@code out} with the recorded results of a frame, as far as its
+     * capacity allows. Returns false, leaving {@code out} empty, if none were recorded.
+     */
+    public boolean readResults(long frameTimestampNanos, FaceObservations out) {
+        out.clear();
+        Integer offset = resultOffsets.get(frameTimestampNanos);
+        if(offset == null) {
+            return false;
+        }
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset + 1 + 8 + 8);
+        FaceObservationsCodec.read(in, out);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void checkFrame(int frame) {
+        if(frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("frame " + frame + " of " + frameCount);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.facial.smileornosmile.replay;
+
+import com.facial.smileornosmile.detector.DetectionImage;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers detections on replayed frames with the results recorded for them, mapped into the
+ * coordinates of the image detected on, so cropping works as it did live. Frames without
+ * recorded results, because they were dropped or failed live, get no faces. A {@link ReplayDriver}
+ * tells the backend which recorded frame each replay timestamp stands for.
+ */
+public class RecordedFaceDetectorBackend implements FaceDetectorBackend {
+    /** Answer after the latency recorded for the frame */
+    public static final long RECORDED_LATENCY = -1;
+
+    //Far more than can be in flight, older entries are overwritten
+    private static final int EXPECTED_FRAMES = 64;
+
+    private final FrameRecording recording;
+    private final long latencyNanos;
+    private final long[] replayTimestamps = new long[EXPECTED_FRAMES];
+    private final long[] recordedTimestamps = new long[EXPECTED_FRAMES];
+    private int nextExpected;
+    private ScheduledExecutorService worker;
+    private long detections;
+    private long misses;
+    private boolean closed;
+
+    /**
+     * @param latencyNanos how long each detection takes, 0 to answer right away through the
+     *                     callback executor or {@link #RECORDED_LATENCY}
+     */
+    public RecordedFaceDetectorBackend(FrameRecording recording, long latencyNanos) {
+        this.recording = recording;
+        this.latencyNanos = latencyNanos;
+        Arrays.fill(replayTimestamps, Long.MIN_VALUE);
+    }
+
+    /**
+     * The frame offered with {@code timestampNanos} is the recorded frame of {@code recordedTimestampNanos}.
+     */
+    public synchronized void expectFrame(long timestampNanos, long recordedTimestampNanos) {
+        replayTimestamps[nextExpected] = timestampNanos;
+        recordedTimestamps[nextExpected] = recordedTimestampNanos;
+        nextExpected = (nextExpected + 1) % EXPECTED_FRAMES;
+    }
+
+    @Override
+    public String getName() {
+        return "recorded";
+    }
+
+    @Override
+    public void warmUp(DetectorProfile profile) {
+    }
+
+    @Override
+    public void detect(final DetectionImage image, DetectorProfile profile, final FaceObservations results,
+                       final Executor callbackExecutor, final Callback callback) {
+        final long recordedTimestamp;
+        long delayNanos;
+        synchronized(this) {
+            if(closed) {
+                throw new IllegalStateException("Backend is closed");
+            }
+            detections++;
+            recordedTimestamp = findRecordedTimestamp(image);
+            if(recordedTimestamp == DetectionImage.NO_FRAME || !recording.hasResults(recordedTimestamp)) {
+                misses++;
+            }
+            delayNanos = latencyNanos == RECORDED_LATENCY
+                    ? Math.max(0L, recording.getLatencyNanos(recordedTimestamp))
+                    : latencyNanos;
+        }
+
+        final Runnable answer = new Runnable() {
+            @Override
+            public void run() {
+                // Results are only touched on the callback executor, like the platform backends do
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        recording.readResults(recordedTimestamp, results);
+                        //Recorded in frame coordinates, the detector would have answered in image coordinates
+                        float scale = image.getFrameScale();
+                        results.transform(1f / scale, -image.getFrameOffsetX() / scale, -image.getFrameOffsetY() / scale);
+                        callback.onDetected(results);
+                    }
+                });
+            }
+        };
+        if(delayNanos == 0) {
+            answer.run();
+            return;
+        }
+        try {
+            getWorker().schedule(answer, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            fail(callbackExecutor, callback, e);
+        }
+    }
+
+    private static void fail(Executor callbackExecutor, final Callback callback, final Exception e) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                callback.onFailed(e);
+            }
+        });
+    }
+
+    private long findRecordedTimestamp(DetectionImage image) {
+        if(!image.hasFrame()) {
+            return DetectionImage.NO_FRAME;
+        }
+        for(int i = 0; i < EXPECTED_FRAMES; i++) {
+            if(replayTimestamps[i] == image.getFrameTimestampNanos()) {
+                return recordedTimestamps[i];
+            }
+        }
+        return DetectionImage.NO_FRAME;
+    }
+
+    private synchronized ScheduledExecutorService getWorker() {
+        if(worker == null) {
+            worker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "recorded-detector");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return worker;
+    }
+
+    public synchronized long getDetectionCount() {
+        return detections;
+    }
+
+    /**
+     * Detections answered without recorded results.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if(worker != null) {
+            worker.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.facial.smileornosmile.replay;
+
+import com.facial.smileornosmile.frame.LiveFrame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A frame of a {@link FrameRecording}, read straight from the mapped file. The data never
+ * changes while the recording is open, so {@link #freeze()} returns the frame itself and
+ * nothing needs to be released.
+ */
+public class RecordedFrame implements LiveFrame {
+    private final int index;
+    private final ByteBuffer data;
+    private final int width;
+    private final int height;
+    private final int rotation;
+    private final boolean mirrored;
+
+    public RecordedFrame(FrameRecording recording, int index) {
+        this.index = index;
+        data = recording.getFrameData(index);
+        width = recording.getWidth(index);
+        height = recording.getHeight(index);
+        rotation = recording.getRotation(index);
+        mirrored = recording.isMirrored(index);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getRotation() {
+        return rotation;
+    }
+
+    @Override
+    public boolean isMirrored() {
+        return mirrored;
+    }
+
+    @Override
+    public LiveFrame freeze() {
+        return this;
+    }
+
+    @Override
+    public void release() {
+    }
+}
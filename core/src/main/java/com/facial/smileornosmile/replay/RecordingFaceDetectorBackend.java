@@ -0,0 +1,95 @@
+package com.facial.smileornosmile.replay;
+
+import com.facial.smileornosmile.detector.DetectionImage;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * Passes detections through to another backend and, while a {@link FrameRecorder} is set, writes
+ * the results of live frames to it in frame coordinates. A failing recorder is dropped so
+ * detection carries on, its error is kept for {@link #getError()}.
+ */
+public class RecordingFaceDetectorBackend implements FaceDetectorBackend {
+    private final FaceDetectorBackend delegate;
+    private volatile FrameRecorder recorder;
+    private volatile IOException error;
+    //Only used on the callback executor
+    private FaceObservations frameResults;
+
+    public RecordingFaceDetectorBackend(FaceDetectorBackend delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Starts writing results to {@code recorder}, or stops with null. Closing it is up to the caller.
+     */
+    public void setRecorder(FrameRecorder recorder) {
+        this.recorder = recorder;
+        error = null;
+    }
+
+    public IOException getError() {
+        return error;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public void warmUp(DetectorProfile profile) {
+        delegate.warmUp(profile);
+    }
+
+    @Override
+    public void detect(final DetectionImage image, DetectorProfile profile, FaceObservations results,
+                       Executor callbackExecutor, final Callback callback) {
+        final FrameRecorder target = recorder;
+        if(target == null || !image.hasFrame()) {
+            delegate.detect(image, profile, results, callbackExecutor, callback);
+            return;
+        }
+        final long start = System.nanoTime();
+        delegate.detect(image, profile, results, callbackExecutor, new Callback() {
+            @Override
+            public void onDetected(FaceObservations faces) {
+                record(target, image, System.nanoTime() - start, faces);
+                callback.onDetected(faces);
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                callback.onFailed(e);
+            }
+        });
+    }
+
+    private void record(FrameRecorder target, DetectionImage image, long latencyNanos, FaceObservations faces) {
+        if(recorder != target) {
+            return;
+        }
+        if(frameResults == null || frameResults.getMaxFaces() < faces.getMaxFaces()
+                || frameResults.getMaxContours() < faces.getMaxContours()
+                || frameResults.getMaxPointsPerFace() < faces.getMaxPointsPerFace()) {
+            frameResults = new FaceObservations(faces.getMaxFaces(), faces.getMaxContours(), faces.getMaxPointsPerFace());
+        }
+        frameResults.copyFrom(faces);
+        frameResults.transform(image.getFrameScale(), image.getFrameOffsetX(), image.getFrameOffsetY());
+        try {
+            target.writeResults(image.getFrameTimestampNanos(), latencyNanos, frameResults);
+        } catch (IOException e) {
+            error = e;
+            recorder = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
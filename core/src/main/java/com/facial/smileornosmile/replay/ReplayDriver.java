@@ -0,0 +1,82 @@
+package com.facial.smileornosmile.replay;
+
+import com.facial.smileornosmile.pipeline.LiveFramePipeline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds the frames of a {@link FrameRecording} through a {@link LiveFramePipeline} whose backend is
+ * a {@link RecordedFaceDetectorBackend} of the same recording, from the calling thread.
+ * Frames are stamped with the current time, so the scheduler and governor see real latencies
+ * whatever the speed.
+ */
+public class ReplayDriver {
+
+    public enum Speed {
+        /** Frames arrive as far apart as they were recorded */
+        RECORDED,
+        /** Every frame right after the previous one */
+        MAXIMUM
+    }
+
+    private final FrameRecording recording;
+    private final LiveFramePipeline pipeline;
+    private final RecordedFaceDetectorBackend backend;
+    private long lastTimestampNanos = Long.MIN_VALUE;
+    private long framesFed;
+
+    public ReplayDriver(FrameRecording recording, LiveFramePipeline pipeline, RecordedFaceDetectorBackend backend) {
+        this.recording = recording;
+        this.pipeline = pipeline;
+        this.backend = backend;
+    }
+
+    /**
+     * Replays every frame of the recording once. Detections may still be in flight when this returns,
+     * see {@link #awaitIdle(long, TimeUnit)}.
+     */
+    public void run(Speed speed) throws InterruptedException {
+        if(recording.getFrameCount() == 0) {
+            return;
+        }
+        long firstRecorded = recording.getTimestampNanos(0);
+        long start = System.nanoTime();
+        for(int i = 0; i < recording.getFrameCount(); i++) {
+            long recorded = recording.getTimestampNanos(i);
+            if(speed == Speed.RECORDED) {
+                long wait = start + (recorded - firstRecorded) - System.nanoTime();
+                if(wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            //Timestamps identify frames, so they must not repeat even on a coarse clock
+            long timestamp = Math.max(System.nanoTime(), lastTimestampNanos + 1);
+            lastTimestampNanos = timestamp;
+            backend.expectFrame(timestamp, recorded);
+            RecordedFrame frame = new RecordedFrame(recording, i);
+            pipeline.process(frame, timestamp);
+            frame.release();
+            framesFed++;
+        }
+    }
+
+    /**
+     * Waits until no detection is in flight or waiting anymore.
+     *
+     * @return false if that did not happen in time
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while(pipeline.getScheduler().getInFlightCount() > 0) {
+            if(System.nanoTime() > deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        return true;
+    }
+
+    public long getFramesFed() {
+        return framesFed;
+    }
+}
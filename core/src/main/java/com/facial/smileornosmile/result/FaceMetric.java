@@ -0,0 +1,29 @@
+package com.facial.smileornosmile.result;
+
+/**
+ * The per face values shown in the result list, in display order.
+ */
+public enum FaceMetric {
+    SMILING("Smiling probability"),
+    LEFT_EYE_OPEN("Left eye open probability"),
+    RIGHT_EYE_OPEN("Right eye open probability");
+
+    private static final FaceMetric[] VALUES = values();
+
+    private final String label;
+
+    FaceMetric(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Same as {@link #values()} without copying the array.
+     */
+    static FaceMetric[] all() {
+        return VALUES;
+    }
+}
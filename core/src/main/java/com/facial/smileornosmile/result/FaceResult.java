@@ -0,0 +1,87 @@
+package com.facial.smileornosmile.result;
+
+import java.util.List;
+
+/**
+ * One row of the result list: a metric of one face. Immutable, text is only produced when the
+ * row is bound, see {@link ResultFormatter}.
+ */
+public final class FaceResult {
+    public static final float UNCOMPUTED = -1f;
+
+    private final int faceId;
+    private final FaceMetric metric;
+    private final float value;
+
+    public FaceResult(int faceId, FaceMetric metric, float value) {
+        this.faceId = faceId;
+        this.metric = metric;
+        this.value = value;
+    }
+
+    /**
+     * Appends the rows of one face to {@code rows}.
+     */
+    public static void addFace(List<FaceResult> rows, int faceId, float smilingProbability,
+                               float leftEyeOpenProbability, float rightEyeOpenProbability) {
+        rows.add(new FaceResult(faceId, FaceMetric.SMILING, smilingProbability));
+        rows.add(new FaceResult(faceId, FaceMetric.LEFT_EYE_OPEN, leftEyeOpenProbability));
+        rows.add(new FaceResult(faceId, FaceMetric.RIGHT_EYE_OPEN, rightEyeOpenProbability));
+    }
+
+    public int getFaceId() {
+        return faceId;
+    }
+
+    public FaceMetric getMetric() {
+        return metric;
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    /**
+     * Identifies the row across updates, unique as long as face ids are not negative.
+     */
+    public long getStableId() {
+        return (long) faceId * FaceMetric.all().length + metric.ordinal();
+    }
+
+    /**
+     * Whether both rows show the same metric of the same face.
+     */
+    public boolean isSameRow(FaceResult other) {
+        return faceId == other.faceId && metric == other.metric;
+    }
+
+    /**
+     * Whether both rows would display the same text, changes below the shown precision don't count.
+     */
+    public boolean hasSameContents(FaceResult other) {
+        return isSameRow(other) && ResultFormatter.bucket(value) == ResultFormatter.bucket(other.value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof FaceResult)) {
+            return false;
+        }
+        FaceResult other = (FaceResult) o;
+        return faceId == other.faceId && metric == other.metric
+                && Float.floatToIntBits(value) == Float.floatToIntBits(other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return (faceId * 31 + metric.hashCode()) * 31 + Float.floatToIntBits(value);
+    }
+
+    @Override
+    public String toString() {
+        return "FaceResult{face=" + faceId + ", " + metric + "=" + value + "}";
+    }
+}
@@ -0,0 +1,56 @@
+package com.facial.smileornosmile.result;
+
+/**
+ * Formats result rows for display. Values are shown with two decimals, so there are only
+ * 101 different texts per metric; each is built the first time it is needed and reused after
+ * that, binding a row does not allocate once the list has been shown for a while.
+ * Not thread safe, meant to be used from the main thread while binding.
+ */
+public class ResultFormatter {
+    private static final int STEPS = 100;
+    private static final int UNKNOWN = -1;
+    private static final int CACHED_FACE_IDS = 64;
+
+    private final String[][] valueTexts = new String[FaceMetric.all().length][STEPS + 1];
+    private final String[] unknownTexts = new String[FaceMetric.all().length];
+    private final String[] faceIdTexts = new String[CACHED_FACE_IDS];
+
+    /**
+     * The displayed step of {@code value}, or -1 for values outside [0, 1] like
+     * {@link FaceResult#UNCOMPUTED}.
+     */
+    static int bucket(float value) {
+        if(!(value >= 0f && value <= 1f)) {
+            return UNKNOWN;
+        }
+        return Math.round(value * STEPS);
+    }
+
+    public String formatValue(FaceResult result) {
+        int metric = result.getMetric().ordinal();
+        int bucket = bucket(result.getValue());
+        if(bucket == UNKNOWN) {
+            if(unknownTexts[metric] == null) {
+                unknownTexts[metric] = result.getMetric().getLabel() + " unknown";
+            }
+            return unknownTexts[metric];
+        }
+        String text = valueTexts[metric][bucket];
+        if(text == null) {
+            text = result.getMetric().getLabel() + " " + (bucket / STEPS) + "." + (bucket % STEPS < 10 ? "0" : "") + bucket % STEPS;
+            valueTexts[metric][bucket] = text;
+        }
+        return text;
+    }
+
+    public String formatFaceId(FaceResult result) {
+        int id = result.getFaceId();
+        if(id < 0 || id >= CACHED_FACE_IDS) {
+            return String.valueOf(id);
+        }
+        if(faceIdTexts[id] == null) {
+            faceIdTexts[id] = String.valueOf(id);
+        }
+        return faceIdTexts[id];
+    }
+}
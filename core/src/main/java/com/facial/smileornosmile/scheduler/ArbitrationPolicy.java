@@ -0,0 +1,120 @@
+package com.facial.smileornosmile.scheduler;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How a {@link DetectionQueue} shares the detector between its {@link DetectionPriority} classes.
+ * Start from {@link #defaults()} and adjust with the {@code with} methods. Detections that
+ * already run are never interrupted, the detector has no way to, so preemption only ever
+ * concerns detections still waiting.
+ */
+public final class ArbitrationPolicy {
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    public static final long DEFAULT_LIVE_MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private int maxInFlight = 1;
+    private int liveStride;
+    private boolean preemptive = true;
+    private long agingNanos = UNLIMITED;
+    private final long[] maxWaitNanos = new long[DetectionPriority.values().length];
+
+    private ArbitrationPolicy() {
+        Arrays.fill(maxWaitNanos, UNLIMITED);
+        maxWaitNanos[DetectionPriority.LIVE.ordinal()] = DEFAULT_LIVE_MAX_WAIT_NANOS;
+    }
+
+    /**
+     * One detection at a time, live detection paused while interactive work waits or runs,
+     * waiting live detections dropped when interactive work arrives and after
+     * {@link #DEFAULT_LIVE_MAX_WAIT_NANOS}, no aging.
+     */
+    public static ArbitrationPolicy defaults() {
+        return new ArbitrationPolicy();
+    }
+
+    /**
+     * How many detections of any class may run at once.
+     */
+    public ArbitrationPolicy withMaxInFlight(int maxInFlight) {
+        if(maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * While interactive work waits or runs, accept only every {@code stride}th live detection and
+     * reject the rest; 0, the default, pauses live detection and 1 does not thin it at all.
+     */
+    public ArbitrationPolicy withLiveStride(int stride) {
+        if(stride < 0) {
+            throw new IllegalArgumentException("stride must not be negative: " + stride);
+        }
+        this.liveStride = stride;
+        return this;
+    }
+
+    /**
+     * Whether interactive work arriving rejects the live detections still waiting, so they
+     * neither hold it up nor run late. On by default.
+     */
+    public ArbitrationPolicy withPreemption(boolean preemptive) {
+        this.preemptive = preemptive;
+        return this;
+    }
+
+    /**
+     * Fairness: a detection waiting longer than {@code aging} goes next whatever its class, the
+     * longest waiting first, so background work is not starved by a steady stream of live frames.
+     * Off by default.
+     */
+    public ArbitrationPolicy withAging(long aging, TimeUnit unit) {
+        if(aging <= 0) {
+            throw new IllegalArgumentException("aging must be positive: " + aging);
+        }
+        this.agingNanos = unit.toNanos(aging);
+        return this;
+    }
+
+    /**
+     * Detections of {@code priority} waiting longer than this are rejected instead of run, as
+     * their result would come too late to use. Only live detections have a limit by default.
+     */
+    public ArbitrationPolicy withMaxWait(DetectionPriority priority, long maxWait, TimeUnit unit) {
+        if(maxWait <= 0) {
+            throw new IllegalArgumentException("maxWait must be positive: " + maxWait);
+        }
+        maxWaitNanos[priority.ordinal()] = unit.toNanos(maxWait);
+        return this;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getLiveStride() {
+        return liveStride;
+    }
+
+    public boolean isPreemptive() {
+        return preemptive;
+    }
+
+    public long getAgingNanos() {
+        return agingNanos;
+    }
+
+    public long getMaxWaitNanos(DetectionPriority priority) {
+        return maxWaitNanos[priority.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        return "ArbitrationPolicy{" + maxInFlight + " in flight"
+                + ", live " + (liveStride == 0 ? "paused" : "1/" + liveStride) + " during interactive"
+                + (preemptive ? ", preemptive" : "")
+                + (agingNanos == UNLIMITED ? "" : ", aging " + agingNanos / 1000000 + " ms") + "}";
+    }
+}
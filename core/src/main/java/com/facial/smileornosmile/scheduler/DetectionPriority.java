@@ -0,0 +1,13 @@
+package com.facial.smileornosmile.scheduler;
+
+/**
+ * The classes of work sharing the detector through a {@link DetectionQueue}, most urgent first.
+ */
+public enum DetectionPriority {
+    /** Pictures the user picked and is waiting for */
+    INTERACTIVE,
+    /** Camera preview frames, dropped rather than late */
+    LIVE,
+    /** Batches and videos, which may wait */
+    BACKGROUND
+}
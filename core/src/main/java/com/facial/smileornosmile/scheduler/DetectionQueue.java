@@ -0,0 +1,441 @@
+package com.facial.smileornosmile.scheduler;
+
+import com.facial.smileornosmile.detector.DetectionImage;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.metrics.LatencyHistogram;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * One detector shared by work of different urgency. Every {@link DetectionPriority} gets its own
+ * {@link #backend(DetectionPriority) view} of the detector; detections started through the views
+ * wait in one queue per class and run, as far as the {@link ArbitrationPolicy} allows at once,
+ * most urgent class first and in order within a class. While interactive work waits or runs,
+ * live detections are paused or thinned, and rejected ones fail with a
+ * {@link DetectionRejectedException}.
+ *
+ * Keeps the queue depth and, per class, how long detections waited and how long they took from
+ * being handed to the queue to their result, to see whether a class stays fast under load from
+ * the others.
+ * Callbacks always run outside the internal lock on the executor given with the detection; the
+ * next detection is started before the callback of the previous one. Thread safe.
+ */
+public class DetectionQueue implements Closeable {
+    private static final int CLASSES = DetectionPriority.values().length;
+
+    private static final class Job {
+        final DetectionPriority priority;
+        final DetectionImage image;
+        final DetectorProfile profile;
+        final FaceObservations results;
+        final Executor callbackExecutor;
+        final FaceDetectorBackend.Callback callback;
+        final long queuedNanos;
+
+        Job(DetectionPriority priority, DetectionImage image, DetectorProfile profile, FaceObservations results,
+            Executor callbackExecutor, FaceDetectorBackend.Callback callback, long queuedNanos) {
+            this.priority = priority;
+            this.image = image;
+            this.profile = profile;
+            this.results = results;
+            this.callbackExecutor = callbackExecutor;
+            this.callback = callback;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    private final FaceDetectorBackend backend;
+    private final Object lock = new Object();
+    private final FaceDetectorBackend[] views = new FaceDetectorBackend[CLASSES];
+    private final List<ArrayDeque<Job>> waiting = new ArrayList<>(CLASSES);
+    private final int[] running = new int[CLASSES];
+    private final long[] started = new long[CLASSES];
+    private final long[] rejected = new long[CLASSES];
+    private final LatencyHistogram[] waitTimes = new LatencyHistogram[CLASSES];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[CLASSES];
+
+    private ArbitrationPolicy policy;
+    private int inFlight;
+    private int depth;
+    private int maxDepth;
+    private long liveDuringInteractive;
+    private boolean liveAdmitted;
+    private boolean closed;
+
+    /**
+     * @param backend does the detections, closed with the queue
+     */
+    public DetectionQueue(FaceDetectorBackend backend, ArbitrationPolicy policy) {
+        this.backend = backend;
+        this.policy = policy;
+        for(DetectionPriority priority : DetectionPriority.values()) {
+            int index = priority.ordinal();
+            waiting.add(new ArrayDeque<Job>());
+            waitTimes[index] = new LatencyHistogram();
+            latencies[index] = new LatencyHistogram();
+            views[index] = new View(priority);
+        }
+    }
+
+    /**
+     * The detector as seen by work of {@code priority}. Closing the view does nothing, the
+     * detector belongs to the queue.
+     */
+    public FaceDetectorBackend backend(DetectionPriority priority) {
+        return views[priority.ordinal()];
+    }
+
+    /**
+     * Applies to detections started from now on.
+     */
+    public void setPolicy(ArbitrationPolicy policy) {
+        synchronized(lock) {
+            this.policy = policy;
+        }
+        dispatch(System.nanoTime());
+    }
+
+    /**
+     * Whether the next live detection would be paused or thinned away for interactive work. Lets
+     * callers skip preparing the image at all: a true answer counts as that live detection,
+     * rejected, and a false one lets the next live detection through without asking again.
+     */
+    public boolean isLivePaused() {
+        synchronized(lock) {
+            liveAdmitted = false;
+            if(closed || !interactiveBusy()) {
+                return false;
+            }
+            liveDuringInteractive++;
+            int stride = policy.getLiveStride();
+            if(stride == 0 || liveDuringInteractive % stride != 0) {
+                rejected[DetectionPriority.LIVE.ordinal()]++;
+                return true;
+            }
+            liveAdmitted = true;
+            return false;
+        }
+    }
+
+    public ArbitrationPolicy getPolicy() {
+        synchronized(lock) {
+            return policy;
+        }
+    }
+
+    /**
+     * Detections waiting, of all classes.
+     */
+    public int getQueueDepth() {
+        synchronized(lock) {
+            return depth;
+        }
+    }
+
+    public int getQueueDepth(DetectionPriority priority) {
+        synchronized(lock) {
+            return waiting.get(priority.ordinal()).size();
+        }
+    }
+
+    /**
+     * The most detections ever waiting at once since the last {@link #resetStats()}.
+     */
+    public int getMaxQueueDepth() {
+        synchronized(lock) {
+            return maxDepth;
+        }
+    }
+
+    public int getInFlight() {
+        synchronized(lock) {
+            return inFlight;
+        }
+    }
+
+    public long getStartedCount(DetectionPriority priority) {
+        synchronized(lock) {
+            return started[priority.ordinal()];
+        }
+    }
+
+    public long getRejectedCount(DetectionPriority priority) {
+        synchronized(lock) {
+            return rejected[priority.ordinal()];
+        }
+    }
+
+    /**
+     * From being handed to the queue until the detector got it, for detections that ran.
+     */
+    public LatencyHistogram getWaitTimes(DetectionPriority priority) {
+        return waitTimes[priority.ordinal()];
+    }
+
+    /**
+     * From being handed to the queue until the result, waiting included.
+     */
+    public LatencyHistogram getLatencies(DetectionPriority priority) {
+        return latencies[priority.ordinal()];
+    }
+
+    /**
+     * Starts counting anew, leaving the queue itself alone.
+     */
+    public void resetStats() {
+        synchronized(lock) {
+            maxDepth = depth;
+            for(int i = 0; i < CLASSES; i++) {
+                started[i] = 0;
+                rejected[i] = 0;
+                waitTimes[i].reset();
+                latencies[i].reset();
+            }
+        }
+    }
+
+    /**
+     * Rejects every waiting detection and closes the detector. Running detections still report back.
+     */
+    @Override
+    public void close() {
+        List<Job> dropped = new ArrayList<>();
+        synchronized(lock) {
+            closed = true;
+            for(int i = 0; i < CLASSES; i++) {
+                dropped.addAll(waiting.get(i));
+                rejected[i] += waiting.get(i).size();
+                waiting.get(i).clear();
+            }
+            depth = 0;
+        }
+        for(Job job : dropped) {
+            reject(job, "queue closed");
+        }
+        backend.close();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("DetectionQueue{");
+        synchronized(lock) {
+            out.append(inFlight).append(" running, ").append(depth).append(" waiting, max ").append(maxDepth);
+            for(DetectionPriority priority : DetectionPriority.values()) {
+                int index = priority.ordinal();
+                out.append(", ").append(priority.name().toLowerCase()).append(' ')
+                        .append(started[index]).append(" run ").append(rejected[index]).append(" rejected");
+            }
+        }
+        for(DetectionPriority priority : DetectionPriority.values()) {
+            LatencyHistogram histogram = waitTimes[priority.ordinal()];
+            if(histogram.getCount() > 0) {
+                out.append(", ").append(priority.name().toLowerCase()).append(" wait p90 ")
+                        .append(histogram.getValueAtPercentile(90.0) / 1000000).append(" ms");
+            }
+        }
+        return out.append('}').toString();
+    }
+
+    private void submit(Job job) {
+        String rejection = null;
+        List<Job> dropped = new ArrayList<>(0);
+        synchronized(lock) {
+            if(closed) {
+                rejection = "queue closed";
+            } else if(job.priority == DetectionPriority.LIVE && liveAdmitted) {
+                liveAdmitted = false;
+            } else if(job.priority == DetectionPriority.LIVE && interactiveBusy()) {
+                liveDuringInteractive++;
+                int stride = policy.getLiveStride();
+                if(stride == 0 || liveDuringInteractive % stride != 0) {
+                    rejection = stride == 0 ? "paused for interactive work" : "thinned for interactive work";
+                }
+            } else if(job.priority == DetectionPriority.INTERACTIVE && policy.isPreemptive()) {
+                ArrayDeque<Job> live = waiting.get(DetectionPriority.LIVE.ordinal());
+                dropped.addAll(live);
+                rejected[DetectionPriority.LIVE.ordinal()] += live.size();
+                depth -= live.size();
+                live.clear();
+            }
+            if(rejection != null) {
+                rejected[job.priority.ordinal()]++;
+            } else {
+                waiting.get(job.priority.ordinal()).addLast(job);
+                depth++;
+                maxDepth = Math.max(maxDepth, depth);
+            }
+        }
+        for(Job preempted : dropped) {
+            reject(preempted, "preempted by interactive work");
+        }
+        if(rejection != null) {
+            reject(job, rejection);
+            return;
+        }
+        dispatch(job.queuedNanos);
+    }
+
+    /**
+     * Starts as many waiting detections as the policy allows, and rejects those that waited too long.
+     */
+    private void dispatch(long nowNanos) {
+        List<Job> expired = new ArrayList<>(0);
+        List<Job> ready = new ArrayList<>(1);
+        synchronized(lock) {
+            dropExpired(expired, nowNanos);
+            while(inFlight < policy.getMaxInFlight()) {
+                Job next = poll(nowNanos);
+                if(next == null) {
+                    break;
+                }
+                inFlight++;
+                running[next.priority.ordinal()]++;
+                started[next.priority.ordinal()]++;
+                waitTimes[next.priority.ordinal()].record(nowNanos - next.queuedNanos);
+                ready.add(next);
+            }
+        }
+        for(Job job : expired) {
+            reject(job, "waited too long");
+        }
+        for(Job job : ready) {
+            start(job);
+        }
+    }
+
+    private void start(final Job job) {
+        FaceDetectorBackend.Callback callback = new FaceDetectorBackend.Callback() {
+            @Override
+            public void onDetected(FaceObservations results) {
+                finish(job);
+                job.callback.onDetected(results);
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                finish(job);
+                job.callback.onFailed(e);
+            }
+        };
+        try {
+            backend.detect(job.image, job.profile, job.results, job.callbackExecutor, callback);
+        } catch (final RuntimeException e) {
+            job.callbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    finish(job);
+                    job.callback.onFailed(e);
+                }
+            });
+        }
+    }
+
+    private void finish(Job job) {
+        long now = System.nanoTime();
+        synchronized(lock) {
+            inFlight--;
+            running[job.priority.ordinal()]--;
+            latencies[job.priority.ordinal()].record(now - job.queuedNanos);
+        }
+        dispatch(now);
+    }
+
+    private boolean interactiveBusy() {
+        int interactive = DetectionPriority.INTERACTIVE.ordinal();
+        return running[interactive] > 0 || !waiting.get(interactive).isEmpty();
+    }
+
+    private void dropExpired(List<Job> expired, long nowNanos) {
+        for(int i = 0; i < CLASSES; i++) {
+            long maxWait = policy.getMaxWaitNanos(DetectionPriority.values()[i]);
+            if(maxWait == ArbitrationPolicy.UNLIMITED) {
+                continue;
+            }
+            Iterator<Job> jobs = waiting.get(i).iterator();
+            while(jobs.hasNext()) {
+                Job job = jobs.next();
+                if(nowNanos - job.queuedNanos <= maxWait) {
+                    //The rest were queued later still
+                    break;
+                }
+                jobs.remove();
+                expired.add(job);
+                rejected[i]++;
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * The detection that waited longest past the aging limit, else the oldest of the most urgent class.
+     */
+    private Job poll(long nowNanos) {
+        long aging = policy.getAgingNanos();
+        int chosen = -1;
+        if(aging != ArbitrationPolicy.UNLIMITED) {
+            long oldest = Long.MAX_VALUE;
+            for(int i = 0; i < CLASSES; i++) {
+                Job head = waiting.get(i).peekFirst();
+                if(head != null && nowNanos - head.queuedNanos > aging && head.queuedNanos < oldest) {
+                    oldest = head.queuedNanos;
+                    chosen = i;
+                }
+            }
+        }
+        for(int i = 0; chosen < 0 && i < CLASSES; i++) {
+            if(!waiting.get(i).isEmpty()) {
+                chosen = i;
+            }
+        }
+        if(chosen < 0) {
+            return null;
+        }
+        depth--;
+        return waiting.get(chosen).pollFirst();
+    }
+
+    private static void reject(final Job job, String reason) {
+        final DetectionRejectedException e = new DetectionRejectedException(job.priority, reason);
+        job.callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                job.callback.onFailed(e);
+            }
+        });
+    }
+
+    private class View implements FaceDetectorBackend {
+        private final DetectionPriority priority;
+
+        View(DetectionPriority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public String getName() {
+            return backend.getName() + "/" + priority.name().toLowerCase();
+        }
+
+        @Override
+        public void warmUp(DetectorProfile profile) {
+            backend.warmUp(profile);
+        }
+
+        @Override
+        public void detect(DetectionImage image, DetectorProfile profile, FaceObservations results,
+                           Executor callbackExecutor, Callback callback) {
+            submit(new Job(priority, image, profile, results, callbackExecutor, callback, System.nanoTime()));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.facial.smileornosmile.scheduler;
+
+/**
+ * Reported to a detection callback when a {@link DetectionQueue} dropped the detection instead of
+ * running it: a live frame while interactive work was going on, a detection waiting longer than
+ * its class may, or one still queued when the queue was closed. Nothing went wrong with the image.
+ */
+public class DetectionRejectedException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final DetectionPriority priority;
+
+    public DetectionRejectedException(DetectionPriority priority, String reason) {
+        super(priority.name().toLowerCase() + " detection rejected: " + reason);
+        this.priority = priority;
+    }
+
+    public DetectionPriority getPriority() {
+        return priority;
+    }
+}
@@ -0,0 +1,238 @@
+package com.facial.smileornosmile.scheduler;
+
+/**
+ * Sits between the camera callback and the face detector so detections never pile up.
+ * Frames are offered as they arrive; the {@link SchedulingPolicy} decides which of them are
+ * dispatched and the rest are handed back through {@link Callback#onDrop(Object)}.
+ * Every dispatched frame must be reported back with {@link #complete(long, long)}.
+ *
+ * Callbacks are always invoked outside the internal lock, on the thread that called
+ * {@link #offer(Object, long)} or {@link #complete(long, long)}.
+ */
+public class FrameScheduler<T> {
+
+    public interface Callback<T> {
+        /**
+         * Start detection on {@code frame}. When it finishes, successful or not, call
+         * {@link FrameScheduler#complete(long, long)} with the same timestamp.
+         */
+        void onDispatch(T frame, long timestampNanos);
+
+        /**
+         * The frame will never be dispatched, release anything it holds.
+         */
+        void onDrop(T frame);
+    }
+
+    private SchedulingPolicy policy;
+    private final Callback<T> callback;
+    private final Object lock = new Object();
+
+    private T pendingFrame;
+    private long pendingTimestampNanos;
+    private int inFlight;
+    private long lastDispatchNanos = Long.MIN_VALUE;
+
+    private long droppedCount;
+    private long processedCount;
+    private long staleCount;
+    private long lastLatencyNanos;
+    private long maxLatencyNanos;
+
+    public FrameScheduler(SchedulingPolicy policy, Callback<T> callback) {
+        this.policy = policy;
+        this.callback = callback;
+    }
+
+    /**
+     * Offer a newly captured frame.
+     *
+     * @return true if the frame was dispatched right away
+     */
+    public boolean offer(T frame, long timestampNanos) {
+        T dropped = null;
+        boolean dispatch = false;
+
+        synchronized (lock) {
+            if(policy.canDispatch(inFlight, timestampNanos, lastDispatchNanos)) {
+                // Anything still waiting is older than this frame
+                dropped = pendingFrame;
+                if(dropped != null) {
+                    droppedCount++;
+                    pendingFrame = null;
+                }
+                inFlight++;
+                lastDispatchNanos = timestampNanos;
+                dispatch = true;
+            } else if(policy.keepsPendingFrame()) {
+                dropped = pendingFrame;
+                if(dropped != null) {
+                    droppedCount++;
+                }
+                pendingFrame = frame;
+                pendingTimestampNanos = timestampNanos;
+            } else {
+                dropped = frame;
+                droppedCount++;
+            }
+        }
+
+        if(dropped != null) {
+            callback.onDrop(dropped);
+        }
+        if(dispatch) {
+            callback.onDispatch(frame, timestampNanos);
+        }
+        return dispatch;
+    }
+
+    /**
+     * Report that the detection for the frame captured at {@code timestampNanos} has finished.
+     * A waiting frame may be dispatched from inside this call.
+     *
+     * @return true if the result is still fresh enough to be shown
+     */
+    public boolean complete(long timestampNanos, long nowNanos) {
+        return finish(timestampNanos, nowNanos, true);
+    }
+
+    /**
+     * Report that the detection for the frame captured at {@code timestampNanos} was given up
+     * without a result, the frame counts as dropped rather than processed.
+     * A waiting frame may be dispatched from inside this call.
+     */
+    public void cancel(long timestampNanos, long nowNanos) {
+        finish(timestampNanos, nowNanos, false);
+    }
+
+    private boolean finish(long timestampNanos, long nowNanos, boolean processed) {
+        long latency = nowNanos - timestampNanos;
+        boolean fresh = latency <= getPolicy().getMaxLatencyNanos();
+        T next = null;
+        long nextTimestamp = 0;
+        T expired = null;
+
+        synchronized (lock) {
+            if(inFlight > 0) {
+                inFlight--;
+            }
+            if(processed) {
+                processedCount++;
+                lastLatencyNanos = latency;
+                if(latency > maxLatencyNanos) {
+                    maxLatencyNanos = latency;
+                }
+                if(!fresh) {
+                    staleCount++;
+                }
+            } else {
+                droppedCount++;
+            }
+
+            if(pendingFrame != null) {
+                if(nowNanos - pendingTimestampNanos > policy.getMaxLatencyNanos()) {
+                    expired = pendingFrame;
+                    droppedCount++;
+                    pendingFrame = null;
+                } else if(policy.canDispatch(inFlight, pendingTimestampNanos, lastDispatchNanos)) {
+                    next = pendingFrame;
+                    nextTimestamp = pendingTimestampNanos;
+                    pendingFrame = null;
+                    inFlight++;
+                    lastDispatchNanos = nextTimestamp;
+                }
+            }
+        }
+
+        if(expired != null) {
+            callback.onDrop(expired);
+        }
+        if(next != null) {
+            callback.onDispatch(next, nextTimestamp);
+        }
+        return fresh;
+    }
+
+    /**
+     * Drop the waiting frame, if any. Detections already in flight are not affected.
+     */
+    public void clear() {
+        T dropped;
+        synchronized (lock) {
+            dropped = pendingFrame;
+            pendingFrame = null;
+            if(dropped != null) {
+                droppedCount++;
+            }
+        }
+        if(dropped != null) {
+            callback.onDrop(dropped);
+        }
+    }
+
+    public SchedulingPolicy getPolicy() {
+        synchronized (lock) {
+            return policy;
+        }
+    }
+
+    /**
+     * Switches to another policy, for frames offered from now on. A waiting frame stays waiting
+     * until the next completion.
+     */
+    public void setPolicy(SchedulingPolicy policy) {
+        synchronized (lock) {
+            this.policy = policy;
+        }
+    }
+
+    public int getInFlightCount() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return droppedCount;
+        }
+    }
+
+    public long getProcessedCount() {
+        synchronized (lock) {
+            return processedCount;
+        }
+    }
+
+    public long getStaleCount() {
+        synchronized (lock) {
+            return staleCount;
+        }
+    }
+
+    public long getLastLatencyNanos() {
+        synchronized (lock) {
+            return lastLatencyNanos;
+        }
+    }
+
+    public long getMaxLatencyNanos() {
+        synchronized (lock) {
+            return maxLatencyNanos;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return "FrameScheduler{" + policy
+                    + ", processed=" + processedCount
+                    + ", dropped=" + droppedCount
+                    + ", stale=" + staleCount
+                    + ", inFlight=" + inFlight
+                    + ", lastLatencyMs=" + (lastLatencyNanos / 1000000)
+                    + ", maxLatencyMs=" + (maxLatencyNanos / 1000000)
+                    + "}";
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.facial.smileornosmile.scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the {@link FrameScheduler} may hand a frame to the detector.
+ * Use one of the static factories, or subclass to plug in a custom policy.
+ */
+public abstract class SchedulingPolicy {
+    public static final long DEFAULT_MAX_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private long maxLatencyNanos = DEFAULT_MAX_LATENCY_NANOS;
+
+    /**
+     * One detection in flight. While it runs, only the newest frame is kept and
+     * every older waiting frame is dropped.
+     */
+    public static SchedulingPolicy latestFrameWins() {
+        return new InFlightLimit(1, true);
+    }
+
+    /**
+     * Up to {@code maxInFlight} detections at once, frames arriving while all slots are busy are dropped.
+     */
+    public static SchedulingPolicy fixedInFlight(int maxInFlight) {
+        if(maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+        }
+        return new InFlightLimit(maxInFlight, false);
+    }
+
+    /**
+     * One detection in flight and at most {@code fps} dispatches per second.
+     */
+    public static SchedulingPolicy targetFps(float fps) {
+        if(fps <= 0f) {
+            throw new IllegalArgumentException("fps must be positive: " + fps);
+        }
+        return new TargetFps((long) (TimeUnit.SECONDS.toNanos(1) / fps));
+    }
+
+    /**
+     * Frames older than this are never dispatched, and results that arrive later than this are
+     * reported as stale by {@link FrameScheduler#complete(long, long)}.
+     */
+    public SchedulingPolicy withMaxLatency(long maxLatency, TimeUnit unit) {
+        if(maxLatency <= 0) {
+            throw new IllegalArgumentException("maxLatency must be positive: " + maxLatency);
+        }
+        this.maxLatencyNanos = unit.toNanos(maxLatency);
+        return this;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    /**
+     * @param inFlight          detections currently running
+     * @param timestampNanos    capture time of the candidate frame
+     * @param lastDispatchNanos capture time of the last dispatched frame, or {@link Long#MIN_VALUE}
+     */
+    public abstract boolean canDispatch(int inFlight, long timestampNanos, long lastDispatchNanos);
+
+    /**
+     * Whether a frame that cannot be dispatched right away should wait for the next free slot.
+     */
+    public abstract boolean keepsPendingFrame();
+
+    private static class InFlightLimit extends SchedulingPolicy {
+        private final int maxInFlight;
+        private final boolean keepsPending;
+
+        InFlightLimit(int maxInFlight, boolean keepsPending) {
+            this.maxInFlight = maxInFlight;
+            this.keepsPending = keepsPending;
+        }
+
+        @Override
+        public boolean canDispatch(int inFlight, long timestampNanos, long lastDispatchNanos) {
+            return inFlight < maxInFlight;
+        }
+
+        @Override
+        public boolean keepsPendingFrame() {
+            return keepsPending;
+        }
+
+        @Override
+        public String toString() {
+            return (keepsPending ? "latestFrameWins" : "fixedInFlight(" + maxInFlight + ")");
+        }
+    }
+
+    private static class TargetFps extends SchedulingPolicy {
+        private final long minIntervalNanos;
+
+        TargetFps(long minIntervalNanos) {
+            this.minIntervalNanos = minIntervalNanos;
+        }
+
+        @Override
+        public boolean canDispatch(int inFlight, long timestampNanos, long lastDispatchNanos) {
+            if(inFlight > 0) {
+                return false;
+            }
+            return lastDispatchNanos == Long.MIN_VALUE || timestampNanos - lastDispatchNanos >= minIntervalNanos;
+        }
+
+        @Override
+        public boolean keepsPendingFrame() {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "targetFps(" + (TimeUnit.SECONDS.toNanos(1) / (float) minIntervalNanos) + ")";
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.facial.smileornosmile.session;
+
+import java.util.Locale;
+
+/**
+ * What a session log knows about one face.
+ */
+public class FaceSummary {
+    private final int faceId;
+    private final long rows;
+    private final long firstNanos;
+    private final long lastNanos;
+    private final float meanSmiling;
+    private final float smilingShare;
+    private final float eyesClosedShare;
+
+    public FaceSummary(int faceId, long rows, long firstNanos, long lastNanos,
+                       float meanSmiling, float smilingShare, float eyesClosedShare) {
+        this.faceId = faceId;
+        this.rows = rows;
+        this.firstNanos = firstNanos;
+        this.lastNanos = lastNanos;
+        this.meanSmiling = meanSmiling;
+        this.smilingShare = smilingShare;
+        this.eyesClosedShare = eyesClosedShare;
+    }
+
+    public int getFaceId() {
+        return faceId;
+    }
+
+    /** Frames the face was in */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getFirstNanos() {
+        return firstNanos;
+    }
+
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    public float getMeanSmiling() {
+        return meanSmiling;
+    }
+
+    /** Share of the face's frames with a smile computed in which it smiled */
+    public float getSmilingShare() {
+        return smilingShare;
+    }
+
+    /** Share of the face's frames with both eyes computed in which they were closed */
+    public float getEyesClosedShare() {
+        return eyesClosedShare;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "face %d: %d frames, %.1f s, smiling %.0f%% (mean %.2f), eyes closed %.0f%%",
+                faceId, rows, (lastNanos - firstNanos) / 1e9, smilingShare * 100f, meanSmiling, eyesClosedShare * 100f);
+    }
+}
@@ -0,0 +1,45 @@
+package com.facial.smileornosmile.session;
+
+/**
+ * Smiling probabilities of a session counted per minute in equal bins from 0 to 1, the last
+ * bin including 1.
+ */
+public class MinuteHistogram {
+    private final int minutes;
+    private final int bins;
+    private final int[] counts;
+
+    MinuteHistogram(int minutes, int bins, int[] counts) {
+        this.minutes = minutes;
+        this.bins = bins;
+        this.counts = counts;
+    }
+
+    public int getMinuteCount() {
+        return minutes;
+    }
+
+    public int getBinCount() {
+        return bins;
+    }
+
+    public int getCount(int minute, int bin) {
+        return counts[minute * bins + bin];
+    }
+
+    /**
+     * Rows of {@code minute} with a smile computed.
+     */
+    public int getTotal(int minute) {
+        int total = 0;
+        for(int bin = 0; bin < bins; bin++) {
+            total += counts[minute * bins + bin];
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "MinuteHistogram{" + minutes + " minutes x " + bins + " bins}";
+    }
+}
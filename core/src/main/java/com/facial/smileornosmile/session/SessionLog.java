@@ -0,0 +1,337 @@
+package com.facial.smileornosmile.session;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A file written by {@link SessionLogWriter}, mapped into memory and indexed by block once when
+ * opened. Queries run over the mapped columns they need and nothing else, so aggregating hours
+ * of 30 fps rows touches a few megabytes and allocates only the result. Rows are in the order
+ * they were appended. Thread safe. Logs are limited to 2 GB, the most a single mapping can hold.
+ */
+public class SessionLog implements Closeable {
+    public static final long NANOS_PER_MINUTE = 60000000000L;
+
+    private final RandomAccessFile file;
+    private final ByteBuffer buffer;
+    private int blockCount;
+    private int[] blockOffsets = new int[16];
+    private int[] blockRows = new int[16];
+    private long[] blockBases = new long[16];
+    //Rows before each block, for finding a row's block
+    private long[] blockFirstRows = new long[16];
+    private long rowCount;
+    private long startNanos = Long.MAX_VALUE;
+    private long endNanos = Long.MIN_VALUE;
+
+    private SessionLog(RandomAccessFile file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    public static SessionLog open(File path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            if(file.length() > Integer.MAX_VALUE) {
+                throw new IOException("Session log is larger than 2 GB: " + path);
+            }
+            ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if(buffer.remaining() < 8 || buffer.getInt() != SessionLogWriter.MAGIC) {
+                throw new IOException("Not a session log: " + path);
+            }
+            int version = buffer.getInt();
+            if(version != SessionLogWriter.VERSION) {
+                throw new IOException("Unsupported session log version " + version + ": " + path);
+            }
+            SessionLog log = new SessionLog(file, buffer);
+            log.index();
+            return log;
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private void index() {
+        int position = buffer.position();
+        while(buffer.limit() - position >= SessionLogWriter.BLOCK_HEADER_BYTES) {
+            int rows = buffer.getInt(position);
+            long base = buffer.getLong(position + 4);
+            int columns = position + SessionLogWriter.BLOCK_HEADER_BYTES;
+            if(rows <= 0 || rows > SessionLogWriter.BLOCK_ROWS
+                    || (long) rows * SessionLogWriter.ROW_BYTES > buffer.limit() - columns) {
+                //The log was cut short, everything complete before is still good
+                break;
+            }
+            addBlock(columns, rows, base);
+            position = columns + rows * SessionLogWriter.ROW_BYTES;
+        }
+    }
+
+    private void addBlock(int offset, int rows, long base) {
+        if(blockCount == blockOffsets.length) {
+            int capacity = blockCount * 2;
+            blockOffsets = Arrays.copyOf(blockOffsets, capacity);
+            blockRows = Arrays.copyOf(blockRows, capacity);
+            blockBases = Arrays.copyOf(blockBases, capacity);
+            blockFirstRows = Arrays.copyOf(blockFirstRows, capacity);
+        }
+        blockOffsets[blockCount] = offset;
+        blockRows[blockCount] = rows;
+        blockBases[blockCount] = base;
+        blockFirstRows[blockCount] = rowCount;
+        blockCount++;
+        rowCount += rows;
+        for(int i = 0; i < rows; i++) {
+            long timestamp = base + buffer.getInt(offset + 4 * i) * 1000L;
+            startNanos = Math.min(startNanos, timestamp);
+            endNanos = Math.max(endNanos, timestamp);
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * The earliest timestamp in the log, with microsecond precision.
+     */
+    public long getStartNanos() {
+        return rowCount == 0 ? 0 : startNanos;
+    }
+
+    public long getEndNanos() {
+        return rowCount == 0 ? 0 : endNanos;
+    }
+
+    public long getTimestampNanos(long row) {
+        int block = block(row);
+        int i = (int) (row - blockFirstRows[block]);
+        return blockBases[block] + buffer.getInt(blockOffsets[block] + 4 * i) * 1000L;
+    }
+
+    public int getFaceId(long row) {
+        int block = block(row);
+        return buffer.getInt(column(block, Column.FACE_ID) + 4 * (int) (row - blockFirstRows[block]));
+    }
+
+    public float getSmilingProbability(long row) {
+        return probability(row, Column.SMILING);
+    }
+
+    public float getLeftEyeOpenProbability(long row) {
+        return probability(row, Column.LEFT_EYE);
+    }
+
+    public float getRightEyeOpenProbability(long row) {
+        return probability(row, Column.RIGHT_EYE);
+    }
+
+    /**
+     * The box of a row as left, top, right and bottom, in whole frame pixels.
+     */
+    public void getBounds(long row, float[] out) {
+        int block = block(row);
+        int i = (int) (row - blockFirstRows[block]);
+        out[0] = buffer.getShort(column(block, Column.LEFT) + 2 * i);
+        out[1] = buffer.getShort(column(block, Column.TOP) + 2 * i);
+        out[2] = buffer.getShort(column(block, Column.RIGHT) + 2 * i);
+        out[3] = buffer.getShort(column(block, Column.BOTTOM) + 2 * i);
+    }
+
+    /**
+     * The share of rows smiling at least {@code threshold}, of those with a smile computed. With
+     * rows coming at the camera's steady pace, that is the share of face time spent smiling.
+     */
+    public float getSmilingShare(float threshold) {
+        int minimum = SessionLogWriter.quantize(threshold) & 0xff;
+        long counted = 0;
+        long smiled = 0;
+        for(int block = 0; block < blockCount; block++) {
+            int smiling = column(block, Column.SMILING);
+            for(int i = 0; i < blockRows[block]; i++) {
+                int value = buffer.get(smiling + i) & 0xff;
+                if(value != SessionLogWriter.UNCOMPUTED) {
+                    counted++;
+                    if(value >= minimum) {
+                        smiled++;
+                    }
+                }
+            }
+        }
+        return counted == 0 ? 0f : smiled / (float) counted;
+    }
+
+    /**
+     * Counts the smiling probabilities of each minute since the start of the log in {@code bins}
+     * equal bins from 0 to 1.
+     */
+    public MinuteHistogram getMinuteHistogram(int bins) {
+        if(bins < 1) {
+            throw new IllegalArgumentException("bins must be at least 1: " + bins);
+        }
+        int minutes = rowCount == 0 ? 0 : (int) ((endNanos - startNanos) / NANOS_PER_MINUTE) + 1;
+        int[] counts = new int[minutes * bins];
+        //Bin of every quantized value, so the inner loop does no float math
+        int[] binOf = new int[SessionLogWriter.UNCOMPUTED];
+        for(int value = 0; value < binOf.length; value++) {
+            binOf[value] = Math.min(value * bins / (SessionLogWriter.UNCOMPUTED - 1), bins - 1);
+        }
+        for(int block = 0; block < blockCount; block++) {
+            int offsets = blockOffsets[block];
+            int smiling = column(block, Column.SMILING);
+            long blockStart = blockBases[block] - startNanos;
+            for(int i = 0; i < blockRows[block]; i++) {
+                int value = buffer.get(smiling + i) & 0xff;
+                if(value == SessionLogWriter.UNCOMPUTED) {
+                    continue;
+                }
+                long sinceStart = blockStart + buffer.getInt(offsets + 4 * i) * 1000L;
+                counts[(int) (sinceStart / NANOS_PER_MINUTE) * bins + binOf[value]]++;
+            }
+        }
+        return new MinuteHistogram(minutes, bins, counts);
+    }
+
+    /**
+     * Sums up every face of the log, in the order of their ids.
+     *
+     * @param smileThreshold    smiling probability from which a row counts as smiling
+     * @param eyesOpenThreshold eyes open probability below which a row counts as eyes closed,
+     *                          for the lower of both eyes
+     */
+    public List<FaceSummary> getFaceSummaries(float smileThreshold, float eyesOpenThreshold) {
+        int smileMinimum = SessionLogWriter.quantize(smileThreshold) & 0xff;
+        int eyesMinimum = SessionLogWriter.quantize(eyesOpenThreshold) & 0xff;
+        //Tracker ids count up from 0, so the accumulators are indexed by id
+        int size = 0;
+        long[] rows = new long[8];
+        long[] smilingSums = new long[8];
+        long[] smilingRows = new long[8];
+        long[] smiled = new long[8];
+        long[] eyesRows = new long[8];
+        long[] eyesClosed = new long[8];
+        long[] first = new long[8];
+        long[] last = new long[8];
+        for(int block = 0; block < blockCount; block++) {
+            int offsets = blockOffsets[block];
+            int ids = column(block, Column.FACE_ID);
+            int smiling = column(block, Column.SMILING);
+            int leftEye = column(block, Column.LEFT_EYE);
+            int rightEye = column(block, Column.RIGHT_EYE);
+            for(int i = 0; i < blockRows[block]; i++) {
+                int id = buffer.getInt(ids + 4 * i);
+                if(id < 0) {
+                    continue;
+                }
+                if(id >= rows.length) {
+                    int capacity = Math.max(rows.length * 2, id + 1);
+                    rows = Arrays.copyOf(rows, capacity);
+                    smilingSums = Arrays.copyOf(smilingSums, capacity);
+                    smilingRows = Arrays.copyOf(smilingRows, capacity);
+                    smiled = Arrays.copyOf(smiled, capacity);
+                    eyesRows = Arrays.copyOf(eyesRows, capacity);
+                    eyesClosed = Arrays.copyOf(eyesClosed, capacity);
+                    first = Arrays.copyOf(first, capacity);
+                    last = Arrays.copyOf(last, capacity);
+                }
+                size = Math.max(size, id + 1);
+                long timestamp = blockBases[block] + buffer.getInt(offsets + 4 * i) * 1000L;
+                if(rows[id] == 0 || timestamp < first[id]) {
+                    first[id] = timestamp;
+                }
+                if(rows[id] == 0 || timestamp > last[id]) {
+                    last[id] = timestamp;
+                }
+                rows[id]++;
+                int smile = buffer.get(smiling + i) & 0xff;
+                if(smile != SessionLogWriter.UNCOMPUTED) {
+                    smilingSums[id] += smile;
+                    smilingRows[id]++;
+                    if(smile >= smileMinimum) {
+                        smiled[id]++;
+                    }
+                }
+                int left = buffer.get(leftEye + i) & 0xff;
+                int right = buffer.get(rightEye + i) & 0xff;
+                if(left != SessionLogWriter.UNCOMPUTED && right != SessionLogWriter.UNCOMPUTED) {
+                    eyesRows[id]++;
+                    if(Math.min(left, right) < eyesMinimum) {
+                        eyesClosed[id]++;
+                    }
+                }
+            }
+        }
+
+        List<FaceSummary> summaries = new ArrayList<>();
+        for(int id = 0; id < size; id++) {
+            if(rows[id] == 0) {
+                continue;
+            }
+            summaries.add(new FaceSummary(id, rows[id], first[id], last[id],
+                    smilingRows[id] == 0 ? 0f : smilingSums[id] / (254f * smilingRows[id]),
+                    smilingRows[id] == 0 ? 0f : smiled[id] / (float) smilingRows[id],
+                    eyesRows[id] == 0 ? 0f : eyesClosed[id] / (float) eyesRows[id]));
+        }
+        return summaries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    @Override
+    public String toString() {
+        return "SessionLog{" + rowCount + " rows in " + blockCount + " blocks, "
+                + (getEndNanos() - getStartNanos()) / 1000000000L + " s}";
+    }
+
+    private enum Column {
+        OFFSET(4), FACE_ID(4), SMILING(1), LEFT_EYE(1), RIGHT_EYE(1), LEFT(2), TOP(2), RIGHT(2), BOTTOM(2);
+
+        final int bytes;
+
+        Column(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Where {@code column} of {@code block} starts in the mapping.
+     */
+    private int column(int block, Column column) {
+        int offset = blockOffsets[block];
+        for(Column before : Column.values()) {
+            if(before == column) {
+                break;
+            }
+            offset += before.bytes * blockRows[block];
+        }
+        return offset;
+    }
+
+    private float probability(long row, Column column) {
+        int block = block(row);
+        return SessionLogWriter.dequantize(buffer.get(column(block, column) + (int) (row - blockFirstRows[block])));
+    }
+
+    private int block(long row) {
+        if(row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + rowCount);
+        }
+        int found = Arrays.binarySearch(blockFirstRows, 0, blockCount, row);
+        return found >= 0 ? found : -found - 2;
+    }
+}
@@ -0,0 +1,185 @@
+package com.facial.smileornosmile.session;
+
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends per face, per frame metrics of a session to a file that {@link SessionLog} maps back
+ * into memory. Rows are collected in columns and written as a block once {@link #BLOCK_ROWS}
+ * are together or on {@link #flush()}. Big endian, after an 8 byte header of magic and version
+ * every block is:
+ * <pre>
+ * int rows, long base timestamp,
+ * int[rows] microseconds since the base, int[rows] face id,
+ * byte[rows] smiling, byte[rows] left eye open, byte[rows] right eye open,
+ * short[rows] left, short[rows] top, short[rows] right, short[rows] bottom
+ * </pre>
+ * Probabilities are quantized to 0 to 254, 255 standing for uncomputed, and boxes to whole
+ * pixels, 19 bytes a row. A log cut short stays readable up to its last complete block.
+ *
+ * Appending never throws: a failed write, say with the disk full, stops the log and is thrown
+ * from the next {@link #flush()}, as losing the log must not stop detection. Thread safe.
+ */
+public class SessionLogWriter implements Closeable {
+    static final int MAGIC = 0x534f4e53;
+    static final int VERSION = 1;
+    static final int BLOCK_HEADER_BYTES = 12;
+    static final int ROW_BYTES = 19;
+    static final int UNCOMPUTED = 255;
+    public static final int BLOCK_ROWS = 4096;
+    //Microsecond offsets in an int reach a bit over 35 minutes
+    private static final long MAX_OFFSET_NANOS = Integer.MAX_VALUE * 1000L;
+
+    private final FileOutputStream out;
+    private final FileChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER_BYTES + BLOCK_ROWS * ROW_BYTES);
+    private final long[] timestamps = new long[BLOCK_ROWS];
+    private final int[] faceIds = new int[BLOCK_ROWS];
+    private final byte[] smiling = new byte[BLOCK_ROWS];
+    private final byte[] leftEyeOpen = new byte[BLOCK_ROWS];
+    private final byte[] rightEyeOpen = new byte[BLOCK_ROWS];
+    private final short[] lefts = new short[BLOCK_ROWS];
+    private final short[] tops = new short[BLOCK_ROWS];
+    private final short[] rights = new short[BLOCK_ROWS];
+    private final short[] bottoms = new short[BLOCK_ROWS];
+    private int count;
+    private long rows;
+    private long blocks;
+    private IOException error;
+
+    public SessionLogWriter(File file) throws IOException {
+        out = new FileOutputStream(file);
+        channel = out.getChannel();
+        block.putInt(MAGIC).putInt(VERSION).flip();
+        try {
+            write(block);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds one face of one frame, the box in frame pixels. Rows of a frame share its timestamp.
+     */
+    public synchronized void append(long timestampNanos, int faceId, float smilingProbability,
+                                    float leftEyeOpenProbability, float rightEyeOpenProbability,
+                                    float left, float top, float right, float bottom) {
+        if(error != null) {
+            return;
+        }
+        if(count > 0) {
+            long offset = timestampNanos - timestamps[0];
+            if(count == BLOCK_ROWS || offset < 0 || offset > MAX_OFFSET_NANOS) {
+                writeBlock();
+                if(error != null) {
+                    return;
+                }
+            }
+        }
+        timestamps[count] = timestampNanos;
+        faceIds[count] = faceId;
+        smiling[count] = quantize(smilingProbability);
+        leftEyeOpen[count] = quantize(leftEyeOpenProbability);
+        rightEyeOpen[count] = quantize(rightEyeOpenProbability);
+        lefts[count] = pixel(left);
+        tops[count] = pixel(top);
+        rights[count] = pixel(right);
+        bottoms[count] = pixel(bottom);
+        count++;
+        rows++;
+    }
+
+    /**
+     * Writes the rows collected so far as a block of their own. Meant to be called every few
+     * seconds, off the main thread, so a crash loses little.
+     *
+     * @throws IOException if this or an earlier write failed
+     */
+    public synchronized void flush() throws IOException {
+        if(count > 0) {
+            writeBlock();
+        }
+        if(error != null) {
+            throw error;
+        }
+    }
+
+    public synchronized long getRowCount() {
+        return rows;
+    }
+
+    public synchronized long getBlockCount() {
+        return blocks;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    static byte quantize(float probability) {
+        if(probability < 0f) {
+            return (byte) UNCOMPUTED;
+        }
+        return (byte) Math.round(Math.min(probability, 1f) * 254f);
+    }
+
+    static float dequantize(int quantized) {
+        quantized &= 0xff;
+        return quantized == UNCOMPUTED ? FaceObservations.UNCOMPUTED : quantized / 254f;
+    }
+
+    private static short pixel(float coordinate) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(coordinate)));
+    }
+
+    private void writeBlock() {
+        long base = timestamps[0];
+        block.clear();
+        block.putInt(count).putLong(base);
+        for(int i = 0; i < count; i++) {
+            block.putInt((int) ((timestamps[i] - base) / 1000));
+        }
+        for(int i = 0; i < count; i++) {
+            block.putInt(faceIds[i]);
+        }
+        block.put(smiling, 0, count);
+        block.put(leftEyeOpen, 0, count);
+        block.put(rightEyeOpen, 0, count);
+        putShorts(lefts);
+        putShorts(tops);
+        putShorts(rights);
+        putShorts(bottoms);
+        block.flip();
+        count = 0;
+        try {
+            write(block);
+            blocks++;
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    private void putShorts(short[] column) {
+        for(int i = 0; i < count; i++) {
+            block.putShort(column[i]);
+        }
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+        while(data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.facial.smileornosmile.source;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Decodes image files into NV21 frames for an {@link ImageSequenceFrameSource}.
+ */
+public interface FrameDecoder {
+
+    /**
+     * Whether {@code file} looks like something this decoder reads, usually by its name.
+     */
+    boolean accepts(File file);
+
+    /**
+     * Decodes {@code file} into {@code frame}, see {@link SourceFrame#prepare(int, int, int, boolean)}.
+     */
+    void decode(File file, SourceFrame frame) throws IOException;
+}
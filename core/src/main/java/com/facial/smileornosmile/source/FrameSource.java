@@ -0,0 +1,39 @@
+package com.facial.smileornosmile.source;
+
+import com.facial.smileornosmile.frame.LiveFrame;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Frames pulled one at a time at the reader's pace, from a recording, an image, a sequence of
+ * images or a video. Sources decode incrementally into buffers they reuse, so reading a long
+ * source takes as much memory as reading a short one. The live camera pushes its frames at its
+ * own pace instead, straight into {@code LiveFramePipeline#process}; both produce the same
+ * {@link LiveFrame}s.
+ *
+ * Not thread safe, meant to be read from one thread.
+ */
+public interface FrameSource extends Closeable {
+
+    /**
+     * Reads the next frame. It stays valid until the next call to {@link #read()},
+     * {@link #skip()} or {@link #close()}; {@link LiveFrame#freeze()} it to keep it longer.
+     *
+     * @return the frame, or null at the end of the source
+     */
+    LiveFrame read() throws IOException;
+
+    /**
+     * Moves past the next frame without converting it, cheaper than reading it where the
+     * source allows.
+     *
+     * @return false at the end of the source
+     */
+    boolean skip() throws IOException;
+
+    /**
+     * When the frame last read or skipped was taken, counted from the start of the source.
+     */
+    long getTimestampNanos();
+}
@@ -0,0 +1,81 @@
+package com.facial.smileornosmile.source;
+
+import com.facial.smileornosmile.frame.LiveFrame;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Image files as frames {@code frameIntervalNanos} apart, decoded one at a time into the same
+ * {@link SourceFrame}. A still image is a sequence of one.
+ */
+public class ImageSequenceFrameSource implements FrameSource {
+    private final List<File> files;
+    private final FrameDecoder decoder;
+    private final long frameIntervalNanos;
+    private final SourceFrame frame;
+    private int next;
+
+    public ImageSequenceFrameSource(List<File> files, FrameDecoder decoder, long frameIntervalNanos, SourceFrame frame) {
+        this.files = files;
+        this.decoder = decoder;
+        this.frameIntervalNanos = frameIntervalNanos;
+        this.frame = frame;
+    }
+
+    /**
+     * The files of {@code directory} that {@code decoder} accepts, in the order of their names.
+     */
+    public static ImageSequenceFrameSource directory(File directory, final FrameDecoder decoder, long frameIntervalNanos,
+                                                     SourceFrame frame) throws IOException {
+        File[] listed = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && decoder.accepts(file);
+            }
+        });
+        if(listed == null) {
+            throw new IOException("Not a directory: " + directory);
+        }
+        List<File> files = new ArrayList<>(Arrays.asList(listed));
+        Collections.sort(files);
+        return new ImageSequenceFrameSource(files, decoder, frameIntervalNanos, frame);
+    }
+
+    public int getFrameCount() {
+        return files.size();
+    }
+
+    @Override
+    public LiveFrame read() throws IOException {
+        if(next == files.size()) {
+            return null;
+        }
+        decoder.decode(files.get(next++), frame);
+        return frame;
+    }
+
+    @Override
+    public boolean skip() {
+        if(next == files.size()) {
+            return false;
+        }
+        next++;
+        return true;
+    }
+
+    @Override
+    public long getTimestampNanos() {
+        return Math.max(next - 1, 0) * frameIntervalNanos;
+    }
+
+    @Override
+    public void close() {
+        next = files.size();
+    }
+}
@@ -0,0 +1,70 @@
+package com.facial.smileornosmile.source;
+
+import com.facial.smileornosmile.frame.Nv21;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads raw NV21 files named {@code <anything>_<width>x<height>.nv21}, for example dumped
+ * preview frames. Needs no image codec, so it works on the JVM as well.
+ */
+public class Nv21FileDecoder implements FrameDecoder {
+    public static final String EXTENSION = ".nv21";
+    private static final Pattern NAME = Pattern.compile(".*_(\\d+)x(\\d+)\\.nv21");
+
+    private final int rotation;
+    private final boolean mirrored;
+
+    /**
+     * @param rotation clockwise rotation in degrees that makes the frames upright
+     * @param mirrored whether the frames come from a front camera
+     */
+    public Nv21FileDecoder(int rotation, boolean mirrored) {
+        this.rotation = rotation;
+        this.mirrored = mirrored;
+    }
+
+    /**
+     * The name to store a {@code width} x {@code height} frame under.
+     */
+    public static String fileName(String prefix, int width, int height) {
+        return prefix + "_" + width + "x" + height + EXTENSION;
+    }
+
+    @Override
+    public boolean accepts(File file) {
+        return NAME.matcher(file.getName()).matches();
+    }
+
+    @Override
+    public void decode(File file, SourceFrame frame) throws IOException {
+        Matcher matcher = NAME.matcher(file.getName());
+        if(!matcher.matches()) {
+            throw new IOException("Not named like an NV21 frame: " + file);
+        }
+        int width = Integer.parseInt(matcher.group(1));
+        int height = Integer.parseInt(matcher.group(2));
+        if(file.length() != Nv21.size(width, height)) {
+            throw new IOException(file + " has " + file.length() + " bytes, expected " + Nv21.size(width, height));
+        }
+        ByteBuffer data = frame.prepare(width, height, rotation, mirrored);
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            while(data.hasRemaining()) {
+                if(channel.read(data) < 0) {
+                    throw new IOException(file + " ended early");
+                }
+            }
+        } finally {
+            in.close();
+        }
+        data.flip();
+    }
+}
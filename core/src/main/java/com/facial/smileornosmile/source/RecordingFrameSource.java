@@ -0,0 +1,48 @@
+package com.facial.smileornosmile.source;
+
+import com.facial.smileornosmile.frame.LiveFrame;
+import com.facial.smileornosmile.replay.FrameRecording;
+import com.facial.smileornosmile.replay.RecordedFrame;
+
+/**
+ * The frames of a {@link FrameRecording}, read straight from the mapped file. Closing the
+ * source leaves the recording open.
+ */
+public class RecordingFrameSource implements FrameSource {
+    private final FrameRecording recording;
+    private int next;
+
+    public RecordingFrameSource(FrameRecording recording) {
+        this.recording = recording;
+    }
+
+    @Override
+    public LiveFrame read() {
+        if(next == recording.getFrameCount()) {
+            return null;
+        }
+        return new RecordedFrame(recording, next++);
+    }
+
+    @Override
+    public boolean skip() {
+        if(next == recording.getFrameCount()) {
+            return false;
+        }
+        next++;
+        return true;
+    }
+
+    @Override
+    public long getTimestampNanos() {
+        if(next == 0) {
+            return 0;
+        }
+        return recording.getTimestampNanos(next - 1) - recording.getTimestampNanos(0);
+    }
+
+    @Override
+    public void close() {
+        next = recording.getFrameCount();
+    }
+}
@@ -0,0 +1,82 @@
+package com.facial.smileornosmile.source;
+
+import com.facial.smileornosmile.frame.FrameBufferPool;
+import com.facial.smileornosmile.frame.LiveFrame;
+import com.facial.smileornosmile.frame.Nv21;
+import com.facial.smileornosmile.frame.PooledFrame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The frame a {@link FrameSource} decodes into, over and over. Its direct buffer only grows
+ * when a larger frame comes along, and freezing copies into a buffer of {@code pool}, like
+ * freezing a camera frame does.
+ */
+public class SourceFrame implements LiveFrame {
+    private final FrameBufferPool pool;
+    private ByteBuffer data = ByteBuffer.allocateDirect(0);
+    private int width;
+    private int height;
+    private int rotation;
+    private boolean mirrored;
+
+    public SourceFrame(FrameBufferPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Makes this a {@code width} x {@code height} frame.
+     *
+     * @return the buffer to write its NV21 data into, from position 0 to the limit
+     */
+    public ByteBuffer prepare(int width, int height, int rotation, boolean mirrored) {
+        int size = Nv21.size(width, height);
+        if(data.capacity() < size) {
+            data = ByteBuffer.allocateDirect(size);
+        }
+        data.clear();
+        data.limit(size);
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+        this.mirrored = mirrored;
+        return data;
+    }
+
+    @Override
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getRotation() {
+        return rotation;
+    }
+
+    @Override
+    public boolean isMirrored() {
+        return mirrored;
+    }
+
+    @Override
+    public LiveFrame freeze() {
+        ByteBuffer frame = data.duplicate();
+        frame.position(0);
+        return new PooledFrame(pool, pool.copyOf(frame), width, height, rotation, mirrored);
+    }
+
+    @Override
+    public void release() {
+        //Owned by its source, frozen copies are PooledFrames
+    }
+}
@@ -0,0 +1,47 @@
+package com.facial.smileornosmile.startup;
+
+import com.facial.smileornosmile.detector.DetectionImage;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.frame.Nv21;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads a live detector by detecting once on a blank NV21 frame the size of a preview frame,
+ * through the same path real frames take, so the first real frame finds the model loaded and
+ * its buffers allocated.
+ */
+public final class DetectorWarmUp {
+    public static final int WIDTH = 640;
+    public static final int HEIGHT = 480;
+
+    private DetectorWarmUp() {
+    }
+
+    /**
+     * Starts the warm-up from the calling thread, which loading the model may block.
+     *
+     * @param onReady runs on {@code callbackExecutor} when the detection finished, also if it
+     *                failed, as live detection has to go on anyway
+     */
+    public static void run(FaceDetectorBackend backend, DetectorProfile profile, Executor callbackExecutor,
+                           final Runnable onReady) {
+        ByteBuffer blank = ByteBuffer.allocateDirect(Nv21.size(WIDTH, HEIGHT));
+        DetectionImage image = DetectionImage.nv21(blank, WIDTH, HEIGHT, 0);
+        backend.detect(image, profile, new FaceObservations(1, profile.getContourTable().size(), 0), callbackExecutor,
+                new FaceDetectorBackend.Callback() {
+                    @Override
+                    public void onDetected(FaceObservations results) {
+                        onReady.run();
+                    }
+
+                    @Override
+                    public void onFailed(Exception e) {
+                        onReady.run();
+                    }
+                });
+    }
+}
@@ -0,0 +1,190 @@
+package com.facial.smileornosmile.startup;
+
+import com.facial.smileornosmile.metrics.Tracer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * The way from launch to the first overlay as a series of {@link Milestone}s, each reached once,
+ * with init tasks that wait for a milestone instead of all running in {@code onCreate}. Tasks of
+ * the same milestone are started in the order they were added, each on its own executor; a task
+ * added for a milestone already reached starts right away.
+ *
+ * Every milestone shows up in traces as an async section from the start to when it was reached,
+ * every task as a section named after it. Thread safe.
+ */
+public class StartupSequence {
+    public static final long NOT_REACHED = -1;
+    public static final String TRACE_PREFIX = "SmileOrNoSmile.startup.";
+
+    public enum Milestone {
+        /** The activity is created and its views are inflated */
+        CREATED,
+        /** The camera is open and about to deliver frames */
+        CAMERA_OPENED,
+        /** The first camera frame arrived */
+        FIRST_FRAME,
+        /** The live detector is loaded and has run once */
+        DETECTOR_READY,
+        /** The first live detection finished */
+        FIRST_DETECTION,
+        /** The first overlay is on screen */
+        FIRST_OVERLAY
+    }
+
+    private static final class Task {
+        final Milestone trigger;
+        final String name;
+        final Executor executor;
+        final Runnable runnable;
+        long nanos = NOT_REACHED;
+
+        Task(Milestone trigger, String name, Executor executor, Runnable runnable) {
+            this.trigger = trigger;
+            this.name = name;
+            this.executor = executor;
+            this.runnable = runnable;
+        }
+    }
+
+    private final long startNanos;
+    private final Tracer tracer;
+    private final long[] reachedNanos = new long[Milestone.values().length];
+    private final List<Task> tasks = new ArrayList<>();
+
+    /**
+     * @param startNanos when the app started, in {@link System#nanoTime()} terms, ideally the start of the process
+     */
+    public StartupSequence(long startNanos, Tracer tracer) {
+        this.startNanos = startNanos;
+        this.tracer = tracer;
+        for(Milestone milestone : Milestone.values()) {
+            reachedNanos[milestone.ordinal()] = NOT_REACHED;
+            tracer.beginAsyncSection(traceName(milestone), milestone.ordinal());
+        }
+    }
+
+    /**
+     * Runs {@code task} on {@code executor} once {@code trigger} is reached.
+     *
+     * @param name short name for logs and traces
+     */
+    public void runAt(Milestone trigger, String name, Executor executor, Runnable task) {
+        Task added = new Task(trigger, name, executor, task);
+        boolean now;
+        synchronized(this) {
+            tasks.add(added);
+            now = reachedNanos[trigger.ordinal()] != NOT_REACHED;
+        }
+        if(now) {
+            start(added);
+        }
+    }
+
+    /**
+     * Records {@code milestone} and starts its tasks, if it was not reached before.
+     *
+     * @return whether this call reached it
+     */
+    public boolean reach(Milestone milestone, long nowNanos) {
+        List<Task> triggered = new ArrayList<>();
+        synchronized(this) {
+            if(reachedNanos[milestone.ordinal()] != NOT_REACHED) {
+                return false;
+            }
+            reachedNanos[milestone.ordinal()] = nowNanos - startNanos;
+            for(Task task : tasks) {
+                if(task.trigger == milestone) {
+                    triggered.add(task);
+                }
+            }
+        }
+        tracer.endAsyncSection(traceName(milestone), milestone.ordinal());
+        for(Task task : triggered) {
+            start(task);
+        }
+        return true;
+    }
+
+    public synchronized boolean hasReached(Milestone milestone) {
+        return reachedNanos[milestone.ordinal()] != NOT_REACHED;
+    }
+
+    /**
+     * How long after the start {@code milestone} was reached, or {@link #NOT_REACHED}.
+     */
+    public synchronized long getNanos(Milestone milestone) {
+        return reachedNanos[milestone.ordinal()];
+    }
+
+    /**
+     * The figure to watch across releases: from the start until the first live detection finished.
+     */
+    public long getTimeToFirstDetectionNanos() {
+        return getNanos(Milestone.FIRST_DETECTION);
+    }
+
+    public synchronized int getTaskCount() {
+        return tasks.size();
+    }
+
+    public synchronized String getTaskName(int task) {
+        return tasks.get(task).name;
+    }
+
+    /**
+     * How long {@code task} ran, or {@link #NOT_REACHED} while it has not finished.
+     */
+    public synchronized long getTaskNanos(int task) {
+        return tasks.get(task).nanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder out = new StringBuilder("StartupSequence{");
+        for(Milestone milestone : Milestone.values()) {
+            if(milestone.ordinal() > 0) {
+                out.append(", ");
+            }
+            out.append(milestone.name().toLowerCase()).append('=');
+            appendMillis(out, reachedNanos[milestone.ordinal()]);
+        }
+        for(Task task : tasks) {
+            out.append(", ").append(task.name).append(" took ");
+            appendMillis(out, task.nanos);
+        }
+        return out.append('}').toString();
+    }
+
+    private void start(final Task task) {
+        task.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                tracer.beginSection(TRACE_PREFIX + task.name);
+                try {
+                    task.runnable.run();
+                } finally {
+                    tracer.endSection();
+                    synchronized(StartupSequence.this) {
+                        task.nanos = System.nanoTime() - start;
+                    }
+                }
+            }
+        });
+    }
+
+    private static String traceName(Milestone milestone) {
+        return TRACE_PREFIX + milestone.name().toLowerCase();
+    }
+
+    private static void appendMillis(StringBuilder out, long nanos) {
+        if(nanos == NOT_REACHED) {
+            out.append('-');
+        } else {
+            out.append(nanos / 1000000).append(" ms");
+        }
+    }
+}
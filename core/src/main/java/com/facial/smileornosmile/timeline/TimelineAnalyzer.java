@@ -0,0 +1,150 @@
+package com.facial.smileornosmile.timeline;
+
+import com.facial.smileornosmile.detector.DetectionImage;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.frame.LiveFrame;
+import com.facial.smileornosmile.source.FrameSource;
+import com.facial.smileornosmile.tracking.FaceObservations;
+import com.facial.smileornosmile.tracking.FaceTracker;
+import com.facial.smileornosmile.tracking.TrackedFace;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Detects on every {@code stride}th frame of a {@link FrameSource} and streams the smile and
+ * eyes open probabilities of its faces to a {@link TimelineWriter}, from the calling thread.
+ * One frame is in detection at a time and the next is only read once it finished, so a slow
+ * detector holds back decoding and memory stays the same however long the source is.
+ *
+ * Faces keep their ids across frames through a {@link FaceTracker} that does not smooth, so
+ * the timeline has the detector's own values. Unlike the live pipeline nothing is dropped:
+ * offline there is no camera to keep up with.
+ */
+public class TimelineAnalyzer {
+    public interface ProgressListener {
+        void onProgress(TimelineProgress progress);
+    }
+
+    public static final int MAX_FACES = 8;
+    private static final int MAX_CONTOUR_POINTS = 160;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final FaceDetectorBackend backend;
+    private final DetectorProfile profile;
+    private final int stride;
+    private final FaceObservations observations;
+    private final FaceTracker tracker;
+    private final Semaphore detected = new Semaphore(0);
+    private final FaceDetectorBackend.Callback callback = new FaceDetectorBackend.Callback() {
+        @Override
+        public void onDetected(FaceObservations results) {
+            failure = null;
+            detected.release();
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            failure = e;
+            detected.release();
+        }
+    };
+    private Exception failure;
+    private volatile boolean cancelled;
+
+    /**
+     * @param stride detect on every {@code stride}th frame, 1 for all of them
+     */
+    public TimelineAnalyzer(FaceDetectorBackend backend, DetectorProfile profile, int stride) {
+        if(stride < 1) {
+            throw new IllegalArgumentException("stride must be at least 1: " + stride);
+        }
+        this.backend = backend;
+        this.profile = profile;
+        this.stride = stride;
+        int contours = profile.getContourTable().size();
+        observations = new FaceObservations(MAX_FACES, contours, MAX_CONTOUR_POINTS);
+        tracker = new FaceTracker(MAX_FACES, contours, MAX_CONTOUR_POINTS, 1f,
+                FaceTracker.DEFAULT_MAX_MISSED_FRAMES, FaceTracker.DEFAULT_MIN_IOU);
+    }
+
+    /**
+     * Analyzes {@code source} up to its end or until cancelled. Frames whose detection failed are
+     * left out of the timeline.
+     *
+     * @param listener called after each analyzed frame, may be null
+     */
+    public TimelineProgress run(FrameSource source, TimelineWriter writer, ProgressListener listener)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long read = 0;
+        long analyzed = 0;
+        long failed = 0;
+        tracker.clear();
+        while(!cancelled) {
+            if(read % stride != 0) {
+                if(!source.skip()) {
+                    break;
+                }
+                read++;
+                continue;
+            }
+            LiveFrame frame = source.read();
+            if(frame == null) {
+                break;
+            }
+            read++;
+            analyzed++;
+            long timestamp = source.getTimestampNanos();
+            if(detect(frame)) {
+                tracker.update(observations, timestamp);
+                write(writer, timestamp);
+            } else {
+                failed++;
+            }
+            if(listener != null) {
+                listener.onProgress(new TimelineProgress(read, analyzed, failed, timestamp, System.nanoTime() - start));
+            }
+        }
+        return new TimelineProgress(read, analyzed, failed, source.getTimestampNanos(), System.nanoTime() - start);
+    }
+
+    /**
+     * Stops after the frame in detection.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private boolean detect(LiveFrame frame) throws InterruptedException {
+        DetectionImage image = DetectionImage.nv21(frame.getData(), frame.getWidth(), frame.getHeight(), frame.getRotation());
+        backend.detect(image, profile, observations, DIRECT, callback);
+        detected.acquire();
+        return failure == null;
+    }
+
+    private void write(TimelineWriter writer, long timestampNanos) throws IOException {
+        writer.beginFrame(timestampNanos);
+        for(int i = 0; i < tracker.getTrackCount(); i++) {
+            TrackedFace track = tracker.getTrack(i);
+            //Tracks kept alive through a missed detection are not in this frame
+            if(track.getMissedFrames() == 0) {
+                writer.writeFace(track.getId(), track.getSmilingProbability(),
+                        track.getLeftEyeOpenProbability(), track.getRightEyeOpenProbability());
+            }
+        }
+        writer.endFrame();
+    }
+}
@@ -0,0 +1,71 @@
+package com.facial.smileornosmile.timeline;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of a running timeline analysis.
+ */
+public class TimelineProgress {
+    private final long framesRead;
+    private final long framesAnalyzed;
+    private final long framesFailed;
+    private final long sourceNanos;
+    private final long elapsedNanos;
+
+    public TimelineProgress(long framesRead, long framesAnalyzed, long framesFailed, long sourceNanos, long elapsedNanos) {
+        this.framesRead = framesRead;
+        this.framesAnalyzed = framesAnalyzed;
+        this.framesFailed = framesFailed;
+        this.sourceNanos = sourceNanos;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** Frames taken from the source, skipped ones included */
+    public long getFramesRead() {
+        return framesRead;
+    }
+
+    /** Frames detected on, including those whose detection failed */
+    public long getFramesAnalyzed() {
+        return framesAnalyzed;
+    }
+
+    public long getFramesFailed() {
+        return framesFailed;
+    }
+
+    /** How far into the source the analysis got */
+    public long getSourceNanos() {
+        return sourceNanos;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** Source frames gone through per second, skipped ones included */
+    public float getFramesPerSecond() {
+        return perSecond(framesRead);
+    }
+
+    /** Frames detected on per second */
+    public float getAnalyzedFramesPerSecond() {
+        return perSecond(framesAnalyzed);
+    }
+
+    private float perSecond(long frames) {
+        if(elapsedNanos <= 0) {
+            return 0f;
+        }
+        return frames / (elapsedNanos / (float) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Override
+    public String toString() {
+        return framesAnalyzed + "/" + framesRead + " frames, " + TimeUnit.NANOSECONDS.toSeconds(sourceNanos) + " s in ("
+                + framesFailed + " failed, "
+                + String.format(Locale.US, "%.1f", getFramesPerSecond()) + " fps, "
+                + String.format(Locale.US, "%.1f", getAnalyzedFramesPerSecond()) + " analyzed fps)";
+    }
+}
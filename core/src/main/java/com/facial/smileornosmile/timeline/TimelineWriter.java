@@ -0,0 +1,70 @@
+package com.facial.smileornosmile.timeline;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Streams a smile timeline as CSV lines of
+ * {@code timestampMs,face,smiling,leftEyeOpen,rightEyeOpen}, one per face and analyzed frame,
+ * with the tracked face id and probabilities with three decimals. Frames without faces get a
+ * single line with face -1, so gaps in the timeline are real gaps. Flushed after every frame,
+ * so the file can be followed while it grows.
+ */
+public class TimelineWriter implements Closeable {
+    public static final String HEADER = "timestampMs,face,smiling,leftEyeOpen,rightEyeOpen";
+
+    private final BufferedWriter writer;
+    private boolean faceWritten;
+    private String timestamp;
+
+    public TimelineWriter(File file) throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")));
+        writer.write(HEADER);
+        writer.write('\n');
+    }
+
+    public void beginFrame(long timestampNanos) {
+        timestamp = String.format(Locale.US, "%.3f", timestampNanos / 1e6);
+        faceWritten = false;
+    }
+
+    public void writeFace(int face, float smiling, float leftEyeOpen, float rightEyeOpen) throws IOException {
+        writer.write(timestamp);
+        writer.write(',');
+        writer.write(Integer.toString(face));
+        writer.write(',');
+        writer.write(format(smiling));
+        writer.write(',');
+        writer.write(format(leftEyeOpen));
+        writer.write(',');
+        writer.write(format(rightEyeOpen));
+        writer.write('\n');
+        faceWritten = true;
+    }
+
+    public void endFrame() throws IOException {
+        if(!faceWritten) {
+            writer.write(timestamp);
+            writer.write(",-1,,,\n");
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static String format(float probability) {
+        if(probability < 0f) {
+            return "";
+        }
+        return String.format(Locale.US, "%.3f", probability);
+    }
+}
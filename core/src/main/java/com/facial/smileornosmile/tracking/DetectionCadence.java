@@ -0,0 +1,44 @@
+package com.facial.smileornosmile.tracking;
+
+/**
+ * Decides which frames get a full detection and which are only predicted by the tracker.
+ * Every {@code interval}-th frame is detected, and every frame while nothing is tracked, so
+ * new faces are picked up right away.
+ */
+public class DetectionCadence {
+    private final int interval;
+    private int framesSinceDetection;
+
+    public DetectionCadence(int interval) {
+        if(interval < 1) {
+            throw new IllegalArgumentException("interval must be at least 1: " + interval);
+        }
+        this.interval = interval;
+        framesSinceDetection = interval;
+    }
+
+    /**
+     * Call once per frame.
+     *
+     * @param tracking whether the tracker currently follows any face
+     */
+    public boolean shouldDetect(boolean tracking) {
+        framesSinceDetection++;
+        if(!tracking || framesSinceDetection >= interval) {
+            framesSinceDetection = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Make the next frame a full detection, for example when a detection was dropped.
+     */
+    public void requestDetection() {
+        framesSinceDetection = interval;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+}
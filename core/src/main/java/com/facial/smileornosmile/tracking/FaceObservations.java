@@ -0,0 +1,244 @@
+package com.facial.smileornosmile.tracking;
+
+import com.facial.smileornosmile.detector.FaceLandmarkType;
+
+import java.util.Arrays;
+
+/**
+ * The faces of one detection result, stored in preallocated flat arrays so converting a
+ * result does not allocate. Contour points are stored per face in contour order, with the
+ * point count of every contour kept alongside. Landmarks are indexed by {@link FaceLandmarkType}
+ * id and are NaN when the detector did not report them.
+ */
+public class FaceObservations {
+    public static final int NO_TRACKING_ID = -1;
+    public static final float UNCOMPUTED = -1f;
+
+    private final int maxFaces;
+    private final int maxContours;
+    private final int maxPointsPerFace;
+
+    private final int[] trackingIds;
+    private final float[] boxes;
+    private final float[] probabilities;
+    private final float[] points;
+    private final int[] pointCounts;
+    private final int[] contourCounts;
+    private final int[] contourPointCounts;
+    private final float[] landmarks;
+    private int count;
+
+    public FaceObservations(int maxFaces, int maxContours, int maxPointsPerFace) {
+        this.maxFaces = maxFaces;
+        this.maxContours = maxContours;
+        this.maxPointsPerFace = maxPointsPerFace;
+        trackingIds = new int[maxFaces];
+        boxes = new float[maxFaces * 4];
+        probabilities = new float[maxFaces * 3];
+        points = new float[maxFaces * maxPointsPerFace * 2];
+        pointCounts = new int[maxFaces];
+        contourCounts = new int[maxFaces];
+        contourPointCounts = new int[maxFaces * maxContours];
+        landmarks = new float[maxFaces * FaceLandmarkType.SLOTS * 2];
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Adds a face and returns its index, or -1 if {@code maxFaces} are already stored.
+     */
+    public int addFace(int trackingId, float left, float top, float right, float bottom,
+                       float smiling, float leftEyeOpen, float rightEyeOpen) {
+        if(count == maxFaces) {
+            return -1;
+        }
+        int face = count++;
+        trackingIds[face] = trackingId;
+        boxes[face * 4] = left;
+        boxes[face * 4 + 1] = top;
+        boxes[face * 4 + 2] = right;
+        boxes[face * 4 + 3] = bottom;
+        probabilities[face * 3] = smiling;
+        probabilities[face * 3 + 1] = leftEyeOpen;
+        probabilities[face * 3 + 2] = rightEyeOpen;
+        pointCounts[face] = 0;
+        contourCounts[face] = 0;
+        int landmarkStart = face * FaceLandmarkType.SLOTS * 2;
+        Arrays.fill(landmarks, landmarkStart, landmarkStart + FaceLandmarkType.SLOTS * 2, Float.NaN);
+        return face;
+    }
+
+    /**
+     * Replaces the probabilities of {@code face}, for classification done after detection.
+     */
+    public void setClassification(int face, float smiling, float leftEyeOpen, float rightEyeOpen) {
+        probabilities[face * 3] = smiling;
+        probabilities[face * 3 + 1] = leftEyeOpen;
+        probabilities[face * 3 + 2] = rightEyeOpen;
+    }
+
+    /**
+     * Starts the next contour of {@code face}. Points added afterwards belong to it.
+     * Returns false if the face already has {@code maxContours} contours.
+     */
+    public boolean beginContour(int face) {
+        if(contourCounts[face] == maxContours) {
+            return false;
+        }
+        contourPointCounts[face * maxContours + contourCounts[face]] = 0;
+        contourCounts[face]++;
+        return true;
+    }
+
+    /**
+     * Adds a point to the current contour of {@code face}. Points past {@code maxPointsPerFace} are ignored.
+     */
+    public void addPoint(int face, float x, float y) {
+        if(pointCounts[face] == maxPointsPerFace || contourCounts[face] == 0) {
+            return;
+        }
+        int index = (face * maxPointsPerFace + pointCounts[face]) * 2;
+        points[index] = x;
+        points[index + 1] = y;
+        pointCounts[face]++;
+        contourPointCounts[face * maxContours + contourCounts[face] - 1]++;
+    }
+
+    public void setLandmark(int face, int type, float x, float y) {
+        int index = (face * FaceLandmarkType.SLOTS + type) * 2;
+        landmarks[index] = x;
+        landmarks[index + 1] = y;
+    }
+
+    /**
+     * Replaces the contents with those of {@code source}, as far as the capacity allows.
+     */
+    public void copyFrom(FaceObservations source) {
+        clear();
+        for(int f = 0; f < source.size(); f++) {
+            int face = addFace(source.getTrackingId(f), source.getLeft(f), source.getTop(f),
+                    source.getRight(f), source.getBottom(f), source.getSmilingProbability(f),
+                    source.getLeftEyeOpenProbability(f), source.getRightEyeOpenProbability(f));
+            if(face < 0) {
+                return;
+            }
+            int point = 0;
+            for(int c = 0; c < source.getContourCount(f) && beginContour(face); c++) {
+                int end = point + source.getContourPointCount(f, c);
+                for(; point < end; point++) {
+                    addPoint(face, source.getPointX(f, point), source.getPointY(f, point));
+                }
+            }
+            int landmarkStart = f * FaceLandmarkType.SLOTS * 2;
+            System.arraycopy(source.landmarks, landmarkStart, landmarks, face * FaceLandmarkType.SLOTS * 2,
+                    FaceLandmarkType.SLOTS * 2);
+        }
+    }
+
+    /**
+     * Maps all boxes, points and landmarks with {@code x * scale + offsetX, y * scale + offsetY},
+     * for example from a cropped detection back to the full frame.
+     */
+    public void transform(float scale, float offsetX, float offsetY) {
+        for(int face = 0; face < count; face++) {
+            boxes[face * 4] = boxes[face * 4] * scale + offsetX;
+            boxes[face * 4 + 1] = boxes[face * 4 + 1] * scale + offsetY;
+            boxes[face * 4 + 2] = boxes[face * 4 + 2] * scale + offsetX;
+            boxes[face * 4 + 3] = boxes[face * 4 + 3] * scale + offsetY;
+            int start = face * maxPointsPerFace * 2;
+            int end = start + pointCounts[face] * 2;
+            for(int i = start; i < end; i += 2) {
+                points[i] = points[i] * scale + offsetX;
+                points[i + 1] = points[i + 1] * scale + offsetY;
+            }
+            start = face * FaceLandmarkType.SLOTS * 2;
+            end = start + FaceLandmarkType.SLOTS * 2;
+            for(int i = start; i < end; i += 2) {
+                landmarks[i] = landmarks[i] * scale + offsetX;
+                landmarks[i + 1] = landmarks[i + 1] * scale + offsetY;
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getMaxFaces() {
+        return maxFaces;
+    }
+
+    public int getMaxContours() {
+        return maxContours;
+    }
+
+    public int getMaxPointsPerFace() {
+        return maxPointsPerFace;
+    }
+
+    public int getTrackingId(int face) {
+        return trackingIds[face];
+    }
+
+    public float getLeft(int face) {
+        return boxes[face * 4];
+    }
+
+    public float getTop(int face) {
+        return boxes[face * 4 + 1];
+    }
+
+    public float getRight(int face) {
+        return boxes[face * 4 + 2];
+    }
+
+    public float getBottom(int face) {
+        return boxes[face * 4 + 3];
+    }
+
+    public float getSmilingProbability(int face) {
+        return probabilities[face * 3];
+    }
+
+    public float getLeftEyeOpenProbability(int face) {
+        return probabilities[face * 3 + 1];
+    }
+
+    public float getRightEyeOpenProbability(int face) {
+        return probabilities[face * 3 + 2];
+    }
+
+    public int getPointCount(int face) {
+        return pointCounts[face];
+    }
+
+    public float getPointX(int face, int point) {
+        return points[(face * maxPointsPerFace + point) * 2];
+    }
+
+    public float getPointY(int face, int point) {
+        return points[(face * maxPointsPerFace + point) * 2 + 1];
+    }
+
+    public int getContourCount(int face) {
+        return contourCounts[face];
+    }
+
+    public int getContourPointCount(int face, int contour) {
+        return contourPointCounts[face * maxContours + contour];
+    }
+
+    public boolean hasLandmark(int face, int type) {
+        return !Float.isNaN(landmarks[(face * FaceLandmarkType.SLOTS + type) * 2]);
+    }
+
+    public float getLandmarkX(int face, int type) {
+        return landmarks[(face * FaceLandmarkType.SLOTS + type) * 2];
+    }
+
+    public float getLandmarkY(int face, int type) {
+        return landmarks[(face * FaceLandmarkType.SLOTS + type) * 2 + 1];
+    }
+}
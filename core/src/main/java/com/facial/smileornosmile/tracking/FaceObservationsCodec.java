@@ -0,0 +1,113 @@
+package com.facial.smileornosmile.tracking;
+
+import com.facial.smileornosmile.detector.FaceLandmarkType;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The compact big endian form {@link FaceObservations} are stored in, by recordings and the
+ * result store alike:
+ * <pre>
+ * short faces, then per face
+ *     int tracking id, 4 floats box, 3 floats probabilities,
+ *     short landmark mask, 2 floats per landmark in the mask,
+ *     short contours, per contour short points and 2 floats per point
+ * </pre>
+ */
+public final class FaceObservationsCodec {
+
+    private FaceObservationsCodec() {
+    }
+
+    public static void write(FaceObservations faces, DataOutput out) throws IOException {
+        out.writeShort(faces.size());
+        for(int f = 0; f < faces.size(); f++) {
+            out.writeInt(faces.getTrackingId(f));
+            out.writeFloat(faces.getLeft(f));
+            out.writeFloat(faces.getTop(f));
+            out.writeFloat(faces.getRight(f));
+            out.writeFloat(faces.getBottom(f));
+            out.writeFloat(faces.getSmilingProbability(f));
+            out.writeFloat(faces.getLeftEyeOpenProbability(f));
+            out.writeFloat(faces.getRightEyeOpenProbability(f));
+            int mask = 0;
+            for(int type = 0; type < FaceLandmarkType.SLOTS; type++) {
+                if(faces.hasLandmark(f, type)) {
+                    mask |= 1 << type;
+                }
+            }
+            out.writeShort(mask);
+            for(int type = 0; type < FaceLandmarkType.SLOTS; type++) {
+                if((mask & (1 << type)) != 0) {
+                    out.writeFloat(faces.getLandmarkX(f, type));
+                    out.writeFloat(faces.getLandmarkY(f, type));
+                }
+            }
+            out.writeShort(faces.getContourCount(f));
+            int point = 0;
+            for(int c = 0; c < faces.getContourCount(f); c++) {
+                int count = faces.getContourPointCount(f, c);
+                out.writeShort(count);
+                for(int end = point + count; point < end; point++) {
+                    out.writeFloat(faces.getPointX(f, point));
+                    out.writeFloat(faces.getPointY(f, point));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents of {@code out} with the faces at the position of {@code in}, as far as
+     * its capacity allows, and moves the position past them.
+     */
+    public static void read(ByteBuffer in, FaceObservations out) {
+        out.clear();
+        int faces = in.getShort();
+        for(int f = 0; f < faces; f++) {
+            int trackingId = in.getInt();
+            int face = out.addFace(trackingId, in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat(),
+                    in.getFloat(), in.getFloat(), in.getFloat());
+            int mask = in.getShort() & 0xffff;
+            for(int type = 0; type < FaceLandmarkType.SLOTS; type++) {
+                if((mask & (1 << type)) != 0) {
+                    float x = in.getFloat();
+                    float y = in.getFloat();
+                    if(face >= 0) {
+                        out.setLandmark(face, type, x, y);
+                    }
+                }
+            }
+            int contours = in.getShort();
+            for(int c = 0; c < contours; c++) {
+                int points = in.getShort();
+                boolean kept = face >= 0 && out.beginContour(face);
+                for(int p = 0; p < points; p++) {
+                    float x = in.getFloat();
+                    float y = in.getFloat();
+                    if(kept) {
+                        out.addPoint(face, x, y);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the position of {@code in} past the faces there without reading them.
+     */
+    public static void skip(ByteBuffer in) {
+        int faces = in.getShort();
+        for(int f = 0; f < faces; f++) {
+            in.position(in.position() + 4 + 7 * 4);
+            int mask = in.getShort() & 0xffff;
+            in.position(in.position() + Integer.bitCount(mask) * 8);
+            int contours = in.getShort();
+            for(int c = 0; c < contours; c++) {
+                int points = in.getShort();
+                in.position(in.position() + points * 8);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.facial.smileornosmile.tracking;
+
+import com.facial.smileornosmile.render.ContourGeometry;
+import com.facial.smileornosmile.render.ContourTable;
+
+/**
+ * Follows faces across frames: assigns stable ids, filters their boxes, contour points and
+ * probabilities, and predicts them forward for frames that skip detection.
+ *
+ * Observations are matched to tracks by the detector's own tracking id when it reports one,
+ * otherwise greedily by the overlap of the boxes. Nothing is allocated after construction.
+ * Not thread safe.
+ */
+public class FaceTracker {
+    public static final float DEFAULT_SMOOTHING = 0.5f;
+    public static final int DEFAULT_MAX_MISSED_FRAMES = 3;
+    public static final float DEFAULT_MIN_IOU = 0.2f;
+
+    private final TrackedFace[] tracks;
+    private final boolean[] matched;
+    private final float[] elapsed;
+    private final float alpha;
+    private final float beta;
+    private final int maxMissedFrames;
+    private final float minIou;
+    private int trackCount;
+    private int nextId;
+    private long latestNanos = Long.MIN_VALUE;
+
+    public FaceTracker(int maxFaces, int maxContours, int maxPointsPerFace) {
+        this(maxFaces, maxContours, maxPointsPerFace, DEFAULT_SMOOTHING, DEFAULT_MAX_MISSED_FRAMES, DEFAULT_MIN_IOU);
+    }
+
+    /**
+     * @param smoothing       weight of a new observation, from 0 (ignore it) to 1 (no smoothing)
+     * @param maxMissedFrames detections a face may be missing from before its track is dropped
+     * @param minIou          smallest box overlap that still counts as the same face
+     */
+    public FaceTracker(int maxFaces, int maxContours, int maxPointsPerFace,
+                       float smoothing, int maxMissedFrames, float minIou) {
+        if(smoothing <= 0f || smoothing > 1f) {
+            throw new IllegalArgumentException("smoothing must be in (0, 1]: " + smoothing);
+        }
+        tracks = new TrackedFace[maxFaces];
+        for(int i = 0; i < maxFaces; i++) {
+            tracks[i] = new TrackedFace(maxContours, maxPointsPerFace);
+        }
+        matched = new boolean[maxFaces];
+        elapsed = new float[maxFaces];
+        alpha = smoothing;
+        // Velocity gain of a critically damped alpha-beta filter
+        beta = smoothing * smoothing / (2f - smoothing);
+        this.maxMissedFrames = maxMissedFrames;
+        this.minIou = minIou;
+    }
+
+    /**
+     * Feeds the result of a full detection taken at {@code timestampNanos}, which may be older
+     * than the frame last predicted for; the tracks are then predicted for that frame again.
+     */
+    public void update(FaceObservations observations, long timestampNanos) {
+        for(int t = 0; t < trackCount; t++) {
+            elapsed[t] = tracks[t].advance(timestampNanos);
+            matched[t] = false;
+        }
+
+        for(int face = 0; face < observations.size(); face++) {
+            int track = findTrack(observations, face);
+            if(track >= 0) {
+                matched[track] = true;
+                tracks[track].correct(observations, face, elapsed[track], alpha, beta);
+            } else if(trackCount < tracks.length) {
+                matched[trackCount] = true;
+                tracks[trackCount++].start(nextId++, observations, face, timestampNanos);
+            }
+        }
+
+        for(int t = trackCount - 1; t >= 0; t--) {
+            if(matched[t]) {
+                continue;
+            }
+            tracks[t].miss();
+            if(tracks[t].getMissedFrames() > maxMissedFrames) {
+                remove(t);
+            }
+        }
+        predict(timestampNanos);
+    }
+
+    /**
+     * Moves every track forward to {@code timestampNanos} without a new detection, never back
+     * before the newest frame predicted for or detected.
+     */
+    public void predict(long timestampNanos) {
+        latestNanos = Math.max(latestNanos, timestampNanos);
+        for(int t = 0; t < trackCount; t++) {
+            tracks[t].advance(latestNanos);
+        }
+    }
+
+    public void clear() {
+        trackCount = 0;
+        latestNanos = Long.MIN_VALUE;
+    }
+
+    public int getTrackCount() {
+        return trackCount;
+    }
+
+    public TrackedFace getTrack(int index) {
+        if(index >= trackCount) {
+            throw new IndexOutOfBoundsException("Track " + index + " of " + trackCount);
+        }
+        return tracks[index];
+    }
+
+    /**
+     * Writes the box around all tracked faces to {@code out} as {@code left, top, right, bottom}.
+     *
+     * @return false if nothing is tracked
+     */
+    public boolean getBounds(float[] out) {
+        if(trackCount == 0) {
+            return false;
+        }
+        out[0] = Float.MAX_VALUE;
+        out[1] = Float.MAX_VALUE;
+        out[2] = -Float.MAX_VALUE;
+        out[3] = -Float.MAX_VALUE;
+        for(int t = 0; t < trackCount; t++) {
+            out[0] = Math.min(out[0], tracks[t].getLeft());
+            out[1] = Math.min(out[1], tracks[t].getTop());
+            out[2] = Math.max(out[2], tracks[t].getRight());
+            out[3] = Math.max(out[3], tracks[t].getBottom());
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the contents of {@code geometry} with the contours of all tracked faces.
+     */
+    public void flattenContours(ContourTable table, ContourGeometry geometry) {
+        geometry.reset();
+        for(int t = 0; t < trackCount; t++) {
+            tracks[t].appendContours(table, geometry);
+        }
+    }
+
+    private int findTrack(FaceObservations observations, int face) {
+        int detectorId = observations.getTrackingId(face);
+        if(detectorId != FaceObservations.NO_TRACKING_ID) {
+            for(int t = 0; t < trackCount; t++) {
+                if(!matched[t] && tracks[t].getDetectorId() == detectorId) {
+                    return t;
+                }
+            }
+        }
+
+        int best = -1;
+        float bestIou = minIou;
+        for(int t = 0; t < trackCount; t++) {
+            if(matched[t]) {
+                continue;
+            }
+            float iou = tracks[t].iou(observations, face);
+            if(iou >= bestIou) {
+                bestIou = iou;
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    private void remove(int index) {
+        // Swap with the last live track so the array stays dense, keeping the instance for reuse
+        TrackedFace removed = tracks[index];
+        trackCount--;
+        tracks[index] = tracks[trackCount];
+        matched[index] = matched[trackCount];
+        elapsed[index] = elapsed[trackCount];
+        tracks[trackCount] = removed;
+    }
+}
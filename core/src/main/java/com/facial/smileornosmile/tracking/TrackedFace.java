@@ -0,0 +1,292 @@
+package com.facial.smileornosmile.tracking;
+
+import com.facial.smileornosmile.render.ContourGeometry;
+import com.facial.smileornosmile.render.ContourTable;
+
+/**
+ * The filtered state of one face followed across frames. Instances are owned and reused by
+ * {@link FaceTracker}; read them right after an update and do not keep references.
+ *
+ * Box center and contour points follow an alpha-beta filter: a constant velocity prediction
+ * corrected towards each new observation. Box size and probabilities are smoothed exponentially.
+ * The corrected state stays at the time of the last observation it took in; what the getters
+ * return is that state extrapolated to the time last asked for, so predicting for a newer frame
+ * before the detection of an older one returns does not cost the filter its velocity.
+ */
+public class TrackedFace {
+    private static final float NANOS_PER_SECOND = 1e9f;
+
+    private final int maxContours;
+    private final float[] points;
+    private final int[] contourPointCounts;
+
+    private int id;
+    private int detectorId;
+    private float centerX;
+    private float centerY;
+    private float width;
+    private float height;
+    private float velocityX;
+    private float velocityY;
+    private int pointCount;
+    private int contourCount;
+    private float smiling;
+    private float leftEyeOpen;
+    private float rightEyeOpen;
+    private float offsetX;
+    private float offsetY;
+    private long correctedNanos;
+    private long predictedNanos;
+    private int missedFrames;
+    private int hits;
+
+    TrackedFace(int maxContours, int maxPointsPerFace) {
+        this.maxContours = maxContours;
+        points = new float[maxPointsPerFace * 2];
+        contourPointCounts = new int[maxContours];
+    }
+
+    void start(int id, FaceObservations observations, int face, long timestampNanos) {
+        this.id = id;
+        detectorId = observations.getTrackingId(face);
+        centerX = (observations.getLeft(face) + observations.getRight(face)) / 2f;
+        centerY = (observations.getTop(face) + observations.getBottom(face)) / 2f;
+        width = observations.getRight(face) - observations.getLeft(face);
+        height = observations.getBottom(face) - observations.getTop(face);
+        velocityX = 0f;
+        velocityY = 0f;
+        copyPoints(observations, face);
+        smiling = observations.getSmilingProbability(face);
+        leftEyeOpen = observations.getLeftEyeOpenProbability(face);
+        rightEyeOpen = observations.getRightEyeOpenProbability(face);
+        offsetX = 0f;
+        offsetY = 0f;
+        correctedNanos = timestampNanos;
+        predictedNanos = timestampNanos;
+        missedFrames = 0;
+        hits = 1;
+    }
+
+    /**
+     * Pulls the state predicted for the time of an observation towards it.
+     *
+     * @param dt seconds from the last correction to the observation, see {@link #advance(long)}
+     */
+    void correct(FaceObservations observations, int face, float dt, float alpha, float beta) {
+        centerX += offsetX;
+        centerY += offsetY;
+        for(int i = 0; i < pointCount; i++) {
+            points[i * 2] += offsetX;
+            points[i * 2 + 1] += offsetY;
+        }
+        offsetX = 0f;
+        offsetY = 0f;
+        if(dt > 0f) {
+            correctedNanos = predictedNanos;
+        }
+
+        float observedX = (observations.getLeft(face) + observations.getRight(face)) / 2f;
+        float observedY = (observations.getTop(face) + observations.getBottom(face)) / 2f;
+        float residualX = observedX - centerX;
+        float residualY = observedY - centerY;
+        centerX += alpha * residualX;
+        centerY += alpha * residualY;
+        if(dt > 0f) {
+            velocityX += beta * residualX / dt;
+            velocityY += beta * residualY / dt;
+        }
+        width += alpha * ((observations.getRight(face) - observations.getLeft(face)) - width);
+        height += alpha * ((observations.getBottom(face) - observations.getTop(face)) - height);
+
+        if(sameLayout(observations, face)) {
+            for(int i = 0; i < pointCount; i++) {
+                points[i * 2] += alpha * (observations.getPointX(face, i) - points[i * 2]);
+                points[i * 2 + 1] += alpha * (observations.getPointY(face, i) - points[i * 2 + 1]);
+            }
+        } else {
+            copyPoints(observations, face);
+        }
+
+        smiling = smooth(smiling, observations.getSmilingProbability(face), alpha);
+        leftEyeOpen = smooth(leftEyeOpen, observations.getLeftEyeOpenProbability(face), alpha);
+        rightEyeOpen = smooth(rightEyeOpen, observations.getRightEyeOpenProbability(face), alpha);
+
+        if(observations.getTrackingId(face) != FaceObservations.NO_TRACKING_ID) {
+            detectorId = observations.getTrackingId(face);
+        }
+        missedFrames = 0;
+        hits++;
+    }
+
+    /**
+     * Predicts box and points along the current velocity for {@code timestampNanos}, which may be
+     * earlier than the last prediction but not than the last correction. Leaves the corrected
+     * state alone.
+     *
+     * @return the time since the last correction in seconds
+     */
+    float advance(long timestampNanos) {
+        predictedNanos = Math.max(timestampNanos, correctedNanos);
+        float dt = (predictedNanos - correctedNanos) / NANOS_PER_SECOND;
+        offsetX = velocityX * dt;
+        offsetY = velocityY * dt;
+        return dt;
+    }
+
+    /**
+     * Intersection over union of the current box with an observed one.
+     */
+    float iou(FaceObservations observations, int face) {
+        float left = Math.max(getLeft(), observations.getLeft(face));
+        float top = Math.max(getTop(), observations.getTop(face));
+        float right = Math.min(getRight(), observations.getRight(face));
+        float bottom = Math.min(getBottom(), observations.getBottom(face));
+        if(right <= left || bottom <= top) {
+            return 0f;
+        }
+        float intersection = (right - left) * (bottom - top);
+        float observedArea = (observations.getRight(face) - observations.getLeft(face))
+                * (observations.getBottom(face) - observations.getTop(face));
+        return intersection / (width * height + observedArea - intersection);
+    }
+
+    void miss() {
+        missedFrames++;
+    }
+
+    /**
+     * Adds the contours of this face to {@code geometry}, the table must be the one the
+     * observations were filled with. A face detected without contours adds its box instead, so
+     * the cheapest quality levels still show something.
+     */
+    public void appendContours(ContourTable table, ContourGeometry geometry) {
+        if(contourCount == 0) {
+            geometry.beginContour(true);
+            geometry.addPoint(getLeft(), getTop());
+            geometry.addPoint(getRight(), getTop());
+            geometry.addPoint(getRight(), getBottom());
+            geometry.addPoint(getLeft(), getBottom());
+            geometry.endContour();
+            return;
+        }
+        int point = 0;
+        for(int c = 0; c < contourCount && c < table.size(); c++) {
+            geometry.beginContour(table.isClosed(c));
+            int end = point + contourPointCounts[c];
+            for(; point < end; point++) {
+                geometry.addPoint(points[point * 2] + offsetX, points[point * 2 + 1] + offsetY);
+            }
+            geometry.endContour();
+        }
+    }
+
+    private boolean sameLayout(FaceObservations observations, int face) {
+        if(observations.getPointCount(face) != pointCount || observations.getContourCount(face) != contourCount) {
+            return false;
+        }
+        for(int c = 0; c < contourCount; c++) {
+            if(observations.getContourPointCount(face, c) != contourPointCounts[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void copyPoints(FaceObservations observations, int face) {
+        pointCount = Math.min(observations.getPointCount(face), points.length / 2);
+        for(int i = 0; i < pointCount; i++) {
+            points[i * 2] = observations.getPointX(face, i);
+            points[i * 2 + 1] = observations.getPointY(face, i);
+        }
+        contourCount = Math.min(observations.getContourCount(face), maxContours);
+        for(int c = 0; c < contourCount; c++) {
+            contourPointCounts[c] = observations.getContourPointCount(face, c);
+        }
+    }
+
+    private static float smooth(float current, float observed, float alpha) {
+        if(observed < 0f) {
+            return current;
+        }
+        if(current < 0f) {
+            return observed;
+        }
+        return current + alpha * (observed - current);
+    }
+
+    /** Stable id assigned by the tracker, unique for the lifetime of the tracker */
+    public int getId() {
+        return id;
+    }
+
+    /** Id reported by the detector, or {@link FaceObservations#NO_TRACKING_ID} */
+    public int getDetectorId() {
+        return detectorId;
+    }
+
+    public float getLeft() {
+        return getCenterX() - width / 2f;
+    }
+
+    public float getTop() {
+        return getCenterY() - height / 2f;
+    }
+
+    public float getRight() {
+        return getCenterX() + width / 2f;
+    }
+
+    public float getBottom() {
+        return getCenterY() + height / 2f;
+    }
+
+    public float getCenterX() {
+        return centerX + offsetX;
+    }
+
+    public float getCenterY() {
+        return centerY + offsetY;
+    }
+
+    /** Pixels per second */
+    public float getVelocityX() {
+        return velocityX;
+    }
+
+    /** Pixels per second */
+    public float getVelocityY() {
+        return velocityY;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public float getPointX(int point) {
+        return points[point * 2] + offsetX;
+    }
+
+    public float getPointY(int point) {
+        return points[point * 2 + 1] + offsetY;
+    }
+
+    public float getSmilingProbability() {
+        return smiling;
+    }
+
+    public float getLeftEyeOpenProbability() {
+        return leftEyeOpen;
+    }
+
+    public float getRightEyeOpenProbability() {
+        return rightEyeOpen;
+    }
+
+    public int getMissedFrames() {
+        return missedFrames;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+}
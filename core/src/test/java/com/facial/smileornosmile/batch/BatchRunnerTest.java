@@ -0,0 +1,147 @@
+package com.facial.smileornosmile.batch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BatchRunnerTest {
+
+    private File directory;
+    private ExecutorService executor;
+
+    /**
+     * Scores every item with one face on a thread pool and tracks how many run at once.
+     */
+    private class FakeScorer implements BatchRunner.Scorer {
+        final AtomicInteger inProgress = new AtomicInteger();
+        final AtomicInteger maxInProgress = new AtomicInteger();
+        final List<String> scored = Collections.synchronizedList(new ArrayList<String>());
+        String failing;
+
+        @Override
+        public void score(final String item, final BatchRunner.Callback callback) {
+            int now = inProgress.incrementAndGet();
+            int max;
+            do {
+                max = maxInProgress.get();
+            } while(now > max && !maxInProgress.compareAndSet(max, now));
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    scored.add(item);
+                    inProgress.decrementAndGet();
+                    if(item.equals(failing)) {
+                        callback.onFailed(new IOException("decode failed"));
+                    } else {
+                        callback.onScored(Collections.singletonList(new FaceScore(0.9f, 0.8f, FaceScore.UNCOMPUTED)));
+                    }
+                }
+            });
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("batch", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static List<String> items(int count) {
+        List<String> items = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            items.add("content://photos/" + i);
+        }
+        return items;
+    }
+
+    private BatchProgress runBatch(FakeScorer scorer, List<String> items) throws Exception {
+        BatchCheckpoint checkpoint = new BatchCheckpoint(new File(directory, "checkpoint.txt"));
+        BatchResultWriter writer = new BatchResultWriter(new File(directory, "results.csv"));
+        try {
+            return new BatchRunner(scorer, 3, checkpoint, writer).run(items, null);
+        } finally {
+            checkpoint.close();
+            writer.close();
+        }
+    }
+
+    private List<String> resultLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(new File(directory, "results.csv")));
+        try {
+            String line;
+            while((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    @Test
+    public void run_scoresEverythingWithBoundedParallelism() throws Exception {
+        FakeScorer scorer = new FakeScorer();
+        BatchProgress progress = runBatch(scorer, items(40));
+
+        assertEquals(40, progress.getCompleted());
+        assertEquals(0, progress.getRemaining());
+        assertTrue(scorer.maxInProgress.get() <= 3);
+        assertTrue(progress.getImagesPerSecond() > 0f);
+
+        List<String> lines = resultLines();
+        assertEquals(BatchResultWriter.HEADER, lines.get(0));
+        assertEquals(41, lines.size());
+        assertTrue(lines.get(1).endsWith(",0,0.900,0.800,"));
+    }
+
+    @Test
+    public void run_resumesFromCheckpoint() throws Exception {
+        FakeScorer first = new FakeScorer();
+        first.failing = "content://photos/7";
+        BatchProgress firstRun = runBatch(first, items(10));
+        assertEquals(9, firstRun.getCompleted());
+        assertEquals(1, firstRun.getFailed());
+
+        FakeScorer second = new FakeScorer();
+        BatchProgress secondRun = runBatch(second, items(10));
+
+        assertEquals(9, secondRun.getSkipped());
+        assertEquals(1, secondRun.getCompleted());
+        assertEquals(Collections.singletonList("content://photos/7"), second.scored);
+        assertEquals(11, resultLines().size());
+    }
+}
@@ -0,0 +1,122 @@
+package com.facial.smileornosmile.burst;
+
+import com.facial.smileornosmile.frame.Nv21;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class BestShotBufferTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int FRAME_BYTES = Nv21.size(WIDTH, HEIGHT);
+    private static final int MAX_FACES = 2;
+
+    private static ByteBuffer frame(int index) {
+        ByteBuffer data = ByteBuffer.allocateDirect(FRAME_BYTES);
+        data.put(0, (byte) index);
+        data.put(FRAME_BYTES - 1, (byte) -index);
+        return data;
+    }
+
+    /**
+     * Adds a frame whose faces all smile with {@code smiling} and have their eyes wide open.
+     */
+    private static void add(BestShotBuffer buffer, int index, float... smiling) {
+        buffer.beginFrame(frame(index), WIDTH, HEIGHT, 270, true, index * 1000L);
+        for(float face : smiling) {
+            buffer.addFace(face, 1f, 1f);
+        }
+        buffer.endFrame();
+    }
+
+    @Test
+    public void best_isTheFrameWhoseLeastHappyFaceSmilesMost() {
+        BestShotBuffer buffer = new BestShotBuffer(8, 1 << 20, MAX_FACES);
+        add(buffer, 1, 0.9f, 0.2f);
+        add(buffer, 2, 0.6f, 0.7f);
+        add(buffer, 3, 1f, 0.1f);
+        buffer.beginFrame(frame(4), WIDTH, HEIGHT, 270, true, 4000L);
+        buffer.addFace(1f, 1f, 0.3f);
+        buffer.addFace(1f, 1f, FaceObservations.UNCOMPUTED);
+        buffer.endFrame();
+
+        BestShot best = new BestShot(MAX_FACES);
+        assertTrue(buffer.copyBest(best));
+        assertEquals(2000L, best.getTimestampNanos());
+        assertEquals(0.6f, best.getScore(), 1e-6f);
+        assertEquals(2, best.getFaceCount());
+        assertEquals(0.7f, best.getSmilingProbability(1), 0f);
+        assertEquals(1f, best.getEyesOpenProbability(1), 0f);
+        assertEquals(FRAME_BYTES, best.getLength());
+        assertEquals(2, best.getData()[0]);
+        assertEquals(-2, best.getData()[FRAME_BYTES - 1]);
+        assertEquals(WIDTH, best.getWidth());
+        assertEquals(270, best.getRotation());
+        assertTrue(best.isMirrored());
+        assertEquals(4, buffer.getCount());
+    }
+
+    @Test
+    public void best_fallsBackToTheNextBestWhenOverwritten() {
+        BestShotBuffer buffer = new BestShotBuffer(3, 1 << 20, MAX_FACES);
+        add(buffer, 1, 0.9f);
+        add(buffer, 2, 0.5f);
+        add(buffer, 3, 0.7f);
+        assertEquals(0.9f, buffer.getBestScore(), 0f);
+
+        add(buffer, 4, 0.2f);
+        assertEquals(0.7f, buffer.getBestScore(), 0f);
+        add(buffer, 5, 0.1f);
+        add(buffer, 6, 0.3f);
+        assertEquals(0.3f, buffer.getBestScore(), 0f);
+
+        BestShot best = new BestShot(MAX_FACES);
+        assertTrue(buffer.copyBest(best));
+        assertEquals(6, best.getData()[0]);
+        assertEquals(3, buffer.getCount());
+        assertEquals(6, buffer.getFrameCount());
+    }
+
+    @Test
+    public void frames_withoutFacesAreNeverBest() {
+        BestShotBuffer buffer = new BestShotBuffer(3, 1 << 20, MAX_FACES);
+        BestShot best = new BestShot(MAX_FACES);
+        assertFalse(buffer.copyBest(best));
+
+        add(buffer, 1);
+        add(buffer, 2);
+        assertEquals(BestShotBuffer.NO_SCORE, buffer.getBestScore(), 0f);
+        assertFalse(buffer.copyBest(best));
+
+        add(buffer, 3, 0f);
+        assertTrue(buffer.copyBest(best));
+        assertEquals(3, best.getData()[0]);
+
+        buffer.clear();
+        assertFalse(buffer.copyBest(best));
+        assertEquals(0, buffer.getCount());
+    }
+
+    @Test
+    public void memoryLimit_capsTheFramesKept() {
+        BestShotBuffer buffer = new BestShotBuffer(10, FRAME_BYTES * 3 + 100, MAX_FACES);
+        assertEquals(0, buffer.getCapacity());
+        for(int i = 0; i < 5; i++) {
+            add(buffer, i, 0.5f);
+        }
+        assertEquals(3, buffer.getCapacity());
+        assertEquals(3, buffer.getCount());
+        assertEquals(FRAME_BYTES * 3, buffer.getMemoryBytes());
+
+        //Too large for even one slot: counted, never kept
+        BestShotBuffer small = new BestShotBuffer(10, FRAME_BYTES - 1, MAX_FACES);
+        add(small, 1, 1f);
+        assertEquals(0, small.getCapacity());
+        assertEquals(1, small.getFrameCount());
+        assertFalse(small.copyBest(new BestShot(MAX_FACES)));
+    }
+}
@@ -0,0 +1,162 @@
+package com.facial.smileornosmile.cache;
+
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceLandmarkType;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("results", "");
+        directory.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static FaceObservations faces(int count) {
+        FaceObservations faces = new FaceObservations(8, 0, 0);
+        for(int i = 0; i < count; i++) {
+            int face = faces.addFace(FaceObservations.NO_TRACKING_ID, 10f * i, 20f, 10f * i + 50f, 90f, 0.1f * i, 0.9f, 0.8f);
+            faces.setLandmark(face, FaceLandmarkType.LEFT_EYE, 10f * i + 15f, 40f);
+        }
+        return faces;
+    }
+
+    private static ResultKey key(long hash) {
+        return new ResultKey(hash, DetectorProfile.STATIC_ACCURATE, 1280);
+    }
+
+    @Test
+    public void contentHash_dependsOnEveryByteAndLength() throws IOException {
+        byte[] data = new byte[100000];
+        for(int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        byte[] buffer = new byte[4096];
+        long hash = ContentHash.of(new ByteArrayInputStream(data), buffer);
+        assertEquals(hash, new ContentHash().update(data, 0, data.length).getValue());
+
+        data[54321]++;
+        assertNotEquals(hash, ContentHash.of(new ByteArrayInputStream(data), buffer));
+        data[54321]--;
+        assertNotEquals(hash, ContentHash.of(new ByteArrayInputStream(data, 0, data.length - 1), buffer));
+    }
+
+    @Test
+    public void resultKey_separatesProfilesAndSizes() {
+        assertEquals(key(42), key(42));
+        assertEquals(key(42).hashCode(), key(42).hashCode());
+        assertNotEquals(key(42), new ResultKey(42, DetectorProfile.STATIC_FAST, 1280));
+        assertNotEquals(key(42), new ResultKey(42, DetectorProfile.STATIC_ACCURATE, 640));
+        assertNotEquals(key(42).toFileName(), new ResultKey(42, DetectorProfile.STATIC_FAST, 1280).toFileName());
+    }
+
+    @Test
+    public void lruCache_evictsLeastRecentlyUsedBeyondSize() {
+        SizedLruCache<String, byte[]> cache = new SizedLruCache<>(100, new SizedLruCache.Sizer<byte[]>() {
+            @Override
+            public long sizeOf(byte[] value) {
+                return value.length;
+            }
+        });
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        assertNotNull(cache.get("a"));
+        cache.put("c", new byte[40]);
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(80, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        //Too large to ever fit
+        cache.put("d", new byte[101]);
+        assertNull(cache.get("d"));
+        assertEquals(2, cache.getCount());
+
+        cache.setMaxSize(40);
+        assertEquals(1, cache.getCount());
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void store_roundTripsFacesAcrossInstances() throws IOException {
+        FaceResultStore store = new FaceResultStore(directory, 1 << 20);
+        FaceObservations out = new FaceObservations(8, 0, 0);
+        assertFalse(store.get(key(1), out));
+        store.put(key(1), faces(3));
+
+        FaceResultStore reopened = new FaceResultStore(directory, 1 << 20);
+        assertTrue(reopened.get(key(1), out));
+        assertEquals(3, out.size());
+        assertEquals(70f, out.getRight(2), 0f);
+        assertEquals(0.2f, out.getSmilingProbability(2), 1e-6f);
+        assertEquals(25f, out.getLandmarkX(1, FaceLandmarkType.LEFT_EYE), 0f);
+        assertFalse(out.hasLandmark(1, FaceLandmarkType.NOSE_BASE));
+        assertFalse(reopened.get(new ResultKey(1, DetectorProfile.STATIC_FAST, 1280), out));
+        assertEquals(1, reopened.getHitCount());
+        assertEquals(1, reopened.getMissCount());
+    }
+
+    @Test
+    public void store_evictsLeastRecentlyUsedBeyondSize() throws IOException {
+        long entryBytes;
+        FaceResultStore probe = new FaceResultStore(directory, 1 << 20);
+        probe.put(key(0), faces(2));
+        entryBytes = probe.getSizeBytes();
+        probe.clear();
+
+        FaceResultStore store = new FaceResultStore(directory, entryBytes * 2);
+        FaceObservations out = new FaceObservations(8, 0, 0);
+        store.put(key(1), faces(2));
+        store.put(key(2), faces(2));
+        assertTrue(store.get(key(1), out));
+        store.put(key(3), faces(2));
+
+        assertEquals(2, store.getCount());
+        assertEquals(1, store.getEvictionCount());
+        assertFalse(store.get(key(2), out));
+        assertTrue(store.get(key(1), out));
+        assertTrue(store.get(key(3), out));
+        assertEquals(2, directory.listFiles().length);
+    }
+
+    @Test
+    public void store_dropsUnreadableEntries() throws IOException {
+        FaceResultStore store = new FaceResultStore(directory, 1 << 20);
+        store.put(key(1), faces(2));
+        FileOutputStream out = new FileOutputStream(new File(directory, key(1).toFileName()));
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+
+        FaceResultStore reopened = new FaceResultStore(directory, 1 << 20);
+        assertFalse(reopened.get(key(1), new FaceObservations(8, 0, 0)));
+        assertEquals(0, reopened.getCount());
+        assertFalse(new File(directory, key(1).toFileName()).exists());
+    }
+}
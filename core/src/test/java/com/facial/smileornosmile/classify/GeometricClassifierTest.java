@@ -0,0 +1,176 @@
+package com.facial.smileornosmile.classify;
+
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.frame.Nv21;
+import com.facial.smileornosmile.render.ContourTable;
+import com.facial.smileornosmile.replay.FrameRecorder;
+import com.facial.smileornosmile.replay.FrameRecording;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GeometricClassifierTest {
+    private static final int EYE_POINTS = 16;
+    private static final int LIP_POINTS = 9;
+    private static final float EYE_HALF_WIDTH = 0.15f;
+
+    /**
+     * Adds a face with the live overlay contours, drawn in eye distances around the middle of the
+     * eyes, then rolled by {@code roll} radians, scaled and moved.
+     *
+     * @param curvature how far the lip corners are raised above the middle of the mouth
+     * @param eyeAspect eye height over eye width, of both eyes
+     */
+    private static int addFace(FaceObservations faces, float smiling, float curvature, float mouthWidth, float aperture,
+                               float eyeAspect, double roll, float scale, float x, float y, boolean mirrored) {
+        int face = faces.addFace(FaceObservations.NO_TRACKING_ID, x - scale, y - scale, x + scale, y + 2 * scale,
+                smiling, FaceObservations.UNCOMPUTED, FaceObservations.UNCOMPUTED);
+        float cos = (float) Math.cos(roll) * scale;
+        float sin = (float) Math.sin(roll) * scale;
+        float[] shape = new float[EYE_POINTS * 2];
+        for(int c = 0; c < ContourTable.LIVE_OVERLAY.size(); c++) {
+            faces.beginContour(face);
+            int points;
+            switch(c) {
+                case 1:
+                case 2:
+                    //The eyes, the left one on the right of the image as the camera sees the face
+                    points = EYE_POINTS;
+                    float eyeX = c == 1 ? 0.5f : -0.5f;
+                    for(int i = 0; i < points; i++) {
+                        double angle = 2 * Math.PI * i / points;
+                        shape[i * 2] = eyeX + EYE_HALF_WIDTH * (float) Math.cos(angle);
+                        shape[i * 2 + 1] = EYE_HALF_WIDTH * eyeAspect * (float) Math.sin(angle);
+                    }
+                    break;
+                case 5:
+                case 6:
+                    //Bottom of the upper lip and top of the lower lip, 1 below the eyes, corners raised
+                    points = LIP_POINTS;
+                    for(int i = 0; i < points; i++) {
+                        float across = 2f * i / (points - 1) - 1f;
+                        float open = c == 5 ? -aperture / 2f : aperture / 2f;
+                        shape[i * 2] = across * mouthWidth / 2f;
+                        shape[i * 2 + 1] = 1f + open * (1f - across * across) - curvature * across * across;
+                    }
+                    break;
+                default:
+                    points = 3;
+                    for(int i = 0; i < points; i++) {
+                        shape[i * 2] = i * 0.3f - 0.3f;
+                        shape[i * 2 + 1] = c * 0.1f;
+                    }
+            }
+            for(int i = 0; i < points; i++) {
+                float across = mirrored ? -shape[i * 2] : shape[i * 2];
+                faces.addPoint(face, x + cos * across - sin * shape[i * 2 + 1], y + sin * across + cos * shape[i * 2 + 1]);
+            }
+        }
+        return face;
+    }
+
+    private static FaceObservations faces(int maxFaces) {
+        return new FaceObservations(maxFaces, ContourTable.LIVE_OVERLAY.size(), 128);
+    }
+
+    @Test
+    public void measure_ignoresSizeRollAndMirroring() {
+        GeometricClassifier classifier = new GeometricClassifier(ContourTable.LIVE_OVERLAY, GeometricModel.DEFAULT);
+        assertTrue(classifier.canClassify());
+        FaceObservations faces = faces(2);
+        addFace(faces, FaceObservations.UNCOMPUTED, 0.06f, 1f, 0.1f, 0.3f, 0.0, 100f, 300f, 200f, false);
+        addFace(faces, FaceObservations.UNCOMPUTED, 0.06f, 1f, 0.1f, 0.3f, 0.5, 40f, 80f, 500f, true);
+
+        float[] upright = new float[GeometricClassifier.FEATURES];
+        float[] rolled = new float[GeometricClassifier.FEATURES];
+        assertTrue(classifier.measure(faces, 0, upright));
+        assertTrue(classifier.measure(faces, 1, rolled));
+        assertEquals(0.06f, upright[GeometricClassifier.CURVATURE], 1e-4f);
+        assertEquals(1f, upright[GeometricClassifier.MOUTH_WIDTH], 1e-4f);
+        assertEquals(0.1f, upright[GeometricClassifier.APERTURE], 1e-4f);
+        assertEquals(0.3f, upright[GeometricClassifier.LEFT_EYE_ASPECT], 1e-4f);
+        assertEquals(0.3f, upright[GeometricClassifier.RIGHT_EYE_ASPECT], 1e-4f);
+        for(int i = 0; i < GeometricClassifier.FEATURES; i++) {
+            assertEquals(upright[i], rolled[i], 1e-4f);
+        }
+
+        //Without lip contours there is nothing to measure
+        assertFalse(new GeometricClassifier(ContourTable.NONE, GeometricModel.DEFAULT).measure(faces, 0, upright));
+    }
+
+    @Test
+    public void classify_fillsInOnlyUnclassifiedFaces() {
+        GeometricClassifier classifier = new GeometricClassifier(ContourTable.LIVE_OVERLAY, GeometricModel.DEFAULT);
+        FaceObservations faces = faces(4);
+        addFace(faces, FaceObservations.UNCOMPUTED, 0.08f, 1.05f, 0.05f, 0.35f, 0.2, 80f, 200f, 200f, false);
+        addFace(faces, FaceObservations.UNCOMPUTED, 0f, 0.8f, 0f, 0.05f, -0.2, 80f, 400f, 200f, false);
+        addFace(faces, 0.3f, 0.08f, 1.05f, 0.05f, 0.35f, 0.0, 80f, 600f, 200f, false);
+        faces.addFace(FaceObservations.NO_TRACKING_ID, 0f, 0f, 10f, 10f,
+                FaceObservations.UNCOMPUTED, FaceObservations.UNCOMPUTED, FaceObservations.UNCOMPUTED);
+
+        assertEquals(2, classifier.classify(faces));
+        assertTrue(faces.getSmilingProbability(0) > 0.8f);
+        assertTrue(faces.getLeftEyeOpenProbability(0) > 0.8f);
+        assertTrue(faces.getRightEyeOpenProbability(0) > 0.8f);
+        assertTrue(faces.getSmilingProbability(1) < 0.2f);
+        assertTrue(faces.getLeftEyeOpenProbability(1) < 0.2f);
+        //Classified by the detector, or without contours
+        assertEquals(0.3f, faces.getSmilingProbability(2), 0f);
+        assertEquals(FaceObservations.UNCOMPUTED, faces.getSmilingProbability(3), 0f);
+
+        assertEquals(DetectorProfile.LIVE_CONTOURS, ClassificationMode.GEOMETRIC.getLiveProfile(DetectorProfile.LIVE_CLASSIFIED));
+        assertEquals(DetectorProfile.LIVE_LIGHT, ClassificationMode.GEOMETRIC.getLiveProfile(DetectorProfile.LIVE_LIGHT));
+        assertEquals(DetectorProfile.LIVE_CLASSIFIED, ClassificationMode.MODEL.getLiveProfile(DetectorProfile.LIVE_CLASSIFIED));
+    }
+
+    @Test
+    public void calibrator_fitsRecordedClassifierAndGeneralizes() throws IOException {
+        //A stand-in classifier that smiles with raised, wide corners and closes eyes below an aspect of 0.18
+        Random random = new Random(23);
+        File file = File.createTempFile("calibration", ".rec");
+        FrameRecorder recorder = new FrameRecorder(file);
+        byte[] frame = new byte[Nv21.size(4, 4)];
+        GeometricCalibrator holdOut = new GeometricCalibrator(ContourTable.LIVE_OVERLAY);
+        for(int i = 0; i < 600; i++) {
+            float curvature = random.nextFloat() * 0.14f - 0.04f;
+            float width = 0.7f + random.nextFloat() * 0.5f;
+            float aperture = random.nextFloat() * 0.15f;
+            float eyeAspect = 0.05f + random.nextFloat() * 0.35f;
+            float smiling = GeometricModel.sigmoid(-14f + 70f * curvature + 12f * width);
+            float eyesOpen = GeometricModel.sigmoid(60f * (eyeAspect - 0.18f));
+            FaceObservations faces = faces(1);
+            addFace(faces, smiling, curvature, width, aperture, eyeAspect, random.nextGaussian() * 0.2,
+                    50f + random.nextFloat() * 100f, 320f, 240f, random.nextBoolean());
+            faces.setClassification(0, smiling, eyesOpen, eyesOpen);
+            if(i % 2 == 0) {
+                recorder.writeFrame(i, frame, 4, 4, 0, false);
+                recorder.writeResults(i, 0L, faces);
+            } else {
+                holdOut.add(faces);
+            }
+        }
+        recorder.close();
+
+        GeometricCalibrator calibrator = new GeometricCalibrator(ContourTable.LIVE_OVERLAY);
+        FrameRecording recording = FrameRecording.open(file);
+        assertEquals(300, calibrator.addRecording(recording, faces(1)));
+        recording.close();
+        file.delete();
+        GeometricModel model = calibrator.fit();
+
+        CalibrationReport report = holdOut.evaluate(model);
+        assertEquals(300, report.getFaceCount());
+        assertTrue(report.toString(), report.getSmileAgreement() > 0.95f);
+        assertTrue(report.toString(), report.getSmileMeanAbsoluteError() < 0.05f);
+        assertTrue(report.toString(), report.getEyeAgreement() > 0.95f);
+        assertTrue(report.toString(), report.getEyeMeanAbsoluteError() < 0.05f);
+        //Fitted beats the hand set model on faces it never saw
+        assertTrue(report.getSmileMeanAbsoluteError() < holdOut.evaluate(GeometricModel.DEFAULT).getSmileMeanAbsoluteError());
+    }
+}
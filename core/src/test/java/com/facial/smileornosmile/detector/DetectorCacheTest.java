@@ -0,0 +1,84 @@
+package com.facial.smileornosmile.detector;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+
+import static org.junit.Assert.*;
+
+public class DetectorCacheTest {
+
+    private static class FakeDetector implements Closeable {
+        final String key;
+        boolean closed;
+
+        FakeDetector(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class CountingFactory implements DetectorCache.Factory<String, FakeDetector> {
+        int created;
+
+        @Override
+        public FakeDetector create(String key) {
+            created++;
+            return new FakeDetector(key);
+        }
+    }
+
+    @Test
+    public void get_reusesDetectorForSameKey() {
+        CountingFactory factory = new CountingFactory();
+        DetectorCache<String, FakeDetector> cache = new DetectorCache<>(factory, 2);
+
+        FakeDetector first = cache.get("live");
+        FakeDetector second = cache.get("live");
+
+        assertSame(first, second);
+        assertEquals(1, factory.created);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void get_closesLeastRecentlyUsedWhenFull() {
+        DetectorCache<String, FakeDetector> cache = new DetectorCache<>(new CountingFactory(), 2);
+
+        FakeDetector live = cache.get("live");
+        FakeDetector still = cache.get("static");
+        cache.get("live");
+        cache.get("fast");
+
+        assertTrue(still.closed);
+        assertFalse(live.closed);
+        assertFalse(cache.contains("static"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void close_closesEverything() {
+        DetectorCache<String, FakeDetector> cache = new DetectorCache<>(new CountingFactory(), 4);
+        FakeDetector live = cache.get("live");
+        FakeDetector still = cache.get("static");
+
+        cache.close();
+
+        assertTrue(live.closed);
+        assertTrue(still.closed);
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void get_afterCloseFails() {
+        DetectorCache<String, FakeDetector> cache = new DetectorCache<>(new CountingFactory(), 1);
+        cache.close();
+        cache.get("live");
+    }
+}
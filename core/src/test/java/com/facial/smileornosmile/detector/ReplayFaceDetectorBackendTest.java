@@ -0,0 +1,122 @@
+package com.facial.smileornosmile.detector;
+
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReplayFaceDetectorBackendTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static FaceObservations frame(float smiling, float x) {
+        FaceObservations observations = new FaceObservations(2, 1, 8);
+        int face = observations.addFace(7, x, 10f, x + 50f, 60f, smiling, 0.5f, FaceObservations.UNCOMPUTED);
+        observations.beginContour(face);
+        observations.addPoint(face, x + 1f, 11f);
+        observations.addPoint(face, x + 2f, 12f);
+        observations.setLandmark(face, FaceLandmarkType.NOSE_BASE, x + 25f, 40f);
+        return observations;
+    }
+
+    /**
+     * Runs one detection and waits for its result.
+     */
+    private static Object detect(FaceDetectorBackend backend, FaceObservations results) throws InterruptedException {
+        final BlockingQueue<Object> outcome = new ArrayBlockingQueue<>(1);
+        backend.detect(DetectionImage.nv21(new byte[0], 0, 0, 90), DetectorProfile.LIVE_CONTOURS, results, DIRECT,
+                new FaceDetectorBackend.Callback() {
+                    @Override
+                    public void onDetected(FaceObservations detected) {
+                        outcome.add(detected);
+                    }
+
+                    @Override
+                    public void onFailed(Exception e) {
+                        outcome.add(e);
+                    }
+                });
+        Object result = outcome.poll(5, TimeUnit.SECONDS);
+        assertNotNull(result);
+        return result;
+    }
+
+    @Test
+    public void detect_replaysFramesInOrderAndLoops() throws InterruptedException {
+        ReplayFaceDetectorBackend backend = new ReplayFaceDetectorBackend(
+                Arrays.asList(frame(0.1f, 0f), frame(0.9f, 100f)), 0L);
+        FaceObservations results = new FaceObservations(2, 1, 8);
+
+        float[] expected = {0.1f, 0.9f, 0.1f};
+        for(float smiling : expected) {
+            assertSame(results, detect(backend, results));
+            assertEquals(1, results.size());
+            assertEquals(smiling, results.getSmilingProbability(0), 0f);
+        }
+        assertEquals(3, backend.getDetectionCount());
+        backend.close();
+    }
+
+    @Test
+    public void detect_copiesEverything() throws InterruptedException {
+        ReplayFaceDetectorBackend backend = new ReplayFaceDetectorBackend(Arrays.asList(frame(0.3f, 100f)), 0L);
+        FaceObservations results = new FaceObservations(2, 1, 8);
+
+        detect(backend, results);
+
+        assertEquals(7, results.getTrackingId(0));
+        assertEquals(100f, results.getLeft(0), 0f);
+        assertEquals(FaceObservations.UNCOMPUTED, results.getRightEyeOpenProbability(0), 0f);
+        assertEquals(1, results.getContourCount(0));
+        assertEquals(2, results.getContourPointCount(0, 0));
+        assertEquals(102f, results.getPointX(0, 1), 0f);
+        assertTrue(results.hasLandmark(0, FaceLandmarkType.NOSE_BASE));
+        assertFalse(results.hasLandmark(0, FaceLandmarkType.LEFT_EYE));
+        assertEquals(125f, results.getLandmarkX(0, FaceLandmarkType.NOSE_BASE), 0f);
+        backend.close();
+    }
+
+    @Test
+    public void detect_takesTheConfiguredLatency() throws InterruptedException {
+        long latency = TimeUnit.MILLISECONDS.toNanos(30);
+        ReplayFaceDetectorBackend backend = new ReplayFaceDetectorBackend(Arrays.asList(frame(0.3f, 0f)), latency);
+
+        long start = System.nanoTime();
+        detect(backend, new FaceObservations(2, 1, 8));
+
+        assertTrue(System.nanoTime() - start >= latency);
+        backend.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void detect_afterCloseThrows() {
+        ReplayFaceDetectorBackend backend = new ReplayFaceDetectorBackend(Arrays.asList(frame(0.3f, 0f)), 0L);
+        backend.close();
+
+        backend.detect(DetectionImage.nv21(new byte[0], 0, 0, 0), DetectorProfile.LIVE_CONTOURS,
+                new FaceObservations(2, 1, 8), DIRECT, null);
+    }
+
+    @Test
+    public void transform_movesLandmarks() {
+        FaceObservations observations = frame(0.3f, 0f);
+
+        observations.transform(2f, 10f, 20f);
+
+        assertEquals(60f, observations.getLandmarkX(0, FaceLandmarkType.NOSE_BASE), 0f);
+        assertEquals(100f, observations.getLandmarkY(0, FaceLandmarkType.NOSE_BASE), 0f);
+        assertFalse(observations.hasLandmark(0, FaceLandmarkType.LEFT_EYE));
+    }
+}
@@ -0,0 +1,170 @@
+package com.facial.smileornosmile.events;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SmileEventEngineTest {
+
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(33);
+
+    private final List<String> events = new ArrayList<>();
+    private final SmileEventEngine.Listener recorder = new SmileEventEngine.Listener() {
+        @Override
+        public void onEvent(SmileEvent event, int faceId, long timestampNanos) {
+            events.add(event + ":" + faceId + "@" + timestampNanos / FRAME_NANOS);
+        }
+    };
+
+    private static SmileRule rule(long holdMillis) {
+        return SmileRule.everyoneSmilingWithEyesOpen(holdMillis, TimeUnit.MILLISECONDS)
+                .withDebounce(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Feeds one frame with the given smile probabilities and open eyes, face ids are the indexes.
+     */
+    private static void frame(SmileEventEngine engine, int frame, float... smiling) {
+        engine.beginFrame(frame * FRAME_NANOS);
+        for(int face = 0; face < smiling.length; face++) {
+            engine.addFace(face, smiling[face], 0.9f, 0.9f);
+        }
+        engine.endFrame();
+    }
+
+    private int count(String prefix) {
+        int count = 0;
+        for(String event : events) {
+            if(event.startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void hysteresis_ignoresValuesBetweenThresholds() {
+        SmileEventEngine engine = new SmileEventEngine(rule(0), 4, recorder);
+
+        float[] stream = {0.2f, 0.65f, 0.75f, 0.6f, 0.55f, 0.68f, 0.45f, 0.6f};
+        for(int i = 0; i < stream.length; i++) {
+            frame(engine, i, stream[i]);
+        }
+
+        assertEquals(1, count("SMILE_STARTED:0@2"));
+        assertEquals(1, count("SMILE_ENDED:0@6"));
+        assertEquals(1, count("SMILE_STARTED"));
+        assertEquals(1, count("SMILE_ENDED"));
+    }
+
+    @Test
+    public void debounce_dropsShortBlips() {
+        SmileRule debounced = rule(0).withDebounce(100, TimeUnit.MILLISECONDS);
+        SmileEventEngine engine = new SmileEventEngine(debounced, 4, recorder);
+
+        // Two frames of smiling are 33 ms, shorter than the debounce
+        float[] stream = {0.1f, 0.9f, 0.9f, 0.1f, 0.1f, 0.9f, 0.9f, 0.9f, 0.9f, 0.9f};
+        for(int i = 0; i < stream.length; i++) {
+            frame(engine, i, stream[i]);
+        }
+
+        assertEquals(1, count("SMILE_STARTED"));
+        // Pending since frame 5, 100 ms is reached at frame 9 (132 ms)
+        assertEquals(1, count("SMILE_STARTED:0@9"));
+    }
+
+    @Test
+    public void rule_firesOnceAllFacesHeldLongEnough() {
+        SmileEventEngine engine = new SmileEventEngine(rule(200), 4, recorder);
+
+        for(int i = 0; i < 5; i++) {
+            frame(engine, i, 0.9f, 0.2f);
+        }
+        assertEquals(0, count("RULE_FIRED"));
+
+        // Second face smiles from frame 5, 200 ms later is frame 12 (231 ms)
+        for(int i = 5; i < 20; i++) {
+            frame(engine, i, 0.9f, 0.9f);
+        }
+        assertEquals(1, count("RULE_FIRED:-1@12"));
+        assertEquals(1, count("RULE_FIRED"));
+        assertEquals(1, engine.getFiredCount());
+    }
+
+    @Test
+    public void rule_resetsAndWaitsForCooldown() {
+        SmileRule withCooldown = rule(0).withCooldown(330, TimeUnit.MILLISECONDS);
+        SmileEventEngine engine = new SmileEventEngine(withCooldown, 4, recorder);
+
+        frame(engine, 0, 0.9f);
+        frame(engine, 1, 0.1f);
+        frame(engine, 2, 0.9f);
+        assertEquals(1, count("RULE_FIRED:-1@0"));
+        assertEquals(1, count("RULE_RESET:-1@1"));
+        assertEquals(1, count("RULE_FIRED"));
+
+        // Holding again, fires once the cooldown has passed
+        for(int i = 3; i < 12; i++) {
+            frame(engine, i, 0.9f);
+        }
+        assertEquals(1, count("RULE_FIRED:-1@10"));
+        assertEquals(2, count("RULE_FIRED"));
+    }
+
+    @Test
+    public void rule_needsEyesOpenAndMinFaces() {
+        SmileEventEngine engine = new SmileEventEngine(rule(0).withMinFaces(2), 4, recorder);
+
+        frame(engine, 0, 0.9f);
+        assertEquals(0, count("RULE_FIRED"));
+
+        engine.beginFrame(FRAME_NANOS);
+        engine.addFace(0, 0.9f, 0.9f, 0.9f);
+        engine.addFace(1, 0.9f, 0.9f, 0.1f);
+        engine.endFrame();
+        assertEquals(0, count("RULE_FIRED"));
+        assertFalse(engine.areEyesOpen(1));
+
+        frame(engine, 2, 0.9f, 0.9f);
+        assertEquals(1, count("RULE_FIRED"));
+    }
+
+    @Test
+    public void faces_beyondCapacityBlockTheRule() {
+        SmileEventEngine engine = new SmileEventEngine(rule(0), 1, recorder);
+
+        frame(engine, 0, 0.9f, 0.9f);
+
+        assertTrue(engine.isSmiling(0));
+        assertFalse(engine.isSmiling(1));
+        assertEquals(0, count("RULE_FIRED"));
+    }
+
+    @Test
+    public void faces_missingFromAFrameAreForgotten() {
+        SmileEventEngine engine = new SmileEventEngine(rule(0), 4, recorder);
+
+        frame(engine, 0, 0.9f);
+        assertTrue(engine.isSmiling(0));
+
+        engine.beginFrame(FRAME_NANOS);
+        engine.endFrame();
+
+        assertFalse(engine.isSmiling(0));
+        assertEquals(1, count("RULE_RESET"));
+    }
+
+    @Test
+    public void uncomputedProbabilities_countAsNotSmiling() {
+        SmileEventEngine engine = new SmileEventEngine(rule(0), 4, recorder);
+
+        frame(engine, 0, -1f);
+
+        assertFalse(engine.isSmiling(0));
+        assertEquals(0, count("RULE_FIRED"));
+    }
+}
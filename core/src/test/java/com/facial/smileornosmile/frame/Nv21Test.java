@@ -0,0 +1,275 @@
+package com.facial.smileornosmile.frame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class Nv21Test {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    /**
+     * A frame where every Y sample encodes its position and every chroma pair its position too.
+     */
+    private static byte[] patternFrame() {
+        byte[] frame = new byte[Nv21.size(WIDTH, HEIGHT)];
+        for(int y = 0; y < HEIGHT; y++) {
+            for(int x = 0; x < WIDTH; x++) {
+                frame[y * WIDTH + x] = (byte) (x * 3 + y * 7);
+            }
+        }
+        for(int y = 0; y < HEIGHT / 2; y++) {
+            for(int x = 0; x < WIDTH / 2; x++) {
+                frame[WIDTH * HEIGHT + y * WIDTH + x * 2] = (byte) (x + y * 11);
+                frame[WIDTH * HEIGHT + y * WIDTH + x * 2 + 1] = (byte) (x * 5 + y);
+            }
+        }
+        return frame;
+    }
+
+    private static byte luma(byte[] frame, int width, int x, int y) {
+        return frame[y * width + x];
+    }
+
+    private static byte chromaV(byte[] frame, int width, int height, int x, int y) {
+        return frame[width * height + (y / 2) * width + (x / 2) * 2];
+    }
+
+    @Test
+    public void crop_copiesRegion() {
+        byte[] src = patternFrame();
+        byte[] dst = new byte[Nv21.size(20, 16)];
+        Nv21.crop(src, WIDTH, HEIGHT, 10, 6, 20, 16, dst);
+
+        for(int y = 0; y < 16; y++) {
+            for(int x = 0; x < 20; x++) {
+                assertEquals(luma(src, WIDTH, x + 10, y + 6), luma(dst, 20, x, y));
+                assertEquals(chromaV(src, WIDTH, HEIGHT, x + 10, y + 6), chromaV(dst, 20, 16, x, y));
+            }
+        }
+    }
+
+    @Test
+    public void cropAndDownsample_keepsEveryNthSample() {
+        byte[] src = patternFrame();
+        byte[] dst = new byte[Nv21.size(8, 8)];
+        Nv21.cropAndDownsample(src, WIDTH, HEIGHT, 4, 8, 32, 32, 4, dst);
+
+        for(int y = 0; y < 8; y++) {
+            for(int x = 0; x < 8; x++) {
+                assertEquals(luma(src, WIDTH, 4 + x * 4, 8 + y * 4), luma(dst, 8, x, y));
+                // Chroma comes from the top left pixel of each output 2 x 2 block
+                assertEquals(chromaV(src, WIDTH, HEIGHT, 4 + (x / 2) * 8, 8 + (y / 2) * 8), chromaV(dst, 8, 8, x, y));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void crop_rejectsOddOffsets() {
+        Nv21.crop(patternFrame(), WIDTH, HEIGHT, 3, 0, 8, 8, new byte[Nv21.size(8, 8)]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void crop_rejectsRegionOutsideFrame() {
+        Nv21.crop(patternFrame(), WIDTH, HEIGHT, 60, 0, 8, 8, new byte[Nv21.size(8, 8)]);
+    }
+
+    @Test
+    public void rotations_roundTrip() {
+        int[] rotations = {0, 90, 180, 270};
+        for(int rotation : rotations) {
+            float[] box = {10f, 20f, 30f, 45f};
+            RoiController.uprightToSensor(box, 640, 480, rotation);
+            RoiController.sensorToUpright(box, 640, 480, rotation);
+            assertArrayEquals(new float[]{10f, 20f, 30f, 45f}, box, 0.001f);
+        }
+    }
+
+    @Test
+    public void plan_cropsAroundFaceAndMapsBack() {
+        // 640 x 480 back camera sensor, upright the frame is 480 x 640
+        RoiController controller = new RoiController(0.25f, 10, 64);
+        RoiPlan plan = new RoiPlan();
+        float[] face = {200f, 300f, 280f, 400f};
+
+        controller.plan(640, 480, 90, plan);
+        assertFalse(plan.isCropped());
+
+        controller.setRegion(face[0], face[1], face[2], face[3]);
+        controller.plan(640, 480, 90, plan);
+        assertTrue(plan.isCropped());
+        assertEquals(0, plan.getCropLeft() % 2);
+        assertEquals(0, plan.getCropWidth() % (2 * plan.getDownsample()));
+        assertTrue(plan.getCropWidth() < 640);
+
+        // Where the face lands in the upright crop the detector sees
+        int uprightCropWidth = plan.getOutputHeight();
+        int uprightCropHeight = plan.getOutputWidth();
+        float left = (face[0] - plan.getOffsetX()) / plan.getScale();
+        float top = (face[1] - plan.getOffsetY()) / plan.getScale();
+        float right = (face[2] - plan.getOffsetX()) / plan.getScale();
+        float bottom = (face[3] - plan.getOffsetY()) / plan.getScale();
+        assertTrue(left >= 0f && top >= 0f);
+        assertTrue(right <= uprightCropWidth && bottom <= uprightCropHeight);
+        assertEquals(face[0], plan.mapX(left), 0.001f);
+        assertEquals(face[3], plan.mapY(bottom), 0.001f);
+    }
+
+    @Test
+    public void plan_fallsBackToFullFrame() {
+        RoiController controller = new RoiController(0.25f, 3, 64);
+        RoiPlan plan = new RoiPlan();
+        controller.setRegion(100f, 100f, 200f, 200f);
+
+        controller.plan(640, 480, 270, plan);
+        assertFalse(plan.isCropped());
+        controller.plan(640, 480, 270, plan);
+        assertTrue(plan.isCropped());
+        controller.plan(640, 480, 270, plan);
+        assertTrue(plan.isCropped());
+        controller.plan(640, 480, 270, plan);
+        assertFalse(plan.isCropped());
+
+        controller.plan(640, 480, 270, plan);
+        assertTrue(plan.isCropped());
+        controller.onTrackingLost();
+        controller.plan(640, 480, 270, plan);
+        assertFalse(plan.isCropped());
+    }
+
+    @Test
+    public void plan_downsamplesFullFramesWhenAsked() {
+        RoiController controller = new RoiController(0.25f, 10, 64);
+        RoiPlan plan = new RoiPlan();
+
+        controller.plan(644, 480, 90, 4, plan);
+
+        // The whole frame, cut to multiples of 8 so the chroma stays aligned
+        assertTrue(plan.isCropped());
+        assertEquals(0, plan.getCropLeft());
+        assertEquals(640, plan.getCropWidth());
+        assertEquals(480, plan.getCropHeight());
+        assertEquals(4, plan.getDownsample());
+        assertEquals(160, plan.getOutputWidth());
+        assertEquals(0f, plan.mapX(0f), 0f);
+
+        controller.setRegion(100f, 100f, 200f, 200f);
+        controller.plan(644, 480, 90, 4, plan);
+        assertTrue(plan.getDownsample() >= 4);
+        assertTrue(plan.getCropWidth() < 640);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void plan_rejectsNonPowerOfTwoDownsample() {
+        new RoiController(0.25f, 10, 64).plan(640, 480, 0, 3, new RoiPlan());
+    }
+
+    @Test
+    public void cropAndDownsample_directBuffersMatchArrays() {
+        byte[] src = patternFrame();
+        ByteBuffer directSrc = ByteBuffer.allocateDirect(src.length);
+        directSrc.put(src).flip();
+        for(int factor = 1; factor <= 4; factor *= 2) {
+            int size = Nv21.size(32 / factor, 32 / factor);
+            byte[] expected = new byte[size];
+            Nv21.cropAndDownsample(src, WIDTH, HEIGHT, 4, 8, 32, 32, factor, expected);
+            ByteBuffer dst = ByteBuffer.allocateDirect(size);
+            Nv21.cropAndDownsample(directSrc, WIDTH, HEIGHT, 4, 8, 32, 32, factor, dst);
+
+            byte[] actual = new byte[size];
+            dst.get(actual);
+            assertArrayEquals(expected, actual);
+            //Shared buffers keep their position and limit
+            assertEquals(0, directSrc.position());
+            assertEquals(src.length, directSrc.limit());
+        }
+    }
+
+    @Test
+    public void frameBufferPool_recyclesOnLastRelease() {
+        FrameBufferPool pool = new FrameBufferPool(2, true);
+        FrameBuffer buffer = pool.acquire(100);
+        assertTrue(buffer.getBuffer().isDirect());
+        assertEquals(100, buffer.getBuffer().limit());
+
+        buffer.retain();
+        buffer.release();
+        assertEquals(1, pool.getInUseCount());
+        buffer.release();
+        assertEquals(0, pool.getInUseCount());
+
+        assertSame(buffer, pool.acquire(80));
+        assertEquals(80, buffer.getBuffer().limit());
+        assertEquals(1, pool.getAllocations());
+    }
+
+    @Test
+    public void frameBufferPool_handsOutExtraBuffersWhenExhausted() {
+        FrameBufferPool pool = new FrameBufferPool(1, false);
+        FrameBuffer pooled = pool.acquire(10);
+        FrameBuffer extra = pool.acquire(10);
+
+        assertTrue(pooled.isPooled());
+        assertFalse(extra.isPooled());
+        assertEquals(1, pool.getExhaustions());
+        extra.release();
+        pooled.release();
+        assertSame(pooled, pool.acquire(10));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void frameBuffer_rejectsRetainAfterRelease() {
+        FrameBuffer buffer = new FrameBufferPool(1, false).acquire(10);
+        buffer.release();
+        buffer.retain();
+    }
+
+    @Test
+    public void pooledFrame_freezesWithoutCopying() {
+        FrameBufferPool pool = new FrameBufferPool(2, true);
+        ByteBuffer camera = ByteBuffer.wrap(patternFrame());
+        FrameBuffer copy = pool.copyOf(camera);
+        assertEquals(camera, copy.getBuffer());
+
+        PooledFrame frame = new PooledFrame(pool, copy, WIDTH, HEIGHT, 90, false);
+        LiveFrame frozen = frame.freeze();
+        assertSame(frame.getData(), frozen.getData());
+        assertEquals(1, pool.getCopies());
+        assertEquals(1, pool.getCopiesAvoided());
+
+        frame.release();
+        assertEquals(1, pool.getInUseCount());
+        frozen.release();
+        assertEquals(0, pool.getInUseCount());
+    }
+
+    @Test
+    public void fromArgb_convertsWithStudioSwing() {
+        int white = 0xffffffff;
+        int black = 0xff000000;
+        int red = 0xffff0000;
+        //Odd size: the last chroma block covers one column and one row only
+        int[] argb = {
+                red, white, black,
+                white, white, white,
+                black, white, red
+        };
+        ByteBuffer nv21 = ByteBuffer.allocateDirect(Nv21.size(3, 3));
+        Nv21.fromArgb(argb, 3, 3, nv21);
+
+        assertEquals(82, nv21.get(0) & 0xff);
+        assertEquals(235, nv21.get(1) & 0xff);
+        assertEquals(16, nv21.get(2) & 0xff);
+        //V then U of the red top left block, then of the black top right one
+        assertEquals(240, nv21.get(9) & 0xff);
+        assertEquals(90, nv21.get(10) & 0xff);
+        assertEquals(128, nv21.get(11) & 0xff);
+        assertEquals(128, nv21.get(12) & 0xff);
+        assertEquals(240, nv21.get(15) & 0xff);
+        assertEquals(90, nv21.get(16) & 0xff);
+        assertEquals(0, nv21.position());
+    }
+}
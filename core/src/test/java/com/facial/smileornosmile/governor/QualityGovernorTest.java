@@ -0,0 +1,115 @@
+package com.facial.smileornosmile.governor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class QualityGovernorTest {
+
+    private static final long CAMERA_FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(33);
+    private static final long TARGET_MILLIS = 100;
+    /** Detection cost of each default level relative to the best one */
+    private static final float[] LEVEL_COST = {1f, 0.5f, 0.5f, 0.3f, 0.15f};
+
+    private final List<String> changes = new ArrayList<>();
+    private final QualityGovernor governor = new QualityGovernor(QualityLadder.defaultLadder(), TARGET_MILLIS,
+            TimeUnit.MILLISECONDS, new QualityGovernor.Listener() {
+        @Override
+        public void onLevelChanged(QualityLevel from, QualityLevel to, String reason) {
+            assertNotNull(reason);
+            changes.add(from.getName() + "->" + to.getName());
+        }
+    });
+
+    private long nowNanos;
+
+    /**
+     * Simulates one detection in flight at a time on a device where the best level takes
+     * {@code fullLevelMillis}, with the camera frames arriving meanwhile dropped.
+     */
+    private void run(long seconds, float fullLevelMillis) {
+        long end = nowNanos + TimeUnit.SECONDS.toNanos(seconds);
+        while(nowNanos < end) {
+            float cost = LEVEL_COST[governor.getLevelIndex()];
+            long latency = (long) (TimeUnit.MILLISECONDS.toNanos(1) * fullLevelMillis * cost);
+            for(long dropped = latency / CAMERA_FRAME_NANOS; dropped > 0; dropped--) {
+                governor.onFrameDropped();
+            }
+            nowNanos += Math.max(latency, CAMERA_FRAME_NANOS);
+            governor.onDetection(latency, nowNanos);
+        }
+    }
+
+    @Test
+    public void staysAtBestLevelWhenFastEnough() {
+        run(30, 40f);
+
+        assertEquals(0, governor.getLevelIndex());
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void stepsDownUntilLatencyIsWithinTarget() {
+        // Needs the 0.3 cost level to get under 100 ms
+        run(30, 250f);
+
+        assertEquals(3, governor.getLevelIndex());
+        assertTrue(governor.getLastP90Nanos() <= TimeUnit.MILLISECONDS.toNanos(TARGET_MILLIS));
+        assertEquals(3, changes.size());
+
+        // And stays there instead of flapping back up
+        run(30, 250f);
+        assertEquals(3, governor.getLevelIndex());
+    }
+
+    @Test
+    public void stepsBackUpWhenLoadGoesAway() {
+        run(30, 250f);
+        assertEquals(3, governor.getLevelIndex());
+
+        run(60, 40f);
+
+        assertEquals(0, governor.getLevelIndex());
+        assertEquals("no-contours->half-size-15fps", changes.get(3));
+    }
+
+    @Test
+    public void thermalStateLimitsLevelRightAway() {
+        governor.setThermalState(ThermalState.SEVERE, nowNanos);
+        assertEquals(2, governor.getLevelIndex());
+
+        governor.setThermalState(ThermalState.CRITICAL, nowNanos);
+        assertEquals(4, governor.getLevelIndex());
+
+        // Even on a fast device the level only comes back once the device cooled down
+        run(30, 40f);
+        assertEquals(4, governor.getLevelIndex());
+
+        governor.setThermalState(ThermalState.NONE, nowNanos);
+        run(60, 40f);
+        assertEquals(0, governor.getLevelIndex());
+    }
+
+    @Test
+    public void batterySaverKeepsOffTheBestLevel() {
+        governor.setBatterySaver(true, nowNanos);
+        run(30, 40f);
+
+        assertEquals(1, governor.getLevelIndex());
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void stepsDownOnDroppedFrames() {
+        governor.withMaxDropRatio(0.5f);
+
+        // Fast enough for the target, but most frames still do not get detected
+        run(3, 90f);
+
+        assertTrue(governor.getLevelIndex() > 0);
+    }
+}
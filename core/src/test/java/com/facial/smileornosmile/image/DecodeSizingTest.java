@@ -0,0 +1,49 @@
+package com.facial.smileornosmile.image;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DecodeSizingTest {
+
+    @Test
+    public void inSampleSize_48MegapixelPhoto() {
+        // 8000 x 6000 down to a 1280 detection size: 8000 / 4 = 2000 still above, 8000 / 8 = 1000 below
+        assertEquals(4, DecodeSizing.inSampleSize(8000, 6000, 1280));
+    }
+
+    @Test
+    public void inSampleSize_smallImageIsNotSampled() {
+        assertEquals(1, DecodeSizing.inSampleSize(800, 600, 1280));
+        assertEquals(1, DecodeSizing.inSampleSize(1280, 720, 1280));
+    }
+
+    @Test
+    public void sampledThenScaled_staysWithinBudget() {
+        int width = 8000;
+        int height = 6000;
+        int sample = DecodeSizing.inSampleSize(width, height, 1280);
+        int sampledWidth = width / sample;
+        int sampledHeight = height / sample;
+        float scale = DecodeSizing.fitScale(sampledWidth, sampledHeight, 1280);
+
+        assertEquals(1280, Math.round(sampledWidth * scale));
+        assertEquals(960, Math.round(sampledHeight * scale));
+        assertTrue(DecodeSizing.argbBytes(sampledWidth, sampledHeight) < DecodeSizing.argbBytes(width, height) / 10);
+    }
+
+    @Test
+    public void imageScale_mapsDetectionBoxBackToOriginal() {
+        ImageScale toOriginal = ImageScale.between(1280, 960, 8000, 6000);
+        float[] box = {128f, 96f, 256f, 192f};
+        toOriginal.mapBox(box);
+
+        assertArrayEquals(new float[]{800f, 600f, 1600f, 1200f}, box, 0.01f);
+        assertEquals(128f, toOriginal.inverse().mapX(800f), 0.01f);
+    }
+
+    @Test
+    public void fitInside_keepsAspectRatio() {
+        assertEquals(0.5f, DecodeSizing.fitInside(1280, 960, 640, 720), 0.0001f);
+    }
+}
@@ -0,0 +1,89 @@
+package com.facial.smileornosmile.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void buckets_coverEveryValueWithinThreePercent() {
+        long[] values = {0, 1, 31, 32, 33, 63, 64, 65, 1000, 123456, 33 * MS, 1000 * MS, LatencyHistogram.MAX_TRACKABLE_NANOS};
+        int previous = -1;
+        for(long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(index >= previous);
+            long highest = LatencyHistogram.highestValueOf(index);
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 32);
+            previous = index;
+        }
+        assertEquals(LatencyHistogram.indexOf(64), LatencyHistogram.indexOf(65));
+        assertEquals(LatencyHistogram.indexOf(63) + 1, LatencyHistogram.indexOf(64));
+    }
+
+    @Test
+    public void percentiles_matchRecordedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(int i = 1; i <= 100; i++) {
+            histogram.record(i * MS);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50 * MS, histogram.getValueAtPercentile(50.0), 2 * MS);
+        assertEquals(90 * MS, histogram.getValueAtPercentile(90.0), 3 * MS);
+        assertEquals(100 * MS, histogram.getValueAtPercentile(100.0));
+        assertEquals(100 * MS, histogram.getMaxNanos());
+        assertEquals(50 * MS + MS / 2, histogram.getMeanNanos());
+    }
+
+    @Test
+    public void outliers_keepExactMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(LatencyHistogram.MAX_TRACKABLE_NANOS * 4);
+
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS * 4, histogram.getMaxNanos());
+        assertEquals(0, histogram.getValueAtPercentile(50.0));
+        assertTrue(histogram.getValueAtPercentile(100.0) >= LatencyHistogram.MAX_TRACKABLE_NANOS / 2);
+    }
+
+    @Test
+    public void reset_forgetsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(20 * MS);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getValueAtPercentile(99.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentile_outOfRangeThrows() {
+        new LatencyHistogram().getValueAtPercentile(101.0);
+    }
+
+    @Test
+    public void frameRate_countsFramesOfTheLastSecond() {
+        FrameRateMeter meter = new FrameRateMeter(64);
+        for(int i = 0; i < 60; i++) {
+            meter.onFrame(i * 33 * MS);
+        }
+        long now = 59 * 33 * MS;
+        assertEquals(31f, meter.getFps(now), 0.5f);
+        assertEquals(0f, meter.getFps(now + 2000 * MS), 0f);
+    }
+
+    @Test
+    public void frameRate_estimatesWhenFasterThanCapacity() {
+        FrameRateMeter meter = new FrameRateMeter(8);
+        for(int i = 0; i < 100; i++) {
+            meter.onFrame(i * 5 * MS);
+        }
+        assertEquals(200f, meter.getFps(99 * 5 * MS), 1f);
+    }
+}
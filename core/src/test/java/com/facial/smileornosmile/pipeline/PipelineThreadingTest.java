@@ -0,0 +1,70 @@
+package com.facial.smileornosmile.pipeline;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PipelineThreadingTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void background_runsProcessingOffCallerThread() throws InterruptedException {
+        PipelineThreading threading = PipelineThreading.background(DIRECT);
+        final Thread[] ranOn = new Thread[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        threading.getProcessingExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                ranOn[0] = Thread.currentThread();
+                done.countDown();
+            }
+        });
+        done.await();
+        threading.shutdown();
+
+        assertNotSame(Thread.currentThread(), ranOn[0]);
+        assertTrue(threading.isBackground());
+    }
+
+    @Test
+    public void shutdown_runsLastTaskThenDropsLaterWork() throws InterruptedException {
+        PipelineThreading threading = PipelineThreading.background(DIRECT);
+        final CountDownLatch queued = new CountDownLatch(1);
+        threading.getProcessingExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                queued.countDown();
+            }
+        });
+        final CountDownLatch released = new CountDownLatch(1);
+        threading.shutdown(new Runnable() {
+            @Override
+            public void run() {
+                //Only after the work queued before the shutdown
+                assertEquals(0, queued.getCount());
+                released.countDown();
+            }
+        });
+        assertTrue(released.await(1, TimeUnit.SECONDS));
+
+        //Results of detections still running are dropped, not rejected
+        final CountDownLatch late = new CountDownLatch(1);
+        threading.getProcessingExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                late.countDown();
+            }
+        });
+        assertFalse(late.await(200, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,148 @@
+package com.facial.smileornosmile.pipeline;
+
+import com.facial.smileornosmile.metrics.RuntimeCounters;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class StageTimingsTest {
+
+    @Test
+    public void record_tracksCountMeanMaxAndLast() {
+        StageTimings timings = new StageTimings();
+        timings.record(PipelineStage.RENDER, 100);
+        timings.record(PipelineStage.RENDER, 300);
+        timings.record(PipelineStage.RENDER, 200);
+
+        assertEquals(3, timings.getCount(PipelineStage.RENDER));
+        assertEquals(200, timings.getMeanNanos(PipelineStage.RENDER));
+        assertEquals(300, timings.getMaxNanos(PipelineStage.RENDER));
+        assertEquals(200, timings.getLastNanos(PipelineStage.RENDER));
+        assertEquals(0, timings.getCount(PipelineStage.DETECTION));
+    }
+
+    @Test
+    public void record_isSafeAcrossThreads() throws InterruptedException {
+        final StageTimings timings = new StageTimings();
+        final CountDownLatch done = new CountDownLatch(4);
+        for(int t = 0; t < 4; t++) {
+            final int offset = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < 10000; i++) {
+                        timings.record(PipelineStage.PUBLISH, i + offset);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        assertEquals(40000, timings.getCount(PipelineStage.PUBLISH));
+        assertEquals(9999 + 3, timings.getMaxNanos(PipelineStage.PUBLISH));
+    }
+
+    @Test
+    public void record_fillsPercentiles() {
+        StageTimings timings = new StageTimings();
+        for(int i = 1; i <= 10; i++) {
+            timings.record(PipelineStage.DETECTION, i * 1000000L);
+        }
+
+        assertEquals(9000000L, timings.getPercentileNanos(PipelineStage.DETECTION, 90.0), 300000L);
+        timings.reset();
+        assertEquals(0, timings.getHistogram(PipelineStage.DETECTION).getCount());
+    }
+
+    @Test
+    public void frameMetrics_reportSessionSinceReset() {
+        FakeCounters counters = new FakeCounters();
+        counters.gcCount = 10;
+        counters.allocated = 4096;
+        FrameMetrics metrics = new FrameMetrics(new StageTimings(), counters, 0);
+        metrics.onCameraFrame(0);
+        metrics.onFrameDropped();
+        metrics.reset(1000000000L);
+
+        for(int i = 0; i < 30; i++) {
+            metrics.onCameraFrame(1000000000L + i * 33000000L);
+        }
+        metrics.onFrameDropped();
+        metrics.getTimings().record(PipelineStage.RENDER, 2000000L);
+        counters.gcCount = 12;
+        counters.allocated = 4096 + 2048;
+
+        long now = 1990000000L;
+        assertEquals(30, metrics.getCameraFrames());
+        assertEquals(1, metrics.getDroppedFrames());
+        assertEquals(30f, metrics.getCameraFps(now), 0f);
+        assertEquals(2, metrics.getGcCount());
+        assertEquals(2048, metrics.getAllocatedBytes());
+        assertEquals(RuntimeCounters.UNKNOWN, metrics.getGcTimeMillis());
+
+        StringBuilder hud = new StringBuilder("stale");
+        metrics.formatHud(now, hud);
+        assertTrue(hud.toString().startsWith("30 fps camera"));
+        assertTrue(hud.toString().contains("render p50 2.0 p90 2.0 max 2.0 ms"));
+    }
+
+    @Test
+    public void csvWriter_appendsOneLinePerValue() throws IOException {
+        File file = File.createTempFile("metrics", ".csv");
+        file.delete();
+        FrameMetrics metrics = new FrameMetrics(new StageTimings(), RuntimeCounters.NONE, 0);
+        metrics.getTimings().record(PipelineStage.DETECTION, 40000000L);
+
+        for(int i = 0; i < 2; i++) {
+            MetricsCsvWriter writer = new MetricsCsvWriter(file, "Pixel, 4", "1.0");
+            writer.write("run" + i, metrics, 1000000000L);
+            writer.close();
+        }
+
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        String line;
+        while((line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        reader.close();
+        file.delete();
+
+        assertEquals(MetricsCsvWriter.HEADER, lines.get(0));
+        assertEquals(0, lines.lastIndexOf(MetricsCsvWriter.HEADER));
+        assertTrue(lines.contains("\"Pixel, 4\",1.0,run0,session_ms,1000"));
+        assertTrue(lines.contains("\"Pixel, 4\",1.0,run1,detection.max_us,40000"));
+        assertTrue(lines.contains("\"Pixel, 4\",1.0,run1,gc_count,-1"));
+        assertEquals(0, (lines.size() - 1) % 2);
+    }
+
+    private static class FakeCounters implements RuntimeCounters {
+        long gcCount;
+        long allocated;
+
+        @Override
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        @Override
+        public long getGcTimeMillis() {
+            return UNKNOWN;
+        }
+
+        @Override
+        public long getAllocatedBytes() {
+            return allocated;
+        }
+    }
+}
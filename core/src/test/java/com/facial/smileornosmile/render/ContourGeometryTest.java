@@ -0,0 +1,113 @@
+package com.facial.smileornosmile.render;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ContourGeometryTest {
+
+    /**
+     * The segments the old per-point drawLine loop produced for one contour.
+     */
+    private static void legacySegments(float[] xy, int pointCount, boolean closed, List<Float> out) {
+        for(int i = 0; i < pointCount; i++) {
+            if(i != pointCount - 1) {
+                out.add(xy[i * 2]);
+                out.add(xy[i * 2 + 1]);
+                out.add(xy[(i + 1) * 2]);
+                out.add(xy[(i + 1) * 2 + 1]);
+            } else if(closed) {
+                out.add(xy[i * 2]);
+                out.add(xy[i * 2 + 1]);
+                out.add(xy[0]);
+                out.add(xy[1]);
+            }
+        }
+    }
+
+    private static float[] randomContour(Random random, int pointCount) {
+        float[] xy = new float[pointCount * 2];
+        for(int i = 0; i < xy.length; i++) {
+            xy[i] = random.nextFloat() * 480f;
+        }
+        return xy;
+    }
+
+    @Test
+    public void addContour_matchesLegacyLoop() {
+        Random random = new Random(42);
+        ContourGeometry geometry = new ContourGeometry();
+        List<Float> expectedLines = new ArrayList<>();
+        int expectedPoints = 0;
+
+        // Two faces with the point counts Firebase returns for the live overlay contours
+        int[] pointCounts = {36, 16, 16, 5, 5, 9, 9, 2, 3};
+        for(int face = 0; face < 2; face++) {
+            for(int c = 0; c < pointCounts.length; c++) {
+                float[] xy = randomContour(random, pointCounts[c]);
+                boolean closed = ContourTable.LIVE_OVERLAY.isClosed(c);
+                geometry.addContour(xy, 0, pointCounts[c], closed);
+                legacySegments(xy, pointCounts[c], closed, expectedLines);
+                expectedPoints += pointCounts[c];
+            }
+        }
+
+        float[] expected = new float[expectedLines.size()];
+        for(int i = 0; i < expected.length; i++) {
+            expected[i] = expectedLines.get(i);
+        }
+        float[] actual = new float[geometry.getLineFloatCount()];
+        System.arraycopy(geometry.getLines(), 0, actual, 0, actual.length);
+
+        assertArrayEquals(expected, actual, 0f);
+        assertEquals(expectedPoints, geometry.getPointCount());
+    }
+
+    @Test
+    public void closedContour_addsClosingSegment() {
+        ContourGeometry geometry = new ContourGeometry();
+        geometry.addContour(new float[]{0f, 0f, 10f, 0f, 10f, 10f}, 0, 3, true);
+
+        assertEquals(3, geometry.getSegmentCount());
+        float[] closing = new float[4];
+        System.arraycopy(geometry.getLines(), 8, closing, 0, 4);
+        assertArrayEquals(new float[]{10f, 10f, 0f, 0f}, closing, 0f);
+    }
+
+    @Test
+    public void singlePointContour_hasNoSegments() {
+        ContourGeometry geometry = new ContourGeometry();
+        geometry.addContour(new float[]{5f, 5f}, 0, 1, true);
+
+        assertEquals(0, geometry.getSegmentCount());
+        assertEquals(1, geometry.getPointCount());
+    }
+
+    @Test
+    public void reset_reusesBuffers() {
+        Random random = new Random(7);
+        ContourGeometry geometry = new ContourGeometry();
+        float[] xy = randomContour(random, 500);
+        geometry.addContour(xy, 0, 500, true);
+        float[] lines = geometry.getLines();
+        float[] points = geometry.getPoints();
+
+        for(int frame = 0; frame < 10; frame++) {
+            geometry.reset();
+            geometry.addContour(xy, 0, 500, true);
+        }
+
+        assertSame(lines, geometry.getLines());
+        assertSame(points, geometry.getPoints());
+        assertEquals(500, geometry.getSegmentCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addPoint_outsideContourFails() {
+        new ContourGeometry().addPoint(1f, 1f);
+    }
+}
@@ -0,0 +1,212 @@
+package com.facial.smileornosmile.replay;
+
+import com.facial.smileornosmile.burst.BestShot;
+import com.facial.smileornosmile.burst.BestShotBuffer;
+import com.facial.smileornosmile.detector.FaceLandmarkType;
+import com.facial.smileornosmile.events.SmileEvent;
+import com.facial.smileornosmile.events.SmileEventEngine;
+import com.facial.smileornosmile.events.SmileRule;
+import com.facial.smileornosmile.frame.LiveFrame;
+import com.facial.smileornosmile.frame.Nv21;
+import com.facial.smileornosmile.governor.QualityGovernor;
+import com.facial.smileornosmile.governor.QualityLadder;
+import com.facial.smileornosmile.metrics.RuntimeCounters;
+import com.facial.smileornosmile.metrics.Tracer;
+import com.facial.smileornosmile.pipeline.FrameMetrics;
+import com.facial.smileornosmile.pipeline.LiveFramePipeline;
+import com.facial.smileornosmile.pipeline.PipelineStage;
+import com.facial.smileornosmile.pipeline.StageTimings;
+import com.facial.smileornosmile.render.ContourGeometry;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReplayDriverTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int FRAMES = 30;
+    private static final long FRAME_NANOS = 33333333L;
+    private static final long START_NANOS = 5000000000L;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("frames", ".rec");
+        FrameRecorder recorder = new FrameRecorder(file);
+        byte[] data = new byte[Nv21.size(WIDTH, HEIGHT)];
+        for(int i = 0; i < FRAMES; i++) {
+            data[0] = (byte) i;
+            long timestamp = START_NANOS + i * FRAME_NANOS;
+            recorder.writeFrame(timestamp, data, WIDTH, HEIGHT, 90, true);
+            //Upright the frame is 240 x 320, the face drifts to the right
+            recorder.writeResults(timestamp, 20000000L, face(60f + i, 0.95f));
+        }
+        assertEquals(FRAMES, recorder.getFrameCount());
+        recorder.close();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static FaceObservations face(float left, float smiling) {
+        FaceObservations faces = new FaceObservations(1, 2, 8);
+        int face = faces.addFace(3, left, 80f, left + 120f, 220f, smiling, 0.9f, 0.8f);
+        faces.beginContour(face);
+        faces.addPoint(face, left + 10f, 100f);
+        faces.addPoint(face, left + 20f, 110f);
+        faces.beginContour(face);
+        faces.addPoint(face, left + 30f, 120f);
+        faces.setLandmark(face, FaceLandmarkType.NOSE_BASE, left + 60f, 150f);
+        return faces;
+    }
+
+    @Test
+    public void recording_readsBackFramesAndResults() throws IOException {
+        FrameRecording recording = FrameRecording.open(file);
+
+        assertEquals(FRAMES, recording.getFrameCount());
+        assertEquals(FRAMES, recording.getResultCount());
+        assertEquals(START_NANOS + 7 * FRAME_NANOS, recording.getTimestampNanos(7));
+        assertEquals(WIDTH, recording.getWidth(7));
+        assertEquals(90, recording.getRotation(7));
+        assertTrue(recording.isMirrored(7));
+        byte[] data = new byte[recording.getDataLength(7)];
+        recording.readFrame(7, data);
+        assertEquals(7, data[0]);
+
+        FaceObservations results = new FaceObservations(2, 4, 16);
+        assertTrue(recording.readResults(recording.getTimestampNanos(7), results));
+        assertEquals(1, results.size());
+        assertEquals(67f, results.getLeft(0), 0f);
+        assertEquals(0.95f, results.getSmilingProbability(0), 0f);
+        assertEquals(2, results.getContourCount(0));
+        assertEquals(1, results.getContourPointCount(0, 1));
+        assertEquals(97f, results.getPointX(0, 2), 0f);
+        assertTrue(results.hasLandmark(0, FaceLandmarkType.NOSE_BASE));
+        assertFalse(results.hasLandmark(0, FaceLandmarkType.LEFT_EYE));
+        assertEquals(20000000L, recording.getLatencyNanos(recording.getTimestampNanos(7)));
+        assertFalse(recording.readResults(1L, results));
+        assertEquals(0, results.size());
+        recording.close();
+    }
+
+    @Test
+    public void recording_cutShortKeepsCompleteRecords() throws IOException {
+        File truncated = File.createTempFile("truncated", ".rec");
+        FileInputStream in = new FileInputStream(file);
+        FileOutputStream out = new FileOutputStream(truncated);
+        byte[] buffer = new byte[(int) (file.length() - 1000)];
+        int read = 0;
+        while(read < buffer.length) {
+            read += in.read(buffer, read, buffer.length - read);
+        }
+        out.write(buffer);
+        out.close();
+        in.close();
+
+        FrameRecording recording = FrameRecording.open(truncated);
+        assertEquals(FRAMES - 1, recording.getFrameCount());
+        assertEquals(FRAMES - 1, recording.getResultCount());
+        recording.close();
+        truncated.delete();
+    }
+
+    @Test
+    public void replay_drivesPipelineDeterministically() throws Exception {
+        FrameRecording recording = FrameRecording.open(file);
+        final int[] overlays = new int[1];
+        final int[] maxLineFloats = new int[1];
+        RecordedFaceDetectorBackend backend = new RecordedFaceDetectorBackend(recording, 0L);
+        QualityGovernor governor = new QualityGovernor(QualityLadder.defaultLadder(), 1, TimeUnit.SECONDS, null);
+        SmileEventEngine smileEvents = new SmileEventEngine(SmileRule.everyoneSmilingWithEyesOpen(100, TimeUnit.MILLISECONDS),
+                LiveFramePipeline.MAX_FACES, new SmileEventEngine.Listener() {
+            @Override
+            public void onEvent(SmileEvent event, int faceId, long timestampNanos) {
+            }
+        });
+        FrameMetrics metrics = new FrameMetrics(new StageTimings(), RuntimeCounters.NONE, 0);
+        BestShotBuffer bestShots = new BestShotBuffer(4, 1 << 20, LiveFramePipeline.MAX_FACES);
+        LiveFramePipeline pipeline = new LiveFramePipeline(backend, governor, smileEvents, metrics, Tracer.NONE, DIRECT,
+                new LiveFramePipeline.Output() {
+                    @Override
+                    public void onOverlay(ContourGeometry geometry, int width, int height, boolean mirrored, long startNanos) {
+                        overlays[0]++;
+                        maxLineFloats[0] = Math.max(maxLineFloats[0], geometry.getLineFloatCount());
+                    }
+
+                    @Override
+                    public void onDetectionFinished(boolean fresh) {
+                    }
+
+                    @Override
+                    public void onDetectionFailed(Exception e) {
+                        fail(e.toString());
+                    }
+                }).withBestShots(bestShots);
+        ReplayDriver driver = new ReplayDriver(recording, pipeline, backend);
+
+        driver.run(ReplayDriver.Speed.MAXIMUM);
+        assertTrue(driver.awaitIdle(1, TimeUnit.SECONDS));
+
+        assertEquals(FRAMES, driver.getFramesFed());
+        assertEquals(FRAMES, metrics.getCameraFrames());
+        assertEquals(FRAMES, overlays[0]);
+        //Once the face is tracked only every other frame is detected
+        assertTrue(backend.getDetectionCount() < FRAMES);
+        assertEquals(backend.getDetectionCount(), metrics.getTimings().getCount(PipelineStage.DETECTION));
+        assertEquals(0, backend.getMissCount());
+        assertEquals(1, pipeline.getTrackedFaceCount());
+        assertTrue(maxLineFloats[0] > 0);
+        assertEquals(0, pipeline.getScheduler().getDroppedCount());
+        //Every crop went back to its pool once its detection completed
+        assertEquals(0, pipeline.getCropBufferPool().getInUseCount());
+        assertTrue(pipeline.getCropAllocations() <= 2);
+        //The best shot is a copy of the detected frame with the scores of its tracked face
+        assertEquals(4, bestShots.getCount());
+        BestShot best = new BestShot(LiveFramePipeline.MAX_FACES);
+        assertTrue(bestShots.copyBest(best));
+        assertEquals(1, best.getFaceCount());
+        assertTrue(best.getScore() > 0.5f);
+        assertEquals(Nv21.size(WIDTH, HEIGHT), best.getLength());
+        //One of the last four detected frames, at most every other frame is detected
+        assertTrue(best.getData()[0] >= FRAMES - 8);
+        assertEquals(90, best.getRotation());
+        recording.close();
+    }
+
+    @Test
+    public void recordedFrame_readsMappingWithoutCopying() throws IOException {
+        FrameRecording recording = FrameRecording.open(file);
+        RecordedFrame frame = new RecordedFrame(recording, 4);
+        LiveFrame frozen = frame.freeze();
+
+        assertSame(frame, frozen);
+        assertTrue(frame.getData().isDirect());
+        assertTrue(frame.getData().isReadOnly());
+        assertEquals(Nv21.size(WIDTH, HEIGHT), frame.getData().limit());
+        assertEquals(4, frame.getData().get(0));
+        frozen.release();
+        recording.close();
+    }
+}
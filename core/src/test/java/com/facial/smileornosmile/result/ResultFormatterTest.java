@@ -0,0 +1,58 @@
+package com.facial.smileornosmile.result;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResultFormatterTest {
+
+    @Test
+    public void formatValue_showsTwoDecimals() {
+        ResultFormatter formatter = new ResultFormatter();
+
+        assertEquals("Smiling probability 0.87", formatter.formatValue(new FaceResult(0, FaceMetric.SMILING, 0.8712f)));
+        assertEquals("Left eye open probability 0.05", formatter.formatValue(new FaceResult(0, FaceMetric.LEFT_EYE_OPEN, 0.049f)));
+        assertEquals("Right eye open probability 1.00", formatter.formatValue(new FaceResult(0, FaceMetric.RIGHT_EYE_OPEN, 1f)));
+        assertEquals("Smiling probability 0.00", formatter.formatValue(new FaceResult(0, FaceMetric.SMILING, 0f)));
+        assertEquals("Smiling probability unknown", formatter.formatValue(new FaceResult(0, FaceMetric.SMILING, FaceResult.UNCOMPUTED)));
+    }
+
+    @Test
+    public void format_reusesTexts() {
+        ResultFormatter formatter = new ResultFormatter();
+
+        assertSame(formatter.formatValue(new FaceResult(1, FaceMetric.SMILING, 0.501f)),
+                formatter.formatValue(new FaceResult(2, FaceMetric.SMILING, 0.499f)));
+        assertSame(formatter.formatFaceId(new FaceResult(3, FaceMetric.SMILING, 0f)),
+                formatter.formatFaceId(new FaceResult(3, FaceMetric.LEFT_EYE_OPEN, 1f)));
+        assertEquals("1000", formatter.formatFaceId(new FaceResult(1000, FaceMetric.SMILING, 0f)));
+    }
+
+    @Test
+    public void hasSameContents_ignoresChangesBelowShownPrecision() {
+        FaceResult row = new FaceResult(0, FaceMetric.SMILING, 0.501f);
+
+        assertTrue(row.hasSameContents(new FaceResult(0, FaceMetric.SMILING, 0.503f)));
+        assertFalse(row.hasSameContents(new FaceResult(0, FaceMetric.SMILING, 0.52f)));
+        assertTrue(row.isSameRow(new FaceResult(0, FaceMetric.SMILING, 0.9f)));
+        assertFalse(row.isSameRow(new FaceResult(1, FaceMetric.SMILING, 0.501f)));
+        assertFalse(row.isSameRow(new FaceResult(0, FaceMetric.LEFT_EYE_OPEN, 0.501f)));
+    }
+
+    @Test
+    public void addFace_addsRowsWithDistinctStableIds() {
+        List<FaceResult> rows = new ArrayList<>();
+        FaceResult.addFace(rows, 0, 0.1f, 0.2f, 0.3f);
+        FaceResult.addFace(rows, 1, 0.4f, 0.5f, 0.6f);
+
+        assertEquals(6, rows.size());
+        assertEquals(FaceMetric.SMILING, rows.get(3).getMetric());
+        assertEquals(0.4f, rows.get(3).getValue(), 0f);
+        for(int i = 0; i < rows.size(); i++) {
+            assertEquals(i, rows.get(i).getStableId());
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.facial.smileornosmile.scheduler;
+
+import com.facial.smileornosmile.detector.DetectionImage;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.metrics.RuntimeCounters;
+import com.facial.smileornosmile.pipeline.FrameMetrics;
+import com.facial.smileornosmile.pipeline.StageTimings;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DetectionQueueTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Holds on to every detection until told to finish it, images are told apart by their width.
+     */
+    private static class SlowDetector implements FaceDetectorBackend {
+        final List<Integer> running = new ArrayList<>();
+        final List<FaceObservations> results = new ArrayList<>();
+        final List<Callback> callbacks = new ArrayList<>();
+        boolean closed;
+
+        @Override
+        public String getName() {
+            return "slow";
+        }
+
+        @Override
+        public void warmUp(DetectorProfile profile) {
+        }
+
+        @Override
+        public void detect(DetectionImage image, DetectorProfile profile, FaceObservations results,
+                           Executor callbackExecutor, Callback callback) {
+            running.add(image.getWidth());
+            this.results.add(results);
+            callbacks.add(callback);
+        }
+
+        void finish(int id) {
+            int index = running.indexOf(id);
+            running.remove(index);
+            FaceObservations done = results.remove(index);
+            callbacks.remove(index).onDetected(done);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Remembers which detections came back and which were rejected.
+     */
+    private static class Outcomes {
+        final List<Integer> detected = new ArrayList<>();
+        final List<Integer> rejected = new ArrayList<>();
+
+        void detect(DetectionQueue queue, DetectionPriority priority, final int id) {
+            queue.backend(priority).detect(DetectionImage.nv21(new byte[0], id, 1, 0), DetectorProfile.LIVE_CONTOURS,
+                    new FaceObservations(1, 0, 0), DIRECT, new FaceDetectorBackend.Callback() {
+                        @Override
+                        public void onDetected(FaceObservations results) {
+                            detected.add(id);
+                        }
+
+                        @Override
+                        public void onFailed(Exception e) {
+                            assertTrue(e instanceof DetectionRejectedException);
+                            rejected.add(id);
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void interactive_goesFirstAndPausesLive() {
+        SlowDetector detector = new SlowDetector();
+        DetectionQueue queue = new DetectionQueue(detector, ArbitrationPolicy.defaults());
+        FrameMetrics metrics = new FrameMetrics(new StageTimings(), RuntimeCounters.NONE, 0);
+        metrics.setDetectionQueue(queue);
+        Outcomes outcomes = new Outcomes();
+
+        outcomes.detect(queue, DetectionPriority.BACKGROUND, 1);
+        outcomes.detect(queue, DetectionPriority.LIVE, 2);
+        assertEquals(1, queue.getQueueDepth());
+        //The picked image jumps the queue and the waiting live frame goes
+        outcomes.detect(queue, DetectionPriority.INTERACTIVE, 3);
+        outcomes.detect(queue, DetectionPriority.BACKGROUND, 4);
+        assertEquals(2, queue.getQueueDepth());
+        assertEquals(2, queue.getMaxQueueDepth());
+        assertEquals(1, outcomes.rejected.size());
+
+        detector.finish(1);
+        assertEquals(3, (int) detector.running.get(0));
+        //Live is paused while the interactive detection runs
+        outcomes.detect(queue, DetectionPriority.LIVE, 5);
+        assertEquals(2, outcomes.rejected.size());
+
+        detector.finish(3);
+        assertEquals(4, (int) detector.running.get(0));
+        outcomes.detect(queue, DetectionPriority.LIVE, 6);
+        detector.finish(4);
+        detector.finish(6);
+
+        assertEquals(4, outcomes.detected.size());
+        assertEquals(3, (int) outcomes.detected.get(1));
+        assertEquals(1, queue.getStartedCount(DetectionPriority.INTERACTIVE));
+        assertEquals(2, queue.getRejectedCount(DetectionPriority.LIVE));
+        assertEquals(1, queue.getWaitTimes(DetectionPriority.INTERACTIVE).getCount());
+        assertEquals(1, queue.getLatencies(DetectionPriority.LIVE).getCount());
+        assertEquals(0, queue.getInFlight());
+
+        final List<String> names = new ArrayList<>();
+        metrics.visit(0, new FrameMetrics.Visitor() {
+            @Override
+            public void visit(String name, long value) {
+                names.add(name);
+            }
+        });
+        assertTrue(names.contains("queue.max_depth"));
+        assertTrue(names.contains("queue.interactive.wait_p90_us"));
+        metrics.reset(0);
+        assertEquals(0, queue.getRejectedCount(DetectionPriority.LIVE));
+
+        queue.close();
+        assertTrue(detector.closed);
+        outcomes.detect(queue, DetectionPriority.INTERACTIVE, 7);
+        assertEquals(7, (int) outcomes.rejected.get(2));
+    }
+
+    @Test
+    public void live_isThinnedWithoutPreemption() {
+        SlowDetector detector = new SlowDetector();
+        DetectionQueue queue = new DetectionQueue(detector, ArbitrationPolicy.defaults()
+                .withMaxInFlight(2).withLiveStride(2).withPreemption(false));
+        Outcomes outcomes = new Outcomes();
+
+        outcomes.detect(queue, DetectionPriority.INTERACTIVE, 1);
+        //Every other live frame gets the second slot
+        outcomes.detect(queue, DetectionPriority.LIVE, 2);
+        outcomes.detect(queue, DetectionPriority.LIVE, 3);
+        assertEquals(2, detector.running.size());
+        assertEquals(3, (int) detector.running.get(1));
+        assertEquals(2, (int) outcomes.rejected.get(0));
+
+        //Without preemption a live frame already waiting stays when interactive work arrives
+        outcomes.detect(queue, DetectionPriority.LIVE, 4);
+        outcomes.detect(queue, DetectionPriority.LIVE, 5);
+        outcomes.detect(queue, DetectionPriority.INTERACTIVE, 6);
+        assertEquals(4, (int) outcomes.rejected.get(1));
+        assertEquals(2, queue.getQueueDepth());
+        detector.finish(1);
+        assertEquals(6, (int) detector.running.get(1));
+        detector.finish(3);
+        assertEquals(5, (int) detector.running.get(1));
+    }
+
+    @Test
+    public void isLivePaused_letsCallersSkipFramesBeforePreparingThem() {
+        SlowDetector detector = new SlowDetector();
+        DetectionQueue queue = new DetectionQueue(detector, ArbitrationPolicy.defaults()
+                .withMaxInFlight(2).withLiveStride(2));
+        Outcomes outcomes = new Outcomes();
+        assertFalse(queue.isLivePaused());
+
+        outcomes.detect(queue, DetectionPriority.INTERACTIVE, 1);
+        //Every other live frame is turned away before it reaches the queue, and counted once
+        assertTrue(queue.isLivePaused());
+        assertFalse(queue.isLivePaused());
+        outcomes.detect(queue, DetectionPriority.LIVE, 2);
+        assertEquals(2, (int) detector.running.get(1));
+        assertTrue(outcomes.rejected.isEmpty());
+        assertEquals(1, queue.getRejectedCount(DetectionPriority.LIVE));
+
+        detector.finish(1);
+        assertFalse(queue.isLivePaused());
+    }
+
+    @Test
+    public void aging_letsBackgroundWorkThroughAndLiveExpires() throws InterruptedException {
+        SlowDetector detector = new SlowDetector();
+        DetectionQueue queue = new DetectionQueue(detector, ArbitrationPolicy.defaults()
+                .withAging(5, TimeUnit.MILLISECONDS).withMaxWait(DetectionPriority.LIVE, 5, TimeUnit.MILLISECONDS)
+                .withLiveStride(1).withPreemption(false));
+        Outcomes outcomes = new Outcomes();
+
+        outcomes.detect(queue, DetectionPriority.INTERACTIVE, 1);
+        outcomes.detect(queue, DetectionPriority.BACKGROUND, 2);
+        outcomes.detect(queue, DetectionPriority.LIVE, 3);
+        Thread.sleep(20);
+        outcomes.detect(queue, DetectionPriority.INTERACTIVE, 4);
+        detector.finish(1);
+
+        //The background detection waited past the aging limit, the live one past its maximum
+        assertEquals(2, (int) detector.running.get(0));
+        assertTrue(outcomes.rejected.contains(3));
+        assertTrue(queue.getWaitTimes(DetectionPriority.BACKGROUND).getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        detector.finish(2);
+        assertEquals(4, (int) detector.running.get(0));
+    }
+}
@@ -0,0 +1,177 @@
+package com.facial.smileornosmile.scheduler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FrameSchedulerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Records what the scheduler asked for instead of running a real detector.
+     */
+    private static class FakeDetector implements FrameScheduler.Callback<Integer> {
+        final List<Integer> dispatched = new ArrayList<>();
+        final List<Long> timestamps = new ArrayList<>();
+        final List<Integer> dropped = new ArrayList<>();
+
+        @Override
+        public void onDispatch(Integer frame, long timestampNanos) {
+            dispatched.add(frame);
+            timestamps.add(timestampNanos);
+        }
+
+        @Override
+        public void onDrop(Integer frame) {
+            dropped.add(frame);
+        }
+    }
+
+    @Test
+    public void latestFrameWins_keepsOnlyNewestPendingFrame() {
+        FakeDetector detector = new FakeDetector();
+        FrameScheduler<Integer> scheduler = new FrameScheduler<>(SchedulingPolicy.latestFrameWins(), detector);
+
+        assertTrue(scheduler.offer(1, 0));
+        assertFalse(scheduler.offer(2, 33 * MS));
+        assertFalse(scheduler.offer(3, 66 * MS));
+        assertEquals(1, scheduler.getInFlightCount());
+
+        assertTrue(scheduler.complete(0, 80 * MS));
+
+        assertEquals(2, detector.dispatched.size());
+        assertEquals(Integer.valueOf(3), detector.dispatched.get(1));
+        assertEquals(Integer.valueOf(2), detector.dropped.get(0));
+        assertEquals(1, scheduler.getDroppedCount());
+        assertEquals(1, scheduler.getProcessedCount());
+        assertEquals(1, scheduler.getInFlightCount());
+    }
+
+    @Test
+    public void fixedInFlight_dropsWhenAllSlotsBusy() {
+        FakeDetector detector = new FakeDetector();
+        FrameScheduler<Integer> scheduler = new FrameScheduler<>(SchedulingPolicy.fixedInFlight(2), detector);
+
+        assertTrue(scheduler.offer(1, 0));
+        assertTrue(scheduler.offer(2, MS));
+        assertFalse(scheduler.offer(3, 2 * MS));
+
+        assertEquals(2, scheduler.getInFlightCount());
+        assertEquals(1, scheduler.getDroppedCount());
+
+        scheduler.complete(0, 10 * MS);
+        assertTrue(scheduler.offer(4, 11 * MS));
+        assertEquals(3, detector.dispatched.size());
+
+        //A detection given up frees its slot and counts as dropped, not processed
+        scheduler.cancel(MS, 12 * MS);
+        assertEquals(1, scheduler.getInFlightCount());
+        assertEquals(2, scheduler.getDroppedCount());
+        assertEquals(1, scheduler.getProcessedCount());
+    }
+
+    @Test
+    public void targetFps_limitsDispatchRate() {
+        FakeDetector detector = new FakeDetector();
+        FrameScheduler<Integer> scheduler = new FrameScheduler<>(SchedulingPolicy.targetFps(10f), detector);
+
+        // 50 fps camera for one second, detector finishes instantly
+        for(int i = 0; i < 50; i++) {
+            long timestamp = i * 20 * MS;
+            if(scheduler.offer(i, timestamp)) {
+                scheduler.complete(timestamp, timestamp + MS);
+            }
+        }
+
+        assertEquals(10, detector.dispatched.size());
+        assertEquals(40, scheduler.getDroppedCount());
+        assertEquals(0, scheduler.getInFlightCount());
+    }
+
+    @Test
+    public void setPolicy_appliesToNextFrames() {
+        FakeDetector detector = new FakeDetector();
+        FrameScheduler<Integer> scheduler = new FrameScheduler<>(SchedulingPolicy.latestFrameWins(), detector);
+
+        for(int i = 0; i < 10; i++) {
+            long timestamp = i * 20 * MS;
+            if(scheduler.offer(i, timestamp)) {
+                scheduler.complete(timestamp, timestamp + MS);
+            }
+        }
+        assertEquals(10, detector.dispatched.size());
+
+        scheduler.setPolicy(SchedulingPolicy.targetFps(10f));
+        for(int i = 10; i < 60; i++) {
+            long timestamp = i * 20 * MS;
+            if(scheduler.offer(i, timestamp)) {
+                scheduler.complete(timestamp, timestamp + MS);
+            }
+        }
+        assertEquals(20, detector.dispatched.size());
+    }
+
+    @Test
+    public void slowDetector_latencyStaysBounded() {
+        FakeDetector detector = new FakeDetector();
+        SchedulingPolicy policy = SchedulingPolicy.latestFrameWins().withMaxLatency(200, TimeUnit.MILLISECONDS);
+        FrameScheduler<Integer> scheduler = new FrameScheduler<>(policy, detector);
+
+        // 30 fps camera, every detection takes 100 ms
+        long detectionDone = -1;
+        int completed = 0;
+        for(int i = 0; i < 300; i++) {
+            long now = i * 33 * MS;
+            if(detectionDone >= 0 && now >= detectionDone) {
+                long timestamp = detector.timestamps.get(completed++);
+                assertTrue(scheduler.complete(timestamp, now));
+                detectionDone = scheduler.getInFlightCount() > 0 ? now + 100 * MS : -1;
+            }
+            if(scheduler.offer(i, now)) {
+                detectionDone = now + 100 * MS;
+            }
+        }
+
+        assertEquals(0, scheduler.getStaleCount());
+        assertTrue(scheduler.getMaxLatencyNanos() <= 200 * MS);
+        assertTrue(scheduler.getInFlightCount() <= 1);
+        // Every frame is accounted for, except at most one still waiting
+        int accounted = detector.dispatched.size() + detector.dropped.size();
+        assertTrue(accounted == 300 || accounted == 299);
+    }
+
+    @Test
+    public void complete_dropsPendingFrameThatExpired() {
+        FakeDetector detector = new FakeDetector();
+        SchedulingPolicy policy = SchedulingPolicy.latestFrameWins().withMaxLatency(100, TimeUnit.MILLISECONDS);
+        FrameScheduler<Integer> scheduler = new FrameScheduler<>(policy, detector);
+
+        scheduler.offer(1, 0);
+        scheduler.offer(2, 10 * MS);
+
+        assertFalse(scheduler.complete(0, 500 * MS));
+        assertEquals(1, scheduler.getStaleCount());
+        assertEquals(1, detector.dispatched.size());
+        assertEquals(Integer.valueOf(2), detector.dropped.get(0));
+        assertEquals(0, scheduler.getInFlightCount());
+    }
+
+    @Test
+    public void clear_releasesPendingFrame() {
+        FakeDetector detector = new FakeDetector();
+        FrameScheduler<Integer> scheduler = new FrameScheduler<>(SchedulingPolicy.latestFrameWins(), detector);
+
+        scheduler.offer(1, 0);
+        scheduler.offer(2, MS);
+        scheduler.clear();
+
+        assertEquals(Integer.valueOf(2), detector.dropped.get(0));
+        scheduler.complete(0, 2 * MS);
+        assertEquals(1, detector.dispatched.size());
+    }
+}
@@ -0,0 +1,130 @@
+package com.facial.smileornosmile.session;
+
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SessionLogTest {
+    private static final long START_NANOS = 7000000000L;
+    private static final long FRAME_NANOS = 33333333L;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("session", ".log");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Writes {@code frames} frames of two faces: face 0 smiles in every other frame, face 1 never
+     * does and has its eyes closed in every fourth.
+     */
+    private void writeSession(int frames) throws IOException {
+        SessionLogWriter writer = new SessionLogWriter(file);
+        try {
+            for(int frame = 0; frame < frames; frame++) {
+                long timestamp = START_NANOS + frame * FRAME_NANOS;
+                writer.append(timestamp, 0, frame % 2 == 0 ? 0.9f : 0.1f, 0.9f, 0.9f, 10f, 20f, 110f, 140f);
+                writer.append(timestamp, 1, 0.2f, frame % 4 == 0 ? 0.1f : 0.8f, 0.8f, 200f, 20f, 290.4f, 130.6f);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void rows_readBackAcrossBlocks() throws IOException {
+        //Two full blocks and a partial one
+        int frames = SessionLogWriter.BLOCK_ROWS + 100;
+        writeSession(frames);
+        SessionLog log = SessionLog.open(file);
+
+        assertEquals(2L * frames, log.getRowCount());
+        assertEquals(3, log.getBlockCount());
+        assertEquals(START_NANOS, log.getStartNanos());
+        long lastRow = log.getRowCount() - 1;
+        assertEquals(1, log.getFaceId(lastRow));
+        //Microsecond precision
+        assertEquals((START_NANOS + (frames - 1) * FRAME_NANOS) / 1000 * 1000, log.getTimestampNanos(lastRow), 1000);
+        assertEquals(0.9f, log.getSmilingProbability(SessionLogWriter.BLOCK_ROWS), 1f / 254f);
+        assertEquals(0.8f, log.getRightEyeOpenProbability(SessionLogWriter.BLOCK_ROWS + 1), 1f / 254f);
+        float[] bounds = new float[4];
+        log.getBounds(lastRow, bounds);
+        assertEquals(200f, bounds[0], 0f);
+        assertEquals(290f, bounds[2], 0f);
+        assertEquals(131f, bounds[3], 0f);
+        log.close();
+    }
+
+    @Test
+    public void queries_aggregateSmilesPerMinuteAndFace() throws IOException {
+        //Two and a half minutes at 30 fps
+        int frames = 4500;
+        writeSession(frames);
+        SessionLog log = SessionLog.open(file);
+
+        //Half of face 0's rows, none of face 1's
+        assertEquals(0.25f, log.getSmilingShare(0.5f), 1e-4f);
+
+        MinuteHistogram histogram = log.getMinuteHistogram(10);
+        assertEquals(3, histogram.getMinuteCount());
+        int perMinute = (int) (SessionLog.NANOS_PER_MINUTE / FRAME_NANOS) + 1;
+        assertEquals(2 * perMinute, histogram.getTotal(0), 2);
+        assertEquals(histogram.getTotal(0) / 4, histogram.getCount(0, 9), 1);
+        assertEquals(histogram.getTotal(0) / 2, histogram.getCount(0, 2), 1);
+        assertEquals(0, histogram.getCount(1, 5));
+        int total = 0;
+        for(int minute = 0; minute < histogram.getMinuteCount(); minute++) {
+            total += histogram.getTotal(minute);
+        }
+        assertEquals(log.getRowCount(), total);
+
+        List<FaceSummary> faces = log.getFaceSummaries(0.5f, 0.5f);
+        assertEquals(2, faces.size());
+        assertEquals(0, faces.get(0).getFaceId());
+        assertEquals(frames, faces.get(0).getRows());
+        assertEquals(0.5f, faces.get(0).getSmilingShare(), 1e-4f);
+        assertEquals(0.5f, faces.get(0).getMeanSmiling(), 0.01f);
+        assertEquals(0f, faces.get(0).getEyesClosedShare(), 0f);
+        assertEquals(0f, faces.get(1).getSmilingShare(), 0f);
+        assertEquals(0.25f, faces.get(1).getEyesClosedShare(), 1e-4f);
+        assertEquals(START_NANOS, faces.get(1).getFirstNanos());
+        log.close();
+    }
+
+    @Test
+    public void log_cutShortKeepsCompleteBlocks() throws IOException {
+        SessionLogWriter writer = new SessionLogWriter(file);
+        writer.append(START_NANOS, 3, FaceObservations.UNCOMPUTED, 0.5f, 0.5f, 0f, 0f, 10f, 10f);
+        writer.flush();
+        writer.append(START_NANOS + FRAME_NANOS, 3, 0.7f, 0.5f, 0.5f, 0f, 0f, 10f, 10f);
+        writer.append(START_NANOS + 2 * FRAME_NANOS, 3, 0.7f, 0.5f, 0.5f, 0f, 0f, 10f, 10f);
+        writer.close();
+        assertEquals(2, writer.getBlockCount());
+        RandomAccessFile truncate = new RandomAccessFile(file, "rw");
+        truncate.setLength(file.length() - 5);
+        truncate.close();
+
+        SessionLog log = SessionLog.open(file);
+        assertEquals(1, log.getRowCount());
+        assertEquals(FaceObservations.UNCOMPUTED, log.getSmilingProbability(0), 0f);
+        //Uncomputed smiles do not count either way
+        assertEquals(0f, log.getSmilingShare(0.5f), 0f);
+        assertEquals(0, log.getMinuteHistogram(4).getTotal(0));
+        log.close();
+    }
+}
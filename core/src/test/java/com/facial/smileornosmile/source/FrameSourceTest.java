@@ -0,0 +1,114 @@
+package com.facial.smileornosmile.source;
+
+import com.facial.smileornosmile.frame.FrameBufferPool;
+import com.facial.smileornosmile.frame.LiveFrame;
+import com.facial.smileornosmile.frame.Nv21;
+import com.facial.smileornosmile.replay.FrameRecorder;
+import com.facial.smileornosmile.replay.FrameRecording;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FrameSourceTest {
+    private static final int WIDTH = 32;
+    private static final int HEIGHT = 24;
+    private static final int FRAMES = 5;
+    private static final long INTERVAL_NANOS = 40000000L;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("frames", "");
+        directory.delete();
+        directory.mkdirs();
+        byte[] data = new byte[Nv21.size(WIDTH, HEIGHT)];
+        for(int i = FRAMES - 1; i >= 0; i--) {
+            data[0] = (byte) i;
+            FileOutputStream out = new FileOutputStream(new File(directory, Nv21FileDecoder.fileName("frame" + i, WIDTH, HEIGHT)));
+            out.write(data);
+            out.close();
+        }
+        new File(directory, "notes.txt").createNewFile();
+    }
+
+    @After
+    public void tearDown() {
+        for(File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void directory_readsFramesInNameOrderIntoOneBuffer() throws IOException {
+        FrameBufferPool pool = new FrameBufferPool(1, true);
+        ImageSequenceFrameSource source = ImageSequenceFrameSource.directory(directory, new Nv21FileDecoder(90, true),
+                INTERVAL_NANOS, new SourceFrame(pool));
+        assertEquals(FRAMES, source.getFrameCount());
+
+        LiveFrame first = source.read();
+        ByteBuffer buffer = first.getData();
+        assertEquals(0, buffer.get(0));
+        assertEquals(Nv21.size(WIDTH, HEIGHT), buffer.limit());
+        assertEquals(WIDTH, first.getWidth());
+        assertEquals(90, first.getRotation());
+        assertTrue(first.isMirrored());
+        LiveFrame frozen = first.freeze();
+
+        assertTrue(source.skip());
+        LiveFrame third = source.read();
+        assertSame(buffer, third.getData());
+        assertEquals(2, third.getData().get(0));
+        assertEquals(2 * INTERVAL_NANOS, source.getTimestampNanos());
+        //The frozen copy does not follow the source
+        assertEquals(0, frozen.getData().get(0));
+        frozen.release();
+        assertEquals(0, pool.getInUseCount());
+
+        assertNotNull(source.read());
+        assertNotNull(source.read());
+        assertNull(source.read());
+        assertFalse(source.skip());
+        source.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void nv21File_ofTheWrongSizeFails() throws IOException {
+        File file = new File(directory, Nv21FileDecoder.fileName("short", WIDTH + 2, HEIGHT));
+        new FileOutputStream(file).close();
+        new Nv21FileDecoder(0, false).decode(file, new SourceFrame(new FrameBufferPool(1, true)));
+    }
+
+    @Test
+    public void recording_timestampsCountFromItsFirstFrame() throws IOException {
+        File file = new File(directory, "frames.rec");
+        FrameRecorder recorder = new FrameRecorder(file);
+        byte[] data = new byte[Nv21.size(WIDTH, HEIGHT)];
+        for(int i = 0; i < FRAMES; i++) {
+            data[0] = (byte) i;
+            recorder.writeFrame(1000000000L + i * INTERVAL_NANOS, data, WIDTH, HEIGHT, 270, false);
+        }
+        recorder.close();
+
+        FrameRecording recording = FrameRecording.open(file);
+        RecordingFrameSource source = new RecordingFrameSource(recording);
+        assertTrue(source.skip());
+        assertEquals(0, source.getTimestampNanos());
+        LiveFrame frame = source.read();
+        assertEquals(1, frame.getData().get(0));
+        assertEquals(270, frame.getRotation());
+        assertEquals(INTERVAL_NANOS, source.getTimestampNanos());
+        source.close();
+        assertNull(source.read());
+        recording.close();
+    }
+}
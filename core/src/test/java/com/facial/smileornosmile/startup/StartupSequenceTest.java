@@ -0,0 +1,143 @@
+package com.facial.smileornosmile.startup;
+
+import com.facial.smileornosmile.detector.DetectionImage;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.metrics.Tracer;
+import com.facial.smileornosmile.startup.StartupSequence.Milestone;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class StartupSequenceTest {
+    private static final long START_NANOS = 1000000000L;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static Runnable append(final List<String> log, final String entry) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                log.add(entry);
+            }
+        };
+    }
+
+    @Test
+    public void tasks_waitForTheirMilestoneInOrder() {
+        List<String> log = new ArrayList<>();
+        StartupSequence startup = new StartupSequence(START_NANOS, Tracer.NONE);
+        startup.runAt(Milestone.CAMERA_OPENED, "detector", DIRECT, append(log, "detector"));
+        startup.runAt(Milestone.CREATED, "camera", DIRECT, append(log, "camera"));
+        startup.runAt(Milestone.CAMERA_OPENED, "cache", DIRECT, append(log, "cache"));
+        assertTrue(log.isEmpty());
+
+        assertTrue(startup.reach(Milestone.CREATED, START_NANOS + 200000000L));
+        assertEquals(1, log.size());
+        assertTrue(startup.reach(Milestone.CAMERA_OPENED, START_NANOS + 500000000L));
+        assertEquals("camera", log.get(0));
+        assertEquals("detector", log.get(1));
+        assertEquals("cache", log.get(2));
+
+        //Milestones are reached once, tasks run once
+        assertFalse(startup.reach(Milestone.CAMERA_OPENED, START_NANOS + 900000000L));
+        assertEquals(3, log.size());
+        assertEquals(500000000L, startup.getNanos(Milestone.CAMERA_OPENED));
+        assertTrue(startup.getTaskNanos(0) >= 0);
+        assertEquals("detector", startup.getTaskName(0));
+    }
+
+    @Test
+    public void tasks_addedLateRunRightAway() {
+        List<String> log = new ArrayList<>();
+        StartupSequence startup = new StartupSequence(START_NANOS, Tracer.NONE);
+        startup.reach(Milestone.CREATED, START_NANOS);
+        startup.runAt(Milestone.CREATED, "late", DIRECT, append(log, "late"));
+
+        assertEquals(1, log.size());
+        assertEquals(StartupSequence.NOT_REACHED, startup.getTimeToFirstDetectionNanos());
+        assertFalse(startup.hasReached(Milestone.FIRST_FRAME));
+    }
+
+    @Test
+    public void tracer_seesEveryMilestoneAndTask() {
+        final List<String> sections = new ArrayList<>();
+        Tracer tracer = new Tracer() {
+            @Override
+            public void beginSection(String name) {
+                sections.add("begin " + name);
+            }
+
+            @Override
+            public void endSection() {
+                sections.add("end");
+            }
+
+            @Override
+            public void beginAsyncSection(String name, int cookie) {
+            }
+
+            @Override
+            public void endAsyncSection(String name, int cookie) {
+                sections.add("reached " + name);
+            }
+        };
+        StartupSequence startup = new StartupSequence(START_NANOS, tracer);
+        startup.runAt(Milestone.FIRST_OVERLAY, "analytics", DIRECT, append(new ArrayList<String>(), "analytics"));
+        startup.reach(Milestone.FIRST_OVERLAY, START_NANOS + 1);
+
+        assertEquals(3, sections.size());
+        assertEquals("reached SmileOrNoSmile.startup.first_overlay", sections.get(0));
+        assertEquals("begin SmileOrNoSmile.startup.analytics", sections.get(1));
+        assertEquals("end", sections.get(2));
+    }
+
+    @Test
+    public void warmUp_isReadyEvenIfDetectionFails() {
+        final List<DetectionImage> images = new ArrayList<>();
+        FaceDetectorBackend backend = new FaceDetectorBackend() {
+            @Override
+            public String getName() {
+                return "fake";
+            }
+
+            @Override
+            public void warmUp(DetectorProfile profile) {
+            }
+
+            @Override
+            public void detect(DetectionImage image, DetectorProfile profile, FaceObservations results,
+                               Executor callbackExecutor, Callback callback) {
+                images.add(image);
+                callback.onFailed(new IllegalStateException("no model"));
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final boolean[] ready = new boolean[1];
+        DetectorWarmUp.run(backend, DetectorProfile.LIVE_CONTOURS, DIRECT, new Runnable() {
+            @Override
+            public void run() {
+                ready[0] = true;
+            }
+        });
+
+        assertTrue(ready[0]);
+        assertEquals(1, images.size());
+        assertEquals(DetectorWarmUp.WIDTH, images.get(0).getWidth());
+        assertTrue(images.get(0).getNv21().isDirect());
+    }
+}
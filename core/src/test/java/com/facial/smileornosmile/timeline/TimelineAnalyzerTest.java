@@ -0,0 +1,169 @@
+package com.facial.smileornosmile.timeline;
+
+import com.facial.smileornosmile.detector.DetectionImage;
+import com.facial.smileornosmile.detector.DetectorProfile;
+import com.facial.smileornosmile.detector.FaceDetectorBackend;
+import com.facial.smileornosmile.frame.FrameBufferPool;
+import com.facial.smileornosmile.frame.Nv21;
+import com.facial.smileornosmile.source.ImageSequenceFrameSource;
+import com.facial.smileornosmile.source.Nv21FileDecoder;
+import com.facial.smileornosmile.source.SourceFrame;
+import com.facial.smileornosmile.tracking.FaceObservations;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class TimelineAnalyzerTest {
+    private static final int WIDTH = 32;
+    private static final int HEIGHT = 24;
+    private static final int FRAMES = 10;
+    private static final long INTERVAL_NANOS = 100000000L;
+
+    private File directory;
+    private File timeline;
+
+    /**
+     * Finds one face smiling with a tenth of the frame's first byte, none in frame 6 and fails on frame 9.
+     */
+    private final FaceDetectorBackend backend = new FaceDetectorBackend() {
+        @Override
+        public String getName() {
+            return "fake";
+        }
+
+        @Override
+        public void warmUp(DetectorProfile profile) {
+        }
+
+        @Override
+        public void detect(DetectionImage image, DetectorProfile profile, FaceObservations results,
+                           Executor callbackExecutor, Callback callback) {
+            int frame = image.getNv21().get(0);
+            results.clear();
+            if(frame == 9) {
+                callback.onFailed(new IllegalStateException("frame 9"));
+                return;
+            }
+            if(frame != 6) {
+                results.addFace(FaceObservations.NO_TRACKING_ID, 4f, 4f, 20f, 20f, frame / 10f, 0.9f, FaceObservations.UNCOMPUTED);
+            }
+            callback.onDetected(results);
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("frames", "");
+        directory.delete();
+        directory.mkdirs();
+        byte[] data = new byte[Nv21.size(WIDTH, HEIGHT)];
+        for(int i = 0; i < FRAMES; i++) {
+            data[0] = (byte) i;
+            FileOutputStream out = new FileOutputStream(new File(directory, Nv21FileDecoder.fileName("frame" + i, WIDTH, HEIGHT)));
+            out.write(data);
+            out.close();
+        }
+        timeline = File.createTempFile("timeline", ".csv");
+    }
+
+    @After
+    public void tearDown() {
+        for(File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+        timeline.delete();
+    }
+
+    private static List<String> lines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    @Test
+    public void run_writesEveryStrideFrameAsItGoes() throws Exception {
+        ImageSequenceFrameSource source = ImageSequenceFrameSource.directory(directory, new Nv21FileDecoder(0, false),
+                INTERVAL_NANOS, new SourceFrame(new FrameBufferPool(1, true)));
+        final TimelineWriter writer = new TimelineWriter(timeline);
+        final List<Integer> linesSeen = new ArrayList<>();
+        TimelineAnalyzer analyzer = new TimelineAnalyzer(backend, DetectorProfile.LIVE_LIGHT, 3);
+        TimelineProgress progress;
+        try {
+            progress = analyzer.run(source, writer, new TimelineAnalyzer.ProgressListener() {
+                @Override
+                public void onProgress(TimelineProgress progress) {
+                    try {
+                        linesSeen.add(lines(timeline).size());
+                    } catch (IOException e) {
+                        fail(e.toString());
+                    }
+                }
+            });
+        } finally {
+            writer.close();
+            source.close();
+        }
+
+        //Frames 0, 3, 6 and 9, each on disk as soon as it was analyzed
+        assertEquals(FRAMES, progress.getFramesRead());
+        assertEquals(4, progress.getFramesAnalyzed());
+        assertEquals(1, progress.getFramesFailed());
+        assertEquals(9 * INTERVAL_NANOS, progress.getSourceNanos());
+        assertTrue(progress.getFramesPerSecond() > 0f);
+        assertEquals(2, (int) linesSeen.get(0));
+        assertEquals(4, (int) linesSeen.get(2));
+
+        List<String> lines = lines(timeline);
+        assertEquals(4, lines.size());
+        assertEquals(TimelineWriter.HEADER, lines.get(0));
+        assertEquals("0.000,0,0.000,0.900,", lines.get(1));
+        assertEquals("300.000,0,0.300,0.900,", lines.get(2));
+        assertEquals("600.000,-1,,,", lines.get(3));
+    }
+
+    @Test
+    public void cancel_stopsBeforeTheNextFrame() throws Exception {
+        ImageSequenceFrameSource source = ImageSequenceFrameSource.directory(directory, new Nv21FileDecoder(0, false),
+                INTERVAL_NANOS, new SourceFrame(new FrameBufferPool(1, true)));
+        TimelineWriter writer = new TimelineWriter(timeline);
+        final TimelineAnalyzer analyzer = new TimelineAnalyzer(backend, DetectorProfile.LIVE_LIGHT, 1);
+        TimelineProgress progress = analyzer.run(source, writer, new TimelineAnalyzer.ProgressListener() {
+            @Override
+            public void onProgress(TimelineProgress progress) {
+                if(progress.getFramesAnalyzed() == 2) {
+                    analyzer.cancel();
+                }
+            }
+        });
+        writer.close();
+
+        assertTrue(analyzer.isCancelled());
+        assertEquals(2, progress.getFramesRead());
+        assertEquals(3, lines(timeline).size());
+    }
+}
@@ -0,0 +1,229 @@
+package com.facial.smileornosmile.tracking;
+
+import com.facial.smileornosmile.render.ContourGeometry;
+import com.facial.smileornosmile.render.ContourTable;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FaceTrackerTest {
+
+    private static final long FRAME_NANOS = 33333333L;
+
+    /**
+     * Adds a 100 x 100 face centered at {@code x, y} with a closed square contour.
+     */
+    private static void addFace(FaceObservations observations, float x, float y, float smiling) {
+        int face = observations.addFace(FaceObservations.NO_TRACKING_ID, x - 50f, y - 50f, x + 50f, y + 50f,
+                smiling, 0.9f, 0.9f);
+        observations.beginContour(face);
+        observations.addPoint(face, x - 40f, y - 40f);
+        observations.addPoint(face, x + 40f, y - 40f);
+        observations.addPoint(face, x + 40f, y + 40f);
+        observations.addPoint(face, x - 40f, y + 40f);
+    }
+
+    @Test
+    public void update_keepsIdsStableAcrossFrames() {
+        FaceTracker tracker = new FaceTracker(4, 9, 64);
+        FaceObservations observations = new FaceObservations(4, 9, 64);
+
+        for(int frame = 0; frame < 30; frame++) {
+            observations.clear();
+            // Listed in alternating order so matching can not rely on it
+            if(frame % 2 == 0) {
+                addFace(observations, 100f + frame * 3f, 200f, 0.5f);
+                addFace(observations, 400f - frame * 3f, 220f, 0.5f);
+            } else {
+                addFace(observations, 400f - frame * 3f, 220f, 0.5f);
+                addFace(observations, 100f + frame * 3f, 200f, 0.5f);
+            }
+            tracker.update(observations, frame * FRAME_NANOS);
+        }
+
+        assertEquals(2, tracker.getTrackCount());
+        TrackedFace left = tracker.getTrack(0).getCenterX() < tracker.getTrack(1).getCenterX()
+                ? tracker.getTrack(0) : tracker.getTrack(1);
+        assertEquals(0, left.getId());
+        assertEquals(30, left.getHits());
+        assertEquals(187f, left.getCenterX(), 3f);
+    }
+
+    @Test
+    public void update_dropsFaceAfterTooManyMisses() {
+        FaceTracker tracker = new FaceTracker(4, 9, 64, 0.5f, 2, 0.2f);
+        FaceObservations observations = new FaceObservations(4, 9, 64);
+        addFace(observations, 100f, 100f, 0.5f);
+        tracker.update(observations, 0);
+
+        observations.clear();
+        for(int frame = 1; frame <= 3; frame++) {
+            tracker.update(observations, frame * FRAME_NANOS);
+        }
+        assertEquals(0, tracker.getTrackCount());
+
+        addFace(observations, 100f, 100f, 0.5f);
+        tracker.update(observations, 4 * FRAME_NANOS);
+        assertEquals(1, tracker.getTrack(0).getId());
+    }
+
+    @Test
+    public void update_usesDetectorTrackingId() {
+        FaceTracker tracker = new FaceTracker(4, 9, 64);
+        FaceObservations observations = new FaceObservations(4, 9, 64);
+        observations.addFace(7, 0f, 0f, 100f, 100f, 0.5f, 0.5f, 0.5f);
+        tracker.update(observations, 0);
+
+        // Jumped far away, but the detector still says it is face 7
+        observations.clear();
+        observations.addFace(7, 500f, 500f, 600f, 600f, 0.5f, 0.5f, 0.5f);
+        tracker.update(observations, FRAME_NANOS);
+
+        assertEquals(1, tracker.getTrackCount());
+        assertEquals(0, tracker.getTrack(0).getId());
+    }
+
+    @Test
+    public void smoothing_reducesJitter() {
+        Random random = new Random(3);
+        FaceTracker tracker = new FaceTracker(1, 9, 64);
+        FaceObservations observations = new FaceObservations(1, 9, 64);
+
+        double rawError = 0;
+        double trackedError = 0;
+        for(int frame = 0; frame < 300; frame++) {
+            float noise = (float) random.nextGaussian() * 4f;
+            float smileNoise = (float) random.nextGaussian() * 0.05f;
+            observations.clear();
+            addFace(observations, 200f + noise, 200f, 0.6f + smileNoise);
+            tracker.update(observations, frame * FRAME_NANOS);
+            if(frame > 10) {
+                rawError += noise * noise;
+                float error = tracker.getTrack(0).getCenterX() - 200f;
+                trackedError += error * error;
+            }
+        }
+
+        assertTrue("tracked " + trackedError + " raw " + rawError, trackedError < rawError * 0.8);
+        assertEquals(0.6f, tracker.getTrack(0).getSmilingProbability(), 0.1f);
+    }
+
+    @Test
+    public void predict_followsVelocityBetweenDetections() {
+        FaceTracker tracker = new FaceTracker(1, 9, 64, 0.8f, 3, 0.2f);
+        FaceObservations observations = new FaceObservations(1, 9, 64);
+
+        // 300 px per second to the right, detected every other frame
+        for(int frame = 0; frame < 40; frame += 2) {
+            observations.clear();
+            addFace(observations, 100f + frame * 10f, 100f, 0.5f);
+            tracker.update(observations, frame * FRAME_NANOS);
+        }
+        tracker.predict(39 * FRAME_NANOS);
+
+        TrackedFace face = tracker.getTrack(0);
+        assertEquals(300f, face.getVelocityX(), 30f);
+        assertEquals(100f + 39 * 10f, face.getCenterX(), 5f);
+        assertEquals(face.getCenterX() - 40f, face.getPointX(0), 5f);
+    }
+
+    @Test
+    public void predict_beforeOlderDetectionKeepsVelocity() {
+        FaceTracker tracker = new FaceTracker(1, 9, 64, 0.8f, 3, 0.2f);
+        FaceObservations observations = new FaceObservations(1, 9, 64);
+
+        // Like the live pipeline: the next frame is predicted for before the detection of the previous one returns
+        for(int frame = 0; frame < 40; frame += 2) {
+            tracker.predict((frame + 1) * FRAME_NANOS);
+            observations.clear();
+            addFace(observations, 100f + frame * 10f, 100f, 0.5f);
+            tracker.update(observations, frame * FRAME_NANOS);
+        }
+
+        TrackedFace face = tracker.getTrack(0);
+        assertEquals(300f, face.getVelocityX(), 30f);
+        // Still shown at the newest frame, not moved back to the detected one
+        assertEquals(100f + 39 * 10f, face.getCenterX(), 5f);
+        tracker.predict(41 * FRAME_NANOS);
+        assertEquals(100f + 41 * 10f, face.getCenterX(), 5f);
+        assertEquals(face.getCenterX() - 40f, face.getPointX(0), 5f);
+    }
+
+    @Test
+    public void flattenContours_usesTrackedPoints() {
+        FaceTracker tracker = new FaceTracker(2, 9, 64);
+        FaceObservations observations = new FaceObservations(2, 9, 64);
+        addFace(observations, 100f, 100f, 0.5f);
+        tracker.update(observations, 0);
+
+        ContourGeometry geometry = new ContourGeometry();
+        tracker.flattenContours(ContourTable.LIVE_OVERLAY, geometry);
+
+        // First table entry is the closed face outline
+        assertEquals(4, geometry.getPointCount());
+        assertEquals(4, geometry.getSegmentCount());
+    }
+
+    @Test
+    public void flattenContours_drawsBoxWithoutContours() {
+        // Like the cheapest quality levels, detected with DetectorProfile.LIVE_LIGHT
+        FaceTracker tracker = new FaceTracker(2, 9, 64);
+        FaceObservations observations = new FaceObservations(2, 9, 64);
+        observations.addFace(FaceObservations.NO_TRACKING_ID, 100f, 100f, 200f, 250f, 0.5f, 0.5f, 0.5f);
+        tracker.update(observations, 0);
+
+        ContourGeometry geometry = new ContourGeometry();
+        tracker.flattenContours(ContourTable.LIVE_OVERLAY, geometry);
+
+        assertEquals(4, geometry.getPointCount());
+        assertEquals(4, geometry.getSegmentCount());
+        assertEquals(100f, geometry.getPoints()[0], 1e-4f);
+        assertEquals(250f, geometry.getPoints()[5], 1e-4f);
+    }
+
+    @Test
+    public void cadence_detectsEveryNthFrameWhileTracking() {
+        DetectionCadence cadence = new DetectionCadence(3);
+
+        assertTrue(cadence.shouldDetect(false));
+        assertFalse(cadence.shouldDetect(true));
+        assertFalse(cadence.shouldDetect(true));
+        assertTrue(cadence.shouldDetect(true));
+        assertTrue(cadence.shouldDetect(false));
+        cadence.requestDetection();
+        assertTrue(cadence.shouldDetect(true));
+    }
+
+    @Test
+    public void transform_mapsCropResultsOntoFullFrame() {
+        FaceObservations observations = new FaceObservations(4, 9, 64);
+        addFace(observations, 100f, 100f, 0.5f);
+
+        observations.transform(2f, 40f, 60f);
+
+        assertEquals(140f, observations.getLeft(0), 1e-4f);
+        assertEquals(160f, observations.getTop(0), 1e-4f);
+        assertEquals(340f, observations.getRight(0), 1e-4f);
+        assertEquals(360f, observations.getBottom(0), 1e-4f);
+        assertEquals(160f, observations.getPointX(0, 0), 1e-4f);
+        assertEquals(180f, observations.getPointY(0, 0), 1e-4f);
+    }
+
+    @Test
+    public void getBounds_coversAllTracks() {
+        FaceTracker tracker = new FaceTracker(4, 9, 64);
+        FaceObservations observations = new FaceObservations(4, 9, 64);
+        float[] bounds = new float[4];
+        assertFalse(tracker.getBounds(bounds));
+
+        addFace(observations, 100f, 200f, 0.5f);
+        addFace(observations, 400f, 300f, 0.5f);
+        tracker.update(observations, 0L);
+
+        assertTrue(tracker.getBounds(bounds));
+        assertArrayEquals(new float[]{50f, 150f, 450f, 350f}, bounds, 1e-4f);
+    }
+}